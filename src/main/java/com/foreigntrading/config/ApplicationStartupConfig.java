@@ -4,15 +4,53 @@ import com.foreigntrading.service.RoleService;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
 
 @Configuration
 @RequiredArgsConstructor
 public class ApplicationStartupConfig {
+    // Each table's <table>_seq sequence, allocated in blocks of 50, with the statement that moves it past
+    // the table's ids; fixed text, as a table name cannot be a bind parameter
+    private static final Map<String, String> ALIGN_SEQUENCES = Map.of(
+            "users_seq", alignStatement("users"),
+            "roles_seq", alignStatement("roles"),
+            "accounts_seq", alignStatement("accounts"),
+            "transactions_seq", alignStatement("transactions"),
+            "trades_seq", alignStatement("trades"),
+            "orders_seq", alignStatement("orders"),
+            "alerts_seq", alignStatement("alerts"),
+            "holds_seq", alignStatement("holds"));
+
     private final RoleService roleService;
+    private final JdbcTemplate jdbcTemplate;
 
     @PostConstruct
     public void initialize() {
+        alignIdSequences();
         // Initialize roles
         roleService.initializeRoles();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Rows inserted while ids were identity columns would collide with a new sequence's first blocks.
+     * Only a PostgreSQL database can hold such rows; any other, like the H2 database of the test
+     * profile, is created empty with the schema and has nothing to align.
+     */
+    private void alignIdSequences() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+        ALIGN_SEQUENCES.forEach((sequence, statement) ->
+                jdbcTemplate.queryForObject(statement, Long.class, sequence, sequence));
+    }
+
+    private static String alignStatement(String table) {
+        return "SELECT setval(?::regclass, GREATEST(nextval(?::regclass), "
+                + "(SELECT COALESCE(MAX(id), 0) FROM " + table + ") + 50))";
+    }
+}
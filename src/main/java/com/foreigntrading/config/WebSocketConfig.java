@@ -0,0 +1,41 @@
+package com.foreigntrading.config;
+
+import com.foreigntrading.websocket.PriceStreamHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final PriceStreamHandler priceStreamHandler;
+
+    @Value("${websocket.endpoint:/ws}")
+    private String endpoint;
+
+    @Value("${websocket.allowed-origins:*}")
+    private String[] allowedOrigins;
+
+    // Inbound messages are only small subscription requests; the container allocates this per session
+    @Value("${websocket.inbound-buffer-size:1024}")
+    private int inboundBufferSize;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(priceStreamHandler, endpoint).setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(inboundBufferSize);
+        container.setMaxBinaryMessageBufferSize(inboundBufferSize);
+        return container;
+    }
+}
@@ -0,0 +1,61 @@
+package com.foreigntrading.controller;
+
+import com.foreigntrading.marketdata.EncodedSnapshot;
+import com.foreigntrading.service.MarketOverviewService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/api/market")
+@RequiredArgsConstructor
+public class MarketDataController {
+    private final MarketOverviewService marketOverviewService;
+
+    /**
+     * Serves the pre-encoded overview. Clients revalidate with If-None-Match and get a bodiless 304
+     * until the rate book changes.
+     */
+    @GetMapping("/overview")
+    public ResponseEntity<byte[]> getOverview(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        EncodedSnapshot overview = marketOverviewService.current();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? overview.gzipEtag() : overview.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(overview.gzip());
+        }
+        return response.body(overview.json());
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!"gzip".equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+            // "gzip;q=0" explicitly refuses it
+            return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+}
@@ -17,20 +17,22 @@ import java.util.Set;
 @AllArgsConstructor
 public class Account {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(nullable = false)
+    @Column(nullable = false, unique = true)
     private String accountNumber;
 
     @Column(nullable = false)
     private String accountType; // DEMO, LIVE
 
-    @Column(nullable = false)
+    // Written only by the guarded updates of AccountBalanceRepository, never by saving the entity
+    @Column(nullable = false, updatable = false)
     private BigDecimal balance;
 
     @Column(nullable = false)
@@ -81,11 +83,6 @@ public class Account {
         order.setAccount(null);
     }
 
-    public void updateBalance(BigDecimal amount) {
-        this.balance = this.balance.add(amount);
-        this.lastUpdatedAt = LocalDateTime.now();
-    }
-
     public boolean hasSufficientFunds(BigDecimal amount) {
         return this.balance.compareTo(amount) >= 0;
     }
@@ -0,0 +1,61 @@
+package com.foreigntrading.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "holds", indexes = {
+        @Index(name = "idx_holds_reference", columnList = "referenceType, referenceId"),
+        @Index(name = "idx_holds_account_status", columnList = "account_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Hold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "holds_seq")
+    @SequenceGenerator(name = "holds_seq", sequenceName = "holds_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(nullable = false)
+    private String referenceType; // TRADE, ORDER
+
+    @Column(nullable = false)
+    private Long referenceId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private String status; // ACTIVE, RELEASED, CONVERTED
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime releasedAt;
+    private LocalDateTime convertedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public void release() {
+        this.status = "RELEASED";
+        this.releasedAt = LocalDateTime.now();
+    }
+
+    public void convert() {
+        this.status = "CONVERTED";
+        this.convertedAt = LocalDateTime.now();
+    }
+}
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -74,6 +75,15 @@ public class Order {
         this.cancelledAt = LocalDateTime.now();
     }
 
+    // Cancelled after a partial fill: the order keeps what filled, at its average price, and the rest is cancelled
+    public void cancelPartiallyFilled(BigDecimal filledAmount, BigDecimal averagePrice) {
+        this.amount = filledAmount;
+        this.price = averagePrice;
+        this.executedAt = LocalDateTime.now();
+        calculateTotalCost();
+        cancel();
+    }
+
     public void reject() {
         this.status = "REJECTED";
         this.rejectedAt = LocalDateTime.now();
@@ -85,12 +95,12 @@ public class Order {
 
     public boolean isStopLossTriggered(BigDecimal currentPrice) {
         if (stopLossPrice == null) return false;
-        return side.equals("BUY") ? currentPrice <= stopLossPrice : currentPrice >= stopLossPrice;
+        return side.equals("BUY") ? currentPrice.compareTo(stopLossPrice) <= 0 : currentPrice.compareTo(stopLossPrice) >= 0;
     }
 
     public boolean isTakeProfitTriggered(BigDecimal currentPrice) {
         if (takeProfitPrice == null) return false;
-        return side.equals("BUY") ? currentPrice >= takeProfitPrice : currentPrice <= takeProfitPrice;
+        return side.equals("BUY") ? currentPrice.compareTo(takeProfitPrice) >= 0 : currentPrice.compareTo(takeProfitPrice) <= 0;
     }
 
     public boolean isLimitOrder() {
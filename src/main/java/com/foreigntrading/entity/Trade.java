@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Trade {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trades_seq")
+    @SequenceGenerator(name = "trades_seq", sequenceName = "trades_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -87,11 +88,13 @@ public class Trade {
 
     public boolean isStopLossTriggered(BigDecimal currentPrice) {
         if (stopLossPrice == null) return false;
-        return side.equals("BUY") ? currentPrice <= stopLossPrice : currentPrice >= stopLossPrice;
+        int comparison = currentPrice.compareTo(stopLossPrice);
+        return side.equals("BUY") ? comparison <= 0 : comparison >= 0;
     }
 
     public boolean isTakeProfitTriggered(BigDecimal currentPrice) {
         if (takeProfitPrice == null) return false;
-        return side.equals("BUY") ? currentPrice >= takeProfitPrice : currentPrice <= takeProfitPrice;
+        int comparison = currentPrice.compareTo(takeProfitPrice);
+        return side.equals("BUY") ? comparison >= 0 : comparison <= 0;
     }
 } 
\ No newline at end of file
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Transaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,6 +43,7 @@ public class Transaction {
     private LocalDateTime cancelledAt;
 
     private String description;
+    @Column(unique = true)
     private String referenceNumber;
     private String paymentMethod; // CREDIT_CARD, BANK_TRANSFER, E_WALLET
 
@@ -57,7 +59,6 @@ public class Transaction {
     public void complete() {
         this.status = "COMPLETED";
         this.completedAt = LocalDateTime.now();
-        this.account.updateBalance(this.amount);
     }
 
     public void fail() {
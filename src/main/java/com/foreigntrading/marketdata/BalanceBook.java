@@ -0,0 +1,158 @@
+package com.foreigntrading.marketdata;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-memory fixed-point balances of trading accounts, with the owner and active flag the pre-trade
+ * checks need. An account is loaded once, on first use, and every later change goes through here
+ * before it reaches the database, so a check against this book sees changes not yet written back.
+ * Balances change by compare-and-set, so checks on one account never wait for each other.
+ * <p>
+ * Each balance is split into what is available and what is held for pending orders: a hold moves
+ * funds out of the available part, so checks against it see them as spent, and is later released
+ * back or settled when the order fills.
+ */
+public class BalanceBook {
+    private final ConcurrentHashMap<Long, Entry> accounts = new ConcurrentHashMap<>();
+
+    public Entry find(long accountId) {
+        return accounts.get(accountId);
+    }
+
+    /**
+     * Adds an account read from the database and returns the book's entry for it, which is the one
+     * already there if another thread loaded it first.
+     */
+    public Entry load(long accountId, long userId, boolean active, String currency, long balance, long held) {
+        Entry entry = new Entry(accountId, userId, active, currency, balance - held, held);
+        Entry existing = accounts.putIfAbsent(accountId, entry);
+        return existing != null ? existing : entry;
+    }
+
+    public void remove(long accountId) {
+        accounts.remove(accountId);
+    }
+
+    public void clear() {
+        accounts.clear();
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+
+    public void forEach(Consumer<Entry> consumer) {
+        accounts.values().forEach(consumer);
+    }
+
+    public static final class Entry {
+        private final long accountId;
+        private final long userId;
+        private final String currency;
+        private final AtomicLong available;
+        private final AtomicLong held;
+        private final AtomicLong unwritten = new AtomicLong();
+        private volatile boolean active;
+
+        private Entry(long accountId, long userId, boolean active, String currency, long available, long held) {
+            this.accountId = accountId;
+            this.userId = userId;
+            this.active = active;
+            this.currency = currency;
+            this.available = new AtomicLong(available);
+            this.held = new AtomicLong(held);
+        }
+
+        /**
+         * Applies the change only if the available balance is at least {@code required} and stays
+         * non-negative after it. Returns false, changing nothing, otherwise.
+         */
+        public boolean tryApply(long required, long change) {
+            while (true) {
+                long current = available.get();
+                long updated = current + change;
+                if (current < required || updated < 0) {
+                    return false;
+                }
+                if (available.compareAndSet(current, updated)) {
+                    return true;
+                }
+            }
+        }
+
+        // Unconditional, for changes the database has already accepted or to undo one that it refused
+        public void apply(long change) {
+            available.addAndGet(change);
+        }
+
+        /**
+         * Moves the amount from available to held if that much is available. Returns false, changing
+         * nothing, otherwise.
+         */
+        public boolean tryHold(long amount) {
+            if (!tryApply(amount, -amount)) {
+                return false;
+            }
+            held.addAndGet(amount);
+            return true;
+        }
+
+        // Moves a hold back to available; a negative amount holds without a check, for reconciliation
+        public void release(long amount) {
+            held.addAndGet(-amount);
+            available.addAndGet(amount);
+        }
+
+        /**
+         * Ends a hold when its order fills: the held amount comes back and the fill's change, a debit
+         * for a buy, is applied in its place.
+         */
+        public void settle(long amount, long change) {
+            held.addAndGet(-amount);
+            available.addAndGet(amount + change);
+        }
+
+        // Tracks changes applied here whose write-back is still queued, so reconciliation leaves them be
+        public void addUnwritten(long change) {
+            unwritten.addAndGet(change);
+        }
+
+        public long accountId() {
+            return accountId;
+        }
+
+        public long userId() {
+            return userId;
+        }
+
+        public String currency() {
+            return currency;
+        }
+
+        public long balance() {
+            return available.get() + held.get();
+        }
+
+        public long available() {
+            return available.get();
+        }
+
+        public long held() {
+            return held.get();
+        }
+
+        public long unwritten() {
+            return unwritten.get();
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+}
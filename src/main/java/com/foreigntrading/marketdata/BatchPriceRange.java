@@ -0,0 +1,53 @@
+package com.foreigntrading.marketdata;
+
+/**
+ * Low, high and last fixed-point price of every pair touched by one pipeline batch, starting from the
+ * price before the batch. Trigger stages evaluate each pair once per batch against the whole range, so a
+ * level crossed and left again within the batch still fires.
+ */
+public class BatchPriceRange {
+    private final long[] low = new long[CurrencyPairRegistry.MAX_PAIRS];
+    private final long[] high = new long[CurrencyPairRegistry.MAX_PAIRS];
+    private final long[] last = new long[CurrencyPairRegistry.MAX_PAIRS];
+    private final boolean[] touched = new boolean[CurrencyPairRegistry.MAX_PAIRS];
+    private final int[] pairs = new int[CurrencyPairRegistry.MAX_PAIRS];
+    private int count;
+
+    public void add(int pairId, long previousRate, long rate) {
+        if (!touched[pairId]) {
+            touched[pairId] = true;
+            pairs[count++] = pairId;
+            long from = previousRate == TickEvent.NO_PREVIOUS_RATE ? rate : previousRate;
+            low[pairId] = Math.min(from, rate);
+            high[pairId] = Math.max(from, rate);
+        } else {
+            low[pairId] = Math.min(low[pairId], rate);
+            high[pairId] = Math.max(high[pairId], rate);
+        }
+        last[pairId] = rate;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Hands every touched pair to the consumer and clears the range for the next batch.
+     */
+    public void drain(RangeConsumer consumer) {
+        int drained = count;
+        count = 0;
+        for (int i = 0; i < drained; i++) {
+            touched[pairs[i]] = false;
+        }
+        for (int i = 0; i < drained; i++) {
+            int pairId = pairs[i];
+            consumer.onRange(pairId, low[pairId], high[pairId], last[pairId]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RangeConsumer {
+        void onRange(int pairId, long low, long high, long last);
+    }
+}
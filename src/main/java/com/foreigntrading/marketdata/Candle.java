@@ -0,0 +1,12 @@
+package com.foreigntrading.marketdata;
+
+/**
+ * Finalized OHLC bar. Prices are fixed-point (see {@link FixedPoint}), times are epoch millis.
+ */
+public record Candle(int pairId, Timeframe timeframe, long openTime, long open, long high, long low, long close,
+                     long tickCount) {
+
+    public long closeTime() {
+        return openTime + timeframe.getMillis();
+    }
+}
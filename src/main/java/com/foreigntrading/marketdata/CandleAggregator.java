@@ -0,0 +1,182 @@
+package com.foreigntrading.marketdata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Incrementally maintains open/high/low/close/count bars for every pair and {@link Timeframe}.
+ * Bar state lives in primitive arrays indexed by (pair, timeframe) so a tick touches no objects;
+ * the only allocation is the {@link Candle} published when a bar is finalized on its boundary.
+ */
+public class CandleAggregator {
+    private static final Timeframe[] TIMEFRAMES = Timeframe.values();
+    private static final int TIMEFRAME_COUNT = TIMEFRAMES.length;
+    private static final int SLOTS = CurrencyPairRegistry.MAX_PAIRS * TIMEFRAME_COUNT;
+
+    private final int historyCapacity;
+    private final long[] openTime = new long[SLOTS];
+    private final long[] open = new long[SLOTS];
+    private final long[] high = new long[SLOTS];
+    private final long[] low = new long[SLOTS];
+    private final long[] close = new long[SLOTS];
+    private final long[] count = new long[SLOTS];
+    private final CandleSeries[] history = new CandleSeries[SLOTS];
+    private final Object[] pairLocks = new Object[CurrencyPairRegistry.MAX_PAIRS];
+    private final List<CandleListener> listeners = new CopyOnWriteArrayList<>();
+
+    public CandleAggregator(int historyCapacity) {
+        this.historyCapacity = historyCapacity;
+        for (int i = 0; i < pairLocks.length; i++) {
+            pairLocks[i] = new Object();
+        }
+    }
+
+    public void subscribe(CandleListener listener) {
+        listeners.add(listener);
+    }
+
+    public void onTick(int pairId, long epochMillis, long price) {
+        synchronized (pairLocks[pairId]) {
+            int slot = pairId * TIMEFRAME_COUNT;
+            for (int tf = 0; tf < TIMEFRAME_COUNT; tf++, slot++) {
+                long bucket = TIMEFRAMES[tf].bucketStart(epochMillis);
+                if (count[slot] != 0 && bucket > openTime[slot]) {
+                    finalizeBar(pairId, tf, slot);
+                }
+                if (count[slot] == 0) {
+                    openTime[slot] = bucket;
+                    open[slot] = price;
+                    high[slot] = price;
+                    low[slot] = price;
+                } else {
+                    // A late tick from an already closed bucket is folded into the open bar
+                    if (price > high[slot]) {
+                        high[slot] = price;
+                    }
+                    if (price < low[slot]) {
+                        low[slot] = price;
+                    }
+                }
+                close[slot] = price;
+                count[slot]++;
+            }
+        }
+    }
+
+    /**
+     * Finalizes every open bar whose boundary has passed, so bars close on time even without a new tick.
+     */
+    public void closeExpired(long nowMillis) {
+        for (int pairId = 0; pairId < CurrencyPairRegistry.MAX_PAIRS; pairId++) {
+            int base = pairId * TIMEFRAME_COUNT;
+            if (!hasOpenBar(base)) {
+                continue;
+            }
+            synchronized (pairLocks[pairId]) {
+                for (int tf = 0; tf < TIMEFRAME_COUNT; tf++) {
+                    int slot = base + tf;
+                    if (count[slot] != 0 && openTime[slot] + TIMEFRAMES[tf].getMillis() <= nowMillis) {
+                        finalizeBar(pairId, tf, slot);
+                    }
+                }
+            }
+        }
+    }
+
+    public Candle currentBar(int pairId, Timeframe timeframe) {
+        int slot = pairId * TIMEFRAME_COUNT + timeframe.ordinal();
+        synchronized (pairLocks[pairId]) {
+            if (count[slot] == 0) {
+                return null;
+            }
+            return new Candle(pairId, timeframe, openTime[slot], open[slot], high[slot], low[slot], close[slot], count[slot]);
+        }
+    }
+
+    /**
+     * Up to {@code limit} most recent finalized bars, oldest first.
+     */
+    public List<Candle> recentBars(int pairId, Timeframe timeframe, int limit) {
+        int slot = pairId * TIMEFRAME_COUNT + timeframe.ordinal();
+        synchronized (pairLocks[pairId]) {
+            CandleSeries series = history[slot];
+            if (series == null) {
+                return List.of();
+            }
+            return series.recent(pairId, timeframe, limit);
+        }
+    }
+
+    private boolean hasOpenBar(int base) {
+        for (int tf = 0; tf < TIMEFRAME_COUNT; tf++) {
+            if (count[base + tf] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finalizeBar(int pairId, int tf, int slot) {
+        CandleSeries series = history[slot];
+        if (series == null) {
+            series = new CandleSeries(historyCapacity);
+            history[slot] = series;
+        }
+        series.append(openTime[slot], open[slot], high[slot], low[slot], close[slot], count[slot]);
+        long barCount = count[slot];
+        count[slot] = 0;
+
+        if (!listeners.isEmpty()) {
+            Candle candle = new Candle(pairId, TIMEFRAMES[tf], openTime[slot], open[slot], high[slot], low[slot],
+                    close[slot], barCount);
+            for (CandleListener listener : listeners) {
+                listener.onCandleClosed(candle);
+            }
+        }
+    }
+
+    private static final class CandleSeries {
+        private final int capacity;
+        private final long[] openTime;
+        private final long[] open;
+        private final long[] high;
+        private final long[] low;
+        private final long[] close;
+        private final long[] count;
+        private long written;
+
+        private CandleSeries(int capacity) {
+            this.capacity = capacity;
+            this.openTime = new long[capacity];
+            this.open = new long[capacity];
+            this.high = new long[capacity];
+            this.low = new long[capacity];
+            this.close = new long[capacity];
+            this.count = new long[capacity];
+        }
+
+        private void append(long barOpenTime, long barOpen, long barHigh, long barLow, long barClose, long barCount) {
+            int index = (int) (written % capacity);
+            openTime[index] = barOpenTime;
+            open[index] = barOpen;
+            high[index] = barHigh;
+            low[index] = barLow;
+            close[index] = barClose;
+            count[index] = barCount;
+            written++;
+        }
+
+        private List<Candle> recent(int pairId, Timeframe timeframe, int limit) {
+            long available = Math.min(written, capacity);
+            int size = (int) Math.min(available, limit);
+            List<Candle> bars = new ArrayList<>(size);
+            for (long i = written - size; i < written; i++) {
+                int index = (int) (i % capacity);
+                bars.add(new Candle(pairId, timeframe, openTime[index], open[index], high[index], low[index],
+                        close[index], count[index]));
+            }
+            return bars;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.foreigntrading.marketdata;
+
+@FunctionalInterface
+public interface CandleListener {
+    void onCandleClosed(Candle candle);
+}
@@ -0,0 +1,73 @@
+package com.foreigntrading.marketdata;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Full conversion matrix derived by triangulating every currency through a pivot currency.
+ * Each currency's value in pivot units comes from a polled X/PIVOT or PIVOT/X quote; when one of
+ * those ticks only that currency's row and column are recomputed. Reads are a single array load.
+ */
+public class CrossRateMatrix {
+    private static final MathContext PRECISION = MathContext.DECIMAL64;
+
+    private final int pivotId;
+    private final BigDecimal[] pivotValues = new BigDecimal[CurrencyPairRegistry.MAX_CURRENCIES];
+    private final long[] pivotTimestamps = new long[CurrencyPairRegistry.MAX_CURRENCIES];
+    private final AtomicReferenceArray<RateEntry> rates = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+
+    public CrossRateMatrix(int pivotId) {
+        this.pivotId = pivotId;
+        pivotValues[pivotId] = BigDecimal.ONE;
+        pivotTimestamps[pivotId] = Long.MAX_VALUE;
+    }
+
+    public int getPivotId() {
+        return pivotId;
+    }
+
+    public RateEntry find(int pairId) {
+        return rates.get(pairId);
+    }
+
+    public synchronized boolean onSourceRate(RateEntry source) {
+        if (source.rate().signum() <= 0) {
+            return false;
+        }
+        int base = CurrencyPairRegistry.baseOf(source.pairId());
+        int quote = CurrencyPairRegistry.quoteOf(source.pairId());
+        int currency;
+        BigDecimal value;
+        if (quote == pivotId && base != pivotId) {
+            currency = base;
+            value = source.rate();
+        } else if (base == pivotId && quote != pivotId) {
+            currency = quote;
+            value = BigDecimal.ONE.divide(source.rate(), PRECISION);
+        } else {
+            return false;
+        }
+
+        pivotValues[currency] = value;
+        pivotTimestamps[currency] = source.timestampNanos();
+        for (int other = 0; other < CurrencyPairRegistry.MAX_CURRENCIES; other++) {
+            if (other == currency || pivotValues[other] == null) {
+                continue;
+            }
+            derive(currency, other);
+            derive(other, currency);
+        }
+        return true;
+    }
+
+    private void derive(int base, int quote) {
+        int pairId = CurrencyPairRegistry.pairId(base, quote);
+        BigDecimal rate = pivotValues[base].divide(pivotValues[quote], PRECISION);
+        // A cross rate is only as fresh as its older leg
+        long timestamp = Math.min(pivotTimestamps[base], pivotTimestamps[quote]);
+        RateEntry previous = rates.get(pairId);
+        long sequence = previous == null ? 1 : previous.sequence() + 1;
+        rates.set(pairId, new RateEntry(pairId, rate, FixedPoint.fromBigDecimal(rate), timestamp, sequence));
+    }
+}
@@ -0,0 +1,143 @@
+package com.foreigntrading.marketdata;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns ISO currency codes into small integer ids and derives dense pair ids from them.
+ * A pair id is {@code baseId * MAX_CURRENCIES + quoteId}, so every array indexed by pair id
+ * has a fixed size of {@link #MAX_PAIRS} and lookups never need to build a "BASE/QUOTE" string.
+ */
+@Component
+public class CurrencyPairRegistry {
+    public static final int MAX_CURRENCIES = 64;
+    public static final int MAX_PAIRS = MAX_CURRENCIES * MAX_CURRENCIES;
+
+    private final Map<String, Integer> currencyIds = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> currencyCodes = new AtomicReferenceArray<>(MAX_CURRENCIES);
+    private final AtomicReferenceArray<String> symbols = new AtomicReferenceArray<>(MAX_PAIRS);
+
+    public int currencyId(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id != null) {
+            return id;
+        }
+        synchronized (currencyIds) {
+            return currencyIds.computeIfAbsent(currency, code -> {
+                int next = currencyIds.size();
+                if (next >= MAX_CURRENCIES) {
+                    throw new IllegalStateException("Currency registry is full, cannot register " + code);
+                }
+                currencyCodes.set(next, code);
+                return next;
+            });
+        }
+    }
+
+    public int findCurrencyId(String currency) {
+        Integer id = currencyIds.get(currency);
+        return id == null ? -1 : id;
+    }
+
+    public int currencyCount() {
+        return currencyIds.size();
+    }
+
+    public String currencyCode(int currencyId) {
+        return currencyCodes.get(currencyId);
+    }
+
+    public int pairId(String baseCurrency, String quoteCurrency) {
+        return pairId(currencyId(baseCurrency), currencyId(quoteCurrency));
+    }
+
+    public int pairId(String symbol) {
+        int separator = symbol.indexOf('/');
+        if (separator <= 0 || separator == symbol.length() - 1) {
+            throw new IllegalArgumentException("Invalid currency pair: " + symbol);
+        }
+        return pairId(symbol.substring(0, separator), symbol.substring(separator + 1));
+    }
+
+    public int findPairId(String baseCurrency, String quoteCurrency) {
+        int base = findCurrencyId(baseCurrency);
+        int quote = findCurrencyId(quoteCurrency);
+        return base < 0 || quote < 0 ? -1 : pairId(base, quote);
+    }
+
+    // For request input: never registers a currency, so callers cannot fill the registry with made-up ones
+    public int requirePairId(String baseCurrency, String quoteCurrency) {
+        int pairId = findPairId(baseCurrency, quoteCurrency);
+        if (pairId < 0) {
+            throw new IllegalArgumentException("Unknown currency pair: " + baseCurrency + "/" + quoteCurrency);
+        }
+        return pairId;
+    }
+
+    // Like pairId(String) but never registers a currency; -1 when either side is unknown or malformed
+    public int findPairId(String symbol) {
+        int separator = symbol.indexOf('/');
+        if (separator <= 0 || separator == symbol.length() - 1) {
+            return -1;
+        }
+        return findPairId(symbol.substring(0, separator), symbol.substring(separator + 1));
+    }
+
+    public String symbol(int pairId) {
+        String symbol = symbols.get(pairId);
+        if (symbol == null) {
+            symbol = currencyCodes.get(baseOf(pairId)) + "/" + currencyCodes.get(quoteOf(pairId));
+            symbols.lazySet(pairId, symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * Process-independent key for a pair: the two currency codes packed as ASCII, four bytes each.
+     * Unlike the pair id it does not depend on registration order, so it is safe to persist.
+     */
+    public long pairKey(int pairId) {
+        return (long) packCode(currencyCodes.get(baseOf(pairId))) << 32 | packCode(currencyCodes.get(quoteOf(pairId)));
+    }
+
+    public int pairIdForKey(long pairKey) {
+        return pairId(unpackCode((int) (pairKey >>> 32)), unpackCode((int) pairKey));
+    }
+
+    public static int pairId(int baseId, int quoteId) {
+        return baseId * MAX_CURRENCIES + quoteId;
+    }
+
+    public static int baseOf(int pairId) {
+        return pairId / MAX_CURRENCIES;
+    }
+
+    public static int quoteOf(int pairId) {
+        return pairId % MAX_CURRENCIES;
+    }
+
+    private static int packCode(String code) {
+        if (code.length() > 4) {
+            throw new IllegalArgumentException("Currency code too long to pack: " + code);
+        }
+        int packed = 0;
+        for (int i = 0; i < code.length(); i++) {
+            packed = packed << 8 | (code.charAt(i) & 0xFF);
+        }
+        return packed;
+    }
+
+    private static String unpackCode(int packed) {
+        StringBuilder code = new StringBuilder(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = packed >>> shift & 0xFF;
+            if (c != 0) {
+                code.append((char) c);
+            }
+        }
+        return code.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.foreigntrading.marketdata;
+
+/**
+ * A response body serialized once and served as-is: the JSON bytes, their gzip form and the entity
+ * tag of each. Shared by every request until the data it was built from changes.
+ */
+public record EncodedSnapshot(long version, byte[] json, String etag, byte[] gzip, String gzipEtag) {
+}
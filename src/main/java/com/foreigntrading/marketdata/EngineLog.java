@@ -0,0 +1,280 @@
+package com.foreigntrading.marketdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-ahead log of changes to in-memory trading state (resting orders, trigger levels, MARKET
+ * executions awaiting write-back), made of
+ * fixed-size, memory-mapped segment files in the layout of {@link TickJournal}. Each 64-byte record
+ * holds a sequence, a type and up to five operands; the sequence is assigned here, written last and
+ * never zero, so a zeroed slot marks the end of data. Records describe resulting state rather than
+ * requests (the quantity an order still has open, not the fill size alone), so replaying a record
+ * whose effect a snapshot already holds changes nothing. {@link #rollForSnapshot()} starts a new segment,
+ * giving a snapshot a clean cut after which every record lives in segments of its own.
+ */
+public class EngineLog implements Closeable {
+    public static final int RECORD_SIZE = 64;
+    public static final int ORDER_REST = 1;
+    public static final int ORDER_FILL = 2;
+    public static final int ORDER_CANCEL = 3;
+    public static final int TRADE_TRIGGER_ADD = 4;
+    public static final int TRADE_TRIGGER_REMOVE = 5;
+    public static final int ALERT_TRIGGER_ADD = 6;
+    public static final int ALERT_TRIGGER_REMOVE = 7;
+    public static final int MARKET_EXECUTION = 8;
+    public static final int MARKET_EXECUTION_SETTLED = 9;
+
+    private static final String PREFIX = "engine-";
+    private static final String SUFFIX = ".wal";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private int activeRecords;
+    private boolean dirty;
+    private long lastSequence;
+
+    public EngineLog(Path directory, int segmentBytes) {
+        if (segmentBytes < RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid log segment size: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = segmentBytes / RECORD_SIZE;
+        try {
+            Files.createDirectories(directory);
+            for (Path file : listSegmentFiles()) {
+                segments.add(new Segment(segmentIndex(file), file));
+            }
+            if (segments.isEmpty()) {
+                roll();
+            } else {
+                openActive(segments.get(segments.size() - 1));
+                if (activeRecords == 0 && segments.size() > 1) {
+                    // Rolled just before shutdown: numbering carries on from the previous segment
+                    replaySegment(segments.get(segments.size() - 2).file(), 0,
+                            (sequence, type, side, ownerId, pairKey, price, quantity, remaining) -> lastSequence = sequence);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open engine log in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends a record and returns its sequence.
+     */
+    public synchronized long append(int type, int side, long ownerId, long pairKey, long price, long quantity,
+                                    long remaining) {
+        if (activeRecords == recordsPerSegment) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot roll engine log segment", e);
+            }
+        }
+        long sequence = ++lastSequence;
+        int offset = activeRecords * RECORD_SIZE;
+        active.putInt(offset + 8, type);
+        active.putInt(offset + 12, side);
+        active.putLong(offset + 16, ownerId);
+        active.putLong(offset + 24, pairKey);
+        active.putLong(offset + 32, price);
+        active.putLong(offset + 40, quantity);
+        active.putLong(offset + 48, remaining);
+        active.putLong(offset, sequence);
+        activeRecords++;
+        dirty = true;
+        return sequence;
+    }
+
+    /**
+     * Forces everything appended since the last flush to disk. Cheap when nothing is pending.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            active.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Closes the active segment and starts a new one. Returns the sequence of the last record before
+     * the cut.
+     */
+    public synchronized long rollForSnapshot() {
+        try {
+            if (activeRecords > 0) {
+                roll();
+            }
+            return lastSequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll engine log segment", e);
+        }
+    }
+
+    /**
+     * Deletes every segment whose records all have a sequence at or below the one given, once a
+     * snapshot covers them.
+     */
+    public synchronized int deleteThrough(long sequence) {
+        int deleted = 0;
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            long next = firstSequence(segments.get(1).file());
+            if (next == 0 || next > sequence + 1) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(oldest.file());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete engine log segment " + oldest.file(), e);
+            }
+            segments.remove(0);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Moves numbering past a sequence a snapshot has already covered, should the segments holding it
+     * be gone.
+     */
+    public synchronized void advanceTo(long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Streams every record with a sequence above {@code afterSequence} in append order and returns the
+     * number delivered.
+     */
+    public int replay(long afterSequence, RecordConsumer consumer) {
+        List<Segment> snapshot;
+        synchronized (this) {
+            flush();
+            snapshot = new ArrayList<>(segments);
+        }
+        int delivered = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i + 1 < snapshot.size()) {
+                long next = firstSequence(snapshot.get(i + 1).file());
+                if (next != 0 && next <= afterSequence + 1) {
+                    continue;
+                }
+            }
+            delivered += replaySegment(snapshot.get(i).file(), afterSequence, consumer);
+        }
+        return delivered;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        activeChannel.close();
+    }
+
+    private int replaySegment(Path file, long afterSequence, RecordConsumer consumer) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int delivered = 0;
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                long sequence = buffer.getLong(offset);
+                if (sequence == 0) {
+                    break;
+                }
+                if (sequence > afterSequence) {
+                    consumer.onRecord(sequence, buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                            buffer.getLong(offset + 16), buffer.getLong(offset + 24), buffer.getLong(offset + 32),
+                            buffer.getLong(offset + 40), buffer.getLong(offset + 48));
+                    delivered++;
+                }
+            }
+            return delivered;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read engine log segment " + file, e);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force();
+            activeChannel.close();
+            dirty = false;
+        }
+        long index = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).index() + 1;
+        Segment segment = new Segment(index, directory.resolve(String.format("%s%012d%s", PREFIX, index, SUFFIX)));
+        segments.add(segment);
+        openActive(segment);
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        activeChannel = FileChannel.open(segment.file(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        active.order(ByteOrder.LITTLE_ENDIAN);
+        activeRecords = 0;
+        while (activeRecords < recordsPerSegment && active.getLong(activeRecords * RECORD_SIZE) != 0) {
+            lastSequence = Math.max(lastSequence, active.getLong(activeRecords * RECORD_SIZE));
+            activeRecords++;
+        }
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // 0 for a segment with nothing in it yet
+    private static long firstSequence(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < RECORD_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RECORD_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            return header.getLong(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read engine log segment " + file, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void onRecord(long sequence, int type, int side, long ownerId, long pairKey, long price, long quantity,
+                      long remaining);
+    }
+
+    private record Segment(long index, Path file) {
+    }
+}
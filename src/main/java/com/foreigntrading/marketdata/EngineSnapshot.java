@@ -0,0 +1,114 @@
+package com.foreigntrading.marketdata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot files of in-memory trading state: a header with the {@link EngineLog} sequence the snapshot
+ * covers, a body written by the caller, and a CRC32 trailer. A snapshot is written to a temporary file
+ * and moved into place, so a crash mid-write leaves the previous snapshot as the latest; a body that
+ * does not match its checksum fails to read instead of restoring half a state.
+ */
+public final class EngineSnapshot {
+    private static final int MAGIC = 0x46584553;
+    private static final int VERSION = 1;
+    private static final String PREFIX = "engine-";
+    private static final String SUFFIX = ".snapshot";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private EngineSnapshot() {
+    }
+
+    public static Path write(Path directory, long logSequence, BodyWriter body) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, logSequence, SUFFIX));
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logSequence);
+            body.write(out);
+            out.flush();
+            // The trailer is outside the checksum it carries
+            new DataOutputStream(raw).writeLong(crc.getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Hands the body to the reader and returns the log sequence the snapshot covers, failing if the
+     * file is not a snapshot or its checksum does not match.
+     */
+    public static long read(Path file, BodyReader body) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an engine snapshot: " + file);
+            }
+            long logSequence = in.readLong();
+            body.read(in);
+            long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                throw new IOException("Engine snapshot checksum mismatch: " + file);
+            }
+            return logSequence;
+        }
+    }
+
+    // Most recent snapshot in the directory, null if there is none
+    public static Path latest(Path directory) throws IOException {
+        List<Path> files = list(directory);
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    public static int deleteOlderThan(Path directory, Path keep) throws IOException {
+        int deleted = 0;
+        for (Path file : list(directory)) {
+            if (file.getFileName().toString().compareTo(keep.getFileName().toString()) < 0) {
+                Files.deleteIfExists(file);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BodyReader {
+        void read(DataInputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,265 @@
+package com.foreigntrading.marketdata;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Single-threaded event loops that each own a hash shard of currency pairs. Every task for a pair runs
+ * on its shard's thread in submission order, so state owned by a pair needs no locking and a task
+ * posted from one loop to another shard is the message between them. Until {@link #start()} and after
+ * {@link #stop()}, tasks run on the caller under the shard's monitor instead, which keeps the same
+ * one-at-a-time guarantee for startup and tests.
+ * <p>
+ * Each loop counts the tasks it runs and the time it spends in them; utilization is busy time over
+ * the last completed window of about a second, and zero once a loop has been parked for a whole window.
+ * An idle loop spins, then yields, then parks until the next submission unparks it. A task that throws,
+ * even an Error, is reported and the loop carries on.
+ */
+public class EventLoopGroup {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private final Shard[] shards;
+    private volatile boolean running;
+
+    public EventLoopGroup(String name, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Event loop group needs at least one shard: " + shardCount);
+        }
+        this.name = name;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Shard shard : shards) {
+            Thread thread = new Thread(shard::run, name + "-" + shard.index);
+            thread.setDaemon(true);
+            shard.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the loops once they have run every task already submitted.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+            try {
+                shard.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shard.thread = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    // Fibonacci hashing spreads pairs sharing a base or quote currency over the shards
+    public int shardOf(int pairId) {
+        return (int) (((pairId * 0x9E3779B97F4A7C15L) >>> 32) % shards.length);
+    }
+
+    /**
+     * Runs the task on the pair's loop without waiting for it.
+     */
+    public void execute(int pairId, Runnable task) {
+        shards[shardOf(pairId)].execute(task);
+    }
+
+    /**
+     * Runs the task on the pair's loop and returns its result, rethrowing what it throws. Runs it in
+     * place when called from that loop.
+     */
+    public <T> T call(int pairId, Supplier<T> task) {
+        return shards[shardOf(pairId)].call(task);
+    }
+
+    public void run(int pairId, Runnable task) {
+        call(pairId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Waits until every loop has run everything submitted before the call.
+     */
+    public void awaitIdle() {
+        for (Shard shard : shards) {
+            shard.call(() -> null);
+        }
+    }
+
+    public boolean inLoop(int pairId) {
+        return Thread.currentThread() == shards[shardOf(pairId)].thread;
+    }
+
+    // Tasks submitted to the shard and not yet run
+    public int queueDepth(int shard) {
+        return shards[shard].pending.get();
+    }
+
+    public long tasks(int shard) {
+        return shards[shard].tasks.get();
+    }
+
+    public long busyNanos(int shard) {
+        return shards[shard].busyNanos.get();
+    }
+
+    public double utilization(int shard) {
+        Shard loop = shards[shard];
+        long parkedAt = loop.parkedAt;
+        return loop.parked && System.nanoTime() - parkedAt >= WINDOW_NANOS ? 0.0 : loop.utilization;
+    }
+
+    private final class Shard {
+        private final int index;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong tasks = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile Thread thread;
+        private volatile boolean parked;
+        private volatile long parkedAt;
+        private volatile double utilization;
+
+        private Shard(int index) {
+            this.index = index;
+        }
+
+        private void execute(Runnable task) {
+            if (!running) {
+                synchronized (this) {
+                    runTask(task);
+                }
+                return;
+            }
+            pending.incrementAndGet();
+            queue.add(task);
+            if (!running) {
+                // stop() won the race and the loop may already have exited, so nobody else will run it
+                drain();
+            } else if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private synchronized void drain() {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                pending.decrementAndGet();
+                runTask(task);
+            }
+        }
+
+        private <T> T call(Supplier<T> task) {
+            if (!running || Thread.currentThread() == thread) {
+                synchronized (this) {
+                    return task.get();
+                }
+            }
+            CompletableFuture<T> result = new CompletableFuture<>();
+            execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        private void run() {
+            long windowStart = System.nanoTime();
+            long windowBusy = 0;
+            int idle = 0;
+            while (running || !queue.isEmpty()) {
+                Runnable task = queue.peek();
+                long now = System.nanoTime();
+                if (now - windowStart >= WINDOW_NANOS) {
+                    utilization = (double) windowBusy / (now - windowStart);
+                    windowStart = now;
+                    windowBusy = 0;
+                }
+                if (task == null) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                // Polling under the monitor keeps submission order when a caller drains after stop()
+                synchronized (this) {
+                    task = queue.poll();
+                    if (task != null) {
+                        pending.decrementAndGet();
+                        runTask(task);
+                    }
+                }
+                long busy = System.nanoTime() - now;
+                windowBusy += busy;
+                busyNanos.addAndGet(busy);
+            }
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                System.err.println("Event loop " + name + "-" + index + " task failed: " + e);
+            }
+            tasks.incrementAndGet();
+        }
+
+        private int idle(int idle) {
+            if (idle < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                // Publishing parked before re-checking the queue pairs with execute's add-then-check
+                parkedAt = System.nanoTime();
+                parked = true;
+                if (queue.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                return idle;
+            }
+            return idle + 1;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.foreigntrading.marketdata;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Prices stored as longs with eight implied decimal places.
+ */
+public final class FixedPoint {
+    public static final int SCALE = 8;
+    public static final long ONE = 100_000_000L;
+
+    private FixedPoint() {
+    }
+
+    public static long fromBigDecimal(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    public static double toDouble(long value) {
+        return (double) value / ONE;
+    }
+
+    public static long fromDouble(double value) {
+        return Math.round(value * ONE);
+    }
+
+    /**
+     * Parses a plain decimal such as {@code "1.08765"} straight from a character range, rounding half-even
+     * to {@link #SCALE} places like {@link #fromBigDecimal}, without creating a String or BigDecimal.
+     */
+    public static long parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        int roundDigit = 0;
+        boolean sticky = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid decimal: " + new String(chars, offset, length));
+            }
+            digits++;
+            if (fractionDigits < 0) {
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            } else if (fractionDigits < SCALE) {
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                fractionDigits++;
+            } else if (fractionDigits == SCALE) {
+                roundDigit = c - '0';
+                fractionDigits++;
+            } else if (c != '0') {
+                sticky = true;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid decimal: " + new String(chars, offset, length));
+        }
+        for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+            value = Math.multiplyExact(value, 10);
+        }
+        if (roundDigit > 5 || (roundDigit == 5 && (sticky || (value & 1) == 1))) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+}
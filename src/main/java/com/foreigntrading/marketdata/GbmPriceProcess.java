@@ -0,0 +1,38 @@
+package com.foreigntrading.marketdata;
+
+import java.util.SplittableRandom;
+
+/**
+ * Geometric Brownian motion sampled at a fixed step: each call to {@link #next()} multiplies the
+ * price by {@code exp((drift - volatility^2 / 2) dt + volatility sqrt(dt) Z)} with Z standard normal.
+ * Drift and volatility are annualized; {@code stepSeconds} is the time between samples.
+ */
+public class GbmPriceProcess {
+    private static final double SECONDS_PER_YEAR = 365.0 * 24 * 60 * 60;
+
+    private final SplittableRandom random;
+    private final double driftTerm;
+    private final double diffusionTerm;
+    private double price;
+
+    public GbmPriceProcess(double initialPrice, double drift, double volatility, double stepSeconds, long seed) {
+        if (initialPrice <= 0 || volatility < 0 || stepSeconds <= 0) {
+            throw new IllegalArgumentException("Invalid GBM parameters: price=" + initialPrice
+                    + ", volatility=" + volatility + ", step=" + stepSeconds);
+        }
+        double dt = stepSeconds / SECONDS_PER_YEAR;
+        this.random = new SplittableRandom(seed);
+        this.driftTerm = (drift - volatility * volatility / 2) * dt;
+        this.diffusionTerm = volatility * Math.sqrt(dt);
+        this.price = initialPrice;
+    }
+
+    public double next() {
+        price *= Math.exp(driftTerm + diffusionTerm * random.nextGaussian());
+        return price;
+    }
+
+    public double price() {
+        return price;
+    }
+}
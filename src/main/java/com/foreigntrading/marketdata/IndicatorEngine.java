@@ -0,0 +1,40 @@
+package com.foreigntrading.marketdata;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds one {@link IndicatorState} per (pair, timeframe) and advances it from finalized candles.
+ */
+public class IndicatorEngine implements CandleListener {
+    private static final int TIMEFRAME_COUNT = Timeframe.values().length;
+
+    private final AtomicReferenceArray<IndicatorState> states =
+            new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS * TIMEFRAME_COUNT);
+
+    @Override
+    public void onCandleClosed(Candle candle) {
+        IndicatorState state = stateFor(candle.pairId(), candle.timeframe());
+        synchronized (state) {
+            state.update(FixedPoint.toDouble(candle.high()), FixedPoint.toDouble(candle.low()),
+                    FixedPoint.toDouble(candle.close()));
+        }
+    }
+
+    public IndicatorState find(int pairId, Timeframe timeframe) {
+        return states.get(slot(pairId, timeframe));
+    }
+
+    private IndicatorState stateFor(int pairId, Timeframe timeframe) {
+        int slot = slot(pairId, timeframe);
+        IndicatorState state = states.get(slot);
+        if (state == null) {
+            states.compareAndSet(slot, null, new IndicatorState());
+            state = states.get(slot);
+        }
+        return state;
+    }
+
+    private static int slot(int pairId, Timeframe timeframe) {
+        return pairId * TIMEFRAME_COUNT + timeframe.ordinal();
+    }
+}
@@ -0,0 +1,199 @@
+package com.foreigntrading.marketdata;
+
+/**
+ * Running state for the standard indicator set of one (pair, timeframe) series. Every
+ * {@link #update} is O(1): moving windows keep running sums, exponential averages use the
+ * usual recursive forms, and RSI/ATR use Wilder smoothing seeded with a simple average.
+ */
+public class IndicatorState {
+    public static final int SMA_PERIOD = 20;
+    public static final int EMA_PERIOD = 20;
+    public static final int RSI_PERIOD = 14;
+    public static final int ATR_PERIOD = 14;
+    public static final int MACD_FAST = 12;
+    public static final int MACD_SLOW = 26;
+    public static final int MACD_SIGNAL = 9;
+    public static final double BOLLINGER_WIDTH = 2.0;
+    private static final long RESUM_INTERVAL = SMA_PERIOD * 64L;
+
+    private final double[] window = new double[SMA_PERIOD];
+    private double windowSum;
+    private double windowSumSquares;
+
+    private final Ema ema = new Ema(EMA_PERIOD);
+    private final Ema macdFast = new Ema(MACD_FAST);
+    private final Ema macdSlow = new Ema(MACD_SLOW);
+    private final Ema macdSignal = new Ema(MACD_SIGNAL);
+
+    private double averageGain;
+    private double averageLoss;
+    private double averageTrueRange;
+
+    private long count;
+    private double previousClose;
+    private double lastClose;
+
+    public void update(double high, double low, double close) {
+        int slot = (int) (count % SMA_PERIOD);
+        if (count >= SMA_PERIOD) {
+            double evicted = window[slot];
+            windowSum -= evicted;
+            windowSumSquares -= evicted * evicted;
+        }
+        window[slot] = close;
+        windowSum += close;
+        windowSumSquares += close * close;
+        if (slot == SMA_PERIOD - 1 && count % RESUM_INTERVAL == RESUM_INTERVAL - 1) {
+            // Periodically rebuild the running sums so floating point drift cannot accumulate
+            resumWindow();
+        }
+
+        ema.update(close);
+        macdFast.update(close);
+        macdSlow.update(close);
+        if (macdSlow.isReady()) {
+            macdSignal.update(macdFast.value() - macdSlow.value());
+        }
+
+        if (count > 0) {
+            double change = close - previousClose;
+            double gain = Math.max(change, 0);
+            double loss = Math.max(-change, 0);
+            double trueRange = Math.max(high - low, Math.max(Math.abs(high - previousClose), Math.abs(low - previousClose)));
+            if (count <= RSI_PERIOD) {
+                averageGain += gain / RSI_PERIOD;
+                averageLoss += loss / RSI_PERIOD;
+            } else {
+                averageGain = (averageGain * (RSI_PERIOD - 1) + gain) / RSI_PERIOD;
+                averageLoss = (averageLoss * (RSI_PERIOD - 1) + loss) / RSI_PERIOD;
+            }
+            if (count <= ATR_PERIOD) {
+                averageTrueRange += trueRange / ATR_PERIOD;
+            } else {
+                averageTrueRange = (averageTrueRange * (ATR_PERIOD - 1) + trueRange) / ATR_PERIOD;
+            }
+        }
+
+        previousClose = close;
+        lastClose = close;
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getLastClose() {
+        return lastClose;
+    }
+
+    public boolean isSmaReady() {
+        return count >= SMA_PERIOD;
+    }
+
+    public double getSma() {
+        return windowSum / SMA_PERIOD;
+    }
+
+    public double getBollingerUpper() {
+        return getSma() + BOLLINGER_WIDTH * standardDeviation();
+    }
+
+    public double getBollingerLower() {
+        return getSma() - BOLLINGER_WIDTH * standardDeviation();
+    }
+
+    public boolean isEmaReady() {
+        return ema.isReady();
+    }
+
+    public double getEma() {
+        return ema.value();
+    }
+
+    public boolean isRsiReady() {
+        return count > RSI_PERIOD;
+    }
+
+    public double getRsi() {
+        if (averageLoss == 0) {
+            return averageGain == 0 ? 50.0 : 100.0;
+        }
+        return 100.0 - 100.0 / (1.0 + averageGain / averageLoss);
+    }
+
+    public boolean isMacdReady() {
+        return macdSignal.isReady();
+    }
+
+    public double getMacd() {
+        return macdFast.value() - macdSlow.value();
+    }
+
+    public double getMacdSignal() {
+        return macdSignal.value();
+    }
+
+    public double getMacdHistogram() {
+        return getMacd() - getMacdSignal();
+    }
+
+    public boolean isAtrReady() {
+        return count > ATR_PERIOD;
+    }
+
+    public double getAtr() {
+        return averageTrueRange;
+    }
+
+    private void resumWindow() {
+        double sum = 0;
+        double sumSquares = 0;
+        for (double value : window) {
+            sum += value;
+            sumSquares += value * value;
+        }
+        windowSum = sum;
+        windowSumSquares = sumSquares;
+    }
+
+    private double standardDeviation() {
+        double mean = windowSum / SMA_PERIOD;
+        // Population variance, as used by Bollinger; clamp rounding noise below zero
+        return Math.sqrt(Math.max(0, windowSumSquares / SMA_PERIOD - mean * mean));
+    }
+
+    /**
+     * Exponential moving average seeded with the simple average of its first {@code period} inputs.
+     */
+    private static final class Ema {
+        private final int period;
+        private final double alpha;
+        private double value;
+        private long count;
+
+        private Ema(int period) {
+            this.period = period;
+            this.alpha = 2.0 / (period + 1);
+        }
+
+        private void update(double input) {
+            count++;
+            if (count < period) {
+                value += input;
+            } else if (count == period) {
+                value = (value + input) / period;
+            } else {
+                value += alpha * (input - value);
+            }
+        }
+
+        private boolean isReady() {
+            return count >= period;
+        }
+
+        private double value() {
+            return value;
+        }
+    }
+}
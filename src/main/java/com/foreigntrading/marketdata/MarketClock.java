@@ -0,0 +1,32 @@
+package com.foreigntrading.marketdata;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Allocation-free epoch clock with nanosecond resolution, anchored to the wall clock at class load.
+ */
+public final class MarketClock {
+    public static final long NANOS_PER_MILLI = 1_000_000L;
+    public static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final long BASE_EPOCH_NANOS = System.currentTimeMillis() * NANOS_PER_MILLI;
+    private static final long BASE_NANO_TIME = System.nanoTime();
+
+    private MarketClock() {
+    }
+
+    public static long epochNanos() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+
+    public static long epochMillis() {
+        return epochNanos() / NANOS_PER_MILLI;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochNanos) {
+        Instant instant = Instant.ofEpochSecond(epochNanos / NANOS_PER_SECOND, epochNanos % NANOS_PER_SECOND);
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,16 @@
+package com.foreigntrading.marketdata;
+
+/**
+ * A source of rate updates. Exactly one feed, chosen by {@code marketdata.feed.type}, publishes
+ * into the rate book at a time; everything downstream only ever sees the rate book.
+ */
+public interface MarketDataFeed {
+
+    String getName();
+
+    void start();
+
+    void stop();
+
+    boolean isRunning();
+}
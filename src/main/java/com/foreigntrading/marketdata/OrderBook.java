@@ -0,0 +1,262 @@
+package com.foreigntrading.marketdata;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Resting LIMIT orders of one pair with price-time priority: price levels sorted best first, each a
+ * FIFO queue of orders linked through the orders themselves. Cancel finds the order by id and unlinks
+ * it in O(1), touching the level map only when the level empties. An incoming order first fills
+ * against crossing resting orders at their price, oldest first; resting orders fill against the
+ * reference rate when it trades through their limit. Prices and quantities are {@link FixedPoint}.
+ * Not thread-safe: the owner serializes access.
+ */
+public class OrderBook {
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final int pairId;
+    private final NavigableMap<Long, PriceLevel> bids = new TreeMap<>(Comparator.reverseOrder());
+    private final NavigableMap<Long, PriceLevel> asks = new TreeMap<>();
+    private final Map<Long, RestingOrder> orders = new HashMap<>();
+
+    public OrderBook(int pairId) {
+        this.pairId = pairId;
+    }
+
+    public int pairId() {
+        return pairId;
+    }
+
+    /**
+     * Fills the order against crossing resting orders and rests what is left. Returns the quantity
+     * left resting.
+     */
+    public long add(long orderId, boolean buy, long price, long quantity, FillListener listener) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Order quantity must be positive: " + quantity);
+        }
+        if (orders.containsKey(orderId)) {
+            throw new IllegalArgumentException("Order already in book: " + orderId);
+        }
+        long remaining = quantity;
+        NavigableMap<Long, PriceLevel> opposite = buy ? asks : bids;
+        while (remaining > 0 && !opposite.isEmpty()) {
+            PriceLevel level = opposite.firstEntry().getValue();
+            if (buy ? level.price > price : level.price < price) {
+                break;
+            }
+            RestingOrder maker = level.head;
+            long filled = Math.min(remaining, maker.remaining);
+            remaining -= filled;
+            maker.remaining -= filled;
+            level.quantity -= filled;
+            listener.onFill(maker.orderId, level.price, filled, maker.remaining);
+            listener.onFill(orderId, level.price, filled, remaining);
+            if (maker.remaining == 0) {
+                unlink(maker);
+            }
+        }
+        if (remaining > 0) {
+            rest(new RestingOrder(orderId, buy, price, remaining));
+        }
+        return remaining;
+    }
+
+    /**
+     * Removes the order and returns true if it was resting.
+     */
+    public boolean cancel(long orderId) {
+        RestingOrder order = orders.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        unlink(order);
+        return true;
+    }
+
+    /**
+     * Rests an order read from a snapshot or log as it stands, without matching. An order already
+     * resting is left alone, so a log may be replayed over a snapshot that holds some of its effects.
+     */
+    public void restore(long orderId, boolean buy, long price, long remaining) {
+        if (remaining > 0 && !orders.containsKey(orderId)) {
+            rest(new RestingOrder(orderId, buy, price, remaining));
+        }
+    }
+
+    /**
+     * Sets what a resting order still has open, removing it at zero; replays a logged fill.
+     */
+    public void restoreRemaining(long orderId, long remaining) {
+        RestingOrder order = orders.get(orderId);
+        if (order == null) {
+            return;
+        }
+        if (remaining <= 0) {
+            unlink(order);
+        } else {
+            order.level.quantity += remaining - order.remaining;
+            order.remaining = remaining;
+        }
+    }
+
+    /**
+     * Visits every resting order, bids then asks, best price first and oldest first within a level,
+     * so restoring them in this order keeps their priority.
+     */
+    public void forEachOrder(RestingOrderConsumer consumer) {
+        for (NavigableMap<Long, PriceLevel> side : List.of(bids, asks)) {
+            for (PriceLevel level : side.values()) {
+                for (RestingOrder order = level.head; order != null; order = order.next) {
+                    consumer.accept(order.orderId, order.buy, order.price, order.remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills every resting order whose limit the reference rate reached while it moved between
+     * {@code low} and {@code high}: bids at or above {@code low}, asks at or below {@code high}. An
+     * order fills completely, at {@code last} when that is better than its limit and at its limit
+     * otherwise. Visits only the levels that fill.
+     */
+    public int matchReference(long low, long high, long last, FillListener listener) {
+        int filled = 0;
+        while (!bids.isEmpty() && bids.firstKey() >= low) {
+            filled += fillLevel(bids.firstEntry().getValue(), Math.min(bids.firstKey(), last), listener);
+        }
+        while (!asks.isEmpty() && asks.firstKey() <= high) {
+            filled += fillLevel(asks.firstEntry().getValue(), Math.max(asks.firstKey(), last), listener);
+        }
+        return filled;
+    }
+
+    public long bestBid() {
+        return bids.isEmpty() ? NO_PRICE : bids.firstKey();
+    }
+
+    public long bestAsk() {
+        return asks.isEmpty() ? NO_PRICE : asks.firstKey();
+    }
+
+    // Total resting quantity at the price on the side, 0 if there is no such level
+    public long depth(boolean buy, long price) {
+        PriceLevel level = (buy ? bids : asks).get(price);
+        return level == null ? 0 : level.quantity;
+    }
+
+    public long remaining(long orderId) {
+        RestingOrder order = orders.get(orderId);
+        return order == null ? 0 : order.remaining;
+    }
+
+    public boolean contains(long orderId) {
+        return orders.containsKey(orderId);
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    public boolean isEmpty() {
+        return orders.isEmpty();
+    }
+
+    private int fillLevel(PriceLevel level, long price, FillListener listener) {
+        int filled = 0;
+        while (level.head != null) {
+            RestingOrder order = level.head;
+            long quantity = order.remaining;
+            order.remaining = 0;
+            unlink(order);
+            listener.onFill(order.orderId, price, quantity, 0);
+            filled++;
+        }
+        return filled;
+    }
+
+    private void rest(RestingOrder order) {
+        NavigableMap<Long, PriceLevel> side = order.buy ? bids : asks;
+        PriceLevel level = side.get(order.price);
+        if (level == null) {
+            level = new PriceLevel(order.price);
+            side.put(order.price, level);
+        }
+        order.level = level;
+        order.prev = level.tail;
+        if (level.tail == null) {
+            level.head = order;
+        } else {
+            level.tail.next = order;
+        }
+        level.tail = order;
+        level.quantity += order.remaining;
+        orders.put(order.orderId, order);
+    }
+
+    private void unlink(RestingOrder order) {
+        PriceLevel level = order.level;
+        if (order.prev == null) {
+            level.head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            level.tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        level.quantity -= order.remaining;
+        order.prev = null;
+        order.next = null;
+        orders.remove(order.orderId);
+        if (level.head == null) {
+            (order.buy ? bids : asks).remove(level.price);
+        }
+    }
+
+    @FunctionalInterface
+    public interface FillListener {
+        /**
+         * Called for each side of every fill with the quantity filled and what the order still has open.
+         */
+        void onFill(long orderId, long price, long quantity, long remaining);
+    }
+
+    @FunctionalInterface
+    public interface RestingOrderConsumer {
+        void accept(long orderId, boolean buy, long price, long remaining);
+    }
+
+    private static final class PriceLevel {
+        private final long price;
+        private RestingOrder head;
+        private RestingOrder tail;
+        private long quantity;
+
+        private PriceLevel(long price) {
+            this.price = price;
+        }
+    }
+
+    private static final class RestingOrder {
+        private final long orderId;
+        private final boolean buy;
+        private final long price;
+        private long remaining;
+        private PriceLevel level;
+        private RestingOrder prev;
+        private RestingOrder next;
+
+        private RestingOrder(long orderId, boolean buy, long price, long remaining) {
+            this.orderId = orderId;
+            this.buy = buy;
+            this.price = price;
+            this.remaining = remaining;
+        }
+    }
+}
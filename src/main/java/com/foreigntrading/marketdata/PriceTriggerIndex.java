@@ -0,0 +1,289 @@
+package com.foreigntrading.marketdata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Price-sorted trigger levels of every owner (order, alert, ...) across all users, per pair and
+ * direction. A rising trigger fires once the price reaches its level from below, a falling one once
+ * it reaches it from above. Fired triggers leave the index, so every level still in it is on the far
+ * side of the last price seen: {@link #fire} visits exactly the triggers that fire, and a tick costs
+ * O(log n + fired) whatever the number of resting triggers. A touch trigger fires when a move spans
+ * its level in either direction. An owner may hold several triggers (a stop-loss and a take-profit);
+ * the first to fire takes all of them out. An optional {@link Listener} sees every change in the order
+ * it takes effect, which is what a write-ahead log of the index needs.
+ * <p>
+ * A fired owner is in flight, not removed: it no longer fires, but the listener has not been told and
+ * {@link #forEach} still reports its triggers, until whatever acted on the firing either commits and
+ * calls {@link #remove} or fails and calls {@link #rearm} to put them back.
+ */
+public class PriceTriggerIndex {
+    public static final int RISING = 0;
+    public static final int FALLING = 1;
+    public static final int TOUCH = 2;
+
+    private static final Listener NO_LISTENER = new Listener() {
+        @Override
+        public void onAdd(long ownerId, int pairId, long level, int side) {
+        }
+
+        @Override
+        public void onRemove(long ownerId) {
+        }
+    };
+
+    private final AtomicReferenceArray<PairTriggers> pairs = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(CurrencyPairRegistry.MAX_PAIRS);
+    private final Map<Long, Trigger[]> byOwner = new ConcurrentHashMap<>();
+    // Owners fired and not yet removed or re-armed
+    private final Map<Long, Trigger[]> inFlight = new ConcurrentHashMap<>();
+    private final Listener listener;
+
+    public PriceTriggerIndex() {
+        this(NO_LISTENER);
+    }
+
+    public PriceTriggerIndex(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a trigger for the owner, next to any it already holds.
+     */
+    public void add(long ownerId, int pairId, long level, boolean rising) {
+        add(new Trigger(ownerId, pairId, level, rising ? RISING : FALLING));
+    }
+
+    /**
+     * Adds a trigger that fires on the first move whose range includes the level.
+     */
+    public void addTouch(long ownerId, int pairId, long level) {
+        add(new Trigger(ownerId, pairId, level, TOUCH));
+    }
+
+    /**
+     * Puts back a trigger read from a snapshot or log without notifying the listener. Restoring the
+     * same trigger twice leaves one copy, so a log may be replayed over a snapshot that already holds
+     * some of its effects.
+     */
+    public void restore(long ownerId, int pairId, long level, int side) {
+        Trigger trigger = new Trigger(ownerId, pairId, level, side);
+        Trigger[] held = byOwner.get(ownerId);
+        if (held != null) {
+            for (Trigger existing : held) {
+                if (existing.equals(trigger)) {
+                    return;
+                }
+            }
+        }
+        add(trigger, false);
+    }
+
+    private void add(Trigger trigger) {
+        add(trigger, true);
+    }
+
+    private void add(Trigger trigger, boolean notify) {
+        PairTriggers book = pairTriggers(trigger.pairId());
+        synchronized (book) {
+            // Logged before the owner becomes visible, so no removal of it can be logged first
+            if (notify) {
+                listener.onAdd(trigger.ownerId(), trigger.pairId(), trigger.level(), trigger.side());
+            }
+            byOwner.merge(trigger.ownerId(), new Trigger[]{trigger}, PriceTriggerIndex::concat);
+            book.side(trigger.side()).add(trigger);
+            counts.incrementAndGet(trigger.pairId());
+        }
+    }
+
+    /**
+     * Removes every trigger of the owner, armed or in flight, and returns true if it had any.
+     */
+    public boolean remove(long ownerId) {
+        return remove(ownerId, true);
+    }
+
+    // Removal replayed from a log, not notified
+    public boolean forget(long ownerId) {
+        return remove(ownerId, false);
+    }
+
+    private boolean remove(long ownerId, boolean notify) {
+        Trigger[] fired = inFlight.remove(ownerId);
+        Trigger[] triggers = byOwner.remove(ownerId);
+        if (fired == null && triggers == null) {
+            return false;
+        }
+        if (notify) {
+            listener.onRemove(ownerId);
+        }
+        if (triggers != null) {
+            unindex(triggers);
+        }
+        return true;
+    }
+
+    /**
+     * Puts back the triggers of an owner in flight, as they were before it fired; the listener never
+     * heard of the firing, so it hears nothing now. Returns false if the owner is not in flight.
+     */
+    public boolean rearm(long ownerId) {
+        Trigger[] fired = inFlight.remove(ownerId);
+        if (fired == null) {
+            return false;
+        }
+        for (Trigger trigger : fired) {
+            add(trigger, false);
+        }
+        return true;
+    }
+
+    public boolean isInFlight(long ownerId) {
+        return inFlight.containsKey(ownerId);
+    }
+
+    private void unindex(Trigger[] triggers) {
+        for (Trigger trigger : triggers) {
+            PairTriggers book = pairs.get(trigger.pairId());
+            synchronized (book) {
+                if (book.side(trigger.side()).remove(trigger)) {
+                    counts.decrementAndGet(trigger.pairId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fires every falling trigger at or above {@code low}, every rising trigger at or below {@code high}
+     * and every touch trigger between the two, putting their owners in flight and passing each owner to
+     * the consumer once.
+     */
+    public int fire(int pairId, long low, long high, LongConsumer consumer) {
+        PairTriggers book = pairs.get(pairId);
+        if (book == null || counts.get(pairId) == 0) {
+            return 0;
+        }
+        List<Trigger> fired = new ArrayList<>();
+        synchronized (book) {
+            Trigger from = new Trigger(Long.MIN_VALUE, pairId, low, FALLING);
+            Trigger to = new Trigger(Long.MAX_VALUE, pairId, high, RISING);
+            fired.addAll(book.falling.tailSet(from, true));
+            fired.addAll(book.rising.headSet(to, true));
+            if (!book.touch.isEmpty() && low <= high) {
+                fired.addAll(book.touch.subSet(from, true, to, true));
+            }
+        }
+        int owners = 0;
+        for (Trigger trigger : fired) {
+            // An owner with both levels crossed in one move is reported once
+            Trigger[] triggers = byOwner.remove(trigger.ownerId());
+            if (triggers != null) {
+                inFlight.put(trigger.ownerId(), triggers);
+                unindex(triggers);
+                consumer.accept(trigger.ownerId());
+                owners++;
+            }
+        }
+        return owners;
+    }
+
+    public boolean hasTriggers(int pairId) {
+        return counts.get(pairId) > 0;
+    }
+
+    public int size(int pairId) {
+        return counts.get(pairId);
+    }
+
+    public int owners() {
+        return byOwner.size();
+    }
+
+    public boolean contains(long ownerId) {
+        return byOwner.containsKey(ownerId);
+    }
+
+    public void clear() {
+        inFlight.clear();
+        for (Long ownerId : byOwner.keySet()) {
+            remove(ownerId, false);
+        }
+    }
+
+    /**
+     * Visits every trigger, one pair at a time under that pair's lock, then those in flight: until
+     * their removal is logged they are still part of the index's durable state.
+     */
+    public void forEach(TriggerConsumer consumer) {
+        for (int pairId = 0; pairId < pairs.length(); pairId++) {
+            PairTriggers book = pairs.get(pairId);
+            if (book == null || counts.get(pairId) == 0) {
+                continue;
+            }
+            synchronized (book) {
+                for (int side = RISING; side <= TOUCH; side++) {
+                    for (Trigger trigger : book.side(side)) {
+                        consumer.accept(trigger.ownerId(), trigger.pairId(), trigger.level(), trigger.side());
+                    }
+                }
+            }
+        }
+        inFlight.forEach((ownerId, triggers) -> {
+            for (Trigger trigger : triggers) {
+                consumer.accept(trigger.ownerId(), trigger.pairId(), trigger.level(), trigger.side());
+            }
+        });
+    }
+
+    private PairTriggers pairTriggers(int pairId) {
+        PairTriggers book = pairs.get(pairId);
+        if (book == null) {
+            pairs.compareAndSet(pairId, null, new PairTriggers());
+            book = pairs.get(pairId);
+        }
+        return book;
+    }
+
+    private static Trigger[] concat(Trigger[] existing, Trigger[] added) {
+        Trigger[] merged = new Trigger[existing.length + added.length];
+        System.arraycopy(existing, 0, merged, 0, existing.length);
+        System.arraycopy(added, 0, merged, existing.length, added.length);
+        return merged;
+    }
+
+    @FunctionalInterface
+    public interface TriggerConsumer {
+        void accept(long ownerId, int pairId, long level, int side);
+    }
+
+    public interface Listener {
+        void onAdd(long ownerId, int pairId, long level, int side);
+
+        void onRemove(long ownerId);
+    }
+
+    private record Trigger(long ownerId, int pairId, long level, int side) implements Comparable<Trigger> {
+        @Override
+        public int compareTo(Trigger other) {
+            int byLevel = Long.compare(level, other.level);
+            return byLevel != 0 ? byLevel : Long.compare(ownerId, other.ownerId);
+        }
+    }
+
+    private static final class PairTriggers {
+        private final NavigableSet<Trigger> rising = new TreeSet<>();
+        private final NavigableSet<Trigger> falling = new TreeSet<>();
+        private final NavigableSet<Trigger> touch = new TreeSet<>();
+
+        private NavigableSet<Trigger> side(int side) {
+            return side == RISING ? rising : side == FALLING ? falling : touch;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.foreigntrading.marketdata;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Token-level decoders for Alpha Vantage responses. Each one walks the JSON stream once and hands
+ * prices to the caller as fixed-point longs read from the parser's own buffer, so no intermediate
+ * map tree, value String or BigDecimal is built per data point. Provider error payloads
+ * ("Error Message", "Note", "Information") are raised as {@link IllegalStateException}.
+ */
+public final class ProviderResponseParser {
+    public static final long NO_RATE = Long.MIN_VALUE;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String EXCHANGE_RATE_OBJECT = "Realtime Currency Exchange Rate";
+    private static final String EXCHANGE_RATE_FIELD = "5. Exchange Rate";
+    private static final String DAILY_SERIES_OBJECT = "Time Series FX (Daily)";
+    private static final String INDICATOR_OBJECT_PREFIX = "Technical Analysis: ";
+
+    private ProviderResponseParser() {
+    }
+
+    /**
+     * CURRENCY_EXCHANGE_RATE: the fixed-point exchange rate, or {@link #NO_RATE} if the response has none.
+     */
+    public static long parseExchangeRate(byte[] body) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return NO_RATE;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (EXCHANGE_RATE_OBJECT.equals(name) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        boolean rateField = EXCHANGE_RATE_FIELD.equals(parser.getCurrentName());
+                        parser.nextToken();
+                        if (rateField) {
+                            return fixedValue(parser);
+                        }
+                        parser.skipChildren();
+                    }
+                } else {
+                    checkProviderError(name, parser);
+                    parser.skipChildren();
+                }
+            }
+            return NO_RATE;
+        }
+    }
+
+    /**
+     * FX_DAILY: streams every bar of the daily series in response order (newest first) and returns the count.
+     */
+    public static int parseDailySeries(InputStream body, DailyBarConsumer consumer) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!seekSeries(parser, DAILY_SERIES_OBJECT, false)) {
+                return 0;
+            }
+            int bars = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                long openTime = epochMillis(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                long open = 0;
+                long high = 0;
+                long low = 0;
+                long close = 0;
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    // Fields are "1. open" .. "4. close"; the leading digit identifies them
+                    char field = parser.getTextCharacters()[parser.getTextOffset()];
+                    parser.nextToken();
+                    switch (field) {
+                        case '1' -> open = fixedValue(parser);
+                        case '2' -> high = fixedValue(parser);
+                        case '3' -> low = fixedValue(parser);
+                        case '4' -> close = fixedValue(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+                consumer.onBar(openTime, open, high, low, close);
+                bars++;
+            }
+            return bars;
+        }
+    }
+
+    /**
+     * Technical indicator functions (RSI, SMA, ...): streams every point of the single-valued
+     * "Technical Analysis: NAME" series in response order (newest first) and returns the count.
+     */
+    public static int parseIndicatorSeries(InputStream body, IndicatorPointConsumer consumer) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!seekSeries(parser, INDICATOR_OBJECT_PREFIX, true)) {
+                return 0;
+            }
+            int points = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                long time = epochMillis(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    consumer.onPoint(time, fixedValue(parser));
+                    points++;
+                }
+            }
+            return points;
+        }
+    }
+
+    // Leaves the parser on the START_OBJECT of the named series, skipping metadata blocks before it
+    private static boolean seekSeries(JsonParser parser, String name, boolean prefix) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            boolean match = prefix ? field.startsWith(name) : field.equals(name);
+            if (match && parser.currentToken() == JsonToken.START_OBJECT) {
+                return true;
+            }
+            checkProviderError(field, parser);
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static void checkProviderError(String field, JsonParser parser) throws IOException {
+        if ("Error Message".equals(field) || "Note".equals(field) || "Information".equals(field)) {
+            throw new IllegalStateException("Provider returned " + field + ": " + parser.getValueAsString());
+        }
+    }
+
+    private static long fixedValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+            throw new IllegalStateException("Expected a decimal value but found " + token);
+        }
+        return FixedPoint.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Parses "yyyy-MM-dd", "yyyy-MM-dd HH:mm" or "yyyy-MM-dd HH:mm:ss" as UTC epoch milliseconds.
+     */
+    static long epochMillis(char[] chars, int offset, int length) {
+        if (length != 10 && length != 16 && length != 19) {
+            throw new IllegalStateException("Unexpected timestamp: " + new String(chars, offset, length));
+        }
+        long days = epochDay(digits(chars, offset, 4), digits(chars, offset + 5, 2), digits(chars, offset + 8, 2));
+        long seconds = days * 86_400;
+        if (length >= 16) {
+            seconds += digits(chars, offset + 11, 2) * 3_600L + digits(chars, offset + 14, 2) * 60L;
+        }
+        if (length == 19) {
+            seconds += digits(chars, offset + 17, 2);
+        }
+        return seconds * 1_000;
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new IllegalStateException("Unexpected timestamp digit '" + c + "'");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's days_from_civil)
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    @FunctionalInterface
+    public interface DailyBarConsumer {
+        void onBar(long openTimeMillis, long open, long high, long low, long close);
+    }
+
+    @FunctionalInterface
+    public interface IndicatorPointConsumer {
+        void onPoint(long epochMillis, long value);
+    }
+}
@@ -0,0 +1,124 @@
+package com.foreigntrading.marketdata;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Immutable point-in-time view of the rate book. Built at most once per book version and shared by
+ * every reader until the next update, so callers get a consistent set of rates without a map copy.
+ */
+public final class RateBookSnapshot {
+    private final long version;
+    private final RateEntry[] entries;
+    private final CurrencyPairRegistry registry;
+    private final Map<String, BigDecimal> rates;
+    private final Map<String, LocalDateTime> lastUpdateTimes;
+    // Entry index by pair id, plus one so zero means absent; built on the first keyed lookup
+    private volatile short[] positions;
+
+    public RateBookSnapshot(long version, RateEntry[] entries, CurrencyPairRegistry registry) {
+        this.version = version;
+        this.entries = entries;
+        this.registry = registry;
+        this.rates = new EntryView<>(RateEntry::rate);
+        this.lastUpdateTimes = new EntryView<>(entry -> MarketClock.toLocalDateTime(entry.timestampNanos()));
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public RateEntry entry(int index) {
+        return entries[index];
+    }
+
+    public RateEntry find(String symbol) {
+        int pairId = registry.findPairId(symbol);
+        if (pairId < 0) {
+            return null;
+        }
+        short[] index = positions;
+        if (index == null) {
+            index = new short[CurrencyPairRegistry.MAX_PAIRS];
+            for (int i = 0; i < entries.length; i++) {
+                index[entries[i].pairId()] = (short) (i + 1);
+            }
+            positions = index;
+        }
+        int position = index[pairId];
+        return position == 0 ? null : entries[position - 1];
+    }
+
+    public Map<String, BigDecimal> rates() {
+        return rates;
+    }
+
+    public Map<String, LocalDateTime> lastUpdateTimes() {
+        return lastUpdateTimes;
+    }
+
+    private final class EntryView<V> extends AbstractMap<String, V> {
+        private final Function<RateEntry, V> valueOf;
+        private final Set<Map.Entry<String, V>> entrySet = new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < entries.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, V> next() {
+                        if (index >= entries.length) {
+                            throw new NoSuchElementException();
+                        }
+                        RateEntry entry = entries[index++];
+                        return new SimpleImmutableEntry<>(registry.symbol(entry.pairId()), valueOf.apply(entry));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.length;
+            }
+        };
+
+        private EntryView(Function<RateEntry, V> valueOf) {
+            this.valueOf = valueOf;
+        }
+
+        @Override
+        public Set<Map.Entry<String, V>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public V get(Object key) {
+            if (!(key instanceof String symbol)) {
+                return null;
+            }
+            RateEntry entry = find(symbol);
+            return entry == null ? null : valueOf.apply(entry);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String symbol && find(symbol) != null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.foreigntrading.marketdata;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable rate book entry. The rate, its fixed-point form, timestamp and per-pair sequence
+ * are published together so a reader can never pair a rate with another update's timestamp.
+ */
+public record RateEntry(int pairId, BigDecimal rate, long fixedRate, long timestampNanos, long sequence) {
+
+    public long timestampMillis() {
+        return timestampNanos / MarketClock.NANOS_PER_MILLI;
+    }
+}
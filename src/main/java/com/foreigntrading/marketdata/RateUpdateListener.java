@@ -0,0 +1,6 @@
+package com.foreigntrading.marketdata;
+
+@FunctionalInterface
+public interface RateUpdateListener {
+    void onRate(RateEntry entry);
+}
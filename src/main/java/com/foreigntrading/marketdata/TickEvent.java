@@ -0,0 +1,78 @@
+package com.foreigntrading.marketdata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One preallocated slot of the {@link TickPipeline} ring. The producer fills the tick fields, each
+ * stage reads them and adds its own results, and the slot is reused once the last stage has passed.
+ * Only one stage thread touches a slot at a time, so the fields need no synchronization.
+ */
+public final class TickEvent {
+    public static final long NO_PREVIOUS_RATE = Long.MIN_VALUE;
+
+    int pairId;
+    long fixedRate;
+    long timestampNanos;
+    long ingestNanos;
+
+    private RateEntry entry;
+    private long previousRate = NO_PREVIOUS_RATE;
+    private List<Runnable> handoffs;
+
+    void reset(int pairId, long fixedRate, long timestampNanos, long ingestNanos) {
+        this.pairId = pairId;
+        this.fixedRate = fixedRate;
+        this.timestampNanos = timestampNanos;
+        this.ingestNanos = ingestNanos;
+        this.entry = null;
+        this.previousRate = NO_PREVIOUS_RATE;
+        if (handoffs != null) {
+            handoffs.clear();
+        }
+    }
+
+    public int pairId() {
+        return pairId;
+    }
+
+    public long fixedRate() {
+        return fixedRate;
+    }
+
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    // System.nanoTime() when the producer claimed the slot; stage latencies are measured from here
+    public long ingestNanos() {
+        return ingestNanos;
+    }
+
+    public RateEntry entry() {
+        return entry;
+    }
+
+    public long previousRate() {
+        return previousRate;
+    }
+
+    public void applied(RateEntry entry, long previousRate) {
+        this.entry = entry;
+        this.previousRate = previousRate;
+    }
+
+    /**
+     * Queues work for the hand-off stage, which moves it off the pipeline threads.
+     */
+    public void handOff(Runnable work) {
+        if (handoffs == null) {
+            handoffs = new ArrayList<>(4);
+        }
+        handoffs.add(work);
+    }
+
+    public List<Runnable> handoffs() {
+        return handoffs == null ? List.of() : handoffs;
+    }
+}
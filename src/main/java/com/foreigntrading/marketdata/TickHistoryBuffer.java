@@ -0,0 +1,103 @@
+package com.foreigntrading.marketdata;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-capacity ring of (timestamp, fixed-point price) records held off-heap.
+ * One writer appends in timestamp order; any number of readers run range queries by binary search.
+ * A reader re-checks the write counter after each record so a slot overwritten mid-read is never returned.
+ */
+public class TickHistoryBuffer {
+    private static final int RECORD_SIZE = 16;
+
+    private final int capacity;
+    private final ByteBuffer records;
+    private volatile long writeCount;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public TickHistoryBuffer(int capacity) {
+        if (capacity <= 0 || (long) capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid tick history capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    public synchronized void append(long timestampNanos, long price) {
+        // Keep timestamps non-decreasing so the binary search stays valid
+        long timestamp = Math.max(timestampNanos, lastTimestamp);
+        long count = writeCount;
+        int offset = (int) (count % capacity) * RECORD_SIZE;
+        records.putLong(offset, timestamp);
+        records.putLong(offset + 8, price);
+        lastTimestamp = timestamp;
+        writeCount = count + 1;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.min(writeCount, capacity);
+    }
+
+    public long writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * Streams every record with {@code fromNanos <= timestamp <= toNanos}, oldest first.
+     * Returns the number of records delivered.
+     */
+    public int query(long fromNanos, long toNanos, TickConsumer consumer) {
+        long end = writeCount;
+        long index = firstAtOrAfter(fromNanos, end);
+        int delivered = 0;
+        for (; index < end; index++) {
+            int offset = offsetOf(index);
+            long timestamp = records.getLong(offset);
+            long price = records.getLong(offset + 8);
+            if (writeCount - capacity > index) {
+                // Writer lapped us; skip ahead to the oldest record still intact
+                index = Math.max(index, writeCount - capacity) - 1;
+                continue;
+            }
+            if (timestamp > toNanos) {
+                break;
+            }
+            consumer.accept(timestamp, price);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    public int countBetween(long fromNanos, long toNanos) {
+        long end = writeCount;
+        return (int) (firstAtOrAfter(toNanos + 1, end) - firstAtOrAfter(fromNanos, end));
+    }
+
+    private long firstAtOrAfter(long timestampNanos, long end) {
+        long low = Math.max(0, end - capacity);
+        long high = end;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (records.getLong(offsetOf(mid)) < timestampNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int offsetOf(long index) {
+        return (int) (index % capacity) * RECORD_SIZE;
+    }
+
+    @FunctionalInterface
+    public interface TickConsumer {
+        void accept(long timestampNanos, long price);
+    }
+}
@@ -0,0 +1,231 @@
+package com.foreigntrading.marketdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only tick journal made of fixed-size, memory-mapped segment files. Each 32-byte record holds
+ * sequence, timestamp, fixed-point price and persistent pair key; the sequence is written last and is
+ * never zero, so a zeroed slot marks the end of data and a torn record is never read back. Appends only
+ * touch the page cache; {@link #flush()} forces dirty pages to disk so callers group many records per sync.
+ */
+public class TickJournal implements Closeable {
+    public static final int RECORD_SIZE = 32;
+    private static final String PREFIX = "ticks-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private int activeRecords;
+    private boolean dirty;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public TickJournal(Path directory, int segmentBytes) {
+        if (segmentBytes < RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid journal segment size: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = segmentBytes / RECORD_SIZE;
+        try {
+            Files.createDirectories(directory);
+            for (Path file : listSegmentFiles()) {
+                segments.add(new Segment(segmentIndex(file), file, firstTimestamp(file)));
+            }
+            if (segments.isEmpty()) {
+                roll();
+            } else {
+                openActive(segments.get(segments.size() - 1));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open tick journal in " + directory, e);
+        }
+    }
+
+    public synchronized void append(long pairKey, long sequence, long timestampNanos, long price) {
+        if (sequence <= 0) {
+            throw new IllegalArgumentException("Journal sequence must be positive: " + sequence);
+        }
+        if (activeRecords == recordsPerSegment) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot roll tick journal segment", e);
+            }
+        }
+        int offset = activeRecords * RECORD_SIZE;
+        active.putLong(offset + 8, timestampNanos);
+        active.putLong(offset + 16, price);
+        active.putLong(offset + 24, pairKey);
+        active.putLong(offset, sequence);
+        if (activeRecords == 0) {
+            Segment current = segments.get(segments.size() - 1);
+            segments.set(segments.size() - 1, new Segment(current.index(), current.file(), timestampNanos));
+        }
+        activeRecords++;
+        lastTimestamp = Math.max(lastTimestamp, timestampNanos);
+        dirty = true;
+    }
+
+    /**
+     * Forces everything appended since the last flush to disk. Cheap when nothing is pending.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            active.force();
+            dirty = false;
+        }
+    }
+
+    public synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Streams every record with {@code fromNanos <= timestamp <= toNanos} in append order and returns
+     * the number delivered. Segments that end before {@code fromNanos} are skipped without being read.
+     */
+    public int replay(long fromNanos, long toNanos, JournalConsumer consumer) {
+        List<Segment> snapshot = new ArrayList<>(segments);
+        int delivered = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            Segment segment = snapshot.get(i);
+            if (segment.firstTimestamp() > toNanos) {
+                break;
+            }
+            if (i + 1 < snapshot.size() && snapshot.get(i + 1).firstTimestamp() < fromNanos) {
+                continue;
+            }
+            delivered += replaySegment(segment.file(), fromNanos, toNanos, consumer);
+        }
+        return delivered;
+    }
+
+    /**
+     * Deletes the oldest segments whose records all precede {@code cutoffNanos} and returns how many were
+     * removed. A segment qualifies once its successor starts at or before the cutoff; the active segment is
+     * always kept.
+     */
+    public synchronized int deleteOlderThan(long cutoffNanos) {
+        int deleted = 0;
+        while (segments.size() > 1 && segments.get(1).firstTimestamp() <= cutoffNanos) {
+            Segment oldest = segments.get(0);
+            try {
+                Files.deleteIfExists(oldest.file());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete tick journal segment " + oldest.file(), e);
+            }
+            segments.remove(0);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        activeChannel.close();
+    }
+
+    private int replaySegment(Path file, long fromNanos, long toNanos, JournalConsumer consumer) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int delivered = 0;
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                long sequence = buffer.getLong(offset);
+                if (sequence == 0) {
+                    break;
+                }
+                long timestamp = buffer.getLong(offset + 8);
+                if (timestamp >= fromNanos && timestamp <= toNanos) {
+                    consumer.onTick(buffer.getLong(offset + 24), sequence, timestamp, buffer.getLong(offset + 16));
+                    delivered++;
+                }
+            }
+            return delivered;
+        } catch (NoSuchFileException e) {
+            // Deleted by retention after the replay took its snapshot of the segment list
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read tick journal segment " + file, e);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force();
+            activeChannel.close();
+            dirty = false;
+        }
+        long index = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).index() + 1;
+        Segment segment = new Segment(index, directory.resolve(String.format("%s%012d%s", PREFIX, index, SUFFIX)),
+                Long.MAX_VALUE);
+        segments.add(segment);
+        openActive(segment);
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        activeChannel = FileChannel.open(segment.file(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        active.order(ByteOrder.LITTLE_ENDIAN);
+        activeRecords = 0;
+        while (activeRecords < recordsPerSegment && active.getLong(activeRecords * RECORD_SIZE) != 0) {
+            lastTimestamp = Math.max(lastTimestamp, active.getLong(activeRecords * RECORD_SIZE + 8));
+            activeRecords++;
+        }
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static long firstTimestamp(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < RECORD_SIZE) {
+                return Long.MAX_VALUE;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RECORD_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            return header.getLong(0) == 0 ? Long.MAX_VALUE : header.getLong(8);
+        }
+    }
+
+    @FunctionalInterface
+    public interface JournalConsumer {
+        void onTick(long pairKey, long sequence, long timestampNanos, long price);
+    }
+
+    private record Segment(long index, Path file, long firstTimestamp) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.foreigntrading.marketdata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer ring buffer with a chain of consumer stages, each on its own thread, in the style of
+ * the LMAX Disruptor. Slots are preallocated {@link TickEvent}s, so a tick allocates nothing on its way
+ * through. Every stage follows the cursor of the one before it and takes everything published since
+ * its last pass as one batch, publishing its own cursor once per batch; a stage that falls behind
+ * catches up in larger batches instead of paying per-event hand-off costs. The producer waits for
+ * the last stage when the ring is full, so a stalled stage applies back-pressure rather than
+ * losing ticks while the pipeline runs; once it is stopped, a tick that finds the ring full is dropped
+ * instead of waiting for stages that are gone. A thread with nothing to do spins, then yields, then parks until the cursor it
+ * follows moves, so an idle pipeline costs no CPU.
+ */
+public class TickPipeline {
+    // Cursors sit 128 bytes apart so stage threads do not false-share a cache line
+    private static final int PAD = 16;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final int mask;
+    private final TickEvent[] ring;
+    private final List<Stage> stages;
+    private final Monitor monitor;
+    private final AtomicLongArray cursors;
+    // The thread parked waiting on each cursor, if any; whoever moves the cursor wakes it
+    private final AtomicReferenceArray<Thread> waiters;
+    private final List<Thread> threads = new ArrayList<>();
+    // Separate from the start/stop monitor, so stop() can end a producer waiting on a full ring
+    private final Object publishLock = new Object();
+    private long claimed = -1;
+    private volatile boolean running;
+
+    public TickPipeline(int capacity, List<Stage> stages, Monitor monitor) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Pipeline capacity must be a power of two: " + capacity);
+        }
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("Pipeline needs at least one stage");
+        }
+        this.mask = capacity - 1;
+        this.ring = new TickEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new TickEvent();
+        }
+        this.stages = List.copyOf(stages);
+        this.monitor = monitor;
+        // Index 0 is the producer, stage i follows index i and publishes to index i + 1
+        this.cursors = new AtomicLongArray((stages.size() + 1) * PAD);
+        for (int i = 0; i <= stages.size(); i++) {
+            cursors.set(i * PAD, -1);
+        }
+        this.waiters = new AtomicReferenceArray<>(stages.size() + 1);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < stages.size(); i++) {
+            int stage = i;
+            Thread thread = new Thread(() -> run(stage), "tick-pipeline-" + stages.get(i).name());
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the stage threads once they have drained everything already published.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        long target = cursor(0);
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (cursor(stages.size()) < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        running = false;
+        Thread producer = waiters.get(stages.size());
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Claims the next slot, fills it and makes it visible to the first stage. Single producer: the lock
+     * is uncontended while one feed thread publishes and only orders the rare second caller. Returns
+     * false, dropping the tick, if the ring is full and the pipeline is not running.
+     */
+    public boolean publish(int pairId, long fixedRate, long timestampNanos) {
+        synchronized (publishLock) {
+            long sequence = claimed + 1;
+            long wrapPoint = sequence - ring.length;
+            int idle = 0;
+            while (wrapPoint > cursor(stages.size())) {
+                if (!running) {
+                    return false;
+                }
+                idle = idle(idle, stages.size(), wrapPoint);
+            }
+            ring[(int) (sequence & mask)].reset(pairId, fixedRate, timestampNanos, System.nanoTime());
+            claimed = sequence;
+            advance(0, sequence);
+            return true;
+        }
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    public int stageCount() {
+        return stages.size();
+    }
+
+    // Events published to but not yet taken by the stage
+    public long backlog(int stage) {
+        return cursor(stage) - cursor(stage + 1);
+    }
+
+    public long published() {
+        return cursor(0) + 1;
+    }
+
+    private void run(int stage) {
+        Stage handler = stages.get(stage);
+        long next = cursor(stage + 1) + 1;
+        int idle = 0;
+        while (running) {
+            long available = cursor(stage);
+            if (available < next) {
+                idle = idle(idle, stage, next);
+                continue;
+            }
+            idle = 0;
+            for (long sequence = next; sequence <= available; sequence++) {
+                TickEvent event = ring[(int) (sequence & mask)];
+                try {
+                    handler.onEvent(event, sequence == available);
+                } catch (Throwable e) {
+                    // An Error too: letting it end the thread would stall every stage behind this one for good
+                    System.err.println("Pipeline stage " + handler.name() + " failed at " + sequence + ": " + e);
+                }
+                monitor.onEvent(stage, System.nanoTime() - event.ingestNanos);
+            }
+            monitor.onBatch(stage, (int) (available - next + 1));
+            advance(stage + 1, available);
+            next = available + 1;
+        }
+    }
+
+    private long cursor(int index) {
+        return cursors.get(index * PAD);
+    }
+
+    /**
+     * Publishes a cursor and wakes whoever parked on it. The volatile write pairs with the waiter's
+     * volatile write of itself before its last look at the cursor, so one of the two always sees the other.
+     */
+    private void advance(int index, long sequence) {
+        cursors.set(index * PAD, sequence);
+        Thread waiter = waiters.get(index);
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    // Waits for the cursor at index to reach needed; parks without a timeout once spinning and yielding have failed
+    private int idle(int idle, int index, long needed) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            waiters.set(index, Thread.currentThread());
+            if (cursor(index) < needed && running) {
+                LockSupport.park(this);
+            }
+            waiters.set(index, null);
+            return idle;
+        }
+        return idle + 1;
+    }
+
+    public interface Stage {
+        String name();
+
+        /**
+         * Called in sequence order; {@code endOfBatch} marks the last event currently available, which is
+         * where batching stages flush what they accumulated.
+         */
+        void onEvent(TickEvent event, boolean endOfBatch);
+    }
+
+    public interface Monitor {
+        void onEvent(int stage, long nanosSinceIngest);
+
+        void onBatch(int stage, int size);
+    }
+}
@@ -0,0 +1,40 @@
+package com.foreigntrading.marketdata;
+
+public enum Timeframe {
+    S1("1s", 1_000L),
+    M1("1m", 60_000L),
+    M5("5m", 300_000L),
+    H1("1h", 3_600_000L),
+    D1("1d", 86_400_000L);
+
+    private static final Timeframe[] VALUES = values();
+
+    private final String label;
+    private final long millis;
+
+    Timeframe(String label, long millis) {
+        this.label = label;
+        this.millis = millis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, millis);
+    }
+
+    public static Timeframe fromLabel(String label) {
+        for (Timeframe timeframe : VALUES) {
+            if (timeframe.label.equalsIgnoreCase(label)) {
+                return timeframe;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported timeframe: " + label);
+    }
+}
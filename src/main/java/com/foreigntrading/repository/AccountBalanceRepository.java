@@ -0,0 +1,29 @@
+package com.foreigntrading.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Balance changes made by the database in one guarded statement each, instead of loading the account,
+ * adding in Java and saving it back: concurrent changes to one account queue on its row lock and none
+ * is lost, and a debit the balance does not cover changes nothing. A debit is covered only by what
+ * the account's active holds leave available.
+ */
+public interface AccountBalanceRepository {
+
+    /**
+     * Adds the amount to the balance if the result is not negative and, for a debit, still covers the
+     * active holds, and returns the new balance; empty when funds are short or there is no such account.
+     */
+    Optional<BigDecimal> addToBalance(Long accountId, BigDecimal amount);
+
+    /**
+     * Applies the changes in order as one JDBC batch, a single round trip, and reports which were
+     * applied; a change the balance does not cover is skipped without failing the others.
+     */
+    boolean[] addToBalances(List<BalanceChange> changes);
+
+    record BalanceChange(Long accountId, BigDecimal amount) {
+    }
+}
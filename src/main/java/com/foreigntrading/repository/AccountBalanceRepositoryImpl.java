@@ -0,0 +1,48 @@
+package com.foreigntrading.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
+    // A debit must leave the active holds covered; a credit only has to keep the balance non-negative
+    private static final String ADD_TO_BALANCE =
+            "UPDATE accounts SET balance = balance + ?, last_updated_at = ? WHERE id = ? AND balance + ? >= "
+                    + "CASE WHEN ? < 0 THEN (SELECT COALESCE(SUM(h.amount), 0) FROM holds h "
+                    + "WHERE h.account_id = accounts.id AND h.status = 'ACTIVE') ELSE 0 END";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<BigDecimal> addToBalance(Long accountId, BigDecimal amount) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(ADD_TO_BALANCE + " RETURNING balance", BigDecimal.class,
+                amount, Timestamp.valueOf(LocalDateTime.now()), accountId, amount, amount);
+        return balance.stream().findFirst();
+    }
+
+    @Override
+    public boolean[] addToBalances(List<BalanceChange> changes) {
+        if (changes.isEmpty()) {
+            return new boolean[0];
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_TO_BALANCE, changes, changes.size(), (statement, change) -> {
+            statement.setBigDecimal(1, change.amount());
+            statement.setTimestamp(2, now);
+            statement.setLong(3, change.accountId());
+            statement.setBigDecimal(4, change.amount());
+            statement.setBigDecimal(5, change.amount());
+        });
+        boolean[] applied = new boolean[changes.size()];
+        for (int i = 0; i < applied.length; i++) {
+            applied[i] = counts[0][i] > 0;
+        }
+        return applied;
+    }
+}
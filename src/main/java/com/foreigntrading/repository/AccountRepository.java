@@ -3,15 +3,30 @@ package com.foreigntrading.repository;
 import com.foreigntrading.entity.Account;
 import com.foreigntrading.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountBalanceRepository {
     List<Account> findByUser(User user);
     Optional<Account> findByAccountNumber(String accountNumber);
     List<Account> findByUserAndAccountType(User user, String accountType);
     boolean existsByAccountNumber(String accountNumber);
+
+    // Generated numbers are fixed width, so the highest of that length is the last issued
+    @Query("SELECT MAX(a.accountNumber) FROM Account a WHERE LENGTH(a.accountNumber) = ?1")
+    String findHighestAccountNumber(int length);
+
+    // Owner, status, currency, balance and total held of one account, without materializing the entity or its user
+    @Query("SELECT a.user.id, a.active, a.currency, a.balance, " +
+           "(SELECT COALESCE(SUM(h.amount), 0) FROM Hold h WHERE h.account = a AND h.status = 'ACTIVE') " +
+           "FROM Account a WHERE a.id = ?1")
+    List<Object[]> findBalanceState(Long accountId);
+
+    @Query("SELECT a.id, a.balance FROM Account a WHERE a.id IN ?1")
+    List<Object[]> findBalances(Collection<Long> accountIds);
 } 
\ No newline at end of file
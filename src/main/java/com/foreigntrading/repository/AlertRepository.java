@@ -3,6 +3,7 @@ package com.foreigntrading.repository;
 import com.foreigntrading.entity.Alert;
 import com.foreigntrading.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,6 +20,8 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
     List<Alert> findByUserAndBaseCurrencyAndQuoteCurrencyAndConditionAndActive(
             User user, String baseCurrency, String quoteCurrency, String condition, boolean active);
     
-    boolean existsByUserAndBaseCurrencyAndQuoteCurrencyAndActive(
-            User user, String baseCurrency, String quoteCurrency, boolean active);
+    // Thresholds of every user's armed alerts, without materializing entities
+    @Query("SELECT a.id, a.baseCurrency, a.quoteCurrency, a.targetPrice, a.condition " +
+           "FROM Alert a WHERE a.active = true AND a.triggered = false")
+    List<Object[]> findAllActiveThresholds();
 } 
\ No newline at end of file
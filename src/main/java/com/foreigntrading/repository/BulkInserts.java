@@ -0,0 +1,52 @@
+package com.foreigntrading.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared by the JDBC bulk inserts. Ids come from the same pooled sequences Hibernate draws from: each
+ * sequence value is the highest id of a block of {@link #ALLOCATION_SIZE}, so one query fetches the
+ * blocks for any number of rows and neither side hands out an id the other has used. That one query
+ * uses PostgreSQL's generate_series; on any other database, such as the H2 database of the test
+ * profile, each block takes a standard NEXT VALUE FOR query of its own.
+ */
+final class BulkInserts {
+    // The allocationSize of every entity's @SequenceGenerator
+    static final int ALLOCATION_SIZE = 50;
+
+    private BulkInserts() {
+    }
+
+    static long[] allocateIds(JdbcTemplate jdbcTemplate, String sequence, int count) {
+        int blocks = (count + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+        List<Long> highs;
+        if (isPostgreSql(jdbcTemplate)) {
+            highs = jdbcTemplate.queryForList("SELECT nextval(?::regclass) FROM generate_series(1, ?)",
+                    Long.class, sequence, blocks);
+        } else {
+            highs = new ArrayList<>(blocks);
+            for (int i = 0; i < blocks; i++) {
+                highs.add(jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class));
+            }
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = highs.get(i / ALLOCATION_SIZE) - ALLOCATION_SIZE + 1 + i % ALLOCATION_SIZE;
+        }
+        return ids;
+    }
+
+    private static boolean isPostgreSql(JdbcTemplate jdbcTemplate) {
+        return "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()));
+    }
+
+    static Timestamp timestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Hold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+    List<Hold> findByReferenceTypeAndReferenceIdInAndStatus(String referenceType, Collection<Long> referenceIds, String status);
+
+    // Total still held per account, for the accounts given
+    @Query("SELECT h.account.id, SUM(h.amount) FROM Hold h WHERE h.status = 'ACTIVE' AND h.account.id IN ?1 " +
+           "GROUP BY h.account.id")
+    List<Object[]> sumActiveByAccountIds(Collection<Long> accountIds);
+}
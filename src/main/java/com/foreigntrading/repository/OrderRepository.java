@@ -24,6 +24,11 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     @Query("SELECT o FROM Order o WHERE o.account = ?1 AND o.status = 'PENDING' AND o.orderType = 'LIMIT'")
     List<Order> findPendingLimitOrders(Account account);
+
+    // Every account's resting LIMIT orders in arrival order, without materializing entities
+    @Query("SELECT o.id, o.baseCurrency, o.quoteCurrency, o.side, o.price, o.amount " +
+           "FROM Order o WHERE o.status = 'PENDING' AND o.orderType = 'LIMIT' ORDER BY o.id")
+    List<Object[]> findAllPendingLimitOrderLevels();
     
     @Query("SELECT o FROM Order o WHERE o.account = ?1 AND o.status = 'EXECUTED' ORDER BY o.executedAt DESC")
     List<Order> findRecentExecutedOrders(Account account);
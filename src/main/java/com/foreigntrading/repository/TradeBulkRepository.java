@@ -0,0 +1,19 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Trade;
+
+import java.util.List;
+
+/**
+ * Inserts high-volume trades, such as market order fills, over plain JDBC: the ids of the whole list
+ * come from one sequence query and the rows go in as JDBC batches, a handful of round trips however
+ * many there are.
+ */
+public interface TradeBulkRepository {
+
+    /**
+     * Assigns each trade its id and inserts them all. Entity callbacks do not run; a missing creation
+     * time is set to now and a missing profit/loss to zero.
+     */
+    void insertAll(List<Trade> trades);
+}
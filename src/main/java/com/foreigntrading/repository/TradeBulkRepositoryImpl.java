@@ -0,0 +1,60 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Trade;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class TradeBulkRepositoryImpl implements TradeBulkRepository {
+    private static final String INSERT = "INSERT INTO trades (id, user_id, account_id, base_currency, quote_currency, "
+            + "amount, price, order_type, side, status, stop_loss_price, take_profit_price, created_at, executed_at, "
+            + "cancelled_at, profit_loss) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${trading.persistence.bulk-batch-size:10000}")
+    private int batchSize = 10000;
+
+    @Override
+    public void insertAll(List<Trade> trades) {
+        if (trades.isEmpty()) {
+            return;
+        }
+        long[] ids = BulkInserts.allocateIds(jdbcTemplate, "trades_seq", trades.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ids.length; i++) {
+            Trade trade = trades.get(i);
+            trade.setId(ids[i]);
+            if (trade.getCreatedAt() == null) {
+                trade.setCreatedAt(now);
+            }
+            if (trade.getProfitLoss() == null) {
+                trade.setProfitLoss(BigDecimal.ZERO);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, trades, batchSize, (statement, trade) -> {
+            statement.setLong(1, trade.getId());
+            statement.setLong(2, trade.getUser().getId());
+            statement.setLong(3, trade.getAccount().getId());
+            statement.setString(4, trade.getBaseCurrency());
+            statement.setString(5, trade.getQuoteCurrency());
+            statement.setBigDecimal(6, trade.getAmount());
+            statement.setBigDecimal(7, trade.getPrice());
+            statement.setString(8, trade.getOrderType());
+            statement.setString(9, trade.getSide());
+            statement.setString(10, trade.getStatus());
+            statement.setBigDecimal(11, trade.getStopLossPrice());
+            statement.setBigDecimal(12, trade.getTakeProfitPrice());
+            statement.setTimestamp(13, Timestamp.valueOf(trade.getCreatedAt()));
+            statement.setTimestamp(14, BulkInserts.timestamp(trade.getExecutedAt()));
+            statement.setTimestamp(15, BulkInserts.timestamp(trade.getCancelledAt()));
+            statement.setBigDecimal(16, trade.getProfitLoss());
+        });
+    }
+}
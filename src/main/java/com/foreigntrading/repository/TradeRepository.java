@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface TradeRepository extends JpaRepository<Trade, Long> {
+public interface TradeRepository extends JpaRepository<Trade, Long>, TradeBulkRepository {
     Page<Trade> findByUser(User user, Pageable pageable);
     List<Trade> findByUserAndStatus(User user, String status);
     List<Trade> findByUserAndCreatedAtBetween(User user, LocalDateTime start, LocalDateTime end);
@@ -21,6 +21,13 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
            "((t.orderType = 'STOP_LOSS' AND t.stopLossPrice IS NOT NULL) OR " +
            "(t.orderType = 'TAKE_PROFIT' AND t.takeProfitPrice IS NOT NULL))")
     List<Trade> findPendingStopLossAndTakeProfitOrders(User user);
+
+    // Trigger levels of every user's pending orders, without materializing entities
+    @Query("SELECT t.id, t.baseCurrency, t.quoteCurrency, t.side, t.stopLossPrice, t.takeProfitPrice " +
+           "FROM Trade t WHERE t.status = 'PENDING' AND " +
+           "((t.orderType = 'STOP_LOSS' AND t.stopLossPrice IS NOT NULL) OR " +
+           "(t.orderType = 'TAKE_PROFIT' AND t.takeProfitPrice IS NOT NULL))")
+    List<Object[]> findAllPendingTriggerLevels();
     
     @Query("SELECT SUM(t.profitLoss) FROM Trade t WHERE t.user = ?1 AND t.status = 'EXECUTED'")
     Double calculateTotalProfitLoss(User user);
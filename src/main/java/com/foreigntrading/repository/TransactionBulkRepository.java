@@ -0,0 +1,19 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Transaction;
+
+import java.util.List;
+
+/**
+ * Inserts high-volume transactions, such as those of trade executions, over plain JDBC: the ids of the
+ * whole list come from one sequence query and the rows go in as JDBC batches, which the PostgreSQL
+ * driver rewrites into multi-row INSERTs, so 100k rows take a handful of round trips.
+ */
+public interface TransactionBulkRepository {
+
+    /**
+     * Assigns each transaction its id and inserts them all. Entity callbacks do not run; a missing
+     * creation time is set to now.
+     */
+    void insertAll(List<Transaction> transactions);
+}
@@ -0,0 +1,53 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class TransactionBulkRepositoryImpl implements TransactionBulkRepository {
+    private static final String INSERT = "INSERT INTO transactions (id, account_id, transaction_type, amount, currency, "
+            + "status, created_at, completed_at, description, reference_number, payment_method, trade_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${trading.persistence.bulk-batch-size:10000}")
+    private int batchSize = 10000;
+
+    @Override
+    public void insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        long[] ids = BulkInserts.allocateIds(jdbcTemplate, "transactions_seq", transactions.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ids.length; i++) {
+            Transaction transaction = transactions.get(i);
+            transaction.setId(ids[i]);
+            if (transaction.getCreatedAt() == null) {
+                transaction.setCreatedAt(now);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, transactions, batchSize, (statement, transaction) -> {
+            statement.setLong(1, transaction.getId());
+            statement.setLong(2, transaction.getAccount().getId());
+            statement.setString(3, transaction.getTransactionType());
+            statement.setBigDecimal(4, transaction.getAmount());
+            statement.setString(5, transaction.getCurrency());
+            statement.setString(6, transaction.getStatus());
+            statement.setTimestamp(7, Timestamp.valueOf(transaction.getCreatedAt()));
+            statement.setTimestamp(8, BulkInserts.timestamp(transaction.getCompletedAt()));
+            statement.setString(9, transaction.getDescription());
+            statement.setString(10, transaction.getReferenceNumber());
+            statement.setString(11, transaction.getPaymentMethod());
+            statement.setObject(12, transaction.getTrade() != null ? transaction.getTrade().getId() : null, Types.BIGINT);
+        });
+    }
+}
@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionBulkRepository {
     Page<Transaction> findByAccount(Account account, Pageable pageable);
     List<Transaction> findByAccountAndStatus(Account account, String status);
     List<Transaction> findByAccountAndCreatedAtBetween(Account account, LocalDateTime start, LocalDateTime end);
@@ -28,4 +28,8 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> findRecentCompletedTransactions(Account account);
     
     Optional<Transaction> findByReferenceNumber(String referenceNumber);
+
+    // Generated numbers are fixed width, so the highest of that length is the last issued
+    @Query("SELECT MAX(t.referenceNumber) FROM Transaction t WHERE LENGTH(t.referenceNumber) = ?1")
+    String findHighestReferenceNumber(int length);
 } 
\ No newline at end of file
@@ -2,21 +2,31 @@ package com.foreigntrading.service;
 
 import com.foreigntrading.entity.Account;
 import com.foreigntrading.entity.User;
+import com.foreigntrading.exception.InsufficientFundsException;
 import com.foreigntrading.exception.ResourceNotFoundException;
+import com.foreigntrading.marketdata.BalanceBook;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
 import com.foreigntrading.repository.AccountRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
     private final AccountRepository accountRepository;
     private final UserService userService;
+    private final IdGeneratorService idGenerator;
+
+    // Balances the trading fast path checks and moves in memory, ahead of the database
+    private final BalanceBook balanceBook = new BalanceBook();
 
     @Transactional
     public Account createAccount(Long userId, String currency) {
@@ -26,7 +36,7 @@ public class AccountService {
         account.setUser(user);
         account.setCurrency(currency);
         account.setBalance(BigDecimal.ZERO);
-        account.setAccountNumber(generateAccountNumber());
+        account.setAccountNumber(idGenerator.nextNumber());
         account.setActive(true);
         
         return accountRepository.save(account);
@@ -41,17 +51,129 @@ public class AccountService {
         return accountRepository.findByUserId(userId);
     }
 
+    /**
+     * Adds the amount to the balance in one guarded update and returns the new balance. A debit the
+     * balance does not cover changes nothing and throws {@link InsufficientFundsException}. The
+     * in-memory balance moves first and moves back if the update is refused or fails, or if the
+     * surrounding transaction rolls back.
+     */
     @Transactional
-    public Account updateBalance(Long accountId, BigDecimal amount) {
-        Account account = getAccountById(accountId);
-        BigDecimal newBalance = account.getBalance().add(amount);
-        
-        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Account balance cannot be negative");
+    public BigDecimal updateBalance(Long accountId, BigDecimal amount) {
+        BalanceBook.Entry entry = balanceBook.find(accountId);
+        long change = FixedPoint.fromBigDecimal(amount);
+        if (entry != null && !entry.tryApply(0, change)) {
+            throw new InsufficientFundsException("Insufficient funds for balance change");
         }
-        
-        account.setBalance(newBalance);
-        return accountRepository.save(account);
+        Optional<BigDecimal> balance;
+        try {
+            balance = accountRepository.addToBalance(accountId, amount);
+        } catch (RuntimeException e) {
+            undo(entry, change);
+            throw e;
+        }
+        if (balance.isEmpty()) {
+            undo(entry, change);
+            if (!accountRepository.existsById(accountId)) {
+                throw new ResourceNotFoundException("Account not found with id: " + accountId);
+            }
+            throw new InsufficientFundsException("Insufficient funds for balance change");
+        }
+        undoOnRollback(entry, change);
+        return balance.get();
+    }
+
+    /**
+     * Applies balance changes to any number of accounts in one round trip, each guarded as in
+     * {@link #updateBalance}, and reports which were applied.
+     */
+    @Transactional
+    public boolean[] updateBalances(List<BalanceChange> changes) {
+        boolean[] applied = new boolean[changes.size()];
+        List<BalanceChange> covered = new ArrayList<>(changes.size());
+        List<Integer> positions = new ArrayList<>(changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            BalanceChange change = changes.get(i);
+            BalanceBook.Entry entry = balanceBook.find(change.accountId());
+            if (entry == null || entry.tryApply(0, FixedPoint.fromBigDecimal(change.amount()))) {
+                covered.add(change);
+                positions.add(i);
+            }
+        }
+        boolean[] written;
+        try {
+            written = accountRepository.addToBalances(covered);
+        } catch (RuntimeException e) {
+            for (BalanceChange change : covered) {
+                undo(balanceBook.find(change.accountId()), FixedPoint.fromBigDecimal(change.amount()));
+            }
+            throw e;
+        }
+        for (int i = 0; i < written.length; i++) {
+            BalanceChange change = covered.get(i);
+            if (written[i]) {
+                applied[positions.get(i)] = true;
+                undoOnRollback(balanceBook.find(change.accountId()), FixedPoint.fromBigDecimal(change.amount()));
+            } else {
+                undo(balanceBook.find(change.accountId()), FixedPoint.fromBigDecimal(change.amount()));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Checks and moves an account's balance in memory only, for trades confirmed before anything is
+     * written: the account must belong to the user, be active and hold at least {@code required}, and
+     * the change must not take it below zero. The caller writes the change back with
+     * {@link #writeBackBalances}. The account row is read once, the first time it is used.
+     */
+    public BalanceBook.Entry applyInMemory(Long accountId, Long userId, BigDecimal required, BigDecimal change) {
+        BalanceBook.Entry entry = balanceEntry(accountId);
+        if (entry.userId() != userId) {
+            throw new IllegalStateException("Account does not belong to user");
+        }
+        if (!entry.isActive()) {
+            throw new IllegalStateException("Account is not active");
+        }
+        if (!entry.tryApply(FixedPoint.fromBigDecimal(required), FixedPoint.fromBigDecimal(change))) {
+            throw new InsufficientFundsException("Insufficient funds for trade");
+        }
+        return entry;
+    }
+
+    /**
+     * Moves an account's balance in memory by a change confirmed before a restart and not yet written
+     * back, with no checks: its funds were checked when it was confirmed.
+     */
+    public BalanceBook.Entry reapplyInMemory(Long accountId, BigDecimal change) {
+        BalanceBook.Entry entry = balanceEntry(accountId);
+        entry.apply(FixedPoint.fromBigDecimal(change));
+        return entry;
+    }
+
+    /**
+     * Adds changes already applied in memory to the account rows, as one batch of guarded updates. A
+     * change an account row refuses means the book was ahead of the database: it throws
+     * {@link InsufficientFundsException} so the caller's transaction rolls back as a whole instead of
+     * keeping the rest of the batch without that change.
+     */
+    @Transactional
+    public void writeBackBalances(Map<Long, BigDecimal> changes) {
+        List<BalanceChange> batch = new ArrayList<>(changes.size());
+        changes.forEach((accountId, amount) -> batch.add(new BalanceChange(accountId, amount)));
+        boolean[] applied = accountRepository.addToBalances(batch);
+        List<BalanceChange> refused = new ArrayList<>();
+        for (int i = 0; i < applied.length; i++) {
+            if (!applied[i]) {
+                refused.add(batch.get(i));
+            }
+        }
+        if (!refused.isEmpty()) {
+            throw new InsufficientFundsException("Balance changes not covered by their accounts: " + refused);
+        }
+    }
+
+    public BalanceBook getBalanceBook() {
+        return balanceBook;
     }
 
     public boolean hasSufficientFunds(Long accountId, BigDecimal amount) {
@@ -64,10 +186,37 @@ public class AccountService {
         Account account = getAccountById(accountId);
         account.setActive(false);
         accountRepository.save(account);
+        BalanceBook.Entry entry = balanceBook.find(accountId);
+        if (entry != null) {
+            entry.setActive(false);
+        }
     }
 
-    private String generateAccountNumber() {
-        return UUID.randomUUID().toString().replaceAll("-", "").substring(0, 12);
+    private static void undo(BalanceBook.Entry entry, long change) {
+        if (entry != null) {
+            entry.apply(-change);
+        }
+    }
+
+    // For a change the database accepted, which only a rollback of the surrounding transaction takes back
+    private static void undoOnRollback(BalanceBook.Entry entry, long change) {
+        if (entry != null) {
+            TransactionCallbacks.afterRollback(() -> entry.apply(-change));
+        }
+    }
+
+    private BalanceBook.Entry balanceEntry(Long accountId) {
+        BalanceBook.Entry entry = balanceBook.find(accountId);
+        if (entry != null) {
+            return entry;
+        }
+        List<Object[]> rows = accountRepository.findBalanceState(accountId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Account not found with id: " + accountId);
+        }
+        Object[] row = rows.get(0);
+        return balanceBook.load(accountId, (Long) row[0], (Boolean) row[1], (String) row[2],
+                FixedPoint.fromBigDecimal((BigDecimal) row[3]), FixedPoint.fromBigDecimal((BigDecimal) row[4]));
     }
 
     public Account getAccountByCurrencyAndUserId(Long userId, String currency) {
@@ -4,13 +4,18 @@ import com.foreigntrading.entity.Alert;
 import com.foreigntrading.entity.User;
 import com.foreigntrading.repository.AlertRepository;
 import com.foreigntrading.exception.ResourceNotFoundException;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.PriceTriggerIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 @Service
 @RequiredArgsConstructor
@@ -18,17 +23,44 @@ public class AlertService {
     private final AlertRepository alertRepository;
     private final UserService userService;
     private final NotificationService notificationService;
+    private final CurrencyPairRegistry pairRegistry;
+    private final EngineJournalService engineJournal;
+
+    // Thresholds of every armed alert, kept in step with create/deactivate/delete/trigger once they commit
+    private final PriceTriggerIndex alertIndex = new PriceTriggerIndex(new PriceTriggerIndex.Listener() {
+        @Override
+        public void onAdd(long ownerId, int pairId, long level, int side) {
+            engineJournal.alertTriggerAdded(ownerId, pairId, level, side);
+        }
+
+        @Override
+        public void onRemove(long ownerId) {
+            engineJournal.alertTriggerRemoved(ownerId);
+        }
+    });
+
+    /**
+     * Loads every armed alert's threshold from the database; startup recovery falls back to this when
+     * there is no engine snapshot.
+     */
+    @Transactional(readOnly = true)
+    public int loadAlertIndex() {
+        alertIndex.clear();
+        List<Object[]> thresholds = alertRepository.findAllActiveThresholds();
+        for (Object[] row : thresholds) {
+            // Stored alerts were checked when created, and the feed may not have seen their currencies yet
+            indexAlert((Long) row[0], pairRegistry.pairId((String) row[1], (String) row[2]), (BigDecimal) row[3],
+                    (String) row[4]);
+        }
+        return thresholds.size();
+    }
 
     @Transactional
     public Alert createAlert(Long userId, String baseCurrency, String quoteCurrency,
                            BigDecimal targetPrice, String condition, String notificationType) {
+        int pairId = pairRegistry.requirePairId(baseCurrency, quoteCurrency);
         User user = userService.getUserById(userId);
 
-        if (alertRepository.existsByUserAndBaseCurrencyAndQuoteCurrencyAndActive(
-                user, baseCurrency, quoteCurrency, true)) {
-            throw new IllegalStateException("Active alert already exists for this currency pair");
-        }
-
         Alert alert = new Alert();
         alert.setUser(user);
         alert.setBaseCurrency(baseCurrency);
@@ -39,7 +71,9 @@ public class AlertService {
         alert.setNotificationType(notificationType);
         alert.setCreatedAt(LocalDateTime.now());
 
-        return alertRepository.save(alert);
+        Alert saved = alertRepository.save(alert);
+        TransactionCallbacks.afterCommit(() -> indexAlert(saved.getId(), pairId, targetPrice, condition));
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -69,6 +103,7 @@ public class AlertService {
     @Transactional
     public void deactivateAlert(Long alertId) {
         Alert alert = getAlertById(alertId);
+        TransactionCallbacks.afterCommit(() -> alertIndex.remove(alertId));
         alert.setActive(false);
         alertRepository.save(alert);
     }
@@ -76,26 +111,72 @@ public class AlertService {
     @Transactional
     public void deleteAlert(Long alertId) {
         Alert alert = getAlertById(alertId);
+        TransactionCallbacks.afterCommit(() -> alertIndex.remove(alertId));
         alertRepository.delete(alert);
     }
 
+    /**
+     * Triggers every armed alert on the pair, for every user, that the current price meets.
+     */
     @Transactional
-    public void checkAndTriggerAlerts(Long userId, String baseCurrency, String quoteCurrency, BigDecimal currentPrice) {
-        User user = userService.getUserById(userId);
-        List<Alert> activeAlerts = alertRepository.findByUserAndBaseCurrencyAndQuoteCurrencyAndActive(
-                user, baseCurrency, quoteCurrency, true);
-
-        for (Alert alert : activeAlerts) {
-            if (alert.isConditionMet(currentPrice)) {
-                triggerAlert(alert);
+    public int checkAndTriggerAlerts(String baseCurrency, String quoteCurrency, BigDecimal currentPrice) {
+        long price = FixedPoint.fromBigDecimal(currentPrice);
+        List<Long> fired = new ArrayList<>();
+        fireTriggeredAlerts(pairRegistry.requirePairId(baseCurrency, quoteCurrency), price, price, fired::add);
+        // Registered up front so alerts after one that throws are re-armed too
+        for (Long alertId : fired) {
+            TransactionCallbacks.afterRollback(() -> alertIndex.rearm(alertId));
+        }
+        int triggered = 0;
+        for (Long alertId : fired) {
+            if (triggerAlertIfActive(alertId)) {
+                triggered++;
             }
         }
+        return triggered;
+    }
+
+    /**
+     * Reports every armed alert on the pair, for every user, whose threshold any fixed-point price between
+     * low and high meets, and puts it in flight until {@link #triggerAlertIfActive} settles it. Visits only
+     * the alerts that fire.
+     */
+    public int fireTriggeredAlerts(int pairId, long low, long high, LongConsumer consumer) {
+        return alertIndex.fire(pairId, low, high, consumer);
+    }
+
+    public boolean hasTriggers(int pairId) {
+        return alertIndex.hasTriggers(pairId);
+    }
+
+    public PriceTriggerIndex getAlertIndex() {
+        return alertIndex;
+    }
+
+    /**
+     * Triggers an alert whose threshold fired, if it is still armed; re-checked under the transaction so an
+     * alert fired twice before the first save only notifies once. The fired alert stays in flight until
+     * this commits and leaves the index, or rolls back and is re-armed.
+     */
+    @Transactional
+    public boolean triggerAlertIfActive(Long alertId) {
+        TransactionCallbacks.afterRollback(() -> alertIndex.rearm(alertId));
+        Alert alert = getAlertById(alertId);
+        boolean active = alert.isActive() && !alert.isTriggered();
+        if (active) {
+            triggerAlert(alert);
+        } else {
+            TransactionCallbacks.afterCommit(() -> alertIndex.remove(alertId));
+        }
+        return active;
     }
 
     @Transactional
     public void triggerAlert(Alert alert) {
+        Long alertId = alert.getId();
         alert.trigger();
         alertRepository.save(alert);
+        TransactionCallbacks.afterCommit(() -> alertIndex.remove(alertId));
 
         // Send notification based on notification type
         String message = alert.getAlertMessage();
@@ -126,4 +207,20 @@ public class AlertService {
         return alertRepository.findByUserAndBaseCurrencyAndQuoteCurrencyAndConditionAndActive(
                 user, baseCurrency, quoteCurrency, condition, true);
     }
-} 
\ No newline at end of file
+
+    // ABOVE fires once the price rises to the target, BELOW once it falls to it, EQUALS once a move spans it
+    private void indexAlert(Long alertId, int pairId, BigDecimal targetPrice, String condition) {
+        long level = FixedPoint.fromBigDecimal(targetPrice);
+        switch (condition) {
+            case "ABOVE":
+                alertIndex.add(alertId, pairId, level, true);
+                break;
+            case "BELOW":
+                alertIndex.add(alertId, pairId, level, false);
+                break;
+            case "EQUALS":
+                alertIndex.addTouch(alertId, pairId, level);
+                break;
+        }
+    }
+}
\ No newline at end of file
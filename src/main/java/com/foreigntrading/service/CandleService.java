@@ -0,0 +1,78 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.Candle;
+import com.foreigntrading.marketdata.CandleAggregator;
+import com.foreigntrading.marketdata.CandleListener;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.Timeframe;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class CandleService {
+    private final RateBookService rateBookService;
+
+    @Value("${marketdata.candles.capacity:1000}")
+    private int capacity = 1000;
+
+    private CandleAggregator aggregator;
+
+    @PostConstruct
+    public void init() {
+        aggregator = new CandleAggregator(capacity);
+        rateBookService.addListener(this::onRate);
+    }
+
+    public void onRate(RateEntry entry) {
+        aggregator.onTick(entry.pairId(), entry.timestampMillis(), entry.fixedRate());
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void closeExpiredBars() {
+        aggregator.closeExpired(MarketClock.epochMillis());
+    }
+
+    public void subscribe(CandleListener listener) {
+        aggregator.subscribe(listener);
+    }
+
+    public List<Candle> getCandles(String baseCurrency, String quoteCurrency, Timeframe timeframe, int limit) {
+        int pairId = rateBookService.getPairRegistry().findPairId(baseCurrency, quoteCurrency);
+        if (pairId < 0) {
+            return List.of();
+        }
+        return aggregator.recentBars(pairId, timeframe, limit);
+    }
+
+    public Candle getCurrentCandle(String baseCurrency, String quoteCurrency, Timeframe timeframe) {
+        int pairId = rateBookService.getPairRegistry().findPairId(baseCurrency, quoteCurrency);
+        return pairId < 0 ? null : aggregator.currentBar(pairId, timeframe);
+    }
+
+    public List<Map<String, Object>> getChartData(String baseCurrency, String quoteCurrency, String timeframe, int limit) {
+        List<Candle> candles = getCandles(baseCurrency, quoteCurrency, Timeframe.fromLabel(timeframe), limit);
+        List<Map<String, Object>> bars = new ArrayList<>(candles.size());
+        for (Candle candle : candles) {
+            Map<String, Object> bar = new LinkedHashMap<>();
+            bar.put("time", MarketClock.toLocalDateTime(candle.openTime() * MarketClock.NANOS_PER_MILLI));
+            bar.put("open", FixedPoint.toBigDecimal(candle.open()));
+            bar.put("high", FixedPoint.toBigDecimal(candle.high()));
+            bar.put("low", FixedPoint.toBigDecimal(candle.low()));
+            bar.put("close", FixedPoint.toBigDecimal(candle.close()));
+            bar.put("ticks", candle.tickCount());
+            bars.add(bar);
+        }
+        return bars;
+    }
+}
@@ -1,95 +1,229 @@
 package com.foreigntrading.service;
 
+import com.foreigntrading.marketdata.Candle;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.ProviderResponseParser;
+import com.foreigntrading.marketdata.SingleFlightCache;
+import com.foreigntrading.marketdata.Timeframe;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 public class CurrencyApiService {
     private final RestTemplate restTemplate;
+    private final RateBookService rateBookService;
+    private final TickPipelineService tickPipelineService;
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final TechnicalIndicatorService technicalIndicatorService;
 
     @Value("${alpha.vantage.api.key}")
     private String apiKey;
 
-    private final Map<String, BigDecimal> exchangeRates = new ConcurrentHashMap<>();
-    private final Map<String, LocalDateTime> lastUpdateTimes = new ConcurrentHashMap<>();
+    // Only pairs against the cross-rate pivot need polling; every other pair is triangulated
+    @Value("${alpha.vantage.api.pairs:EUR/USD,GBP/USD,USD/JPY,AUD/USD,USD/CAD,USD/CHF,NZD/USD}")
+    private String[] currencyPairs;
 
-    @Scheduled(fixedRate = 60000) // Update every minute
-    public void updateExchangeRates() {
-        String[] currencyPairs = {
-            "EUR/USD", "GBP/USD", "USD/JPY", "AUD/USD", "USD/CAD",
-            "USD/CHF", "NZD/USD", "EUR/GBP", "EUR/JPY", "GBP/JPY"
-        };
+    @Value("${alpha.vantage.api.call-timeout-ms:5000}")
+    private long callTimeoutMillis;
+
+    @Value("${alpha.vantage.api.cycle-budget-ms:15000}")
+    private long cycleBudgetMillis;
+
+    @Value("${alpha.vantage.cache.max-entries:500}")
+    private int cacheMaxEntries = 500;
+
+    // Daily series only gain a bar once a day; 5-minute indicators change every interval
+    @Value("${alpha.vantage.cache.historical-ttl-seconds:3600}")
+    private long historicalTtlSeconds = 3600;
 
+    @Value("${alpha.vantage.cache.indicator-ttl-seconds:300}")
+    private long indicatorTtlSeconds = 300;
+
+    private SingleFlightCache<ProviderRequest, List<Candle>> historyCache;
+    private SingleFlightCache<ProviderRequest, Map<String, Object>> indicatorCache;
+
+    @PostConstruct
+    public void init() {
+        historyCache = new SingleFlightCache<>(cacheMaxEntries);
+        indicatorCache = new SingleFlightCache<>(cacheMaxEntries);
+        bindCacheMetrics("provider.history", historyCache);
+        bindCacheMetrics("provider.indicators", indicatorCache);
+    }
+
+    // Driven by ProviderMarketDataFeed when marketdata.feed.type=provider
+    public void updateExchangeRates() {
+        long cycleStart = System.nanoTime();
+        List<CompletableFuture<HttpResponse<byte[]>>> sends = new ArrayList<>(currencyPairs.length);
+        List<CompletableFuture<Void>> calls = new ArrayList<>(currencyPairs.length);
         for (String pair : currencyPairs) {
-            try {
-                String[] currencies = pair.split("/");
-                String url = String.format(
-                    "https://www.alphavantage.co/query?function=CURRENCY_EXCHANGE_RATE&from_currency=%s&to_currency=%s&apikey=%s",
-                    currencies[0], currencies[1], apiKey
-                );
-
-                Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-                if (response != null && response.containsKey("Realtime Currency Exchange Rate")) {
-                    Map<String, String> rateData = (Map<String, String>) response.get("Realtime Currency Exchange Rate");
-                    BigDecimal rate = new BigDecimal(rateData.get("5. Exchange Rate"));
-                    updateRate(pair, rate);
-                }
-            } catch (Exception e) {
-                // Log error and continue with other pairs
-                System.err.println("Error updating rate for " + pair + ": " + e.getMessage());
-            }
+            calls.add(fetchRate(pair, sends));
+        }
+
+        try {
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]))
+                    .get(cycleBudgetMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Abort whatever is still in flight; cancelling the send itself, not the stage built on it,
+            // is what stops the HTTP exchange. The next cycle will retry those pairs
+            sends.forEach(send -> send.cancel(true));
+            System.err.println("Exchange rate refresh exceeded cycle budget of " + cycleBudgetMillis + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Individual call failures are recorded per pair in fetchRate
+        } finally {
+            meterRegistry.timer("marketdata.provider.refresh.cycle")
+                    .record(System.nanoTime() - cycleStart, TimeUnit.NANOSECONDS);
         }
     }
 
-    private void updateRate(String pair, BigDecimal rate) {
-        exchangeRates.put(pair, rate);
-        lastUpdateTimes.put(pair, LocalDateTime.now());
+    private CompletableFuture<Void> fetchRate(String pair, List<CompletableFuture<HttpResponse<byte[]>>> sends) {
+        String[] currencies = pair.split("/");
+        URI uri = URI.create(String.format(
+            "https://www.alphavantage.co/query?function=CURRENCY_EXCHANGE_RATE&from_currency=%s&to_currency=%s&apikey=%s",
+            currencies[0], currencies[1], apiKey
+        ));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(callTimeoutMillis))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> send = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        sends.add(send);
+        return send
+                .thenAccept(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Provider returned HTTP " + response.statusCode());
+                    }
+                    long rate = parseExchangeRate(response.body());
+                    if (rate == ProviderResponseParser.NO_RATE) {
+                        throw new IllegalStateException("Provider response has no exchange rate");
+                    }
+                    updateRate(pair, rate);
+                })
+                .whenComplete((ignored, error) -> {
+                    meterRegistry.timer("marketdata.provider.latency", "pair", pair)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (error != null) {
+                        meterRegistry.counter("marketdata.provider.failures", "pair", pair).increment();
+                        System.err.println("Error updating rate for " + pair + ": " + error.getMessage());
+                    }
+                });
     }
 
-    public BigDecimal getExchangeRate(String baseCurrency, String quoteCurrency) {
-        String pair = baseCurrency + "/" + quoteCurrency;
-        BigDecimal rate = exchangeRates.get(pair);
-        
-        if (rate == null) {
-            throw new IllegalStateException("Exchange rate not available for " + pair);
+    private long parseExchangeRate(byte[] body) {
+        try {
+            return ProviderResponseParser.parseExchangeRate(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed provider response", e);
         }
+    }
 
-        LocalDateTime lastUpdate = lastUpdateTimes.get(pair);
-        if (lastUpdate == null || lastUpdate.isBefore(LocalDateTime.now().minusMinutes(5))) {
-            throw new IllegalStateException("Exchange rate data is stale for " + pair);
-        }
+    private void updateRate(String pair, long fixedRate) {
+        tickPipelineService.ingest(rateBookService.getPairRegistry().pairId(pair), fixedRate, MarketClock.epochNanos());
+    }
 
-        return rate;
+    public BigDecimal getExchangeRate(String baseCurrency, String quoteCurrency) {
+        return rateBookService.getExchangeRate(baseCurrency, quoteCurrency);
     }
 
     public Map<String, BigDecimal> getAllExchangeRates() {
-        return new ConcurrentHashMap<>(exchangeRates);
+        return rateBookService.snapshot().rates();
     }
 
-    public Map<String, Object> getHistoricalData(String baseCurrency, String quoteCurrency, String timeframe) {
-        String url = String.format(
-            "https://www.alphavantage.co/query?function=FX_DAILY&from_symbol=%s&to_symbol=%s&apikey=%s",
-            baseCurrency, quoteCurrency, apiKey
-        );
-
-        return restTemplate.getForObject(url, Map.class);
+    // Daily bars oldest first, decoded straight from the response stream
+    public List<Candle> getHistoricalData(String baseCurrency, String quoteCurrency, String timeframe) {
+        ProviderRequest key = new ProviderRequest("FX_DAILY", baseCurrency + "/" + quoteCurrency, "daily");
+        return historyCache.get(key, TimeUnit.SECONDS.toNanos(historicalTtlSeconds), () -> {
+            String url = String.format(
+                "https://www.alphavantage.co/query?function=FX_DAILY&from_symbol=%s&to_symbol=%s&apikey=%s",
+                baseCurrency, quoteCurrency, apiKey
+            );
+            int pairId = rateBookService.getPairRegistry().pairId(baseCurrency, quoteCurrency);
+            List<Candle> bars = new ArrayList<>();
+            restTemplate.execute(url, HttpMethod.GET, null, response ->
+                ProviderResponseParser.parseDailySeries(response.getBody(), (openTime, open, high, low, close) ->
+                    bars.add(new Candle(pairId, Timeframe.D1, openTime, open, high, low, close, 0))));
+            Collections.reverse(bars);
+            return List.copyOf(bars);
+        });
     }
 
     public Map<String, Object> getTechnicalIndicators(String baseCurrency, String quoteCurrency) {
-        String url = String.format(
-            "https://www.alphavantage.co/query?function=RSI&symbol=%s%s&interval=5min&apikey=%s",
-            baseCurrency, quoteCurrency, apiKey
-        );
+        // Served from the local engine once it has warmed up; the provider call only covers cold pairs
+        if (technicalIndicatorService.isReady(baseCurrency, quoteCurrency, Timeframe.M5)) {
+            return technicalIndicatorService.getIndicators(baseCurrency, quoteCurrency, Timeframe.M5);
+        }
+
+        ProviderRequest key = new ProviderRequest("RSI", baseCurrency + "/" + quoteCurrency, "5min");
+        return indicatorCache.get(key, TimeUnit.SECONDS.toNanos(indicatorTtlSeconds), () -> {
+            String url = String.format(
+                "https://www.alphavantage.co/query?function=RSI&symbol=%s%s&interval=5min&apikey=%s",
+                baseCurrency, quoteCurrency, apiKey
+            );
+            // The series is newest first, so the first point is the current reading
+            long[] latest = {Long.MIN_VALUE, 0};
+            int points = restTemplate.execute(url, HttpMethod.GET, null, response ->
+                ProviderResponseParser.parseIndicatorSeries(response.getBody(), (time, value) -> {
+                    if (latest[0] == Long.MIN_VALUE) {
+                        latest[0] = time;
+                        latest[1] = value;
+                    }
+                }));
+            Map<String, Object> indicators = new LinkedHashMap<>();
+            indicators.put("bars", (long) points);
+            if (points > 0) {
+                indicators.put("rsi14", FixedPoint.toDouble(latest[1]));
+            }
+            return indicators;
+        });
+    }
+
+    private void bindCacheMetrics(String cacheName, SingleFlightCache<?, ?> cache) {
+        FunctionCounter.builder("cache.gets", cache, SingleFlightCache::hits)
+                .tag("cache", cacheName).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", cache, SingleFlightCache::misses)
+                .tag("cache", cacheName).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", cache, SingleFlightCache::coalesced)
+                .tag("cache", cacheName).tag("result", "coalesced").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", cache, SingleFlightCache::evictions)
+                .tag("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("cache.expirations", cache, SingleFlightCache::expirations)
+                .tag("cache", cacheName).register(meterRegistry);
+        Gauge.builder("cache.size", cache, SingleFlightCache::size)
+                .tag("cache", cacheName).register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", cache, SingleFlightCache::hitRatio)
+                .tag("cache", cacheName).register(meterRegistry);
+    }
 
-        return restTemplate.getForObject(url, Map.class);
+    private record ProviderRequest(String function, String pair, String interval) {
     }
 } 
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.EngineLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Write-ahead log of the in-memory trading state: resting LIMIT orders and the trade and alert trigger
+ * indexes record every change here, in the order it takes effect. Fills are logged before they are
+ * written back; an order or trigger is only added, and so logged, once its row has committed, so a
+ * replay never brings back one the database rolled back. A MARKET execution is logged before its trade
+ * is returned and marked settled once its write-back commits. Pairs are logged by their persistent key. Appends only touch the page cache and a scheduled flush
+ * forces them to disk, as the tick journal does. Disabled, every call is a no-op.
+ */
+@Service
+@RequiredArgsConstructor
+public class EngineJournalService {
+    private final CurrencyPairRegistry pairRegistry;
+
+    @Value("${trading.engine.journal.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${trading.engine.journal.directory:data/engine}")
+    private String directory = "data/engine";
+
+    @Value("${trading.engine.journal.segment-size-mb:64}")
+    private int segmentSizeMb = 64;
+
+    private EngineLog log;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            log = new EngineLog(Path.of(directory), segmentSizeMb * 1024 * 1024);
+        }
+    }
+
+    public boolean isEnabled() {
+        return log != null;
+    }
+
+    public Path getDirectory() {
+        return Path.of(directory);
+    }
+
+    public EngineLog getLog() {
+        return log;
+    }
+
+    public long orderRested(int pairId, long orderId, boolean buy, long price, long remaining) {
+        return append(EngineLog.ORDER_REST, buy ? 1 : 0, orderId, pairId, price, 0, remaining);
+    }
+
+    public long orderFilled(int pairId, long orderId, long price, long quantity, long remaining) {
+        return append(EngineLog.ORDER_FILL, 0, orderId, pairId, price, quantity, remaining);
+    }
+
+    public long orderCancelled(int pairId, long orderId) {
+        return append(EngineLog.ORDER_CANCEL, 0, orderId, pairId, 0, 0, 0);
+    }
+
+    public long tradeTriggerAdded(long tradeId, int pairId, long level, int side) {
+        return append(EngineLog.TRADE_TRIGGER_ADD, side, tradeId, pairId, level, 0, 0);
+    }
+
+    public long tradeTriggerRemoved(long tradeId) {
+        return append(EngineLog.TRADE_TRIGGER_REMOVE, 0, tradeId, -1, 0, 0, 0);
+    }
+
+    public long alertTriggerAdded(long alertId, int pairId, long level, int side) {
+        return append(EngineLog.ALERT_TRIGGER_ADD, side, alertId, pairId, level, 0, 0);
+    }
+
+    public long alertTriggerRemoved(long alertId) {
+        return append(EngineLog.ALERT_TRIGGER_REMOVE, 0, alertId, -1, 0, 0, 0);
+    }
+
+    // The user id rides in the remaining operand, which executions have no other use for
+    public long marketExecuted(int pairId, long accountId, boolean buy, long price, long amount, long userId) {
+        return append(EngineLog.MARKET_EXECUTION, buy ? 1 : 0, accountId, pairId, price, amount, userId);
+    }
+
+    public long marketExecutionSettled(long executionSequence) {
+        return append(EngineLog.MARKET_EXECUTION_SETTLED, 0, executionSequence, -1, 0, 0, 0);
+    }
+
+    // Group commit: one force per interval covers every record appended since the last one
+    @Scheduled(fixedDelayString = "${trading.engine.journal.flush-interval-ms:50}")
+    public void flush() {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Error closing engine journal: " + e.getMessage());
+        }
+    }
+
+    private long append(int type, int side, long ownerId, int pairId, long price, long quantity, long remaining) {
+        if (log == null) {
+            return 0;
+        }
+        long pairKey = pairId < 0 ? 0 : pairRegistry.pairKey(pairId);
+        return log.append(type, side, ownerId, pairKey, price, quantity, remaining);
+    }
+}
@@ -0,0 +1,272 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.EngineLog;
+import com.foreigntrading.marketdata.EngineSnapshot;
+import com.foreigntrading.marketdata.PriceTriggerIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Startup recovery and periodic snapshots of the in-memory trading state: LIMIT order books, partial
+ * fills awaiting write-back, the trade and alert trigger indexes, and MARKET executions awaiting
+ * write-back. Recovery loads the latest
+ * snapshot and replays the {@link EngineJournalService} log written since, instead of loading every
+ * pending order, trade and alert through JPA; that load is only the fallback when there is no usable
+ * snapshot, and is followed at once by a first snapshot.
+ * <p>
+ * A snapshot cuts the log first and then copies each structure under its own lock, so it may already
+ * hold the effect of records logged after the cut; log records are idempotent, so replaying them over
+ * it is safe. Recovery runs before any other ready listener, ahead of the market data feed.
+ */
+@Service
+@RequiredArgsConstructor
+public class EngineSnapshotService {
+    private final EngineJournalService engineJournal;
+    private final OrderBookService orderBookService;
+    private final TradeService tradeService;
+    private final AlertService alertService;
+    private final MarketOrderService marketOrderService;
+    private final CurrencyPairRegistry pairRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong lastSnapshotSequence = new AtomicLong();
+    private Timer recoveryTimer;
+    private Timer snapshotTimer;
+
+    @PostConstruct
+    public void init() {
+        recoveryTimer = Timer.builder("trading.engine.recovery").register(meterRegistry);
+        snapshotTimer = Timer.builder("trading.engine.snapshot").register(meterRegistry);
+        Gauge.builder("trading.engine.snapshot.sequence", lastSnapshotSequence, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * Restores the trading state and returns the number of log records replayed on top of the
+     * snapshot, or -1 when it was loaded from the database instead.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public int recover() {
+        long start = System.nanoTime();
+        try {
+            int replayed = engineJournal.isEnabled() ? recoverFromSnapshot() : -1;
+            if (replayed < 0) {
+                loadFromDatabase();
+            }
+            return replayed;
+        } finally {
+            recoveryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cuts the log, writes every structure to a new snapshot and drops the log segments and older
+     * snapshots it covers. Returns the log sequence the snapshot covers.
+     */
+    @Scheduled(fixedDelayString = "${trading.engine.snapshot.interval-ms:300000}",
+            initialDelayString = "${trading.engine.snapshot.interval-ms:300000}")
+    public synchronized long snapshot() {
+        EngineLog log = engineJournal.getLog();
+        if (log == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long sequence = log.rollForSnapshot();
+        try {
+            Path file = EngineSnapshot.write(engineJournal.getDirectory(), sequence, this::writeState);
+            EngineSnapshot.deleteOlderThan(engineJournal.getDirectory(), file);
+            log.deleteThrough(sequence);
+            lastSnapshotSequence.set(sequence);
+        } catch (IOException e) {
+            System.err.println("Error writing engine snapshot: " + e.getMessage());
+        } finally {
+            snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return sequence;
+    }
+
+    private int recoverFromSnapshot() {
+        EngineLog log = engineJournal.getLog();
+        try {
+            Path latest = EngineSnapshot.latest(engineJournal.getDirectory());
+            if (latest == null) {
+                return -1;
+            }
+            long sequence = EngineSnapshot.read(latest, this::readState);
+            log.advanceTo(sequence);
+            lastSnapshotSequence.set(sequence);
+            int replayed = log.replay(sequence, this::apply);
+            orderBookService.awaitRestored();
+            marketOrderService.resumeRestored();
+            return replayed;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error recovering engine state, reloading from the database: " + e.getMessage());
+            clear();
+            return -1;
+        }
+    }
+
+    private void loadFromDatabase() {
+        clear();
+        orderBookService.loadOrderBooks();
+        tradeService.loadTriggerIndex();
+        alertService.loadAlertIndex();
+        snapshot();
+    }
+
+    private void clear() {
+        orderBookService.clear();
+        tradeService.getTriggerIndex().clear();
+        alertService.getAlertIndex().clear();
+        marketOrderService.clearRestored();
+    }
+
+    private void writeState(DataOutputStream out) throws IOException {
+        IOException[] failure = new IOException[1];
+        orderBookService.forEachRestingOrder((pairId, orderId, buy, price, remaining) -> {
+            try {
+                out.writeBoolean(true);
+                out.writeLong(pairRegistry.pairKey(pairId));
+                out.writeLong(orderId);
+                out.writeBoolean(buy);
+                out.writeLong(price);
+                out.writeLong(remaining);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        out.writeBoolean(false);
+        // Drains fills logged before the cut into the partial totals, which are written after the books
+        orderBookService.flushFills();
+        orderBookService.forEachPartialFill((orderId, quantity, averagePrice, lastSequence) -> {
+            try {
+                out.writeBoolean(true);
+                out.writeLong(orderId);
+                out.writeLong(quantity);
+                out.writeLong(averagePrice);
+                out.writeLong(lastSequence);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        out.writeBoolean(false);
+        writeTriggers(out, tradeService.getTriggerIndex(), failure);
+        writeTriggers(out, alertService.getAlertIndex(), failure);
+        marketOrderService.forEachUnsettled((sequence, pairId, accountId, buy, price, amount, userId) -> {
+            try {
+                out.writeBoolean(true);
+                out.writeLong(sequence);
+                out.writeLong(pairRegistry.pairKey(pairId));
+                out.writeLong(accountId);
+                out.writeBoolean(buy);
+                out.writeLong(price);
+                out.writeLong(amount);
+                out.writeLong(userId);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        out.writeBoolean(false);
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private void writeTriggers(DataOutputStream out, PriceTriggerIndex index, IOException[] failure) throws IOException {
+        index.forEach((ownerId, pairId, level, side) -> {
+            try {
+                out.writeBoolean(true);
+                out.writeLong(ownerId);
+                out.writeLong(pairRegistry.pairKey(pairId));
+                out.writeLong(level);
+                out.writeByte(side);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        out.writeBoolean(false);
+    }
+
+    private void readState(DataInputStream in) throws IOException {
+        clear();
+        while (in.readBoolean()) {
+            int pairId = pairRegistry.pairIdForKey(in.readLong());
+            long orderId = in.readLong();
+            boolean buy = in.readBoolean();
+            orderBookService.restoreOrder(pairId, orderId, buy, in.readLong(), in.readLong());
+        }
+        while (in.readBoolean()) {
+            orderBookService.restorePartialFill(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+        readTriggers(in, tradeService.getTriggerIndex());
+        readTriggers(in, alertService.getAlertIndex());
+        while (in.readBoolean()) {
+            long sequence = in.readLong();
+            int pairId = pairRegistry.pairIdForKey(in.readLong());
+            long accountId = in.readLong();
+            boolean buy = in.readBoolean();
+            marketOrderService.restoreExecution(sequence, pairId, accountId, buy, in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    private void readTriggers(DataInputStream in, PriceTriggerIndex index) throws IOException {
+        while (in.readBoolean()) {
+            long ownerId = in.readLong();
+            int pairId = pairRegistry.pairIdForKey(in.readLong());
+            index.restore(ownerId, pairId, in.readLong(), in.readByte());
+        }
+    }
+
+    private void apply(long sequence, int type, int side, long ownerId, long pairKey, long price, long quantity,
+                       long remaining) {
+        switch (type) {
+            case EngineLog.ORDER_REST:
+                orderBookService.restoreOrder(pairRegistry.pairIdForKey(pairKey), ownerId, side == 1, price, remaining);
+                break;
+            case EngineLog.ORDER_FILL:
+                orderBookService.restoreFill(sequence, pairRegistry.pairIdForKey(pairKey), ownerId, price, quantity, remaining);
+                break;
+            case EngineLog.ORDER_CANCEL:
+                orderBookService.restoreCancel(sequence, pairRegistry.pairIdForKey(pairKey), ownerId);
+                break;
+            case EngineLog.TRADE_TRIGGER_ADD:
+                tradeService.getTriggerIndex().restore(ownerId, pairRegistry.pairIdForKey(pairKey), price, side);
+                break;
+            case EngineLog.TRADE_TRIGGER_REMOVE:
+                tradeService.getTriggerIndex().forget(ownerId);
+                break;
+            case EngineLog.ALERT_TRIGGER_ADD:
+                alertService.getAlertIndex().restore(ownerId, pairRegistry.pairIdForKey(pairKey), price, side);
+                break;
+            case EngineLog.ALERT_TRIGGER_REMOVE:
+                alertService.getAlertIndex().forget(ownerId);
+                break;
+            case EngineLog.MARKET_EXECUTION:
+                marketOrderService.restoreExecution(sequence, pairRegistry.pairIdForKey(pairKey), ownerId, side == 1,
+                        price, quantity, remaining);
+                break;
+            case EngineLog.MARKET_EXECUTION_SETTLED:
+                marketOrderService.restoreSettled(ownerId);
+                break;
+            default:
+                System.err.println("Skipping unknown engine log record " + type + " at " + sequence);
+        }
+    }
+}
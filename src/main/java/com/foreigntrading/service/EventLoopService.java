@@ -0,0 +1,83 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.EventLoopGroup;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+/**
+ * The trading engine's pair-sharded event loops: each shard of currency pairs is owned by one thread
+ * that makes every change to those pairs' in-memory state, so the state itself takes no locks and
+ * throughput grows with the number of shards. Until {@link #init()} starts the configured loops, and
+ * when they are disabled, tasks run in place under a per-shard monitor.
+ * Per shard, trading.engine.loop.queue is the number of tasks waiting, trading.engine.loop.utilization
+ * the share of the last second spent running them, and trading.engine.loop.tasks and
+ * trading.engine.loop.busy count tasks run and seconds spent.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventLoopService {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${trading.engine.event-loops.enabled:true}")
+    private boolean enabled = true;
+
+    // 0 for one shard per available processor
+    @Value("${trading.engine.event-loops.shards:0}")
+    private int shards = 0;
+
+    private EventLoopGroup loops = new EventLoopGroup("trading-loop", 1);
+
+    @PostConstruct
+    public void init() {
+        int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        loops = new EventLoopGroup("trading-loop", count);
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            String tag = Integer.toString(i);
+            Gauge.builder("trading.engine.loop.queue", loops, l -> l.queueDepth(shard)).tag("shard", tag)
+                    .register(meterRegistry);
+            Gauge.builder("trading.engine.loop.utilization", loops, l -> l.utilization(shard)).tag("shard", tag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("trading.engine.loop.tasks", loops, l -> l.tasks(shard)).tag("shard", tag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("trading.engine.loop.busy", loops, l -> l.busyNanos(shard) / 1e9).tag("shard", tag)
+                    .baseUnit("seconds").register(meterRegistry);
+        }
+        if (enabled) {
+            loops.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loops.stop();
+    }
+
+    public void execute(int pairId, Runnable task) {
+        loops.execute(pairId, task);
+    }
+
+    public <T> T call(int pairId, Supplier<T> task) {
+        return loops.call(pairId, task);
+    }
+
+    public void run(int pairId, Runnable task) {
+        loops.run(pairId, task);
+    }
+
+    public void awaitIdle() {
+        loops.awaitIdle();
+    }
+
+    public EventLoopGroup getLoops() {
+        return loops;
+    }
+}
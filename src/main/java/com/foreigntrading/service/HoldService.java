@@ -0,0 +1,207 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Hold;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.BalanceBook;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.HoldRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Funds reserved for pending orders. Placing an order holds its cost out of the account's available
+ * balance in {@link AccountService}'s in-memory book, a compare-and-set that neither locks nor reads
+ * the account row, and records the hold in the holds table; cancelling the order releases the hold
+ * and filling it converts the hold into the fill's balance change.
+ * <p>
+ * A background pass reconciles the book with the stored balances and active holds. Changes the book
+ * marks as unwritten, such as MARKET executions still queued for write-back, are left out of the
+ * comparison. Any other change made in memory may not be written back yet either, so an account is
+ * repaired from the database only when the same difference shows on two passes in a row. holds.reserved and holds.rejected count holds taken and
+ * refused for funds, holds.reconciled the accounts repaired.
+ */
+@Service
+@RequiredArgsConstructor
+public class HoldService {
+    public static final String TRADE = "TRADE";
+    public static final String ORDER = "ORDER";
+
+    private final HoldRepository holdRepository;
+    private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${trading.holds.reconcile.batch-size:1000}")
+    private int reconcileBatchSize = 1000;
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reconciled = new LongAdder();
+    // Differences found by the last reconciliation pass; only touched by that pass
+    private Map<Long, Drift> lastDrifts = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("holds.reserved", reserved, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("holds.rejected", rejected, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("holds.reconciled", reconciled, LongAdder::sum).register(meterRegistry);
+    }
+
+    /**
+     * Holds the amount out of the account's available balance, in memory only, once the account is
+     * found to belong to the user and be active. Record it with {@link #record} when the order has its
+     * id. If the surrounding transaction rolls back the hold is given back; outside a transaction give
+     * it back with {@link #cancelReservation} if the order is not placed.
+     */
+    public void reserve(Long accountId, Long userId, BigDecimal amount) {
+        BalanceBook.Entry entry = accountService.applyInMemory(accountId, userId, BigDecimal.ZERO, BigDecimal.ZERO);
+        long held = FixedPoint.fromBigDecimal(amount);
+        if (!entry.tryHold(held)) {
+            rejected.increment();
+            throw new InsufficientFundsException("Insufficient funds for order");
+        }
+        reserved.increment();
+        TransactionCallbacks.afterRollback(() -> entry.release(held));
+    }
+
+    public void cancelReservation(Long accountId, BigDecimal amount) {
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(accountId);
+        if (entry != null) {
+            entry.release(FixedPoint.fromBigDecimal(amount));
+        }
+    }
+
+    public Hold record(Long accountId, String referenceType, Long referenceId, BigDecimal amount) {
+        Hold hold = new Hold();
+        hold.setAccount(accountRepository.getReferenceById(accountId));
+        hold.setReferenceType(referenceType);
+        hold.setReferenceId(referenceId);
+        hold.setAmount(amount);
+        hold.setStatus("ACTIVE");
+        return holdRepository.save(hold);
+    }
+
+    /**
+     * Releases a cancelled order's hold back to the available balance once the release commits. An
+     * order placed before holds were kept has none and releases nothing.
+     */
+    @Transactional
+    public void release(String referenceType, Long referenceId) {
+        release(referenceType, List.of(referenceId));
+    }
+
+    @Transactional
+    public void release(String referenceType, Collection<Long> referenceIds) {
+        List<Hold> holds = holdRepository.findByReferenceTypeAndReferenceIdInAndStatus(referenceType,
+                referenceIds, "ACTIVE");
+        for (Hold hold : holds) {
+            hold.release();
+            BalanceBook.Entry entry = accountService.getBalanceBook().find(hold.getAccount().getId());
+            if (entry != null) {
+                long amount = FixedPoint.fromBigDecimal(hold.getAmount());
+                TransactionCallbacks.afterCommit(() -> entry.release(amount));
+            }
+        }
+        holdRepository.saveAll(holds);
+    }
+
+    /**
+     * Converts the holds of filled orders, keyed by order id, into their fills' balance changes: a
+     * debit of the cost for a buy, a credit for a sell. The account rows get the net change per account
+     * as one batch of guarded updates, and the book settles once that commits, so a rolled-back batch
+     * can be converted again without settling twice.
+     */
+    @Transactional
+    public void convert(String referenceType, Map<Long, BigDecimal> changes) {
+        List<Hold> holds = holdRepository.findByReferenceTypeAndReferenceIdInAndStatus(referenceType,
+                changes.keySet(), "ACTIVE");
+        Map<Long, BigDecimal> balanceChanges = new HashMap<>();
+        for (Hold hold : holds) {
+            hold.convert();
+            Long accountId = hold.getAccount().getId();
+            BigDecimal change = changes.get(hold.getReferenceId());
+            BalanceBook.Entry entry = accountService.getBalanceBook().find(accountId);
+            if (entry != null) {
+                long amount = FixedPoint.fromBigDecimal(hold.getAmount());
+                long settled = FixedPoint.fromBigDecimal(change);
+                TransactionCallbacks.afterCommit(() -> entry.settle(amount, settled));
+            }
+            balanceChanges.merge(accountId, change, BigDecimal::add);
+        }
+        // Flushed first: the guarded balance update counts the holds still active in the table
+        holdRepository.saveAllAndFlush(holds);
+        if (!balanceChanges.isEmpty()) {
+            accountService.writeBackBalances(balanceChanges);
+        }
+    }
+
+    /**
+     * Compares every account in the book with its stored balance and active holds, a batch of accounts
+     * per query, and repairs those that differ the same way as on the last pass. Returns the number
+     * repaired.
+     */
+    @Scheduled(fixedDelayString = "${trading.holds.reconcile.interval-ms:60000}")
+    public synchronized int reconcile() {
+        List<BalanceBook.Entry> entries = new ArrayList<>();
+        accountService.getBalanceBook().forEach(entries::add);
+        Map<Long, Drift> drifts = new HashMap<>();
+        int repaired = 0;
+        for (int from = 0; from < entries.size(); from += reconcileBatchSize) {
+            List<BalanceBook.Entry> batch = entries.subList(from, Math.min(entries.size(), from + reconcileBatchSize));
+            List<Long> accountIds = new ArrayList<>(batch.size());
+            for (BalanceBook.Entry entry : batch) {
+                accountIds.add(entry.accountId());
+            }
+            Map<Long, Long> balances = byAccount(accountRepository.findBalances(accountIds));
+            Map<Long, Long> held = byAccount(holdRepository.sumActiveByAccountIds(accountIds));
+            for (BalanceBook.Entry entry : batch) {
+                Long balance = balances.get(entry.accountId());
+                if (balance == null) {
+                    continue;
+                }
+                Drift drift = new Drift(entry.balance() - entry.unwritten() - balance, entry.held() - held.getOrDefault(entry.accountId(), 0L));
+                if (drift.balance() == 0 && drift.held() == 0) {
+                    continue;
+                }
+                if (!drift.equals(lastDrifts.get(entry.accountId()))) {
+                    drifts.put(entry.accountId(), drift);
+                    continue;
+                }
+                entry.release(drift.held());
+                entry.apply(-drift.balance());
+                reconciled.increment();
+                repaired++;
+                System.err.println("Reconciled account " + entry.accountId() + ": in-memory balance was off by "
+                        + FixedPoint.toBigDecimal(drift.balance()) + ", held by " + FixedPoint.toBigDecimal(drift.held()));
+            }
+        }
+        lastDrifts = drifts;
+        return repaired;
+    }
+
+    private static Map<Long, Long> byAccount(Collection<Object[]> rows) {
+        Map<Long, Long> amounts = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            amounts.put((Long) row[0], FixedPoint.fromBigDecimal((BigDecimal) row[1]));
+        }
+        return amounts;
+    }
+
+    private record Drift(long balance, long held) {
+    }
+}
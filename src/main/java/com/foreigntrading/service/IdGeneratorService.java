@@ -0,0 +1,105 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style ids for reference and account numbers, unique without asking the database: 41 bits
+ * of milliseconds since 2024-01-01, 10 bits of node id, unique per running instance, and 12 bits of
+ * sequence within the millisecond. Ids only ever grow on a node, so the fixed-width text forms sort in
+ * the order they were issued. A millisecond's 4096 ids are handed out by compare-and-set; when they run
+ * out, or the clock steps back, the generator carries on from the last millisecond it used rather than
+ * waiting.
+ * <p>
+ * trading.ids.node-id has no default outside the dev and test profiles, so two instances cannot both
+ * start on node 0 by omission. A clock that steps back across a restart is covered by starting after
+ * the highest number already stored, and the unique constraints on both columns catch anything else.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdGeneratorService {
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    // Crockford's base32: no I, L, O or U, so numbers read out or typed back are not mistaken
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int TEXT_LENGTH = 13;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+
+    @Value("${trading.ids.node-id:#{null}}")
+    private Long nodeId;
+
+    // Milliseconds since the epoch above the sequence of the last id issued
+    private final AtomicLong last = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null) {
+            throw new IllegalStateException("trading.ids.node-id must be set, unique per running instance");
+        }
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalStateException("trading.ids.node-id must be between 0 and " + MAX_NODE + ": " + nodeId);
+        }
+        resumeAfter(accountRepository.findHighestAccountNumber(TEXT_LENGTH));
+        resumeAfter(transactionRepository.findHighestReferenceNumber(TEXT_LENGTH));
+    }
+
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long millis = System.currentTimeMillis() - EPOCH_MILLIS;
+            long next = millis > previous >>> SEQUENCE_BITS ? millis << SEQUENCE_BITS : previous + 1;
+            if (last.compareAndSet(previous, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | nodeId << SEQUENCE_BITS
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // For reference and account numbers alike
+    public String nextNumber() {
+        return format(nextId());
+    }
+
+    // Issues nothing in or before the millisecond of a number already stored, by any node
+    private void resumeAfter(String number) {
+        if (number == null) {
+            return;
+        }
+        long millis = parse(number) >>> (NODE_BITS + SEQUENCE_BITS);
+        last.accumulateAndGet(millis << SEQUENCE_BITS | SEQUENCE_MASK, Math::max);
+    }
+
+    // Thirteen base32 digits hold any 63-bit id; fixed width keeps text order equal to id order
+    static String format(long id) {
+        char[] text = new char[TEXT_LENGTH];
+        for (int i = TEXT_LENGTH - 1; i >= 0; i--) {
+            text[i] = DIGITS[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(text);
+    }
+
+    static long parse(String number) {
+        long id = 0;
+        for (int i = 0; i < number.length(); i++) {
+            int digit = Arrays.binarySearch(DIGITS, number.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a generated number: " + number);
+            }
+            id = id << 5 | digit;
+        }
+        return id;
+    }
+}
@@ -1,22 +1,25 @@
 package com.foreigntrading.service;
 
+import com.foreigntrading.marketdata.EncodedSnapshot;
+import com.foreigntrading.marketdata.Timeframe;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 public class MarketDataService {
     private final RestTemplate restTemplate;
-    private final AlertService alertService;
-    private final TradeService tradeService;
+    private final RateBookService rateBookService;
+    private final TickHistoryService tickHistoryService;
+    private final CandleService candleService;
+    private final TechnicalIndicatorService technicalIndicatorService;
+    private final MarketOverviewService marketOverviewService;
 
     @Value("${marketdata.api.key}")
     private String apiKey;
@@ -24,78 +27,31 @@ public class MarketDataService {
     @Value("${marketdata.api.url}")
     private String apiUrl;
 
-    private final Map<String, BigDecimal> exchangeRates = new ConcurrentHashMap<>();
-    private final Map<String, LocalDateTime> lastUpdateTimes = new ConcurrentHashMap<>();
-
-    @Scheduled(fixedRate = 1000) // Update every second
-    public void updateExchangeRates() {
-        try {
-            // TODO: Implement actual API call to get real-time exchange rates
-            // This is a placeholder implementation
-            updateRate("EUR/USD", new BigDecimal("1.1234"));
-            updateRate("GBP/USD", new BigDecimal("1.3456"));
-            updateRate("USD/JPY", new BigDecimal("110.12"));
-            updateRate("AUD/USD", new BigDecimal("0.7654"));
-            updateRate("USD/CAD", new BigDecimal("1.2345"));
-        } catch (Exception e) {
-            // Log error and handle gracefully
-            System.err.println("Error updating exchange rates: " + e.getMessage());
-        }
-    }
-
-    private void updateRate(String pair, BigDecimal rate) {
-        exchangeRates.put(pair, rate);
-        lastUpdateTimes.put(pair, LocalDateTime.now());
-    }
-
     public BigDecimal getExchangeRate(String baseCurrency, String quoteCurrency) {
-        String pair = baseCurrency + "/" + quoteCurrency;
-        BigDecimal rate = exchangeRates.get(pair);
-        
-        if (rate == null) {
-            throw new IllegalStateException("Exchange rate not available for " + pair);
-        }
-
-        LocalDateTime lastUpdate = lastUpdateTimes.get(pair);
-        if (lastUpdate == null || lastUpdate.isBefore(LocalDateTime.now().minusMinutes(5))) {
-            throw new IllegalStateException("Exchange rate data is stale for " + pair);
-        }
-
-        return rate;
+        return rateBookService.getExchangeRate(baseCurrency, quoteCurrency);
     }
 
     public Map<String, BigDecimal> getAllExchangeRates() {
-        return new ConcurrentHashMap<>(exchangeRates);
+        return rateBookService.snapshot().rates();
     }
 
-    public void checkAlertsAndOrders(String baseCurrency, String quoteCurrency) {
-        BigDecimal currentRate = getExchangeRate(baseCurrency, quoteCurrency);
-        
-        // Check alerts for all users
-        // TODO: Implement user iteration logic
-        Long userId = 1L; // Placeholder
-        alertService.checkAndTriggerAlerts(userId, baseCurrency, quoteCurrency, currentRate);
-        
-        // Check stop-loss and take-profit orders
-        tradeService.checkAndExecuteStopLossOrders(userId, currentRate);
-        tradeService.checkAndExecuteTakeProfitOrders(userId, currentRate);
+    public EncodedSnapshot getMarketOverview() {
+        return marketOverviewService.current();
     }
 
-    public Map<String, Object> getMarketOverview() {
-        // TODO: Implement market overview data retrieval
+    public Map<String, Object> getHistoricalData(String baseCurrency, String quoteCurrency, String timeframe) {
         return Map.of(
-            "timestamp", LocalDateTime.now(),
-            "rates", exchangeRates,
-            "lastUpdate", lastUpdateTimes
+            "pair", baseCurrency + "/" + quoteCurrency,
+            "timeframe", timeframe,
+            "data", tickHistoryService.getHistory(baseCurrency, quoteCurrency, timeframe)
         );
     }
 
-    public Map<String, Object> getHistoricalData(String baseCurrency, String quoteCurrency, String timeframe) {
-        // TODO: Implement historical data retrieval
+    public Map<String, Object> getCandles(String baseCurrency, String quoteCurrency, String timeframe, int limit) {
         return Map.of(
             "pair", baseCurrency + "/" + quoteCurrency,
             "timeframe", timeframe,
-            "data", "Historical data placeholder"
+            "candles", candleService.getChartData(baseCurrency, quoteCurrency, timeframe, limit)
         );
     }
 
@@ -108,10 +64,10 @@ public class MarketDataService {
     }
 
     public Map<String, Object> getTechnicalIndicators(String baseCurrency, String quoteCurrency) {
-        // TODO: Implement technical indicators calculation
         return Map.of(
             "pair", baseCurrency + "/" + quoteCurrency,
-            "indicators", "Technical indicators placeholder"
+            "timeframe", Timeframe.M5.getLabel(),
+            "indicators", technicalIndicatorService.getIndicators(baseCurrency, quoteCurrency, Timeframe.M5)
         );
     }
 } 
\ No newline at end of file
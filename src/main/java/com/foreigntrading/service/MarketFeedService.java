@@ -0,0 +1,57 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.MarketDataFeed;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MarketFeedService {
+    private final List<MarketDataFeed> feeds;
+
+    // "provider", "simulator" or "none"
+    @Value("${marketdata.feed.type:provider}")
+    private String feedType = "provider";
+
+    private volatile MarketDataFeed activeFeed;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if ("none".equalsIgnoreCase(feedType) || activeFeed != null) {
+            return;
+        }
+        MarketDataFeed feed = findFeed(feedType);
+        if (feed == null) {
+            throw new IllegalStateException("Unknown market data feed: " + feedType);
+        }
+        feed.start();
+        activeFeed = feed;
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (activeFeed != null) {
+            activeFeed.stop();
+            activeFeed = null;
+        }
+    }
+
+    public MarketDataFeed getActiveFeed() {
+        return activeFeed;
+    }
+
+    public MarketDataFeed findFeed(String name) {
+        for (MarketDataFeed feed : feeds) {
+            if (feed.getName().equalsIgnoreCase(name)) {
+                return feed;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,379 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Trade;
+import com.foreigntrading.entity.Transaction;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.BalanceBook;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.TradeRepository;
+import com.foreigntrading.repository.TransactionRepository;
+import com.foreigntrading.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MARKET order execution: an order fills on submission at the rate book's current rate, once the
+ * account's ownership, status and funds check out against the in-memory balances of
+ * {@link AccountService}. The caller gets the executed trade straight away; the trade row, its TRADE
+ * transaction and the balance change are queued and written back in batches, and the trade's id is
+ * assigned then.
+ * <p>
+ * Every execution is logged to the {@link EngineJournalService} before its trade is returned and marked
+ * settled there once written back, so executions confirmed but not yet written survive a restart: engine
+ * recovery hands them back through {@link #restoreExecution} and {@link #resumeRestored}. Until written,
+ * their balance changes are marked unwritten in the book, which keeps the reconciliation in
+ * {@link HoldService} from reverting them.
+ * <p>
+ * Each batch is written in one transaction, so its trades, transactions and balance changes commit
+ * or roll back together. Executions are never given up on. When a batch fails, its executions are
+ * retried one per transaction, at once if an account refused its change, so the rest of the batch is
+ * not held back, or after a backoff otherwise. Executions that fail on their own are retried with a
+ * backoff that doubles from trading.market-orders.persistence.retry-initial-ms up to retry-max-ms.
+ * marketorders.persistence.failures counts failed attempts and marketorders.persistence.retrying the
+ * executions waiting for a retry.
+ */
+@Service
+@RequiredArgsConstructor
+public class MarketOrderService {
+    private final TradeRepository tradeRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final UserRepository userRepository;
+    private final AccountService accountService;
+    private final RateBookService rateBookService;
+    private final CurrencyPairRegistry pairRegistry;
+    private final EngineJournalService engineJournal;
+    private final MeterRegistry meterRegistry;
+    private final TransactionOperations transactionOperations;
+
+    @Value("${trading.market-orders.persistence.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${trading.market-orders.persistence.retry-initial-ms:100}")
+    private long retryInitialMs = 100;
+
+    @Value("${trading.market-orders.persistence.retry-max-ms:30000}")
+    private long retryMaxMs = 30000;
+
+    private final Queue<Execution> pendingExecutions = new ConcurrentLinkedQueue<>();
+    // Executions not yet written back, by log sequence, for snapshots; untracked with the journal disabled
+    private final Map<Long, Execution> unsettled = new ConcurrentHashMap<>();
+    // Executions waiting for a retry, oldest first, and their backoff; only touched by the flusher
+    private final List<Execution> retrying = new ArrayList<>();
+    private long retryDelayMs;
+    private long nextRetryAt;
+    private volatile int retryingCount;
+    // Unsettled executions read back at recovery, by log sequence, until resumeRestored() queues them
+    private final Map<Long, RestoredExecution> restored = new TreeMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    private Timer placementTimer;
+    private DistributionSummary flushBatches;
+
+    @PostConstruct
+    public void init() {
+        placementTimer = Timer.builder("marketorders.placement").register(meterRegistry);
+        Gauge.builder("marketorders.persistence.queue", pendingExecutions, Queue::size).register(meterRegistry);
+        Gauge.builder("marketorders.persistence.retrying", this, service -> service.retryingCount).register(meterRegistry);
+        flushBatches = DistributionSummary.builder("marketorders.persistence.batch.size").register(meterRegistry);
+        FunctionCounter.builder("marketorders.persistence.failures", failures, LongAdder::sum).register(meterRegistry);
+    }
+
+    /**
+     * Fills a MARKET order at the current rate and returns the executed trade. A BUY pays the cost from
+     * the account and a SELL is paid it; either way the account must hold the cost, as for any other
+     * order. Nothing here waits for the database once the account has been used before, so the
+     * returned trade has no id, and no user or account reference, until its batch is written back;
+     * the write-back sets them on this same instance.
+     */
+    public Trade placeMarketOrder(Long userId, Long accountId, String baseCurrency, String quoteCurrency,
+                                  BigDecimal amount, String side) {
+        long start = System.nanoTime();
+        RateEntry rate = rateBookService.getEntry(baseCurrency, quoteCurrency);
+        BigDecimal cost = amount.multiply(rate.rate());
+        BigDecimal change = "BUY".equals(side) ? cost.negate() : cost;
+        BalanceBook.Entry balance = accountService.applyInMemory(accountId, userId, cost, change);
+        long sequence;
+        try {
+            sequence = engineJournal.marketExecuted(rate.pairId(), accountId, "BUY".equals(side), rate.fixedRate(),
+                    FixedPoint.fromBigDecimal(amount), userId);
+        } catch (RuntimeException e) {
+            balance.apply(-FixedPoint.fromBigDecimal(change));
+            throw e;
+        }
+
+        Trade trade = executedTrade(baseCurrency, quoteCurrency, amount, rate.rate(), side);
+        queue(new Execution(trade, userId, accountId, balance.currency(), change, sequence), balance);
+        placementTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return trade;
+    }
+
+    /**
+     * Writes queued executions back: the trades, their TRADE transactions and each account's net
+     * balance change, one bulk insert of each per batch and one transaction per batch. Executions due
+     * for a retry go first, each in a transaction of its own.
+     */
+    @Scheduled(fixedDelayString = "${trading.market-orders.persistence.flush-interval-ms:50}")
+    public synchronized int flushExecutions() {
+        int flushed = retryDue();
+        Execution execution;
+        while ((execution = pendingExecutions.poll()) != null) {
+            List<Execution> batch = new ArrayList<>(Math.min(batchSize, pendingExecutions.size() + 1));
+            do {
+                batch.add(execution);
+            } while (batch.size() < batchSize && (execution = pendingExecutions.poll()) != null);
+            flushBatches.record(batch.size());
+            RuntimeException failure = save(batch);
+            if (failure == null) {
+                flushed += batch.size();
+            } else if (failure instanceof InsufficientFundsException) {
+                // An account refused its change: write the rest now and keep only what fails on its own
+                flushed += saveEach(batch);
+            } else {
+                retrying.addAll(batch);
+            }
+        }
+        if (!retrying.isEmpty() && retryDelayMs == 0) {
+            backOff(retryInitialMs);
+        }
+        retryingCount = retrying.size();
+        if (flushed > 0) {
+            // Forces the settled marks out so a restart does not write the same executions again
+            engineJournal.flush();
+        }
+        return flushed;
+    }
+
+    public synchronized List<Execution> getRetrying() {
+        return List.copyOf(retrying);
+    }
+
+    /**
+     * Visits every execution not yet written back, including those read back at recovery and not
+     * yet resumed, as the operands of its log record.
+     */
+    public synchronized void forEachUnsettled(ExecutionConsumer consumer) {
+        for (Execution execution : unsettled.values()) {
+            Trade trade = execution.trade();
+            consumer.accept(execution.sequence(), pairRegistry.findPairId(trade.getBaseCurrency(), trade.getQuoteCurrency()),
+                    execution.accountId(), "BUY".equals(trade.getSide()), FixedPoint.fromBigDecimal(trade.getPrice()),
+                    FixedPoint.fromBigDecimal(trade.getAmount()), execution.userId());
+        }
+        restored.forEach((sequence, execution) -> consumer.accept(sequence, execution.pairId(), execution.accountId(),
+                execution.buy(), execution.price(), execution.amount(), execution.userId()));
+    }
+
+    // Recovery only: collects unsettled executions from the snapshot and log; a repeated sequence is one execution
+    public synchronized void restoreExecution(long sequence, int pairId, long accountId, boolean buy, long price,
+                                              long amount, long userId) {
+        restored.put(sequence, new RestoredExecution(pairId, accountId, buy, price, amount, userId));
+    }
+
+    public synchronized void restoreSettled(long sequence) {
+        restored.remove(sequence);
+    }
+
+    public synchronized void clearRestored() {
+        restored.clear();
+    }
+
+    /**
+     * Queues the executions restored at recovery for write-back again, in log order, and moves their
+     * accounts' in-memory balances by their changes, which the stored balances do not hold yet. Their
+     * trades are timestamped now. An execution whose account cannot be read stays restored, so later
+     * snapshots keep it. Returns the number queued.
+     */
+    public synchronized int resumeRestored() {
+        int resumed = 0;
+        for (Iterator<Map.Entry<Long, RestoredExecution>> it = restored.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, RestoredExecution> restoredEntry = it.next();
+            RestoredExecution execution = restoredEntry.getValue();
+            String side = execution.buy() ? "BUY" : "SELL";
+            BigDecimal amount = FixedPoint.toBigDecimal(execution.amount());
+            BigDecimal rate = FixedPoint.toBigDecimal(execution.price());
+            BigDecimal cost = amount.multiply(rate);
+            BigDecimal change = execution.buy() ? cost.negate() : cost;
+            BalanceBook.Entry balance;
+            try {
+                balance = accountService.reapplyInMemory(execution.accountId(), change);
+            } catch (RuntimeException e) {
+                System.err.println("Cannot resume market order execution " + restoredEntry.getKey() + " for account "
+                        + execution.accountId() + ": " + e.getMessage());
+                continue;
+            }
+            int pairId = execution.pairId();
+            Trade trade = executedTrade(pairRegistry.currencyCode(CurrencyPairRegistry.baseOf(pairId)),
+                    pairRegistry.currencyCode(CurrencyPairRegistry.quoteOf(pairId)), amount, rate, side);
+            queue(new Execution(trade, execution.userId(), execution.accountId(), balance.currency(), change,
+                    restoredEntry.getKey()), balance);
+            it.remove();
+            resumed++;
+        }
+        return resumed;
+    }
+
+    @PreDestroy
+    public void close() {
+        flushExecutions();
+    }
+
+    private void queue(Execution execution, BalanceBook.Entry balance) {
+        balance.addUnwritten(FixedPoint.fromBigDecimal(execution.change()));
+        if (execution.sequence() != 0) {
+            unsettled.put(execution.sequence(), execution);
+        }
+        pendingExecutions.add(execution);
+    }
+
+    private static Trade executedTrade(String baseCurrency, String quoteCurrency, BigDecimal amount, BigDecimal rate,
+                                       String side) {
+        Trade trade = new Trade();
+        trade.setBaseCurrency(baseCurrency);
+        trade.setQuoteCurrency(quoteCurrency);
+        trade.setAmount(amount);
+        trade.setPrice(rate);
+        trade.setOrderType("MARKET");
+        trade.setSide(side);
+        trade.setCreatedAt(LocalDateTime.now());
+        trade.execute(rate);
+        return trade;
+    }
+
+    // Retries the waiting executions once their backoff is over; stops early if the database itself is failing
+    private int retryDue() {
+        if (retrying.isEmpty() || System.currentTimeMillis() < nextRetryAt) {
+            return 0;
+        }
+        List<Execution> due = new ArrayList<>(retrying);
+        retrying.clear();
+        int saved = 0;
+        for (int i = 0; i < due.size(); i++) {
+            RuntimeException failure = save(List.of(due.get(i)));
+            if (failure == null) {
+                saved++;
+            } else if (failure instanceof InsufficientFundsException) {
+                retrying.add(due.get(i));
+            } else {
+                retrying.addAll(due.subList(i, due.size()));
+                break;
+            }
+        }
+        if (retrying.isEmpty()) {
+            retryDelayMs = 0;
+        } else {
+            backOff(Math.min(retryDelayMs * 2, retryMaxMs));
+        }
+        return saved;
+    }
+
+    private int saveEach(List<Execution> executions) {
+        int saved = 0;
+        for (Execution execution : executions) {
+            if (save(List.of(execution)) == null) {
+                saved++;
+            } else {
+                retrying.add(execution);
+            }
+        }
+        return saved;
+    }
+
+    private void backOff(long delayMs) {
+        retryDelayMs = Math.max(delayMs, 1);
+        nextRetryAt = System.currentTimeMillis() + delayMs;
+    }
+
+    // Null once the executions have committed, or why they did not
+    private RuntimeException save(List<Execution> executions) {
+        try {
+            transactionOperations.executeWithoutResult(status -> saveBatch(executions));
+        } catch (RuntimeException e) {
+            failures.increment();
+            System.err.println("Error persisting " + executions.size() + " market order executions, will retry: "
+                    + e.getMessage());
+            return e;
+        }
+        for (Execution execution : executions) {
+            BalanceBook.Entry balance = accountService.getBalanceBook().find(execution.accountId());
+            if (balance != null) {
+                balance.addUnwritten(-FixedPoint.fromBigDecimal(execution.change()));
+            }
+            if (execution.sequence() != 0) {
+                unsettled.remove(execution.sequence());
+                engineJournal.marketExecutionSettled(execution.sequence());
+            }
+        }
+        return null;
+    }
+
+    private void saveBatch(List<Execution> batch) {
+        List<Trade> trades = new ArrayList<>(batch.size());
+        Map<Long, BigDecimal> balanceChanges = new HashMap<>();
+        for (Execution execution : batch) {
+            Trade trade = execution.trade();
+            trade.setUser(userRepository.getReferenceById(execution.userId()));
+            trade.setAccount(accountRepository.getReferenceById(execution.accountId()));
+            trades.add(trade);
+            balanceChanges.merge(execution.accountId(), execution.change(), BigDecimal::add);
+        }
+        tradeRepository.insertAll(trades);
+
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (Execution execution : batch) {
+            Trade trade = execution.trade();
+            Transaction transaction = new Transaction();
+            transaction.setAccount(trade.getAccount());
+            transaction.setTransactionType("TRADE");
+            transaction.setAmount(execution.change());
+            transaction.setCurrency(execution.currency());
+            transaction.setStatus("COMPLETED");
+            transaction.setDescription("Trade execution: " + trade.getBaseCurrency() + "/" + trade.getQuoteCurrency());
+            transaction.setTrade(trade);
+            transaction.setCreatedAt(trade.getExecutedAt());
+            transaction.setCompletedAt(trade.getExecutedAt());
+            transactions.add(transaction);
+        }
+        transactionRepository.insertAll(transactions);
+        accountService.writeBackBalances(balanceChanges);
+    }
+
+    // sequence is the execution's engine log record, 0 with the journal disabled
+    public record Execution(Trade trade, long userId, long accountId, String currency, BigDecimal change,
+                            long sequence) {
+    }
+
+    @FunctionalInterface
+    public interface ExecutionConsumer {
+        void accept(long sequence, int pairId, long accountId, boolean buy, long price, long amount, long userId);
+    }
+
+    private record RestoredExecution(int pairId, long accountId, boolean buy, long price, long amount, long userId) {
+    }
+}
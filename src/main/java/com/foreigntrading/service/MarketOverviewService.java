@@ -0,0 +1,73 @@
+package com.foreigntrading.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foreigntrading.marketdata.EncodedSnapshot;
+import com.foreigntrading.marketdata.RateBookSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Market overview as pre-encoded JSON and gzip bytes, rebuilt at most once per rate book version and
+ * only when requested. Requests between two rate updates share one encoding.
+ */
+@Service
+@RequiredArgsConstructor
+public class MarketOverviewService {
+    // Versions restart at zero with the process; the prefix keeps old tags from matching new data
+    private static final String ETAG_PREFIX = "\"" + Long.toHexString(System.currentTimeMillis()) + "-";
+
+    private final RateBookService rateBookService;
+    private final ObjectMapper objectMapper;
+
+    private volatile EncodedSnapshot overview;
+
+    public EncodedSnapshot current() {
+        EncodedSnapshot cached = overview;
+        if (cached != null && cached.version() == rateBookService.version()) {
+            return cached;
+        }
+        synchronized (this) {
+            cached = overview;
+            if (cached != null && cached.version() == rateBookService.version()) {
+                return cached;
+            }
+            cached = encode(rateBookService.snapshot());
+            overview = cached;
+            return cached;
+        }
+    }
+
+    private EncodedSnapshot encode(RateBookSnapshot snapshot) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("version", snapshot.version());
+        body.put("rates", snapshot.rates());
+        body.put("lastUpdate", snapshot.lastUpdateTimes());
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            String etag = ETAG_PREFIX + snapshot.version();
+            return new EncodedSnapshot(snapshot.version(), json, etag + "\"", gzip(json), etag + "-gzip\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode market overview", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,427 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Order;
+import com.foreigntrading.exception.ResourceNotFoundException;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.OrderBook;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.repository.OrderRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LIMIT order matching: one {@link OrderBook} per pair, filled against crossing orders on placement and
+ * against the reference rate by the limit-order stage of the tick pipeline. Fills never wait for the
+ * database; they are queued and written back to {@link OrderRepository} in batches, an order being
+ * marked executed at its average fill price once it is completely filled. A batch of executions is
+ * written in one transaction and forgotten only once it commits; a failed one is retried on the next
+ * flush and counted in orderbook.persistence.failures. A cancelled order is settled the same way: it
+ * keeps whatever filled before the cancel took effect in its book, converting that much of its hold,
+ * and the rest of the hold is released. Each book is owned by its pair's
+ * {@link EventLoopService} loop, which makes every change to it without locking and logs it to the
+ * {@link EngineJournalService} as it goes, so the log orders a pair's changes as they happened.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderBookService {
+    private final OrderRepository orderRepository;
+    private final AccountService accountService;
+    private final HoldService holdService;
+    private final RateBookService rateBookService;
+    private final EngineJournalService engineJournal;
+    private final EventLoopService eventLoops;
+    private final MeterRegistry meterRegistry;
+    private final TransactionOperations transactionOperations;
+
+    @Value("${trading.order-book.persistence.batch-size:500}")
+    private int batchSize = 500;
+
+    private final AtomicReferenceArray<OrderBook> books = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final Queue<Fill> pendingFills = new ConcurrentLinkedQueue<>();
+    // Fills of orders not yet complete; only touched by the flushing thread
+    private final Map<Long, FillTotals> partialFills = new HashMap<>();
+    // Average prices of completely filled orders whose execution has not committed yet; flusher only
+    private final Map<Long, BigDecimal> unsavedExecutions = new HashMap<>();
+    // Cancelled orders whose settlement has not committed yet, with their fills if any; flusher only
+    private final Map<Long, FillTotals> unsavedCancels = new HashMap<>();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder persistenceFailures = new LongAdder();
+
+    private DistributionSummary flushBatches;
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("orderbook.fills", fills, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("orderbook.persistence.failures", persistenceFailures, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("orderbook.persistence.queue", pendingFills, Queue::size).register(meterRegistry);
+        flushBatches = DistributionSummary.builder("orderbook.persistence.batch.size").register(meterRegistry);
+    }
+
+    /**
+     * Rebuilds the books from every resting LIMIT order in the database, oldest first so time priority
+     * survives a restart; startup recovery falls back to this when there is no engine snapshot.
+     */
+    @Transactional(readOnly = true)
+    public int loadOrderBooks() {
+        List<Object[]> resting = orderRepository.findAllPendingLimitOrderLevels();
+        for (Object[] row : resting) {
+            int pairId = rateBookService.getPairRegistry().pairId((String) row[1], (String) row[2]);
+            submit(pairId, (Long) row[0], "BUY".equals(row[3]), FixedPoint.fromBigDecimal((BigDecimal) row[4]),
+                    FixedPoint.fromBigDecimal((BigDecimal) row[5]), false);
+        }
+        return resting.size();
+    }
+
+    /**
+     * Saves a LIMIT order and enters it in its pair's book, where it fills at once against crossing
+     * orders and, if the reference rate is already through its limit, against the rate. The order
+     * enters the book only once its row and hold commit, so no fill of it can reach the flusher first,
+     * and a rollback gives the hold back. This is the matched LIMIT path; LIMIT trades placed through
+     * {@link TradeService#createTrade} only rest.
+     */
+    @Transactional
+    public Order placeLimitOrder(Long accountId, String baseCurrency, String quoteCurrency,
+                                 BigDecimal amount, BigDecimal price, String side) {
+        int pairId = rateBookService.getPairRegistry().requirePairId(baseCurrency, quoteCurrency);
+        Account account = accountService.getAccountById(accountId);
+        BigDecimal cost = amount.multiply(price);
+        holdService.reserve(accountId, account.getUser().getId(), cost);
+
+        Order order = new Order();
+        order.setAccount(account);
+        order.setBaseCurrency(baseCurrency);
+        order.setQuoteCurrency(quoteCurrency);
+        order.setAmount(amount);
+        order.setPrice(price);
+        order.setOrderType("LIMIT");
+        order.setSide(side);
+        order.setStatus("PENDING");
+        order.setCreatedAt(LocalDateTime.now());
+        Order saved = orderRepository.save(order);
+        holdService.record(accountId, HoldService.ORDER, saved.getId(), cost);
+
+        // Booked, and so journalled, only once the row has committed; a rolled-back order never rests
+        Long orderId = saved.getId();
+        TransactionCallbacks.afterCommit(() -> submit(pairId, orderId, "BUY".equals(side),
+                FixedPoint.fromBigDecimal(price), FixedPoint.fromBigDecimal(amount), true));
+        return saved;
+    }
+
+    /**
+     * Cancels a resting order. The order leaves its book, and the cancel is logged, only once the
+     * cancel commits, so a rollback leaves it resting. Fills up to that point stand: the write-back then
+     * settles the order at what filled and releases the rest of its hold. An order no longer pending, or
+     * no longer resting because it has completely filled with the write-back still queued, cannot be
+     * cancelled.
+     */
+    @Transactional
+    public void cancelOrder(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (!"PENDING".equals(order.getStatus())) {
+            throw new IllegalStateException("Order is not resting: " + orderId);
+        }
+        // A pair the registry does not know has no book, so nothing of it rests
+        int pairId = rateBookService.getPairRegistry().findPairId(order.getBaseCurrency(), order.getQuoteCurrency());
+        boolean resting = pairId >= 0 && eventLoops.call(pairId, () -> {
+            OrderBook book = books.get(pairId);
+            return book != null && book.contains(orderId);
+        });
+        if (!resting) {
+            throw new IllegalStateException("Order is not resting: " + orderId);
+        }
+        order.cancel();
+        orderRepository.save(order);
+        TransactionCallbacks.afterCommit(() -> eventLoops.execute(pairId, () -> {
+            OrderBook book = books.get(pairId);
+            // Queued behind the order's fills, so the write-back settles it once they are counted
+            if (book != null && book.cancel(orderId)) {
+                long sequence = engineJournal.orderCancelled(pairId, orderId);
+                pendingFills.add(Fill.cancel(sequence, orderId));
+            }
+        }));
+    }
+
+    /**
+     * Fills the pair's resting orders whose limit the reference rate reached between low and high, on
+     * the pair's loop; the caller does not wait for it.
+     */
+    public void matchReference(int pairId, long low, long high, long last) {
+        eventLoops.execute(pairId, () -> {
+            OrderBook book = books.get(pairId);
+            if (book != null && !book.isEmpty()) {
+                book.matchReference(low, high, last, fillListener(pairId));
+            }
+        });
+    }
+
+    public boolean hasOrders(int pairId) {
+        OrderBook book = books.get(pairId);
+        return book != null && !book.isEmpty();
+    }
+
+    public OrderBook getOrderBook(int pairId) {
+        return books.get(pairId);
+    }
+
+    /**
+     * Visits every resting order, one book at a time on that book's loop.
+     */
+    public void forEachRestingOrder(RestingOrderConsumer consumer) {
+        for (int pairId = 0; pairId < books.length(); pairId++) {
+            OrderBook book = books.get(pairId);
+            if (book == null) {
+                continue;
+            }
+            int pair = pairId;
+            eventLoops.run(pairId, () -> book.forEachOrder(
+                    (orderId, buy, price, remaining) -> consumer.accept(pair, orderId, buy, price, remaining)));
+        }
+    }
+
+    /**
+     * Visits the fills accumulated for orders not yet completely filled: quantity, average price and
+     * the log sequence of the last fill counted.
+     */
+    public synchronized void forEachPartialFill(PartialFillConsumer consumer) {
+        partialFills.forEach((orderId, totals) -> consumer.accept(orderId, FixedPoint.fromBigDecimal(totals.quantity),
+                FixedPoint.fromBigDecimal(totals.averagePrice()), totals.lastSequence));
+    }
+
+    // Restores run on the pair's loop without waiting; awaitRestored() waits for all of them
+    public void restoreOrder(int pairId, long orderId, boolean buy, long price, long remaining) {
+        eventLoops.execute(pairId, () -> book(pairId).restore(orderId, buy, price, remaining));
+    }
+
+    /**
+     * Replays a logged fill: sets what the order still has open and queues the fill for write-back
+     * again. Write-back skips fills already counted and orders already executed, so replaying a fill
+     * that was persisted before the restart changes nothing.
+     */
+    public void restoreFill(long sequence, int pairId, long orderId, long price, long quantity, long remaining) {
+        eventLoops.execute(pairId, () -> book(pairId).restoreRemaining(orderId, remaining));
+        pendingFills.add(new Fill(sequence, orderId, price, quantity, remaining));
+    }
+
+    // Settles the cancel again too; settling one already written back changes nothing
+    public void restoreCancel(long sequence, int pairId, long orderId) {
+        eventLoops.execute(pairId, () -> {
+            book(pairId).cancel(orderId);
+            pendingFills.add(Fill.cancel(sequence, orderId));
+        });
+    }
+
+    public void awaitRestored() {
+        eventLoops.awaitIdle();
+    }
+
+    public synchronized void restorePartialFill(long orderId, long quantity, long averagePrice, long lastSequence) {
+        FillTotals totals = new FillTotals();
+        totals.add(averagePrice, quantity, lastSequence);
+        partialFills.put(orderId, totals);
+    }
+
+    // Empties every book and the write-back state, before a recovery starts over
+    public synchronized void clear() {
+        eventLoops.awaitIdle();
+        for (int pairId = 0; pairId < books.length(); pairId++) {
+            books.set(pairId, null);
+        }
+        pendingFills.clear();
+        partialFills.clear();
+        unsavedExecutions.clear();
+        unsavedCancels.clear();
+    }
+
+    /**
+     * Writes queued fills back: accumulates partial fills, marks completed orders executed at their
+     * average price and settles cancelled ones, one load and one save per batch. Executions that fail
+     * to commit are kept and retried first on the next flush, and the rest of the queue waits for them.
+     */
+    @Scheduled(fixedDelayString = "${trading.order-book.persistence.flush-interval-ms:50}")
+    public synchronized int flushFills() {
+        if (hasUnsaved() && !saveExecuted()) {
+            return 0;
+        }
+        int flushed = 0;
+        Fill fill;
+        while ((fill = pendingFills.poll()) != null) {
+            int batch = 0;
+            do {
+                if (fill.cancelled()) {
+                    unsavedCancels.put(fill.orderId(), partialFills.get(fill.orderId()));
+                } else {
+                    FillTotals totals = partialFills.computeIfAbsent(fill.orderId(), id -> new FillTotals());
+                    totals.add(fill.price(), fill.quantity(), fill.sequence());
+                    if (fill.remaining() == 0) {
+                        unsavedExecutions.put(fill.orderId(), totals.averagePrice());
+                    }
+                }
+                batch++;
+            } while (batch < batchSize && (fill = pendingFills.poll()) != null);
+            flushed += batch;
+            flushBatches.record(batch);
+            if (hasUnsaved() && !saveExecuted()) {
+                break;
+            }
+        }
+        return flushed;
+    }
+
+    private boolean hasUnsaved() {
+        return !unsavedExecutions.isEmpty() || !unsavedCancels.isEmpty();
+    }
+
+    private boolean saveExecuted() {
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                List<Long> orderIds = new ArrayList<>(unsavedExecutions.keySet());
+                orderIds.addAll(unsavedCancels.keySet());
+                List<Order> orders = orderRepository.findAllById(orderIds);
+                List<Order> settled = new ArrayList<>(orders.size());
+                Map<Long, BigDecimal> changes = new HashMap<>();
+                List<Long> released = new ArrayList<>();
+                for (Order order : orders) {
+                    // A cancel that lost the race with the order's last fill leaves it executed
+                    BigDecimal averagePrice = unsavedExecutions.get(order.getId());
+                    if (averagePrice != null && ("PENDING".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus()))) {
+                        order.execute(averagePrice);
+                    } else if (unsavedCancels.containsKey(order.getId()) && "CANCELLED".equals(order.getStatus())) {
+                        FillTotals filled = unsavedCancels.get(order.getId());
+                        if (filled == null) {
+                            released.add(order.getId());
+                            continue;
+                        }
+                        if (order.getExecutedAt() == null) {
+                            order.cancelPartiallyFilled(filled.quantity, filled.averagePrice());
+                        }
+                    } else {
+                        continue;
+                    }
+                    settled.add(order);
+                    changes.put(order.getId(), order.isBuyOrder() ? order.getTotalCost().negate() : order.getTotalCost());
+                }
+                orderRepository.saveAll(settled);
+                if (!changes.isEmpty()) {
+                    holdService.convert(HoldService.ORDER, changes);
+                }
+                if (!released.isEmpty()) {
+                    holdService.release(HoldService.ORDER, released);
+                }
+            });
+        } catch (RuntimeException e) {
+            persistenceFailures.increment();
+            System.err.println("Error persisting " + (unsavedExecutions.size() + unsavedCancels.size())
+                    + " order executions and cancels, retrying on the next flush: " + e.getMessage());
+            return false;
+        }
+        for (Long orderId : unsavedExecutions.keySet()) {
+            partialFills.remove(orderId);
+        }
+        for (Long orderId : unsavedCancels.keySet()) {
+            partialFills.remove(orderId);
+        }
+        unsavedExecutions.clear();
+        unsavedCancels.clear();
+        return true;
+    }
+
+    void submit(int pairId, long orderId, boolean buy, long price, long quantity, boolean matchReference) {
+        eventLoops.run(pairId, () -> {
+            OrderBook book = book(pairId);
+            OrderBook.FillListener listener = fillListener(pairId);
+            long resting = book.add(orderId, buy, price, quantity, listener);
+            if (resting > 0) {
+                engineJournal.orderRested(pairId, orderId, buy, price, resting);
+            }
+            RateEntry rate = matchReference ? rateBookService.findRate(pairId) : null;
+            if (rate != null && resting > 0) {
+                book.matchReference(rate.fixedRate(), rate.fixedRate(), rate.fixedRate(), listener);
+            }
+        });
+    }
+
+    private OrderBook book(int pairId) {
+        OrderBook book = books.get(pairId);
+        if (book == null) {
+            books.compareAndSet(pairId, null, new OrderBook(pairId));
+            book = books.get(pairId);
+        }
+        return book;
+    }
+
+    // Called on the book's loop, so the log sees fills in book order
+    private OrderBook.FillListener fillListener(int pairId) {
+        return (orderId, price, quantity, remaining) -> {
+            long sequence = engineJournal.orderFilled(pairId, orderId, price, quantity, remaining);
+            fills.increment();
+            pendingFills.add(new Fill(sequence, orderId, price, quantity, remaining));
+        };
+    }
+
+    @FunctionalInterface
+    public interface RestingOrderConsumer {
+        void accept(int pairId, long orderId, boolean buy, long price, long remaining);
+    }
+
+    @FunctionalInterface
+    public interface PartialFillConsumer {
+        void accept(long orderId, long quantity, long averagePrice, long lastSequence);
+    }
+
+    // A cancelled fill marks where the order left its book, after every fill of it
+    private record Fill(long sequence, long orderId, long price, long quantity, long remaining, boolean cancelled) {
+        Fill(long sequence, long orderId, long price, long quantity, long remaining) {
+            this(sequence, orderId, price, quantity, remaining, false);
+        }
+
+        static Fill cancel(long sequence, long orderId) {
+            return new Fill(sequence, orderId, 0, 0, 0, true);
+        }
+    }
+
+    private static final class FillTotals {
+        private BigDecimal notional = BigDecimal.ZERO;
+        private BigDecimal quantity = BigDecimal.ZERO;
+        private long lastSequence;
+
+        // A fill replayed from the log after it was already counted is skipped
+        private void add(long price, long filled, long sequence) {
+            if (sequence != 0 && sequence <= lastSequence) {
+                return;
+            }
+            lastSequence = Math.max(lastSequence, sequence);
+            BigDecimal amount = FixedPoint.toBigDecimal(filled);
+            notional = notional.add(FixedPoint.toBigDecimal(price).multiply(amount));
+            quantity = quantity.add(amount);
+        }
+
+        private BigDecimal averagePrice() {
+            return notional.divide(quantity, FixedPoint.SCALE, RoundingMode.HALF_EVEN);
+        }
+    }
+}
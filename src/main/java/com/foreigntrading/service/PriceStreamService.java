@@ -0,0 +1,383 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.websocket.BinaryPriceCodec;
+import com.foreigntrading.websocket.StreamSession;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes rate updates to subscribed WebSocket clients. A tick only flags its currency (or its pair,
+ * for a directly quoted cross) as changed, so its cost does not grow with the number of clients.
+ * Every flush interval the changed pairs are fanned out to their subscribers as pending bits and
+ * each client with pending updates gets one frame carrying the latest price of each pair. A client
+ * that is still receiving its previous frame keeps accumulating pending bits, so a slow consumer
+ * sees the newest prices rather than a growing backlog. Clients that negotiate the binary subprotocol
+ * get compact snapshot and delta records instead of JSON (see {@link BinaryPriceCodec}).
+ */
+@Service
+@RequiredArgsConstructor
+public class PriceStreamService {
+    private static final int PAIR_WORDS = CurrencyPairRegistry.MAX_PAIRS / Long.SIZE;
+
+    private final RateBookService rateBookService;
+    private final MeterRegistry meterRegistry;
+
+    // Also the conflation window: updates within one interval reach a client as one frame
+    @Value("${websocket.stream.flush-interval-ms:50}")
+    private long flushIntervalMillis = 50;
+
+    @Value("${websocket.stream.send-threads:4}")
+    private int sendThreads = 4;
+
+    // A client that takes longer than this to accept one frame is disconnected
+    @Value("${websocket.stream.send-time-limit-ms:5000}")
+    private int sendTimeLimitMillis = 5000;
+
+    @Value("${websocket.stream.buffer-size-limit:65536}")
+    private int bufferSizeLimit = 65536;
+
+    private final Map<String, StreamSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Set<StreamSession>> subscribers = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final AtomicLong changedCurrencies = new AtomicLong();
+    private final AtomicLongArray changedPairs = new AtomicLongArray(PAIR_WORDS);
+    private final Set<StreamSession> pendingSessions = ConcurrentHashMap.newKeySet();
+    private final AtomicReferenceArray<Fragment> fragments = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final AtomicReferenceArray<BinaryFragment> binaryFragments = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final AtomicReferenceArray<ByteBuffer> symbols = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LongAdder jsonBytes = new LongAdder();
+    private final LongAdder binaryBytes = new LongAdder();
+
+    private int pivotId;
+    private ScheduledExecutorService flusher;
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void init() {
+        pivotId = rateBookService.pivotCurrencyId();
+        flusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("price-stream-flush"));
+        sender = Executors.newFixedThreadPool(sendThreads, daemonThreads("price-stream-send"));
+        rateBookService.addListener(this::onRate);
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("websocket.stream.sessions", sessions, Map::size).register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.frames", framesSent, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.conflated", conflated, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.disconnects", slowDisconnects, LongAdder::sum)
+                .tag("reason", "slow").register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.bytes", jsonBytes, LongAdder::sum)
+                .tag("protocol", "json").register(meterRegistry);
+        FunctionCounter.builder("websocket.stream.bytes", binaryBytes, LongAdder::sum)
+                .tag("protocol", "binary").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    public StreamSession open(WebSocketSession session) {
+        boolean binary = BinaryPriceCodec.PROTOCOL.equals(session.getAcceptedProtocol());
+        StreamSession stream = new StreamSession(new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis,
+                bufferSizeLimit, ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP), binary);
+        sessions.put(session.getId(), stream);
+        return stream;
+    }
+
+    public StreamSession find(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public void close(String sessionId) {
+        StreamSession stream = sessions.remove(sessionId);
+        if (stream == null) {
+            return;
+        }
+        stream.forEachSubscription(pairId -> {
+            Set<StreamSession> set = subscribers.get(pairId);
+            if (set != null) {
+                set.remove(stream);
+            }
+        });
+        pendingSessions.remove(stream);
+    }
+
+    /**
+     * Subscribes the client and queues the current price so it does not wait for the next tick.
+     */
+    public void subscribe(StreamSession stream, int pairId) {
+        if (stream.subscribe(pairId)) {
+            subscribersOf(pairId).add(stream);
+        }
+        if (rateBookService.findRate(pairId) != null) {
+            stream.markPending(pairId);
+            pendingSessions.add(stream);
+        }
+    }
+
+    public void unsubscribe(StreamSession stream, int pairId) {
+        if (stream.unsubscribe(pairId)) {
+            Set<StreamSession> set = subscribers.get(pairId);
+            if (set != null) {
+                set.remove(stream);
+            }
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public void onRate(RateEntry entry) {
+        int base = CurrencyPairRegistry.baseOf(entry.pairId());
+        int quote = CurrencyPairRegistry.quoteOf(entry.pairId());
+        // A pivot leg moves every pair that contains its currency; any other quote only moves itself
+        if (quote == pivotId) {
+            setBit(changedCurrencies, base);
+        } else if (base == pivotId) {
+            setBit(changedCurrencies, quote);
+        } else {
+            int word = entry.pairId() >>> 6;
+            long mask = 1L << entry.pairId();
+            long current;
+            do {
+                current = changedPairs.get(word);
+            } while ((current & mask) == 0 && !changedPairs.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public void flush() {
+        long currencies = changedCurrencies.getAndSet(0);
+        long[] pairs = new long[PAIR_WORDS];
+        for (int i = 0; i < PAIR_WORDS; i++) {
+            pairs[i] = changedPairs.get(i) == 0 ? 0 : changedPairs.getAndSet(i, 0);
+        }
+
+        for (int pairId = 0; pairId < CurrencyPairRegistry.MAX_PAIRS; pairId++) {
+            Set<StreamSession> set = subscribers.get(pairId);
+            if (set == null || set.isEmpty()) {
+                continue;
+            }
+            boolean changed = (currencies >>> CurrencyPairRegistry.baseOf(pairId) & 1) != 0
+                    || (currencies >>> CurrencyPairRegistry.quoteOf(pairId) & 1) != 0
+                    || (pairs[pairId >>> 6] & 1L << pairId) != 0;
+            if (!changed) {
+                continue;
+            }
+            for (StreamSession stream : set) {
+                if (stream.markPending(pairId)) {
+                    conflated.increment();
+                }
+                pendingSessions.add(stream);
+            }
+        }
+
+        for (StreamSession stream : pendingSessions) {
+            if (stream.tryStartSend()) {
+                sender.execute(() -> deliver(stream));
+            } else if (stream.sendStartedMillis() != 0
+                    && System.currentTimeMillis() - stream.sendStartedMillis() > sendTimeLimitMillis) {
+                disconnectSlow(stream);
+            }
+        }
+    }
+
+    private void deliver(StreamSession stream) {
+        WebSocketSession session = stream.getSession();
+        try {
+            pendingSessions.remove(stream);
+            if (!session.isOpen()) {
+                close(session.getId());
+                return;
+            }
+            WebSocketMessage<?> frame = stream.isBinary() ? encodeBinary(stream) : encodeText(stream);
+            if (frame != null) {
+                stream.markSendStarted();
+                session.sendMessage(frame);
+                framesSent.increment();
+                if (frame instanceof TextMessage text) {
+                    // Frames are ASCII, so this is the byte count without encoding the payload again
+                    jsonBytes.add(text.getPayload().length());
+                } else {
+                    binaryBytes.add(frame.getPayloadLength());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The frame is lost for this client; its pairs resend on their next change
+            dropped.increment();
+            if (!session.isOpen()) {
+                close(session.getId());
+            }
+        } finally {
+            stream.finishSend();
+            if (stream.hasPending() && sessions.containsKey(session.getId())) {
+                pendingSessions.add(stream);
+            }
+        }
+    }
+
+    private TextMessage encodeText(StreamSession stream) {
+        StringBuilder frame = new StringBuilder(128).append("{\"type\":\"prices\",\"data\":[");
+        int start = frame.length();
+        stream.drainPending(pairId -> {
+            RateEntry entry = rateBookService.findRate(pairId);
+            if (entry != null) {
+                if (frame.length() > start) {
+                    frame.append(',');
+                }
+                frame.append(fragment(entry, pairId));
+            }
+        });
+        return frame.length() == start ? null : new TextMessage(frame.append("]}"));
+    }
+
+    private BinaryMessage encodeBinary(StreamSession stream) {
+        List<ByteBuffer> records = new ArrayList<>(2);
+        stream.drainPending(pairId -> {
+            RateEntry entry = rateBookService.findRate(pairId);
+            if (entry == null) {
+                return;
+            }
+            long sent = stream.sentSequence(pairId);
+            if (sent == entry.sequence()) {
+                return;
+            }
+            BinaryFragment fragment = binaryFragment(entry, pairId);
+            if (sent == 0) {
+                records.add(symbol(pairId));
+                records.add(fragment.snapshot());
+            } else if (fragment.delta() != null && sent == fragment.baseSequence()) {
+                records.add(fragment.delta());
+            } else {
+                records.add(fragment.snapshot());
+            }
+            stream.recordSent(pairId, entry.sequence());
+        });
+        return records.isEmpty() ? null : new BinaryMessage(BinaryPriceCodec.message(records));
+    }
+
+    // Each price is encoded once and shared by every client that receives it
+    private String fragment(RateEntry entry, int pairId) {
+        Fragment cached = fragments.get(pairId);
+        if (cached != null && cached.entry() == entry) {
+            return cached.json();
+        }
+        String json = "{\"pair\":\"" + rateBookService.getPairRegistry().symbol(pairId)
+                + "\",\"rate\":" + entry.rate().toPlainString()
+                + ",\"timestamp\":" + entry.timestampMillis()
+                + ",\"sequence\":" + entry.sequence() + "}";
+        fragments.set(pairId, new Fragment(entry, json));
+        return json;
+    }
+
+    // The delta is taken against the previously encoded price, so it is also built once per update
+    private BinaryFragment binaryFragment(RateEntry entry, int pairId) {
+        BinaryFragment cached = binaryFragments.get(pairId);
+        if (cached != null && cached.entry() == entry) {
+            return cached;
+        }
+        RateEntry base = cached == null || cached.entry().sequence() >= entry.sequence() ? null : cached.entry();
+        BinaryFragment fragment = new BinaryFragment(entry, base == null ? 0 : base.sequence(),
+                BinaryPriceCodec.snapshot(entry), base == null ? null : BinaryPriceCodec.delta(base, entry));
+        binaryFragments.set(pairId, fragment);
+        return fragment;
+    }
+
+    private ByteBuffer symbol(int pairId) {
+        ByteBuffer symbol = symbols.get(pairId);
+        if (symbol == null) {
+            symbol = BinaryPriceCodec.symbol(pairId, rateBookService.getPairRegistry().symbol(pairId));
+            symbols.set(pairId, symbol);
+        }
+        return symbol;
+    }
+
+    private void disconnectSlow(StreamSession stream) {
+        slowDisconnects.increment();
+        WebSocketSession session = stream.getSession();
+        close(session.getId());
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            System.err.println("Error closing slow stream session " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Price stream flush failed: " + e.getMessage());
+        }
+    }
+
+    private Set<StreamSession> subscribersOf(int pairId) {
+        Set<StreamSession> set = subscribers.get(pairId);
+        if (set == null) {
+            subscribers.compareAndSet(pairId, null, ConcurrentHashMap.newKeySet());
+            set = subscribers.get(pairId);
+        }
+        return set;
+    }
+
+    private static void setBit(AtomicLong bits, int index) {
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get();
+        } while ((current & mask) == 0 && !bits.compareAndSet(current, current | mask));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Fragment(RateEntry entry, String json) {
+    }
+
+    private record BinaryFragment(RateEntry entry, long baseSequence, ByteBuffer snapshot, ByteBuffer delta) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.MarketDataFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Polls the market data provider for the configured pivot pairs on a fixed interval.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProviderMarketDataFeed implements MarketDataFeed {
+    private final CurrencyApiService currencyApiService;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${alpha.vantage.api.poll-interval-ms:60000}")
+    private long pollIntervalMillis = 60000;
+
+    private ScheduledFuture<?> polling;
+
+    @Override
+    public String getName() {
+        return "provider";
+    }
+
+    @Override
+    public synchronized void start() {
+        if (polling == null) {
+            polling = taskScheduler.scheduleAtFixedRate(currencyApiService::updateExchangeRates,
+                    Duration.ofMillis(pollIntervalMillis));
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (polling != null) {
+            polling.cancel(false);
+            polling = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return polling != null;
+    }
+}
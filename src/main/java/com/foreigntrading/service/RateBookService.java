@@ -0,0 +1,175 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CrossRateMatrix;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.RateBookSnapshot;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.RateUpdateListener;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@Service
+@RequiredArgsConstructor
+public class RateBookService {
+    private final CurrencyPairRegistry pairRegistry;
+
+    @Value("${marketdata.rates.max-age-seconds:300}")
+    private long maxAgeSeconds = 300;
+
+    @Value("${marketdata.cross.pivot:USD}")
+    private String pivotCurrency = "USD";
+
+    private final AtomicReferenceArray<RateEntry> entries = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+    private final AtomicLong version = new AtomicLong();
+    private final List<RateUpdateListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile RateBookSnapshot snapshot;
+    private CrossRateMatrix crossRates;
+
+    @PostConstruct
+    public void init() {
+        crossRates = new CrossRateMatrix(pairRegistry.currencyId(pivotCurrency));
+    }
+
+    public void addListener(RateUpdateListener listener) {
+        listeners.add(listener);
+    }
+
+    public RateEntry publish(String baseCurrency, String quoteCurrency, BigDecimal rate) {
+        return publish(pairRegistry.pairId(baseCurrency, quoteCurrency), rate, MarketClock.epochNanos());
+    }
+
+    public RateEntry publish(String pair, BigDecimal rate) {
+        return publish(pairRegistry.pairId(pair), rate, MarketClock.epochNanos());
+    }
+
+    public RateEntry publish(int pairId, BigDecimal rate, long timestampNanos) {
+        return publish(pairId, rate, FixedPoint.fromBigDecimal(rate), timestampNanos);
+    }
+
+    // For feeds that already decode prices to fixed point
+    public RateEntry publish(int pairId, long fixedRate, long timestampNanos) {
+        return publish(pairId, FixedPoint.toBigDecimal(fixedRate), fixedRate, timestampNanos);
+    }
+
+    private RateEntry publish(int pairId, BigDecimal rate, long fixedRate, long timestampNanos) {
+        RateEntry previous;
+        RateEntry entry;
+        do {
+            previous = entries.get(pairId);
+            long sequence = previous == null ? 1 : previous.sequence() + 1;
+            entry = new RateEntry(pairId, rate, fixedRate, timestampNanos, sequence);
+        } while (!entries.compareAndSet(pairId, previous, entry));
+        apply(entry);
+        return entry;
+    }
+
+    /**
+     * Re-applies a journaled rate with its original timestamp and sequence. Ignored when the book
+     * already holds a newer update for the pair, so recovery never rolls a live rate back.
+     */
+    public boolean restore(int pairId, long fixedRate, long timestampNanos, long sequence) {
+        RateEntry entry = new RateEntry(pairId, FixedPoint.toBigDecimal(fixedRate), fixedRate, timestampNanos, sequence);
+        RateEntry previous;
+        do {
+            previous = entries.get(pairId);
+            if (previous != null && previous.timestampNanos() >= timestampNanos) {
+                return false;
+            }
+        } while (!entries.compareAndSet(pairId, previous, entry));
+        apply(entry);
+        return true;
+    }
+
+    private void apply(RateEntry entry) {
+        version.incrementAndGet();
+        crossRates.onSourceRate(entry);
+
+        for (RateUpdateListener listener : listeners) {
+            try {
+                listener.onRate(entry);
+            } catch (Exception e) {
+                System.err.println("Rate listener failed for " + pairRegistry.symbol(entry.pairId()) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public RateEntry findEntry(String baseCurrency, String quoteCurrency) {
+        int pairId = pairRegistry.findPairId(baseCurrency, quoteCurrency);
+        return pairId < 0 ? null : entries.get(pairId);
+    }
+
+    // Directly quoted rate if there is one, otherwise the rate triangulated through the pivot
+    public RateEntry findRate(int pairId) {
+        RateEntry entry = entries.get(pairId);
+        return entry != null ? entry : crossRates.find(pairId);
+    }
+
+    public RateEntry findEntry(int pairId) {
+        return entries.get(pairId);
+    }
+
+    public BigDecimal getExchangeRate(String baseCurrency, String quoteCurrency) {
+        return getEntry(baseCurrency, quoteCurrency).rate();
+    }
+
+    public RateEntry getEntry(String baseCurrency, String quoteCurrency) {
+        int pairId = pairRegistry.findPairId(baseCurrency, quoteCurrency);
+        RateEntry entry = pairId < 0 ? null : findRate(pairId);
+        if (entry == null) {
+            throw new IllegalStateException("Exchange rate not available for " + baseCurrency + "/" + quoteCurrency);
+        }
+        if (isStale(entry)) {
+            throw new IllegalStateException("Exchange rate data is stale for " + baseCurrency + "/" + quoteCurrency);
+        }
+        return entry;
+    }
+
+    public boolean isStale(RateEntry entry) {
+        return MarketClock.epochNanos() - entry.timestampNanos() > maxAgeSeconds * MarketClock.NANOS_PER_SECOND;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public RateBookSnapshot snapshot() {
+        RateBookSnapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current != null && current.version() == currentVersion) {
+            return current;
+        }
+        RateEntry[] active = new RateEntry[16];
+        int count = 0;
+        for (int pairId = 0; pairId < CurrencyPairRegistry.MAX_PAIRS; pairId++) {
+            RateEntry entry = entries.get(pairId);
+            if (entry != null) {
+                if (count == active.length) {
+                    active = Arrays.copyOf(active, count * 2);
+                }
+                active[count++] = entry;
+            }
+        }
+        current = new RateBookSnapshot(currentVersion, Arrays.copyOf(active, count), pairRegistry);
+        snapshot = current;
+        return current;
+    }
+
+    public int pivotCurrencyId() {
+        return crossRates.getPivotId();
+    }
+
+    public CurrencyPairRegistry getPairRegistry() {
+        return pairRegistry;
+    }
+}
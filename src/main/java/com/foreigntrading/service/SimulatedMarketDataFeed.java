@@ -0,0 +1,118 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.GbmPriceProcess;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.MarketDataFeed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offline feed that moves every configured pair along its own geometric Brownian motion path.
+ * A fixed seed makes runs reproducible, and the tick rate goes up to thousands of ticks per second
+ * per pair for load testing alerts, stop-loss execution and streaming.
+ */
+@Component
+@RequiredArgsConstructor
+public class SimulatedMarketDataFeed implements MarketDataFeed {
+    private final RateBookService rateBookService;
+    private final TickPipelineService tickPipelineService;
+    private final MeterRegistry meterRegistry;
+
+    // Pivot legs with their starting prices; crosses are triangulated by the rate book
+    @Value("${marketdata.simulator.pairs:EUR/USD:1.0850,GBP/USD:1.2650,USD/JPY:148.50,AUD/USD:0.6550,USD/CAD:1.3550,USD/CHF:0.8800,NZD/USD:0.6100}")
+    private String[] pairs = {"EUR/USD:1.0850"};
+
+    @Value("${marketdata.simulator.ticks-per-second:10}")
+    private int ticksPerSecond = 10;
+
+    // Annualized, as quoted for FX implied volatility
+    @Value("${marketdata.simulator.volatility:0.08}")
+    private double volatility = 0.08;
+
+    @Value("${marketdata.simulator.drift:0.0}")
+    private double drift;
+
+    @Value("${marketdata.simulator.seed:42}")
+    private long seed = 42;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Override
+    public String getName() {
+        return "simulator";
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (ticksPerSecond <= 0) {
+            throw new IllegalStateException("Simulator tick rate must be positive: " + ticksPerSecond);
+        }
+        int[] pairIds = new int[pairs.length];
+        GbmPriceProcess[] processes = new GbmPriceProcess[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            int separator = pairs[i].lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("Simulator pair must be PAIR:PRICE, got " + pairs[i]);
+            }
+            pairIds[i] = rateBookService.getPairRegistry().pairId(pairs[i].substring(0, separator).trim());
+            double initialPrice = Double.parseDouble(pairs[i].substring(separator + 1).trim());
+            processes[i] = new GbmPriceProcess(initialPrice, drift, volatility, 1.0 / ticksPerSecond, seed + i);
+        }
+
+        running = true;
+        worker = new Thread(() -> run(pairIds, processes), "market-simulator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run(int[] pairIds, GbmPriceProcess[] processes) {
+        Counter ticks = meterRegistry.counter("marketdata.feed.ticks", "feed", getName());
+        long interval = MarketClock.NANOS_PER_SECOND / ticksPerSecond;
+        long next = System.nanoTime();
+        while (running) {
+            long timestamp = MarketClock.epochNanos();
+            for (int i = 0; i < pairIds.length; i++) {
+                tickPipelineService.ingest(pairIds[i], FixedPoint.fromDouble(processes[i].next()), timestamp);
+            }
+            ticks.increment(pairIds.length);
+
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (wait < -MarketClock.NANOS_PER_SECOND) {
+                // More than a second behind: drop the backlog rather than replay it as a burst
+                next = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.IndicatorEngine;
+import com.foreigntrading.marketdata.IndicatorState;
+import com.foreigntrading.marketdata.Timeframe;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class TechnicalIndicatorService {
+    private final CandleService candleService;
+    private final RateBookService rateBookService;
+
+    private final IndicatorEngine engine = new IndicatorEngine();
+
+    @PostConstruct
+    public void init() {
+        candleService.subscribe(engine);
+    }
+
+    public boolean isReady(String baseCurrency, String quoteCurrency, Timeframe timeframe) {
+        IndicatorState state = findState(baseCurrency, quoteCurrency, timeframe);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            return state.isRsiReady();
+        }
+    }
+
+    /**
+     * Latest indicator values for the pair, or an empty map if no bar has closed yet.
+     * Indicators still inside their warm-up period are omitted.
+     */
+    public Map<String, Object> getIndicators(String baseCurrency, String quoteCurrency, Timeframe timeframe) {
+        Map<String, Object> indicators = new LinkedHashMap<>();
+        IndicatorState state = findState(baseCurrency, quoteCurrency, timeframe);
+        if (state == null) {
+            return indicators;
+        }
+        synchronized (state) {
+            indicators.put("bars", state.getCount());
+            indicators.put("close", state.getLastClose());
+            if (state.isSmaReady()) {
+                indicators.put("sma" + IndicatorState.SMA_PERIOD, state.getSma());
+                indicators.put("bollingerUpper", state.getBollingerUpper());
+                indicators.put("bollingerLower", state.getBollingerLower());
+            }
+            if (state.isEmaReady()) {
+                indicators.put("ema" + IndicatorState.EMA_PERIOD, state.getEma());
+            }
+            if (state.isRsiReady()) {
+                indicators.put("rsi" + IndicatorState.RSI_PERIOD, state.getRsi());
+            }
+            if (state.isMacdReady()) {
+                indicators.put("macd", state.getMacd());
+                indicators.put("macdSignal", state.getMacdSignal());
+                indicators.put("macdHistogram", state.getMacdHistogram());
+            }
+            if (state.isAtrReady()) {
+                indicators.put("atr" + IndicatorState.ATR_PERIOD, state.getAtr());
+            }
+        }
+        return indicators;
+    }
+
+    private IndicatorState findState(String baseCurrency, String quoteCurrency, Timeframe timeframe) {
+        int pairId = rateBookService.getPairRegistry().findPairId(baseCurrency, quoteCurrency);
+        return pairId < 0 ? null : engine.find(pairId, timeframe);
+    }
+}
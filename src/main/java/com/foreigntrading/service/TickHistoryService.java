@@ -0,0 +1,114 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.TickHistoryBuffer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@Service
+@RequiredArgsConstructor
+public class TickHistoryService {
+    private final RateBookService rateBookService;
+
+    // One week of per-second ticks per pair, about 9.7 MB off-heap each
+    @Value("${marketdata.history.capacity:604800}")
+    private int capacity = 604800;
+
+    @Value("${marketdata.history.max-points:2000}")
+    private int maxPoints = 2000;
+
+    private final AtomicReferenceArray<TickHistoryBuffer> buffers = new AtomicReferenceArray<>(CurrencyPairRegistry.MAX_PAIRS);
+
+    @PostConstruct
+    public void init() {
+        rateBookService.addListener(this::record);
+    }
+
+    public void record(RateEntry entry) {
+        bufferFor(entry.pairId()).append(entry.timestampNanos(), entry.fixedRate());
+    }
+
+    public TickHistoryBuffer findBuffer(String baseCurrency, String quoteCurrency) {
+        int pairId = rateBookService.getPairRegistry().findPairId(baseCurrency, quoteCurrency);
+        return pairId < 0 ? null : buffers.get(pairId);
+    }
+
+    public int query(String baseCurrency, String quoteCurrency, long fromNanos, long toNanos,
+                     TickHistoryBuffer.TickConsumer consumer) {
+        TickHistoryBuffer buffer = findBuffer(baseCurrency, quoteCurrency);
+        return buffer == null ? 0 : buffer.query(fromNanos, toNanos, consumer);
+    }
+
+    /**
+     * Ticks for the trailing {@code timeframe} window (e.g. "15m", "4h", "1d", "1w"), evenly
+     * thinned to at most {@code marketdata.history.max-points} points for charting.
+     */
+    public List<Map<String, Object>> getHistory(String baseCurrency, String quoteCurrency, String timeframe) {
+        TickHistoryBuffer buffer = findBuffer(baseCurrency, quoteCurrency);
+        if (buffer == null) {
+            return List.of();
+        }
+        long to = MarketClock.epochNanos();
+        long from = to - parseLookback(timeframe).toNanos();
+        int available = buffer.countBetween(from, to);
+        int stride = Math.max(1, (available + maxPoints - 1) / maxPoints);
+
+        List<Map<String, Object>> points = new ArrayList<>(Math.min(available, maxPoints));
+        int[] position = {0};
+        buffer.query(from, to, (timestamp, price) -> {
+            if (position[0]++ % stride == 0) {
+                points.add(Map.of(
+                    "timestamp", MarketClock.toLocalDateTime(timestamp),
+                    "price", FixedPoint.toBigDecimal(price)
+                ));
+            }
+        });
+        return points;
+    }
+
+    private TickHistoryBuffer bufferFor(int pairId) {
+        TickHistoryBuffer buffer = buffers.get(pairId);
+        if (buffer == null) {
+            buffers.compareAndSet(pairId, null, new TickHistoryBuffer(capacity));
+            buffer = buffers.get(pairId);
+        }
+        return buffer;
+    }
+
+    static Duration parseLookback(String timeframe) {
+        if (timeframe == null || timeframe.length() < 2) {
+            throw new IllegalArgumentException("Invalid timeframe: " + timeframe);
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(timeframe.substring(0, timeframe.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid timeframe: " + timeframe);
+        }
+        switch (Character.toLowerCase(timeframe.charAt(timeframe.length() - 1))) {
+            case 's':
+                return Duration.ofSeconds(amount);
+            case 'm':
+                return Duration.ofMinutes(amount);
+            case 'h':
+                return Duration.ofHours(amount);
+            case 'd':
+                return Duration.ofDays(amount);
+            case 'w':
+                return Duration.ofDays(amount * 7);
+            default:
+                throw new IllegalArgumentException("Invalid timeframe: " + timeframe);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.TickJournal;
+import com.foreigntrading.marketdata.RateUpdateListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+@RequiredArgsConstructor
+public class TickJournalService {
+    private final RateBookService rateBookService;
+
+    @Value("${marketdata.journal.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${marketdata.journal.directory:data/journal}")
+    private String directory = "data/journal";
+
+    // 64 MB holds two million ticks per segment
+    @Value("${marketdata.journal.segment-size-mb:64}")
+    private int segmentSizeMb = 64;
+
+    @Value("${marketdata.journal.recovery-window:1d}")
+    private String recoveryWindow = "1d";
+
+    private TickJournal journal;
+    private volatile long recoveredThroughNanos = Long.MIN_VALUE;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        journal = new TickJournal(Path.of(directory), segmentSizeMb * 1024 * 1024);
+        recoveredThroughNanos = journal.lastTimestamp();
+        rateBookService.addListener(this::record);
+    }
+
+    public void record(RateEntry entry) {
+        // Ticks restored from the journal during recovery are already on disk
+        if (entry.timestampNanos() > recoveredThroughNanos) {
+            journal.append(rateBookService.getPairRegistry().pairKey(entry.pairId()), entry.sequence(), entry.timestampNanos(), entry.fixedRate());
+        }
+    }
+
+    /**
+     * Rebuilds the rate book, tick history and candles from the journal tail once every listener is
+     * registered. Returns the number of ticks re-applied.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public int recover() {
+        if (journal == null) {
+            return 0;
+        }
+        long to = recoveredThroughNanos;
+        long from = to - TickHistoryService.parseLookback(recoveryWindow).toNanos();
+        CurrencyPairRegistry registry = rateBookService.getPairRegistry();
+        int[] restored = {0};
+        journal.replay(from, to, (pairKey, sequence, timestamp, price) -> {
+            if (rateBookService.restore(registry.pairIdForKey(pairKey), price, timestamp, sequence)) {
+                restored[0]++;
+            }
+        });
+        return restored[0];
+    }
+
+    /**
+     * Streams journaled ticks between the two timestamps. A {@code speed} of 1 reproduces the original
+     * spacing between ticks, 10 plays back ten times faster, and 0 or less delivers them without pausing.
+     */
+    public int replay(long fromNanos, long toNanos, double speed, RateUpdateListener consumer) {
+        if (journal == null) {
+            return 0;
+        }
+        CurrencyPairRegistry registry = rateBookService.getPairRegistry();
+        long[] firstTimestamp = {Long.MIN_VALUE};
+        long startedAt = System.nanoTime();
+        return journal.replay(fromNanos, toNanos, (pairKey, sequence, timestamp, price) -> {
+            if (speed > 0) {
+                pace(startedAt, firstTimestamp, timestamp, speed);
+            }
+            consumer.onRate(new RateEntry(registry.pairIdForKey(pairKey), FixedPoint.toBigDecimal(price), price,
+                    timestamp, sequence));
+        });
+    }
+
+    private static void pace(long startedAt, long[] firstTimestamp, long timestamp, double speed) {
+        if (firstTimestamp[0] == Long.MIN_VALUE) {
+            firstTimestamp[0] = timestamp;
+        }
+        long due = startedAt + (long) ((timestamp - firstTimestamp[0]) / speed);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    // Group commit: one force per interval covers every tick appended since the last one
+    @Scheduled(fixedDelayString = "${marketdata.journal.flush-interval-ms:200}")
+    public void flush() {
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    /**
+     * Deletes segments that fall entirely outside the recovery window, measured back from the newest
+     * journaled tick so a quiet feed never loses the history recovery would replay.
+     */
+    @Scheduled(fixedDelayString = "${marketdata.journal.retention-interval-ms:3600000}")
+    public int deleteExpiredSegments() {
+        if (journal == null) {
+            return 0;
+        }
+        long newest = journal.lastTimestamp();
+        if (newest == Long.MIN_VALUE) {
+            return 0;
+        }
+        return journal.deleteOlderThan(newest - TickHistoryService.parseLookback(recoveryWindow).toNanos());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing tick journal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.BatchPriceRange;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.TickEvent;
+import com.foreigntrading.marketdata.TickPipeline;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route from a feed tick to alerts, stop-loss/take-profit execution and LIMIT order matching: rate
+ * book, alert triggers, order triggers, limit orders, then hand-off of the fired work to a persistence thread. Trigger stages evaluate
+ * each touched pair once per batch for all users, so tick-to-trigger latency does not grow with the
+ * number of users, and nothing on the pipeline threads waits for a database write. Alert thresholds
+ * and stop-loss/take-profit levels come from the in-memory indexes in {@link AlertService} and
+ * {@link TradeService}.
+ * Latency from ingest to the end of each stage is recorded as marketdata.pipeline.latency{stage};
+ * its percentiles are configured under management.metrics.distribution.
+ */
+@Service
+@RequiredArgsConstructor
+public class TickPipelineService {
+    private final RateBookService rateBookService;
+    private final AlertService alertService;
+    private final TradeService tradeService;
+    private final OrderBookService orderBookService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketdata.pipeline.enabled:true}")
+    private boolean enabled = true;
+
+    // Power of two; bounds how far the feed can run ahead of the slowest stage
+    @Value("${marketdata.pipeline.buffer-size:8192}")
+    private int bufferSize = 8192;
+
+    // Fired work waiting for the persistence thread; when full the hand-off stage runs the work itself,
+    // which stalls the ring and pushes back on the feed instead of queueing without bound
+    @Value("${marketdata.pipeline.handoff-queue-capacity:10000}")
+    private int handoffQueueCapacity = 10000;
+
+    private final LongAdder alertsTriggered = new LongAdder();
+    private final LongAdder ordersTriggered = new LongAdder();
+    private final LongAdder handoffsInline = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private TickPipeline pipeline;
+    private ThreadPoolExecutor handoffExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        List<TickPipeline.Stage> stages = List.of(new RateBookStage(), new AlertStage(), new OrderStage(), new LimitOrderStage(),
+                new HandoffStage());
+        Timer[] latency = new Timer[stages.size()];
+        DistributionSummary[] batches = new DistributionSummary[stages.size()];
+        for (int i = 0; i < stages.size(); i++) {
+            String stage = stages.get(i).name();
+            latency[i] = Timer.builder("marketdata.pipeline.latency").tag("stage", stage).register(meterRegistry);
+            batches[i] = DistributionSummary.builder("marketdata.pipeline.batch.size").tag("stage", stage)
+                    .register(meterRegistry);
+        }
+        pipeline = new TickPipeline(bufferSize, stages, new TickPipeline.Monitor() {
+            @Override
+            public void onEvent(int stage, long nanosSinceIngest) {
+                latency[stage].record(nanosSinceIngest, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void onBatch(int stage, int size) {
+                batches[stage].record(size);
+            }
+        });
+        for (int i = 0; i < stages.size(); i++) {
+            int stage = i;
+            Gauge.builder("marketdata.pipeline.backlog", pipeline, p -> p.backlog(stage))
+                    .tag("stage", stages.get(i).name()).register(meterRegistry);
+        }
+        FunctionCounter.builder("marketdata.pipeline.triggered", alertsTriggered, LongAdder::sum)
+                .tag("type", "alert").register(meterRegistry);
+        FunctionCounter.builder("marketdata.pipeline.triggered", ordersTriggered, LongAdder::sum)
+                .tag("type", "order").register(meterRegistry);
+
+        handoffExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(handoffQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "tick-pipeline-persistence");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (work, executor) -> {
+                    handoffsInline.increment();
+                    if (!executor.isShutdown()) {
+                        work.run();
+                    }
+                });
+        Gauge.builder("marketdata.pipeline.handoff.queue", handoffExecutor, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+        FunctionCounter.builder("marketdata.pipeline.handoff.inline", handoffsInline, LongAdder::sum)
+                .register(meterRegistry);
+        FunctionCounter.builder("marketdata.pipeline.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        pipeline.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pipeline != null) {
+            pipeline.stop();
+            handoffExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Entry point for feed ticks. Without a pipeline the tick goes straight to the rate book and no
+     * triggers are evaluated; one arriving at a full ring after shutdown has stopped the pipeline is
+     * dropped and counted in marketdata.pipeline.dropped.
+     */
+    public void ingest(int pairId, long fixedRate, long timestampNanos) {
+        if (pipeline == null) {
+            rateBookService.publish(pairId, fixedRate, timestampNanos);
+            return;
+        }
+        if (!pipeline.publish(pairId, fixedRate, timestampNanos)) {
+            dropped.increment();
+        }
+    }
+
+    public TickPipeline getPipeline() {
+        return pipeline;
+    }
+
+    private final class RateBookStage implements TickPipeline.Stage {
+        @Override
+        public String name() {
+            return "rate-book";
+        }
+
+        @Override
+        public void onEvent(TickEvent event, boolean endOfBatch) {
+            RateEntry previous = rateBookService.findEntry(event.pairId());
+            RateEntry entry = rateBookService.publish(event.pairId(), event.fixedRate(), event.timestampNanos());
+            event.applied(entry, previous == null ? TickEvent.NO_PREVIOUS_RATE : previous.fixedRate());
+        }
+    }
+
+    /**
+     * Accumulates one price range per touched pair over a batch and evaluates it at the end of the
+     * batch. A pivot leg tick also moves every cross on its currency, so crosses that hold triggers
+     * are evaluated from the triangulated rate this stage last saw to the current one.
+     */
+    private abstract class TriggerStage implements TickPipeline.Stage {
+        private final BatchPriceRange range = new BatchPriceRange();
+        private final long[] crossRates = new long[CurrencyPairRegistry.MAX_PAIRS];
+        private final int pivotId = rateBookService.pivotCurrencyId();
+        private long movedCurrencies;
+
+        TriggerStage() {
+            Arrays.fill(crossRates, TickEvent.NO_PREVIOUS_RATE);
+        }
+
+        @Override
+        public void onEvent(TickEvent event, boolean endOfBatch) {
+            if (event.entry() != null) {
+                range.add(event.pairId(), event.previousRate(), event.fixedRate());
+                int base = CurrencyPairRegistry.baseOf(event.pairId());
+                int quote = CurrencyPairRegistry.quoteOf(event.pairId());
+                if (quote == pivotId) {
+                    movedCurrencies |= 1L << base;
+                } else if (base == pivotId) {
+                    movedCurrencies |= 1L << quote;
+                }
+            }
+            if (endOfBatch) {
+                addCrosses();
+                range.drain((pairId, low, high, last) -> onRange(event, pairId, low, high, last));
+            }
+        }
+
+        abstract boolean hasTriggers(int pairId);
+
+        abstract void onRange(TickEvent event, int pairId, long low, long high, long last);
+
+        private void addCrosses() {
+            int currencies = rateBookService.getPairRegistry().currencyCount();
+            while (movedCurrencies != 0) {
+                int moved = Long.numberOfTrailingZeros(movedCurrencies);
+                movedCurrencies &= movedCurrencies - 1;
+                for (int other = 0; other < currencies; other++) {
+                    if (other != moved && other != pivotId) {
+                        addCross(CurrencyPairRegistry.pairId(moved, other));
+                        addCross(CurrencyPairRegistry.pairId(other, moved));
+                    }
+                }
+            }
+        }
+
+        private void addCross(int pairId) {
+            if (hasTriggers(pairId)) {
+                RateEntry entry = rateBookService.findRate(pairId);
+                if (entry != null) {
+                    range.add(pairId, crossRates[pairId], entry.fixedRate());
+                    crossRates[pairId] = entry.fixedRate();
+                }
+            }
+        }
+    }
+
+    private final class AlertStage extends TriggerStage {
+        @Override
+        public String name() {
+            return "alerts";
+        }
+
+        @Override
+        boolean hasTriggers(int pairId) {
+            return alertService.hasTriggers(pairId);
+        }
+
+        @Override
+        void onRange(TickEvent event, int pairId, long low, long high, long last) {
+            alertService.fireTriggeredAlerts(pairId, low, high, alertId -> event.handOff(() -> triggerAlert(alertId)));
+        }
+    }
+
+    private final class OrderStage extends TriggerStage {
+        @Override
+        public String name() {
+            return "orders";
+        }
+
+        @Override
+        boolean hasTriggers(int pairId) {
+            return tradeService.hasTriggers(pairId);
+        }
+
+        @Override
+        void onRange(TickEvent event, int pairId, long low, long high, long last) {
+            BigDecimal executionPrice = FixedPoint.toBigDecimal(last);
+            tradeService.fireTriggeredOrders(pairId, low, high,
+                    tradeId -> event.handOff(() -> executeOrder(tradeId, executionPrice)));
+        }
+    }
+
+    // Fills go to the order book's own batched write-back rather than the hand-off stage
+    private final class LimitOrderStage extends TriggerStage {
+        @Override
+        public String name() {
+            return "limit-orders";
+        }
+
+        @Override
+        boolean hasTriggers(int pairId) {
+            return orderBookService.hasOrders(pairId);
+        }
+
+        @Override
+        void onRange(TickEvent event, int pairId, long low, long high, long last) {
+            orderBookService.matchReference(pairId, low, high, last);
+        }
+    }
+
+    private final class HandoffStage implements TickPipeline.Stage {
+        @Override
+        public String name() {
+            return "handoff";
+        }
+
+        @Override
+        public void onEvent(TickEvent event, boolean endOfBatch) {
+            for (Runnable work : event.handoffs()) {
+                handoffExecutor.execute(work);
+            }
+        }
+    }
+
+    private void triggerAlert(long alertId) {
+        try {
+            if (alertService.triggerAlertIfActive(alertId)) {
+                alertsTriggered.increment();
+            }
+        } catch (Exception e) {
+            // Also covers a failure before any transaction began, so no rollback callback was registered
+            alertService.getAlertIndex().rearm(alertId);
+            System.err.println("Error triggering alert " + alertId + ", re-armed: " + e.getMessage());
+        }
+    }
+
+    private void executeOrder(long tradeId, BigDecimal executionPrice) {
+        try {
+            if (tradeService.executeIfPending(tradeId, executionPrice)) {
+                ordersTriggered.increment();
+            }
+        } catch (Exception e) {
+            // Also covers a failure before any transaction began, so no rollback callback was registered
+            tradeService.getTriggerIndex().rearm(tradeId);
+            System.err.println("Error executing triggered order " + tradeId + ", re-armed: " + e.getMessage());
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.foreigntrading.service;
 
 import com.foreigntrading.entity.Trade;
-import com.foreigntrading.entity.Account;
 import com.foreigntrading.entity.User;
+import com.foreigntrading.repository.AccountRepository;
 import com.foreigntrading.repository.TradeRepository;
+import com.foreigntrading.repository.UserRepository;
 import com.foreigntrading.exception.ResourceNotFoundException;
-import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.PriceTriggerIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -15,37 +18,72 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
 
 @Service
 @RequiredArgsConstructor
 public class TradeService {
     private final TradeRepository tradeRepository;
-    private final AccountService accountService;
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
     private final UserService userService;
+    private final CurrencyPairRegistry pairRegistry;
+    private final EngineJournalService engineJournal;
+    private final MarketOrderService marketOrderService;
+    private final HoldService holdService;
+
+    // Stop-loss and take-profit levels of every pending order, kept in step with create/cancel/execute once they commit
+    private final PriceTriggerIndex triggerIndex = new PriceTriggerIndex(new PriceTriggerIndex.Listener() {
+        @Override
+        public void onAdd(long ownerId, int pairId, long level, int side) {
+            engineJournal.tradeTriggerAdded(ownerId, pairId, level, side);
+        }
+
+        @Override
+        public void onRemove(long ownerId) {
+            engineJournal.tradeTriggerRemoved(ownerId);
+        }
+    });
+
+    /**
+     * Loads every pending order's trigger levels from the database; startup recovery falls back to
+     * this when there is no engine snapshot.
+     */
+    @Transactional(readOnly = true)
+    public int loadTriggerIndex() {
+        triggerIndex.clear();
+        List<Object[]> levels = tradeRepository.findAllPendingTriggerLevels();
+        for (Object[] row : levels) {
+            // Stored orders were checked when placed, and the feed may not have seen their currencies yet
+            indexTriggers((Long) row[0], pairRegistry.pairId((String) row[1], (String) row[2]), (String) row[3],
+                    (BigDecimal) row[4], (BigDecimal) row[5]);
+        }
+        return levels.size();
+    }
 
+    /**
+     * Places a pending order without reading the user, and without reading the account once it is in
+     * the in-memory balances: ownership, status and funds are all checked as the cost is held, with at
+     * most one query on the account row, and the trade refers to its user and account by id. A MARKET
+     * order fills at once through {@link MarketOrderService} and is written back later, so the trade
+     * returned for one has no id yet.
+     */
     @Transactional
     public Trade createTrade(Long userId, Long accountId, String baseCurrency, String quoteCurrency,
                            BigDecimal amount, BigDecimal price, String orderType, String side,
                            BigDecimal stopLossPrice, BigDecimal takeProfitPrice) {
-        User user = userService.getUserById(userId);
-        Account account = accountService.getAccountById(accountId);
-
-        if (!account.getUser().getId().equals(userId)) {
-            throw new IllegalStateException("Account does not belong to user");
-        }
-
-        if (!account.isActive()) {
-            throw new IllegalStateException("Account is not active");
+        if ("MARKET".equals(orderType)) {
+            return marketOrderService.placeMarketOrder(userId, accountId, baseCurrency, quoteCurrency, amount, side);
         }
-
+        boolean triggered = "STOP_LOSS".equals(orderType) || "TAKE_PROFIT".equals(orderType);
+        int pairId = triggered ? pairRegistry.requirePairId(baseCurrency, quoteCurrency) : -1;
         BigDecimal totalCost = amount.multiply(price);
-        if (!accountService.hasSufficientFunds(accountId, totalCost)) {
-            throw new InsufficientFundsException("Insufficient funds for trade");
-        }
+        holdService.reserve(accountId, userId, totalCost);
 
         Trade trade = new Trade();
-        trade.setUser(user);
-        trade.setAccount(account);
+        trade.setUser(userRepository.getReferenceById(userId));
+        trade.setAccount(accountRepository.getReferenceById(accountId));
         trade.setBaseCurrency(baseCurrency);
         trade.setQuoteCurrency(quoteCurrency);
         trade.setAmount(amount);
@@ -57,7 +95,13 @@ public class TradeService {
         trade.setTakeProfitPrice(takeProfitPrice);
         trade.setCreatedAt(LocalDateTime.now());
 
-        return tradeRepository.save(trade);
+        Trade saved = tradeRepository.save(trade);
+        holdService.record(accountId, HoldService.TRADE, saved.getId(), totalCost);
+        if (triggered) {
+            Long tradeId = saved.getId();
+            TransactionCallbacks.afterCommit(() -> indexTriggers(tradeId, pairId, side, stopLossPrice, takeProfitPrice));
+        }
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -87,15 +131,55 @@ public class TradeService {
     @Transactional
     public void executeTrade(Long tradeId, BigDecimal executionPrice) {
         Trade trade = getTradeById(tradeId);
+        TransactionCallbacks.afterCommit(() -> triggerIndex.remove(tradeId));
         trade.execute(executionPrice);
         tradeRepository.save(trade);
+        convertHold(trade);
+    }
+
+    /**
+     * Reports every pending order on the pair, for every user, whose stop-loss or take-profit any
+     * fixed-point price between low and high reaches, and puts its triggers in flight until
+     * {@link #executeIfPending} settles it. Visits only the orders that fire.
+     */
+    public int fireTriggeredOrders(int pairId, long low, long high, LongConsumer consumer) {
+        return triggerIndex.fire(pairId, low, high, consumer);
+    }
+
+    public boolean hasTriggers(int pairId) {
+        return triggerIndex.hasTriggers(pairId);
+    }
+
+    public PriceTriggerIndex getTriggerIndex() {
+        return triggerIndex;
+    }
+
+    /**
+     * Executes a trade whose trigger fired, if it is still pending; re-checked under the transaction so a
+     * trigger that fires twice before the first save executes once. The fired trigger stays in flight
+     * until this commits and leaves the index, or rolls back and is re-armed.
+     */
+    @Transactional
+    public boolean executeIfPending(Long tradeId, BigDecimal executionPrice) {
+        TransactionCallbacks.afterRollback(() -> triggerIndex.rearm(tradeId));
+        Trade trade = getTradeById(tradeId);
+        boolean pending = "PENDING".equals(trade.getStatus());
+        if (pending) {
+            trade.execute(executionPrice);
+            tradeRepository.save(trade);
+            convertHold(trade);
+        }
+        TransactionCallbacks.afterCommit(() -> triggerIndex.remove(tradeId));
+        return pending;
     }
 
     @Transactional
     public void cancelTrade(Long tradeId) {
         Trade trade = getTradeById(tradeId);
+        TransactionCallbacks.afterCommit(() -> triggerIndex.remove(tradeId));
         trade.cancel();
         tradeRepository.save(trade);
+        holdService.release(HoldService.TRADE, tradeId);
     }
 
     @Transactional(readOnly = true)
@@ -116,23 +200,21 @@ public class TradeService {
         return tradeRepository.findRecentExecutedTrades(user);
     }
 
-    @Transactional
-    public void checkAndExecuteStopLossOrders(Long userId, BigDecimal currentPrice) {
-        List<Trade> pendingOrders = getPendingStopLossAndTakeProfitOrders(userId);
-        for (Trade trade : pendingOrders) {
-            if (trade.isStopLossTriggered(currentPrice)) {
-                executeTrade(trade.getId(), currentPrice);
-            }
-        }
+    // A BUY pays for what it bought and a SELL is paid, as for a MARKET order
+    private void convertHold(Trade trade) {
+        BigDecimal cost = trade.getAmount().multiply(trade.getPrice());
+        holdService.convert(HoldService.TRADE, Map.of(trade.getId(), "BUY".equals(trade.getSide()) ? cost.negate() : cost));
     }
 
-    @Transactional
-    public void checkAndExecuteTakeProfitOrders(Long userId, BigDecimal currentPrice) {
-        List<Trade> pendingOrders = getPendingStopLossAndTakeProfitOrders(userId);
-        for (Trade trade : pendingOrders) {
-            if (trade.isTakeProfitTriggered(currentPrice)) {
-                executeTrade(trade.getId(), currentPrice);
-            }
+    // A BUY stops out when the price falls to its stop and takes profit when it rises to its target; SELL is the mirror
+    private void indexTriggers(Long tradeId, int pairId, String side, BigDecimal stopLossPrice,
+                               BigDecimal takeProfitPrice) {
+        boolean buy = "BUY".equals(side);
+        if (stopLossPrice != null) {
+            triggerIndex.add(tradeId, pairId, FixedPoint.fromBigDecimal(stopLossPrice), !buy);
+        }
+        if (takeProfitPrice != null) {
+            triggerIndex.add(tradeId, pairId, FixedPoint.fromBigDecimal(takeProfitPrice), buy);
         }
     }
 } 
\ No newline at end of file
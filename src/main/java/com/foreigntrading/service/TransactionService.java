@@ -15,13 +15,13 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
     private final TransactionRepository transactionRepository;
     private final AccountService accountService;
+    private final IdGeneratorService idGenerator;
 
     @Transactional
     public Transaction createTransaction(Long accountId, String transactionType, BigDecimal amount,
@@ -44,7 +44,7 @@ public class TransactionService {
         transaction.setStatus("PENDING");
         transaction.setDescription(description);
         transaction.setPaymentMethod(paymentMethod);
-        transaction.setReferenceNumber(generateReferenceNumber());
+        transaction.setReferenceNumber(idGenerator.nextNumber());
         transaction.setCreatedAt(LocalDateTime.now());
 
         return transactionRepository.save(transaction);
@@ -98,6 +98,7 @@ public class TransactionService {
     @Transactional
     public void completeTransaction(Long transactionId) {
         Transaction transaction = getTransactionById(transactionId);
+        accountService.updateBalance(transaction.getAccount().getId(), transaction.getAmount());
         transaction.complete();
         transactionRepository.save(transaction);
     }
@@ -133,12 +134,4 @@ public class TransactionService {
         Account account = accountService.getAccountById(accountId);
         return transactionRepository.findRecentCompletedTransactions(account);
     }
-
-    private String generateReferenceNumber() {
-        String referenceNumber;
-        do {
-            referenceNumber = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-        } while (transactionRepository.findByReferenceNumber(referenceNumber).isPresent());
-        return referenceNumber;
-    }
 } 
\ No newline at end of file
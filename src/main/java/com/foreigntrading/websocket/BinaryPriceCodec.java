@@ -0,0 +1,83 @@
+package com.foreigntrading.websocket;
+
+import com.foreigntrading.marketdata.RateEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Wire format of the {@value #PROTOCOL} WebSocket subprotocol. A binary message is a sequence of
+ * big-endian records, each starting with its type byte:
+ * <pre>
+ * SYMBOL   type=1  pairId u16  length u8  ASCII symbol ("EUR/USD")
+ * SNAPSHOT type=2  pairId u16  sequence i64  price i64    timestamp i64 (epoch millis)
+ * DELTA    type=3  pairId u16  sequence i64  priceDelta i32  timestampDelta i32 (millis)
+ * </pre>
+ * Prices are fixed point with 8 decimals. A DELTA applies to the last price the client holds for the
+ * pair; the server only sends one when that price is the one the delta was encoded against, and a
+ * SNAPSHOT otherwise. Pair ids are only valid for the connection that announced them with SYMBOL.
+ */
+public final class BinaryPriceCodec {
+    public static final String PROTOCOL = "fx.binary.v1";
+    public static final String JSON_PROTOCOL = "fx.json.v1";
+
+    public static final byte SYMBOL = 1;
+    public static final byte SNAPSHOT = 2;
+    public static final byte DELTA = 3;
+
+    public static final int SNAPSHOT_SIZE = 1 + 2 + 8 + 8 + 8;
+    public static final int DELTA_SIZE = 1 + 2 + 8 + 4 + 4;
+
+    private BinaryPriceCodec() {
+    }
+
+    public static ByteBuffer symbol(int pairId, String symbol) {
+        byte[] ascii = symbol.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + 1 + ascii.length);
+        record.put(SYMBOL).putShort((short) pairId).put((byte) ascii.length).put(ascii);
+        return record.flip().asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer snapshot(RateEntry entry) {
+        ByteBuffer record = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        record.put(SNAPSHOT).putShort((short) entry.pairId()).putLong(entry.sequence())
+                .putLong(entry.fixedRate()).putLong(entry.timestampMillis());
+        return record.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * The change from {@code previous} to {@code entry}, or null when either delta does not fit in
+     * 32 bits and the client has to be sent a snapshot instead.
+     */
+    public static ByteBuffer delta(RateEntry previous, RateEntry entry) {
+        long priceDelta = entry.fixedRate() - previous.fixedRate();
+        long timeDelta = entry.timestampMillis() - previous.timestampMillis();
+        if (priceDelta != (int) priceDelta || timeDelta != (int) timeDelta) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(DELTA_SIZE);
+        record.put(DELTA).putShort((short) entry.pairId()).putLong(entry.sequence())
+                .putInt((int) priceDelta).putInt((int) timeDelta);
+        return record.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * One message out of shared, read-only records. A single record is sent as a view of the shared
+     * bytes; several are gathered into one buffer.
+     */
+    public static ByteBuffer message(List<ByteBuffer> records) {
+        if (records.size() == 1) {
+            return records.get(0).duplicate();
+        }
+        int length = 0;
+        for (ByteBuffer record : records) {
+            length += record.remaining();
+        }
+        ByteBuffer message = ByteBuffer.allocate(length);
+        for (ByteBuffer record : records) {
+            message.put(record.duplicate());
+        }
+        return message.flip();
+    }
+}
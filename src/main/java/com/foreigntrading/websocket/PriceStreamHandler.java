@@ -0,0 +1,95 @@
+package com.foreigntrading.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.service.PriceStreamService;
+import com.foreigntrading.service.RateBookService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Price stream endpoint. Clients send {@code {"action":"subscribe","pairs":["EUR/USD"]}} or
+ * {@code "unsubscribe"} and then receive {@code {"type":"prices","data":[...]}} frames, or binary
+ * records when they request the {@value BinaryPriceCodec#PROTOCOL} subprotocol on the handshake.
+ * Requests and error replies are JSON text in both cases.
+ */
+@Component
+@RequiredArgsConstructor
+public class PriceStreamHandler extends TextWebSocketHandler implements SubProtocolCapable {
+    private static final List<String> SUB_PROTOCOLS = List.of(BinaryPriceCodec.PROTOCOL, BinaryPriceCodec.JSON_PROTOCOL);
+
+    private final PriceStreamService priceStreamService;
+    private final RateBookService rateBookService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public List<String> getSubProtocols() {
+        return SUB_PROTOCOLS;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        priceStreamService.open(session);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        StreamSession stream = priceStreamService.find(session.getId());
+        if (stream == null) {
+            return;
+        }
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            sendError(stream, "Malformed request");
+            return;
+        }
+        String action = request.path("action").asText();
+        boolean subscribe = "subscribe".equals(action);
+        if (!subscribe && !"unsubscribe".equals(action)) {
+            sendError(stream, "Unknown action: " + action);
+            return;
+        }
+
+        CurrencyPairRegistry registry = rateBookService.getPairRegistry();
+        for (JsonNode pair : request.path("pairs")) {
+            String symbol = pair.asText();
+            int separator = symbol.indexOf('/');
+            // Only currencies the rate book already knows, so clients cannot fill the registry
+            int pairId = separator <= 0 ? -1
+                    : registry.findPairId(symbol.substring(0, separator), symbol.substring(separator + 1));
+            if (pairId < 0) {
+                sendError(stream, "Unknown currency pair: " + symbol);
+            } else if (subscribe) {
+                priceStreamService.subscribe(stream, pairId);
+            } else {
+                priceStreamService.unsubscribe(stream, pairId);
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        priceStreamService.close(session.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        priceStreamService.close(session.getId());
+    }
+
+    private void sendError(StreamSession stream, String error) throws IOException {
+        stream.getSession().sendMessage(new TextMessage(
+                objectMapper.createObjectNode().put("type", "error").put("message", error).toString()));
+    }
+}
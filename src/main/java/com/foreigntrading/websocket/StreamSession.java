@@ -0,0 +1,176 @@
+package com.foreigntrading.websocket;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Streaming state of one client: the pairs it subscribed to and the pairs with an update it has
+ * not been sent yet, both as bitsets over pair ids. A pending bit is the conflation point: however
+ * many updates arrive while the client is busy, it is sent the latest price once. Binary clients also
+ * track the sequence they last received per pair, which decides between a delta and a snapshot.
+ */
+public class StreamSession {
+    private static final int WORDS = CurrencyPairRegistry.MAX_PAIRS / Long.SIZE;
+
+    private final WebSocketSession session;
+    private final boolean binary;
+    private final AtomicLongArray subscriptions = new AtomicLongArray(WORDS);
+    private final AtomicLongArray pending = new AtomicLongArray(WORDS);
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private volatile long sendStartedMillis;
+
+    // Subscriptions are few per client, so a scan beats a map here
+    private int[] sentPairs = new int[4];
+    private long[] sentSequences = new long[4];
+    private int sentCount;
+
+    public StreamSession(WebSocketSession session, boolean binary) {
+        this.session = session;
+        this.binary = binary;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean subscribe(int pairId) {
+        return !setBit(subscriptions, pairId);
+    }
+
+    public boolean unsubscribe(int pairId) {
+        forgetSent(pairId);
+        return clearBit(subscriptions, pairId);
+    }
+
+    public boolean isSubscribed(int pairId) {
+        return (subscriptions.get(pairId >>> 6) & 1L << pairId) != 0;
+    }
+
+    public void forEachSubscription(IntConsumer consumer) {
+        forEachBit(subscriptions, false, consumer);
+    }
+
+    /**
+     * Marks an update for delivery and returns true if it replaced one still waiting to be sent.
+     */
+    public boolean markPending(int pairId) {
+        return setBit(pending, pairId);
+    }
+
+    public boolean hasPending() {
+        for (int i = 0; i < WORDS; i++) {
+            if (pending.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void drainPending(IntConsumer consumer) {
+        forEachBit(pending, true, consumer);
+    }
+
+    // At most one frame per session is being written at a time
+    public boolean tryStartSend() {
+        return sending.compareAndSet(false, true);
+    }
+
+    public void markSendStarted() {
+        sendStartedMillis = System.currentTimeMillis();
+    }
+
+    // Zero when no frame is being written
+    public long sendStartedMillis() {
+        return sendStartedMillis;
+    }
+
+    public void finishSend() {
+        sendStartedMillis = 0;
+        sending.set(false);
+    }
+
+    /**
+     * Sequence of the last price this client was sent for the pair, or 0 if it has none.
+     */
+    public synchronized long sentSequence(int pairId) {
+        for (int i = 0; i < sentCount; i++) {
+            if (sentPairs[i] == pairId) {
+                return sentSequences[i];
+            }
+        }
+        return 0;
+    }
+
+    public synchronized void recordSent(int pairId, long sequence) {
+        for (int i = 0; i < sentCount; i++) {
+            if (sentPairs[i] == pairId) {
+                sentSequences[i] = sequence;
+                return;
+            }
+        }
+        if (sentCount == sentPairs.length) {
+            sentPairs = Arrays.copyOf(sentPairs, sentCount * 2);
+            sentSequences = Arrays.copyOf(sentSequences, sentCount * 2);
+        }
+        sentPairs[sentCount] = pairId;
+        sentSequences[sentCount++] = sequence;
+    }
+
+    // A client that resubscribes may have dropped its copy, so it starts again from a snapshot
+    private synchronized void forgetSent(int pairId) {
+        for (int i = 0; i < sentCount; i++) {
+            if (sentPairs[i] == pairId) {
+                sentCount--;
+                sentPairs[i] = sentPairs[sentCount];
+                sentSequences[i] = sentSequences[sentCount];
+                return;
+            }
+        }
+    }
+
+    private static boolean setBit(AtomicLongArray bits, int index) {
+        long mask = 1L << index;
+        int word = index >>> 6;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return true;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return false;
+    }
+
+    private static boolean clearBit(AtomicLongArray bits, int index) {
+        long mask = 1L << index;
+        int word = index >>> 6;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current & ~mask));
+        return true;
+    }
+
+    private static void forEachBit(AtomicLongArray bits, boolean clear, IntConsumer consumer) {
+        for (int i = 0; i < WORDS; i++) {
+            long word = clear ? bits.getAndSet(i, 0) : bits.get(i);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                consumer.accept(i * Long.SIZE + bit);
+                word &= word - 1;
+            }
+        }
+    }
+}
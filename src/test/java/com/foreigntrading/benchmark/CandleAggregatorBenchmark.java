@@ -0,0 +1,72 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.marketdata.CandleAggregator;
+import com.foreigntrading.marketdata.FixedPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tick cost of the candle aggregator across all five timeframes.
+ * Run with {@code -prof gc} to confirm the hot path does not allocate between bar boundaries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandleAggregatorBenchmark {
+    private static final int TICKS = 1 << 16;
+
+    @Param({"1", "32"})
+    private int pairs;
+
+    private CandleAggregator aggregator;
+    private int[] pairIds;
+    private long[] prices;
+    private long startMillis;
+    private long tick;
+
+    @Setup
+    public void setUp() {
+        aggregator = new CandleAggregator(1000);
+        aggregator.subscribe(candle -> { });
+        Random random = new Random(42);
+        pairIds = new int[TICKS];
+        prices = new long[TICKS];
+        long price = FixedPoint.fromDouble(1.1);
+        for (int i = 0; i < TICKS; i++) {
+            pairIds[i] = random.nextInt(pairs);
+            price += random.nextInt(201) - 100;
+            prices[i] = price;
+        }
+        startMillis = 1_700_000_000_000L;
+    }
+
+    @Benchmark
+    public void onTick() {
+        // One tick per simulated millisecond, so 1s bars close every thousand ticks
+        long now = tick++;
+        int i = (int) (now & (TICKS - 1));
+        aggregator.onTick(pairIds[i], startMillis + now, prices[i]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CandleAggregatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,157 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.service.AccountService;
+import com.foreigntrading.service.AlertService;
+import com.foreigntrading.service.EngineJournalService;
+import com.foreigntrading.service.EngineSnapshotService;
+import com.foreigntrading.service.EventLoopService;
+import com.foreigntrading.service.MarketOrderService;
+import com.foreigntrading.service.OrderBookService;
+import com.foreigntrading.service.TradeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start recovery time of the trading engine with millions of resting LIMIT orders and trigger
+ * levels: load the latest snapshot and replay a log tail of 100k records on top of it. Every
+ * invocation starts from fresh services over the same files, as a restarted process would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class EngineRecoveryBenchmark {
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "JPY", "CHF", "AUD"};
+    private static final long MID = FixedPoint.fromDouble(1.1000);
+    private static final long TICK = FixedPoint.fromDouble(0.00001);
+    private static final int LEVELS = 1000;
+    private static final int TAIL_RECORDS = 100_000;
+
+    @Param({"1000000", "3000000"})
+    private int restingOrders;
+
+    private Path directory;
+    private CurrencyPairRegistry registry;
+    private int[] pairIds;
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("engine-recovery");
+        registry = new CurrencyPairRegistry();
+        pairIds = new int[CURRENCIES.length * (CURRENCIES.length - 1)];
+        int pairs = 0;
+        for (String base : CURRENCIES) {
+            for (String quote : CURRENCIES) {
+                if (!base.equals(quote)) {
+                    pairIds[pairs++] = registry.pairId(base, quote);
+                }
+            }
+        }
+
+        Engine writer = new Engine();
+        Random random = new Random(42);
+        for (int i = 0; i < restingOrders; i++) {
+            boolean buy = (i & 1) == 0;
+            long offset = (1 + random.nextInt(LEVELS)) * TICK;
+            writer.orders.restoreOrder(pairIds[i % pairIds.length], i, buy, buy ? MID - offset : MID + offset, FixedPoint.ONE);
+        }
+        for (int i = 0; i < restingOrders / 10; i++) {
+            writer.trades.getTriggerIndex().add(i, pairIds[i % pairIds.length], MID + (random.nextInt(2 * LEVELS) - LEVELS) * TICK,
+                    random.nextBoolean());
+        }
+        writer.orders.awaitRestored();
+        writer.snapshots.snapshot();
+        for (int i = 0; i < TAIL_RECORDS; i++) {
+            long orderId = restingOrders + i;
+            writer.journal.orderRested(pairIds[i % pairIds.length], orderId, true, MID - TICK, FixedPoint.ONE);
+        }
+        writer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void startProcess() {
+        engine = new Engine();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopProcess() {
+        engine.close();
+        engine = null;
+    }
+
+    @Benchmark
+    public int recover() {
+        return engine.snapshots.recover();
+    }
+
+    private class Engine {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final EngineJournalService journal = new EngineJournalService(registry);
+        final EventLoopService loops = new EventLoopService(meterRegistry);
+        final OrderBookService orders;
+        final TradeService trades = new TradeService(null, null, null, null, registry, journal, null, null);
+        final AlertService alerts = new AlertService(null, null, null, registry, journal);
+        final AccountService accounts = new AccountService(null, null, null);
+        final MarketOrderService markets = new MarketOrderService(null, null, null, null, accounts, null, registry,
+                journal, meterRegistry, TransactionOperations.withoutTransaction());
+        final EngineSnapshotService snapshots;
+
+        Engine() {
+            ReflectionTestUtils.setField(journal, "directory", directory.toString());
+            ReflectionTestUtils.setField(journal, "segmentSizeMb", 16);
+            journal.init();
+            loops.init();
+            orders = new OrderBookService(null, null, null, null, journal, loops, meterRegistry,
+                    TransactionOperations.withoutTransaction());
+            orders.init();
+            snapshots = new EngineSnapshotService(journal, orders, trades, alerts, markets, registry, meterRegistry);
+            snapshots.init();
+        }
+
+        void close() {
+            loops.shutdown();
+            journal.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EngineRecoveryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
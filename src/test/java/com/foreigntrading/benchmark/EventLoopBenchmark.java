@@ -0,0 +1,103 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.marketdata.EventLoopGroup;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order book throughput of the pair-sharded event loops against the shard count, on a many-pair
+ * workload: each operation places a passive order on one of 600 pairs' books and matches the book
+ * against a reference rate, on the pair's loop. With the work spread over enough pairs, throughput
+ * should grow about linearly with shards up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class EventLoopBenchmark {
+    private static final int PAIRS = 600;
+    private static final int OPS = 1 << 16;
+    private static final int LEVELS = 100;
+    private static final long MID = FixedPoint.fromDouble(1.1000);
+    private static final long TICK = FixedPoint.fromDouble(0.00001);
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    private EventLoopGroup loops;
+    private OrderBook[] books;
+    private int[] pairs;
+    private long[] prices;
+    private boolean[] buys;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        loops = new EventLoopGroup("benchmark-loop", shards);
+        books = new OrderBook[PAIRS];
+        for (int pair = 0; pair < PAIRS; pair++) {
+            books[pair] = new OrderBook(pair);
+        }
+        Random random = new Random(42);
+        pairs = new int[OPS];
+        prices = new long[OPS];
+        buys = new boolean[OPS];
+        for (int i = 0; i < OPS; i++) {
+            pairs[i] = random.nextInt(PAIRS);
+            buys[i] = random.nextBoolean();
+            long offset = (1 + random.nextInt(LEVELS)) * TICK;
+            prices[i] = buys[i] ? MID - offset : MID + offset;
+        }
+        loops.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loops.stop();
+    }
+
+    // Orders rest away from the rate and the match finds nothing to fill, so each book's size holds steady
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void placeAndMatch() {
+        for (int i = 0; i < OPS; i++) {
+            int pair = pairs[i];
+            long id = nextId++;
+            long price = prices[i];
+            boolean buy = buys[i];
+            loops.execute(pair, () -> {
+                OrderBook book = books[pair];
+                book.add(id, buy, price, FixedPoint.ONE, (orderId, fillPrice, quantity, remaining) -> { });
+                book.matchReference(MID - TICK / 2, MID + TICK / 2, MID, (orderId, fillPrice, quantity, remaining) -> { });
+                book.cancel(id);
+            });
+        }
+        loops.awaitIdle();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventLoopBenchmark.class.getSimpleName()).build()).run();
+    }
+}
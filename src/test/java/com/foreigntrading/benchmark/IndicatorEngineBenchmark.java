@@ -0,0 +1,82 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.marketdata.Candle;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.IndicatorEngine;
+import com.foreigntrading.marketdata.IndicatorState;
+import com.foreigntrading.marketdata.Timeframe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of advancing the full indicator set (SMA, EMA, Bollinger, RSI, MACD, ATR) by one bar,
+ * both on a bare {@link IndicatorState} and through the engine's (pair, timeframe) lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndicatorEngineBenchmark {
+    private static final int BARS = 1 << 14;
+
+    private IndicatorState state;
+    private IndicatorEngine engine;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private Candle[] candles;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        state = new IndicatorState();
+        engine = new IndicatorEngine();
+        Random random = new Random(42);
+        highs = new double[BARS];
+        lows = new double[BARS];
+        closes = new double[BARS];
+        candles = new Candle[BARS];
+        double price = 1.1;
+        for (int i = 0; i < BARS; i++) {
+            price *= 1 + random.nextGaussian() * 0.001;
+            closes[i] = price;
+            highs[i] = price * 1.0002;
+            lows[i] = price * 0.9998;
+            candles[i] = new Candle(random.nextInt(32), Timeframe.M1, i * 60_000L, FixedPoint.fromDouble(price),
+                    FixedPoint.fromDouble(highs[i]), FixedPoint.fromDouble(lows[i]), FixedPoint.fromDouble(price), 10);
+        }
+    }
+
+    @Benchmark
+    public void updateState(Blackhole blackhole) {
+        int i = cursor++ & (BARS - 1);
+        state.update(highs[i], lows[i], closes[i]);
+        blackhole.consume(state.getRsi());
+    }
+
+    @Benchmark
+    public void engineOnCandle() {
+        engine.onCandleClosed(candles[cursor++ & (BARS - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IndicatorEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add, cancel and match latency of one pair's order book with 100k and 1M resting orders spread over
+ * a thousand price levels either side of 1.1000. Each operation leaves the book as it found it, so the
+ * resting count holds for the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class OrderBookBenchmark {
+    private static final int LEVELS = 1000;
+    private static final long MID = FixedPoint.fromDouble(1.1000);
+    private static final long TICK = FixedPoint.fromDouble(0.00001);
+    private static final int OPS = 1 << 16;
+
+    @Param({"100000", "1000000"})
+    private int restingOrders;
+
+    private OrderBook book;
+    private OrderBook.FillListener listener;
+    private long[] restingIds;
+    private boolean[] restingBuy;
+    private long[] restingPrices;
+    private int[] picks;
+    private long nextId;
+    private long filled;
+    private int op;
+
+    @Setup
+    public void setUp() {
+        book = new OrderBook(1);
+        listener = (orderId, price, quantity, remaining) -> filled += quantity;
+        Random random = new Random(42);
+        restingIds = new long[restingOrders];
+        restingBuy = new boolean[restingOrders];
+        restingPrices = new long[restingOrders];
+        for (int i = 0; i < restingOrders; i++) {
+            boolean buy = (i & 1) == 0;
+            long offset = (1 + random.nextInt(LEVELS)) * TICK;
+            restingIds[i] = i;
+            restingBuy[i] = buy;
+            restingPrices[i] = buy ? MID - offset : MID + offset;
+            book.add(i, buy, restingPrices[i], FixedPoint.ONE, listener);
+        }
+        picks = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            picks[i] = random.nextInt(restingOrders);
+        }
+        nextId = restingOrders;
+    }
+
+    // A passive order joins the back of a level and is cancelled again
+    @Benchmark
+    public boolean addThenCancel() {
+        int pick = picks[op++ & (OPS - 1)];
+        long id = nextId++;
+        book.add(id, restingBuy[pick], restingPrices[pick], FixedPoint.ONE, listener);
+        return book.cancel(id);
+    }
+
+    // Cancels a random resting order, wherever it sits in its queue, and re-rests it under a new id
+    @Benchmark
+    public long cancelRandom() {
+        int pick = picks[op++ & (OPS - 1)];
+        book.cancel(restingIds[pick]);
+        long id = nextId++;
+        restingIds[pick] = id;
+        return book.add(id, restingBuy[pick], restingPrices[pick], FixedPoint.ONE, listener);
+    }
+
+    // An aggressive buy takes the head of the best ask level; the filled maker is replaced
+    @Benchmark
+    public long matchCrossing() {
+        long bestAsk = book.bestAsk();
+        long id = nextId++;
+        long left = book.add(id, true, bestAsk, FixedPoint.ONE, listener);
+        book.add(nextId++, false, bestAsk, FixedPoint.ONE, listener);
+        return left;
+    }
+
+    // A reference rate move through nothing: the cost every tick pays when no limit is reached
+    @Benchmark
+    public int matchReferenceQuiet() {
+        return book.matchReference(MID - TICK / 2, MID + TICK / 2, MID, listener);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderBookBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.foreigntrading.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.ProviderResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-streaming provider decoding against the previous {@code readValue(body, Map.class)} path.
+ * Run with {@code -prof gc} to compare bytes allocated per operation alongside the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProviderResponseParserBenchmark {
+    private static final String EXCHANGE_RATE_BODY = "{\"Realtime Currency Exchange Rate\": {"
+            + "\"1. From_Currency Code\": \"EUR\", \"2. From_Currency Name\": \"Euro\","
+            + "\"3. To_Currency Code\": \"USD\", \"4. To_Currency Name\": \"United States Dollar\","
+            + "\"5. Exchange Rate\": \"1.08765000\", \"6. Last Refreshed\": \"2024-01-03 10:05:01\","
+            + "\"7. Time Zone\": \"UTC\", \"8. Bid Price\": \"1.08760000\", \"9. Ask Price\": \"1.08770000\"}}";
+
+    // Compact (100 days) and full (about 20 years) FX_DAILY output sizes
+    @Param({"100", "5000"})
+    private int days;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] dailyBody;
+    private byte[] exchangeRateBody;
+
+    @Setup
+    public void setUp() {
+        dailyBody = dailyBody(days, new Random(42)).getBytes(StandardCharsets.UTF_8);
+        exchangeRateBody = EXCHANGE_RATE_BODY.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void dailySeriesMap(Blackhole blackhole) throws IOException {
+        Map<String, Object> response = objectMapper.readValue(dailyBody, Map.class);
+        Map<String, Map<String, String>> series = (Map<String, Map<String, String>>) response.get("Time Series FX (Daily)");
+        for (Map.Entry<String, Map<String, String>> day : series.entrySet()) {
+            blackhole.consume(LocalDate.parse(day.getKey()));
+            blackhole.consume(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("1. open"))));
+            blackhole.consume(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("2. high"))));
+            blackhole.consume(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("3. low"))));
+            blackhole.consume(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("4. close"))));
+        }
+    }
+
+    @Benchmark
+    public int dailySeriesStreaming(Blackhole blackhole) throws IOException {
+        return ProviderResponseParser.parseDailySeries(new ByteArrayInputStream(dailyBody),
+                (openTime, open, high, low, close) -> blackhole.consume(close));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public long exchangeRateMap() throws IOException {
+        Map<String, Object> response = objectMapper.readValue(exchangeRateBody, Map.class);
+        Map<String, String> rateData = (Map<String, String>) response.get("Realtime Currency Exchange Rate");
+        return FixedPoint.fromBigDecimal(new BigDecimal(rateData.get("5. Exchange Rate")));
+    }
+
+    @Benchmark
+    public long exchangeRateStreaming() throws IOException {
+        return ProviderResponseParser.parseExchangeRate(exchangeRateBody);
+    }
+
+    private static String dailyBody(int days, Random random) {
+        StringBuilder body = new StringBuilder("{\"Meta Data\": {\"1. Information\": \"Forex Daily Prices\"},"
+                + " \"Time Series FX (Daily)\": {");
+        LocalDate day = LocalDate.of(2024, 1, 3);
+        double price = 1.09;
+        for (int i = 0; i < days; i++) {
+            double open = price;
+            price *= 1 + random.nextGaussian() * 0.004;
+            if (i > 0) {
+                body.append(", ");
+            }
+            body.append(String.format(Locale.ROOT,
+                    "\"%s\": {\"1. open\": \"%.5f\", \"2. high\": \"%.5f\", \"3. low\": \"%.5f\", \"4. close\": \"%.5f\"}",
+                    day.minusDays(i), open, Math.max(open, price) * 1.001, Math.min(open, price) * 0.999, price));
+        }
+        return body.append("}}").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProviderResponseParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
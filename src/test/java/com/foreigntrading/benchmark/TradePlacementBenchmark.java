@@ -0,0 +1,157 @@
+package com.foreigntrading.benchmark;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Trade;
+import com.foreigntrading.entity.User;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.HoldRepository;
+import com.foreigntrading.repository.TradeRepository;
+import com.foreigntrading.repository.UserRepository;
+import com.foreigntrading.service.AccountService;
+import com.foreigntrading.service.HoldService;
+import com.foreigntrading.service.TradeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.foreigntrading.util.TestHelper.repository;
+
+/**
+ * Orders per second placed by TradeService.createTrade against the path it replaced, which read the
+ * user, the account and the account again for funds before inserting the trade. The repositories are
+ * fakes that spin for {@code roundTripMicros} on every statement a real one sends to the database,
+ * so the difference between the two is the round trips saved; the new path's second insert, its hold,
+ * is counted too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradePlacementBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1000");
+    private static final BigDecimal PRICE = new BigDecimal("1.1000");
+
+    @Param({"0", "100"})
+    private long roundTripMicros;
+
+    private User user;
+    private Account account;
+    private UserRepository userRepository;
+    private AccountRepository accountRepository;
+    private TradeRepository tradeRepository;
+    private TradeService tradeService;
+
+    // Fresh services every iteration, so each one starts with the account's first read and a full balance
+    @Setup(Level.Iteration)
+    public void setUp() {
+        user = new User();
+        user.setId(7L);
+        account = new Account();
+        account.setId(1L);
+        account.setUser(user);
+        account.setCurrency("USD");
+        account.setBalance(new BigDecimal("50000000000"));
+        account.setActive(true);
+
+        Map<String, Function<Object[], Object>> userMethods = new HashMap<>();
+        userMethods.put("findById", args -> roundTrip(Optional.of(user)));
+        userMethods.put("getReferenceById", args -> user);
+        userRepository = repository(UserRepository.class, userMethods);
+
+        Map<String, Function<Object[], Object>> accountMethods = new HashMap<>();
+        accountMethods.put("findById", args -> roundTrip(Optional.of(account)));
+        accountMethods.put("getReferenceById", args -> account);
+        accountMethods.put("findBalanceState", args -> {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{7L, true, "USD", account.getBalance(), BigDecimal.ZERO});
+            return roundTrip(rows);
+        });
+        accountRepository = repository(AccountRepository.class, accountMethods);
+
+        Map<String, Function<Object[], Object>> tradeMethods = new HashMap<>();
+        tradeMethods.put("save", args -> roundTrip(args[0]));
+        tradeRepository = repository(TradeRepository.class, tradeMethods);
+        Map<String, Function<Object[], Object>> holdMethods = new HashMap<>();
+        holdMethods.put("save", args -> roundTrip(args[0]));
+
+        AccountService accountService = new AccountService(accountRepository, null, null);
+        HoldService holdService = new HoldService(repository(HoldRepository.class, holdMethods), accountRepository,
+                accountService, new SimpleMeterRegistry());
+        holdService.init();
+        tradeService = new TradeService(tradeRepository, userRepository, accountRepository, null, null, null, null,
+                holdService);
+    }
+
+    @Benchmark
+    public Trade createTrade() {
+        return tradeService.createTrade(7L, 1L, "EUR", "USD", AMOUNT, PRICE, "LIMIT", "BUY", null, null);
+    }
+
+    // The placement createTrade replaced, as it was
+    @Benchmark
+    public Trade createTradeBefore() {
+        User user = userRepository.findById(7L).orElseThrow();
+        Account account = accountRepository.findById(1L).orElseThrow();
+        if (!account.getUser().getId().equals(7L)) {
+            throw new IllegalStateException("Account does not belong to user");
+        }
+        if (!account.isActive()) {
+            throw new IllegalStateException("Account is not active");
+        }
+        BigDecimal totalCost = AMOUNT.multiply(PRICE);
+        if (accountRepository.findById(1L).orElseThrow().getBalance().compareTo(totalCost) < 0) {
+            throw new InsufficientFundsException("Insufficient funds for trade");
+        }
+
+        Trade trade = new Trade();
+        trade.setUser(user);
+        trade.setAccount(account);
+        trade.setBaseCurrency("EUR");
+        trade.setQuoteCurrency("USD");
+        trade.setAmount(AMOUNT);
+        trade.setPrice(PRICE);
+        trade.setOrderType("LIMIT");
+        trade.setSide("BUY");
+        trade.setStatus("PENDING");
+        trade.setCreatedAt(LocalDateTime.now());
+        return tradeRepository.save(trade);
+    }
+
+    private <T> T roundTrip(T result) {
+        long end = System.nanoTime() + roundTripMicros * 1000;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TradePlacementBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.foreigntrading.config;
+
+import com.foreigntrading.repository.RoleRepository;
+import com.foreigntrading.service.RoleService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApplicationStartupConfigTest {
+
+    private RecordingJdbcTemplate jdbcTemplate;
+    private ApplicationStartupConfig startupConfig;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new RecordingJdbcTemplate();
+        RoleRepository roleRepository = (RoleRepository) Proxy.newProxyInstance(RoleRepository.class.getClassLoader(),
+                new Class<?>[]{RoleRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("count")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return 2L;
+                });
+        startupConfig = new ApplicationStartupConfig(new RoleService(roleRepository, null), jdbcTemplate);
+    }
+
+    @Test
+    void initialize_OnPostgreSql_MovesEverySequencePastItsTable() {
+        // Act
+        startupConfig.initialize();
+
+        // Assert
+        assertEquals(8, jdbcTemplate.statements.size());
+        assertTrue(jdbcTemplate.sequences.contains("trades_seq"));
+        assertTrue(jdbcTemplate.sequences.contains("holds_seq"));
+        for (String statement : jdbcTemplate.statements) {
+            assertTrue(statement.startsWith("SELECT setval(?::regclass, GREATEST(nextval(?::regclass)"), statement);
+        }
+    }
+
+    @Test
+    void initialize_OnAnotherDatabase_LeavesTheSequencesAlone() {
+        // Arrange: the H2 database of the test profile
+        jdbcTemplate.databaseProduct = "H2";
+
+        // Act
+        startupConfig.initialize();
+
+        // Assert
+        assertTrue(jdbcTemplate.statements.isEmpty());
+    }
+
+    // Reports the configured database product and records each statement with its sequence parameter
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+        private String databaseProduct = "PostgreSQL";
+        private final List<String> statements = new ArrayList<>();
+        private final List<Object> sequences = new ArrayList<>();
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+                    DatabaseMetaData.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                    (proxy, method, args) -> databaseProduct);
+            Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> metaData);
+            try {
+                return action.doInConnection(connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.add(sql);
+            assertEquals(args[0], args[1]);
+            sequences.add(args[0]);
+            return null;
+        }
+    }
+}
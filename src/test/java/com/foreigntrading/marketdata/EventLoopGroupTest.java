@@ -0,0 +1,197 @@
+package com.foreigntrading.marketdata;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLoopGroupTest {
+
+    private static final int PAIRS = 64;
+
+    private EventLoopGroup loops;
+
+    @BeforeEach
+    void setUp() {
+        loops = new EventLoopGroup("test-loop", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loops.stop();
+    }
+
+    @Test
+    void execute_RunsEachPairsTasksInOrderOnOneThread() throws InterruptedException {
+        // Arrange: plain, unsynchronized per-pair state, as the loops' owners keep it
+        loops.start();
+        long[] counts = new long[PAIRS];
+        List<List<Integer>> seen = new ArrayList<>();
+        List<Set<Thread>> threads = new ArrayList<>();
+        for (int pair = 0; pair < PAIRS; pair++) {
+            seen.add(new ArrayList<>());
+            threads.add(ConcurrentHashMap.newKeySet());
+        }
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 160 * PAIRS; i++) {
+                    int pair = i % PAIRS;
+                    int order = i;
+                    loops.execute(pair, () -> {
+                        counts[pair]++;
+                        if (producer == 0) {
+                            seen.get(pair).add(order);
+                        }
+                        threads.get(pair).add(Thread.currentThread());
+                    });
+                }
+            });
+            producers[p].start();
+        }
+
+        // Act
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        loops.awaitIdle();
+
+        // Assert
+        for (int pair = 0; pair < PAIRS; pair++) {
+            assertEquals(4 * 160, counts[pair], "pair " + pair);
+            assertEquals(1, threads.get(pair).size());
+            List<Integer> order = seen.get(pair);
+            for (int i = 1; i < order.size(); i++) {
+                assertTrue(order.get(i - 1) < order.get(i));
+            }
+        }
+        long tasks = 0;
+        for (int shard = 0; shard < loops.shardCount(); shard++) {
+            tasks += loops.tasks(shard);
+            assertEquals(0, loops.queueDepth(shard));
+        }
+        assertTrue(tasks >= 4 * 160 * PAIRS);
+    }
+
+    @Test
+    void call_ReturnsResultAndRethrowsFailure() {
+        // Arrange
+        loops.start();
+
+        // Act & Assert
+        assertEquals("EUR/USD", loops.call(7, () -> "EUR/USD"));
+        assertTrue(loops.call(7, () -> loops.inLoop(7)));
+        assertEquals(Integer.valueOf(3), loops.call(7, () -> loops.call(7, () -> 3)));
+        assertThrows(IllegalStateException.class, () -> loops.call(7, () -> {
+            throw new IllegalStateException("Order is not resting: 1");
+        }));
+    }
+
+    @Test
+    void call_WhenTaskThrowsAnError_RethrowsItAndKeepsTheLoopRunning() {
+        // Arrange
+        loops.start();
+        loops.execute(7, () -> {
+            throw new AssertionError("lost tick");
+        });
+
+        // Act & Assert
+        assertThrows(StackOverflowError.class, () -> loops.call(7, () -> {
+            throw new StackOverflowError();
+        }));
+        assertEquals("EUR/USD", loops.call(7, () -> "EUR/USD"));
+    }
+
+    @Test
+    void execute_WakesALoopParkedWhileIdle() throws InterruptedException {
+        // Arrange: long enough idle for every loop to spin, yield and park
+        loops.start();
+        Thread.sleep(50);
+        long[] counts = new long[1];
+
+        // Act
+        loops.execute(5, () -> counts[0]++);
+        loops.awaitIdle();
+
+        // Assert
+        assertEquals(Long.valueOf(1), loops.call(5, () -> counts[0]));
+    }
+
+    @Test
+    void execute_BeforeStart_RunsInPlace() {
+        // Arrange
+        long[] counts = new long[1];
+
+        // Act
+        loops.execute(3, () -> counts[0]++);
+
+        // Assert
+        assertEquals(1, counts[0]);
+        assertFalse(loops.inLoop(3));
+    }
+
+    @Test
+    void call_RacingStop_NeverStrandsATask() throws InterruptedException {
+        // Arrange: submitters keep calling into every shard while the group starts and stops
+        AtomicInteger completed = new AtomicInteger();
+        AtomicBoolean submitting = new AtomicBoolean(true);
+        AtomicInteger submitted = new AtomicInteger();
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int pair = t;
+            Thread submitter = new Thread(() -> {
+                while (submitting.get()) {
+                    submitted.incrementAndGet();
+                    loops.call(pair, completed::incrementAndGet);
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+
+        // Act
+        for (int cycle = 0; cycle < 10; cycle++) {
+            loops.start();
+            Thread.onSpinWait();
+            loops.stop();
+        }
+        submitting.set(false);
+        for (Thread submitter : submitters) {
+            submitter.join(5_000);
+        }
+
+        // Assert: a call queued after its loop exited still ran
+        for (Thread submitter : submitters) {
+            assertFalse(submitter.isAlive(), "submitter blocked after stop");
+        }
+        assertEquals(submitted.get(), completed.get());
+        for (int shard = 0; shard < loops.shardCount(); shard++) {
+            assertEquals(0, loops.queueDepth(shard));
+        }
+    }
+
+    @Test
+    void shardOf_SpreadsPairsOverEveryShard() {
+        // Act
+        int[] perShard = new int[loops.shardCount()];
+        for (int base = 0; base < 8; base++) {
+            for (int quote = 0; quote < 8; quote++) {
+                perShard[loops.shardOf(base * 64 + quote)]++;
+            }
+        }
+
+        // Assert
+        for (int count : perShard) {
+            assertTrue(count >= 8, "shard load " + count);
+        }
+    }
+}
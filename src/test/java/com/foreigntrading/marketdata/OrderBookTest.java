@@ -0,0 +1,115 @@
+package com.foreigntrading.marketdata;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+
+    private OrderBook book;
+    private List<String> fills;
+
+    @BeforeEach
+    void setUp() {
+        book = new OrderBook(1);
+        fills = new ArrayList<>();
+    }
+
+    @Test
+    void add_CrossingOrderFillsOldestAtBestPriceFirst() {
+        // Arrange: two asks at 1.1000 and one at 1.0990
+        book.add(1, false, price(1.1000), FixedPoint.ONE, this::record);
+        book.add(2, false, price(1.1000), FixedPoint.ONE, this::record);
+        book.add(3, false, price(1.0990), FixedPoint.ONE, this::record);
+
+        // Act: buy 2.5 up to 1.1000
+        long resting = book.add(4, true, price(1.1000), 250_000_000L, this::record);
+
+        // Assert: 1.0990 first, then order 1 before order 2; nothing rests
+        assertEquals(0, resting);
+        assertEquals(List.of(
+                "3@1.0990x1.0000 left 0.0000", "4@1.0990x1.0000 left 1.5000",
+                "1@1.1000x1.0000 left 0.0000", "4@1.1000x1.0000 left 0.5000",
+                "2@1.1000x0.5000 left 0.5000", "4@1.1000x0.5000 left 0.0000"), fills);
+        assertEquals(50_000_000L, book.remaining(2));
+        assertEquals(price(1.1000), book.bestAsk());
+        assertEquals(OrderBook.NO_PRICE, book.bestBid());
+    }
+
+    @Test
+    void add_RemainderRestsBehindOrdersAtTheSamePrice() {
+        book.add(1, true, price(1.0950), FixedPoint.ONE, this::record);
+        book.add(2, false, price(1.0950), 50_000_000L, this::record);
+
+        long resting = book.add(3, true, price(1.0950), FixedPoint.ONE, this::record);
+
+        assertEquals(FixedPoint.ONE, resting);
+        assertEquals(150_000_000L, book.depth(true, price(1.0950)));
+        assertEquals(List.of("1@1.0950x0.5000 left 0.5000", "2@1.0950x0.5000 left 0.0000"), fills);
+    }
+
+    @Test
+    void cancel_UnlinksOrderAndDropsEmptyLevel() {
+        // Arrange
+        book.add(1, true, price(1.0950), FixedPoint.ONE, this::record);
+        book.add(2, true, price(1.0950), FixedPoint.ONE, this::record);
+        book.add(3, true, price(1.0950), FixedPoint.ONE, this::record);
+        book.add(4, true, price(1.0900), FixedPoint.ONE, this::record);
+
+        // Act
+        boolean middle = book.cancel(2);
+        boolean again = book.cancel(2);
+        book.cancel(1);
+        book.cancel(3);
+
+        // Assert
+        assertTrue(middle);
+        assertFalse(again);
+        assertEquals(price(1.0900), book.bestBid());
+        assertEquals(0, book.depth(true, price(1.0950)));
+        assertEquals(1, book.size());
+    }
+
+    @Test
+    void matchReference_FillsOnlyLimitsTheRateReached() {
+        // Arrange
+        book.add(1, true, price(1.0950), FixedPoint.ONE, this::record);
+        book.add(2, true, price(1.0900), FixedPoint.ONE, this::record);
+        book.add(3, false, price(1.1050), FixedPoint.ONE, this::record);
+        book.add(4, false, price(1.1100), FixedPoint.ONE, this::record);
+
+        // Act: the rate ranged 1.0920 to 1.1060 and ended at 1.1000
+        int filled = book.matchReference(price(1.0920), price(1.1060), price(1.1000), this::record);
+
+        // Assert: each at its limit, since the last rate is worse for both
+        assertEquals(2, filled);
+        assertEquals(List.of("1@1.0950x1.0000 left 0.0000", "3@1.1050x1.0000 left 0.0000"), fills);
+        assertEquals(2, book.size());
+    }
+
+    @Test
+    void matchReference_FillsAtLastRateWhenBetterThanLimit() {
+        book.add(1, true, price(1.0950), FixedPoint.ONE, this::record);
+
+        book.matchReference(price(1.0900), price(1.0950), price(1.0910), this::record);
+
+        assertEquals(List.of("1@1.0910x1.0000 left 0.0000"), fills);
+        assertTrue(book.isEmpty());
+    }
+
+    private void record(long orderId, long price, long quantity, long remaining) {
+        fills.add(orderId + "@" + format(price) + "x" + format(quantity) + " left " + format(remaining));
+    }
+
+    private static String format(long value) {
+        return FixedPoint.toBigDecimal(value).setScale(4).toPlainString();
+    }
+
+    private static long price(double value) {
+        return FixedPoint.fromDouble(value);
+    }
+}
@@ -0,0 +1,161 @@
+package com.foreigntrading.marketdata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceTriggerIndexTest {
+
+    private static final int PAIR = 1;
+
+    @Test
+    void fire_VisitsOnlyLevelsCrossedByTheMove() {
+        // Arrange: falling stops below 1.10, rising targets above it
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.add(1, PAIR, 109_000_000L, false);
+        index.add(2, PAIR, 108_000_000L, false);
+        index.add(3, PAIR, 111_000_000L, true);
+        index.add(4, PAIR, 112_000_000L, true);
+        List<Long> fired = new ArrayList<>();
+
+        // Act: the price dips to 1.0850 and recovers to 1.1150 within one batch
+        int count = index.fire(PAIR, 108_500_000L, 111_500_000L, fired::add);
+
+        // Assert
+        assertEquals(2, count);
+        assertEquals(List.of(1L, 3L), fired);
+        assertTrue(index.contains(2));
+        assertTrue(index.contains(4));
+        assertEquals(2, index.size(PAIR));
+    }
+
+    @Test
+    void fire_LevelExactlyReachedFires() {
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.add(1, PAIR, 110_000_000L, true);
+        List<Long> fired = new ArrayList<>();
+
+        index.fire(PAIR, 110_000_000L, 110_000_000L, fired::add);
+
+        assertEquals(List.of(1L), fired);
+        assertFalse(index.hasTriggers(PAIR));
+    }
+
+    @Test
+    void fire_OwnerWithBothLevelsCrossedIsReportedOnceAndFullyRemoved() {
+        // Arrange: a BUY with stop 1.09 and target 1.11
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.add(7, PAIR, 109_000_000L, false);
+        index.add(7, PAIR, 111_000_000L, true);
+        List<Long> fired = new ArrayList<>();
+
+        // Act
+        index.fire(PAIR, 108_000_000L, 112_000_000L, fired::add);
+
+        // Assert
+        assertEquals(List.of(7L), fired);
+        assertEquals(0, index.size(PAIR));
+        assertEquals(0, index.owners());
+    }
+
+    @Test
+    void fire_TouchTriggerFiresOnlyWhenMoveSpansItsLevel() {
+        // Arrange: EQUALS 1.1000
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.addTouch(9, PAIR, 110_000_000L);
+        List<Long> fired = new ArrayList<>();
+
+        // Act: stays above, then falls through it
+        index.fire(PAIR, 110_010_000L, 110_050_000L, fired::add);
+        List<Long> firedAbove = new ArrayList<>(fired);
+        index.fire(PAIR, 109_990_000L, 110_010_000L, fired::add);
+
+        // Assert
+        assertTrue(firedAbove.isEmpty());
+        assertEquals(List.of(9L), fired);
+        assertFalse(index.contains(9));
+    }
+
+    @Test
+    void remove_DropsEveryTriggerOfTheOwner() {
+        // Arrange
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        index.add(7, PAIR, 109_000_000L, false);
+        index.add(7, PAIR, 111_000_000L, true);
+
+        // Act
+        boolean removed = index.remove(7);
+
+        // Assert
+        assertTrue(removed);
+        assertFalse(index.remove(7));
+        assertEquals(0, index.fire(PAIR, 0, Long.MAX_VALUE, id -> fail("removed trigger fired")));
+    }
+
+    @Test
+    void fire_PutsTheOwnerInFlightUntilRemovedOrRearmed() {
+        // Arrange: a listener standing in for the write-ahead log
+        List<Long> logged = new ArrayList<>();
+        PriceTriggerIndex index = new PriceTriggerIndex(new PriceTriggerIndex.Listener() {
+            @Override
+            public void onAdd(long ownerId, int pairId, long level, int side) {
+            }
+
+            @Override
+            public void onRemove(long ownerId) {
+                logged.add(ownerId);
+            }
+        });
+        index.add(7, PAIR, 109_000_000L, false);
+        index.add(7, PAIR, 111_000_000L, true);
+        index.add(8, PAIR, 108_000_000L, false);
+        List<Long> fired = new ArrayList<>();
+
+        // Act: 7 fires and its execution fails; then both fire, and only 8's commits
+        index.fire(PAIR, 108_500_000L, 109_500_000L, fired::add);
+        List<Long> reported = new ArrayList<>();
+        index.forEach((ownerId, pairId, level, side) -> reported.add(ownerId));
+        boolean rearmed = index.rearm(7);
+        index.fire(PAIR, 107_000_000L, 109_500_000L, fired::add);
+        index.remove(8);
+
+        // Assert
+        assertEquals(List.of(7L, 7L, 8L), fired.stream().sorted().toList());
+        assertEquals(3, reported.size());
+        assertTrue(rearmed);
+        assertTrue(index.isInFlight(7));
+        assertFalse(index.isInFlight(8));
+        assertEquals(List.of(8L), logged);
+        assertEquals(0, index.size(PAIR));
+    }
+
+    @Test
+    void fire_CostDoesNotDependOnRestingTriggers() {
+        // Arrange: 200k resting stops far from the price, three close to it
+        PriceTriggerIndex index = new PriceTriggerIndex();
+        for (int i = 0; i < 200_000; i++) {
+            index.add(i, PAIR, 50_000_000L + i, false);
+            index.add(1_000_000L + i, PAIR, 200_000_000L - i, true);
+        }
+        index.add(5_000_000L, PAIR, 109_990_000L, false);
+        index.add(5_000_001L, PAIR, 109_995_000L, false);
+        index.add(5_000_002L, PAIR, 110_010_000L, true);
+        List<Long> fired = new ArrayList<>();
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            index.fire(PAIR, 109_999_000L, 110_001_000L, fired::add);
+        }
+        long quietNanos = (System.nanoTime() - start) / 10_000;
+        index.fire(PAIR, 109_990_000L, 110_010_000L, fired::add);
+
+        // Assert
+        assertEquals(List.of(5_000_000L, 5_000_001L, 5_000_002L), fired);
+        assertEquals(400_000, index.size(PAIR));
+        assertTrue(quietNanos < 50_000, "quiet tick took " + quietNanos + "ns");
+    }
+}
@@ -0,0 +1,124 @@
+package com.foreigntrading.marketdata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderResponseParserTest {
+
+    private static final String EXCHANGE_RATE_BODY = "{\"Realtime Currency Exchange Rate\": {"
+            + "\"1. From_Currency Code\": \"EUR\", \"2. From_Currency Name\": \"Euro\","
+            + "\"3. To_Currency Code\": \"USD\", \"4. To_Currency Name\": \"United States Dollar\","
+            + "\"5. Exchange Rate\": \"1.08765000\", \"6. Last Refreshed\": \"2024-01-03 10:05:01\","
+            + "\"7. Time Zone\": \"UTC\", \"8. Bid Price\": \"1.08760000\", \"9. Ask Price\": \"1.08770000\"}}";
+
+    private static final String RSI_BODY = "{\"Meta Data\": {\"1: Symbol\": \"EURUSD\", \"2: Indicator\": \"RSI\"},"
+            + "\"Technical Analysis: RSI\": {\"2024-01-03 10:05\": {\"RSI\": \"61.2345\"},"
+            + "\"2024-01-03 10:00\": {\"RSI\": \"58.0000\"}}}";
+
+    @Test
+    void fixedPointParse_MatchesBigDecimalConversion() {
+        String[] inputs = {"1.08765", "110", "0.00000001", "-0.5", "1.123456785", "1.123456775", "1.1234567850001", "+2."};
+        for (String input : inputs) {
+            char[] chars = ("xx" + input + "yy").toCharArray();
+            assertEquals(FixedPoint.fromBigDecimal(new BigDecimal(input)), FixedPoint.parse(chars, 2, input.length()), input);
+        }
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse("1.2.3".toCharArray(), 0, 5));
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse(".".toCharArray(), 0, 1));
+    }
+
+    @Test
+    void parseExchangeRate_ReadsRateField() throws Exception {
+        // Act
+        long rate = ProviderResponseParser.parseExchangeRate(EXCHANGE_RATE_BODY.getBytes(StandardCharsets.UTF_8));
+
+        // Assert
+        assertEquals(108765000L, rate);
+        assertEquals(ProviderResponseParser.NO_RATE, ProviderResponseParser.parseExchangeRate("{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void parseExchangeRate_WhenQuotaNote_Throws() {
+        byte[] body = "{\"Note\": \"Thank you for using Alpha Vantage! Our standard API call frequency is 5 calls per minute\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> ProviderResponseParser.parseExchangeRate(body));
+        assertTrue(error.getMessage().contains("call frequency"));
+    }
+
+    @Test
+    void parseDailySeries_MatchesMapBasedDecoding() throws Exception {
+        // Arrange
+        String body = dailyBody(250, new Random(11));
+        Map<String, Object> tree = new ObjectMapper().readValue(body, Map.class);
+        Map<String, Map<String, String>> series = (Map<String, Map<String, String>>) tree.get("Time Series FX (Daily)");
+
+        // Act
+        List<long[]> bars = new ArrayList<>();
+        int count = ProviderResponseParser.parseDailySeries(stream(body),
+                (openTime, open, high, low, close) -> bars.add(new long[]{openTime, open, high, low, close}));
+
+        // Assert
+        assertEquals(series.size(), count);
+        int i = 0;
+        for (Map.Entry<String, Map<String, String>> day : series.entrySet()) {
+            long[] bar = bars.get(i++);
+            assertEquals(LocalDate.parse(day.getKey()).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli(), bar[0]);
+            assertEquals(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("1. open"))), bar[1]);
+            assertEquals(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("2. high"))), bar[2]);
+            assertEquals(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("3. low"))), bar[3]);
+            assertEquals(FixedPoint.fromBigDecimal(new BigDecimal(day.getValue().get("4. close"))), bar[4]);
+        }
+    }
+
+    @Test
+    void parseIndicatorSeries_ReadsTimestampedPoints() throws Exception {
+        // Act
+        List<long[]> points = new ArrayList<>();
+        int count = ProviderResponseParser.parseIndicatorSeries(stream(RSI_BODY),
+                (time, value) -> points.add(new long[]{time, value}));
+
+        // Assert
+        assertEquals(2, count);
+        long expectedTime = LocalDateTime.of(2024, 1, 3, 10, 5).toInstant(ZoneOffset.UTC).toEpochMilli();
+        assertArrayEquals(new long[]{expectedTime, 6123450000L}, points.get(0));
+        assertEquals(5800000000L, points.get(1)[1]);
+    }
+
+    // FX_DAILY shaped payload, newest day first, as the provider sends it
+    private static String dailyBody(int days, Random random) {
+        StringBuilder body = new StringBuilder("{\"Meta Data\": {\"1. Information\": \"Forex Daily Prices (open, high, low, close)\","
+                + " \"2. From Symbol\": \"EUR\", \"3. To Symbol\": \"USD\", \"4. Output Size\": \"Full size\","
+                + " \"5. Last Refreshed\": \"2024-01-03\", \"6. Time Zone\": \"UTC\"}, \"Time Series FX (Daily)\": {");
+        LocalDate day = LocalDate.of(2024, 1, 3);
+        double price = 1.09;
+        for (int i = 0; i < days; i++) {
+            double open = price;
+            price *= 1 + random.nextGaussian() * 0.004;
+            if (i > 0) {
+                body.append(", ");
+            }
+            body.append(String.format(Locale.ROOT, "\"%s\": {\"1. open\": \"%.5f\", \"2. high\": \"%.5f\", \"3. low\": \"%.5f\", \"4. close\": \"%.5f\"}",
+                    day.minusDays(i), open, Math.max(open, price) * 1.001, Math.min(open, price) * 0.999, price));
+        }
+        return body.append("}}").toString();
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,163 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountBalanceRepositoryTest {
+
+    private AccountsTable jdbcTemplate;
+    private AccountBalanceRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new AccountsTable();
+        jdbcTemplate.balances.put(1L, new BigDecimal("100.00"));
+        jdbcTemplate.balances.put(2L, new BigDecimal("10.00"));
+        repository = new AccountBalanceRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void addToBalance_RunsOneGuardedUpdateReturningTheNewBalance() {
+        // Act
+        Optional<BigDecimal> balance = repository.addToBalance(1L, new BigDecimal("-40"));
+
+        // Assert
+        assertEquals(0, balance.orElseThrow().compareTo(new BigDecimal("60")));
+        assertEquals(1, jdbcTemplate.statements.size());
+        String sql = jdbcTemplate.statements.get(0);
+        assertTrue(sql.startsWith("UPDATE accounts SET balance = balance + ?"), sql);
+        assertTrue(sql.contains("WHERE id = ?"), sql);
+        assertTrue(sql.endsWith("RETURNING balance"), sql);
+    }
+
+    @Test
+    void addToBalance_WhenDebitNotCovered_ChangesNothing() {
+        // Act
+        Optional<BigDecimal> balance = repository.addToBalance(2L, new BigDecimal("-10.01"));
+
+        // Assert
+        assertTrue(balance.isEmpty());
+        assertEquals(0, jdbcTemplate.balances.get(2L).compareTo(new BigDecimal("10.00")));
+    }
+
+    @Test
+    void addToBalance_DebitMustLeaveActiveHoldsCovered() {
+        // Arrange
+        jdbcTemplate.activeHolds.put(1L, new BigDecimal("60"));
+
+        // Act
+        Optional<BigDecimal> intoHeld = repository.addToBalance(1L, new BigDecimal("-41"));
+        Optional<BigDecimal> available = repository.addToBalance(1L, new BigDecimal("-40"));
+        Optional<BigDecimal> credit = repository.addToBalance(1L, new BigDecimal("5"));
+
+        // Assert
+        assertTrue(intoHeld.isEmpty());
+        assertEquals(0, available.orElseThrow().compareTo(new BigDecimal("60")));
+        assertEquals(0, credit.orElseThrow().compareTo(new BigDecimal("65")));
+        assertTrue(jdbcTemplate.statements.get(0).contains("FROM holds h WHERE h.account_id = accounts.id "
+                + "AND h.status = 'ACTIVE'"), jdbcTemplate.statements.get(0));
+    }
+
+    @Test
+    void addToBalances_AppliesCoveredChangesAsOneBatch() {
+        // Act
+        boolean[] applied = repository.addToBalances(List.of(
+                new BalanceChange(1L, new BigDecimal("-70")),
+                new BalanceChange(2L, new BigDecimal("-20")),
+                new BalanceChange(1L, new BigDecimal("-40")),
+                new BalanceChange(2L, new BigDecimal("5"))));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false, false, true}, applied);
+        assertEquals(1, jdbcTemplate.statements.size());
+        assertEquals(0, jdbcTemplate.balances.get(1L).compareTo(new BigDecimal("30")));
+        assertEquals(0, jdbcTemplate.balances.get(2L).compareTo(new BigDecimal("15")));
+        assertEquals(0, repository.addToBalances(List.of()).length);
+    }
+
+    /**
+     * Runs the repository's statements against an in-memory accounts table, binding each parameter by
+     * its position in the SQL the way the driver would, so a change to the statement's shape or
+     * parameter order shows here.
+     */
+    private static class AccountsTable extends JdbcTemplate {
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+        private final Map<Long, BigDecimal> activeHolds = new HashMap<>();
+        private final List<String> statements = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            statements.add(sql);
+            Map<Integer, Object> parameters = new HashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                parameters.put(i + 1, args[i]);
+            }
+            BigDecimal balance = update(sql, parameters);
+            return balance == null ? List.of() : (List<T>) List.of(balance);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            statements.add(sql);
+            int[] counts = new int[batchArgs.size()];
+            int i = 0;
+            for (T arg : batchArgs) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                        PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        (proxy, method, args) -> {
+                            parameters.put((Integer) args[0], args[1]);
+                            return null;
+                        });
+                try {
+                    pss.setValues(statement, arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                counts[i++] = update(sql, parameters) == null ? 0 : 1;
+            }
+            return new int[][]{counts};
+        }
+
+        // UPDATE accounts SET balance = balance + ?1, last_updated_at = ?2
+        //     WHERE id = ?3 AND balance + ?4 >= CASE WHEN ?5 < 0 THEN <active holds> ELSE 0 END
+        private BigDecimal update(String sql, Map<Integer, Object> parameters) {
+            assertEquals(5, sql.chars().filter(c -> c == '?').count(), sql);
+            assertEquals(parameters.get(1), parameters.get(4));
+            assertEquals(parameters.get(1), parameters.get(5));
+            assertTrue(parameters.get(2) instanceof Timestamp);
+            BigDecimal balance = balances.get((Long) parameters.get(3));
+            if (balance == null) {
+                return null;
+            }
+            BigDecimal amount = (BigDecimal) parameters.get(1);
+            BigDecimal updated = balance.add(amount);
+            BigDecimal floor = amount.signum() < 0
+                    ? activeHolds.getOrDefault((Long) parameters.get(3), BigDecimal.ZERO) : BigDecimal.ZERO;
+            if (updated.compareTo(floor) < 0) {
+                return null;
+            }
+            balances.put((Long) parameters.get(3), updated);
+            return updated;
+        }
+    }
+}
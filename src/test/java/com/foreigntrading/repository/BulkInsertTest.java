@@ -0,0 +1,203 @@
+package com.foreigntrading.repository;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Trade;
+import com.foreigntrading.entity.Transaction;
+import com.foreigntrading.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkInsertTest {
+
+    private RecordingJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new RecordingJdbcTemplate();
+    }
+
+    @Test
+    void insertAll_HundredThousandTransactions_TakeAHandfulOfRoundTrips() {
+        // Arrange
+        Account account = new Account();
+        account.setId(3L);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccount(account);
+            transaction.setTransactionType("TRADE");
+            transaction.setAmount(new BigDecimal("-1100"));
+            transaction.setCurrency("USD");
+            transaction.setStatus("COMPLETED");
+            transactions.add(transaction);
+        }
+
+        // Act
+        new TransactionBulkRepositoryImpl(jdbcTemplate).insertAll(transactions);
+
+        // Assert: one query for the ids and ten batches of 10,000
+        assertEquals(11, jdbcTemplate.roundTrips);
+        assertEquals(100_000, jdbcTemplate.rows.size());
+        Set<Long> ids = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            assertTrue(transaction.getId() > 0);
+            ids.add(transaction.getId());
+            assertNotNull(transaction.getCreatedAt());
+        }
+        assertEquals(100_000, ids.size());
+        Map<Integer, Object> first = jdbcTemplate.rows.get(0);
+        assertEquals(transactions.get(0).getId(), first.get(1));
+        assertEquals(Long.valueOf(3L), first.get(2));
+        assertEquals("TRADE", first.get(3));
+        assertNull(first.get(12));
+    }
+
+    @Test
+    void insertAll_Trades_GetIdsFromWholeSequenceBlocks() {
+        // Arrange
+        List<Trade> trades = trades(120);
+
+        // Act
+        new TradeBulkRepositoryImpl(jdbcTemplate).insertAll(trades);
+
+        // Assert: the sequence stood at 100, so its next three values cover ids 101 to 250
+        assertEquals(Long.valueOf(101L), trades.get(0).getId());
+        assertEquals(Long.valueOf(150L), trades.get(49).getId());
+        assertEquals(Long.valueOf(151L), trades.get(50).getId());
+        assertEquals(Long.valueOf(220L), trades.get(119).getId());
+        assertEquals(BigDecimal.ZERO, trades.get(0).getProfitLoss());
+        assertEquals(2, jdbcTemplate.roundTrips);
+        assertEquals(Long.valueOf(7L), jdbcTemplate.rows.get(0).get(2));
+        assertTrue(jdbcTemplate.queries.get(0).contains("generate_series"));
+    }
+
+    @Test
+    void insertAll_OnADatabaseOtherThanPostgreSql_TakesABlockPerQuery() {
+        // Arrange
+        jdbcTemplate.databaseProduct = "H2";
+        List<Trade> trades = trades(120);
+
+        // Act
+        new TradeBulkRepositoryImpl(jdbcTemplate).insertAll(trades);
+
+        // Assert: the same ids as from generate_series, from three queries instead of one
+        assertEquals(Long.valueOf(101L), trades.get(0).getId());
+        assertEquals(Long.valueOf(151L), trades.get(50).getId());
+        assertEquals(Long.valueOf(220L), trades.get(119).getId());
+        assertEquals(List.of("SELECT NEXT VALUE FOR trades_seq", "SELECT NEXT VALUE FOR trades_seq",
+                "SELECT NEXT VALUE FOR trades_seq"), jdbcTemplate.queries);
+        assertEquals(4, jdbcTemplate.roundTrips);
+    }
+
+    private static List<Trade> trades(int count) {
+        User user = new User();
+        user.setId(7L);
+        Account account = new Account();
+        account.setId(3L);
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Trade trade = new Trade();
+            trade.setUser(user);
+            trade.setAccount(account);
+            trade.setBaseCurrency("EUR");
+            trade.setQuoteCurrency("USD");
+            trade.setAmount(BigDecimal.ONE);
+            trade.setPrice(new BigDecimal("1.1000"));
+            trade.setOrderType("MARKET");
+            trade.setSide("BUY");
+            trade.setStatus("EXECUTED");
+            trade.setExecutedAt(LocalDateTime.now());
+            trades.add(trade);
+        }
+        return trades;
+    }
+
+    // Answers the sequence queries from a sequence at 100 and records each batched row's parameters
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+        private String databaseProduct = "PostgreSQL";
+        private long sequence = 100;
+        private int roundTrips;
+        private final List<String> queries = new ArrayList<>();
+        private final List<Map<Integer, Object>> rows = new ArrayList<>();
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+                    DatabaseMetaData.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                    (proxy, method, args) -> databaseProduct);
+            Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> metaData);
+            try {
+                return action.doInConnection(connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // generate_series: one value per block in a single query
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            roundTrips++;
+            queries.add(sql);
+            List<Long> values = new ArrayList<>();
+            for (int i = 0; i < (Integer) args[1]; i++) {
+                sequence += BulkInserts.ALLOCATION_SIZE;
+                values.add(sequence);
+            }
+            return (List<T>) values;
+        }
+
+        // NEXT VALUE FOR: one value per query
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            roundTrips++;
+            queries.add(sql);
+            sequence += BulkInserts.ALLOCATION_SIZE;
+            return (T) Long.valueOf(sequence);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            roundTrips += (batchArgs.size() + batchSize - 1) / batchSize;
+            for (T arg : batchArgs) {
+                Map<Integer, Object> row = new HashMap<>();
+                PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                        PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        (proxy, method, args) -> {
+                            row.put((Integer) args[0], args[1]);
+                            return null;
+                        });
+                try {
+                    pss.setValues(statement, arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                rows.add(row);
+            }
+            return new int[0][];
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.exception.ResourceNotFoundException;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
+import com.foreigntrading.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountBalanceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2000;
+
+    // Balances as the accounts table holds them, each row updated atomically like the guarded UPDATE
+    private final Map<Long, BigDecimal> rows = new ConcurrentHashMap<>();
+    private final AtomicBoolean wentNegative = new AtomicBoolean();
+
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        rows.put(1L, new BigDecimal("100.00"));
+        rows.put(2L, new BigDecimal("100.00"));
+        AccountRepository accountRepository = (AccountRepository) Proxy.newProxyInstance(
+                AccountRepository.class.getClassLoader(), new Class<?>[]{AccountRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "addToBalance" -> add((Long) args[0], (BigDecimal) args[1]);
+                    case "addToBalances" -> {
+                        List<?> changes = (List<?>) args[0];
+                        boolean[] applied = new boolean[changes.size()];
+                        for (int i = 0; i < applied.length; i++) {
+                            BalanceChange change = (BalanceChange) changes.get(i);
+                            applied[i] = add(change.accountId(), change.amount()).isPresent();
+                        }
+                        yield applied;
+                    }
+                    case "existsById" -> rows.containsKey((Long) args[0]);
+                    case "findBalanceState" -> {
+                        List<Object[]> found = new ArrayList<>();
+                        BigDecimal balance = rows.get((Long) args[0]);
+                        if (balance != null) {
+                            found.add(new Object[]{7L, true, "USD", balance, BigDecimal.ZERO});
+                        }
+                        yield found;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        accountService = new AccountService(accountRepository, null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updateBalance_ConcurrentDepositsAndWithdrawals_LoseNoUpdate() throws InterruptedException {
+        // Arrange: half the threads deposit 1, half try to withdraw 3 from a balance that cannot cover them all
+        AtomicInteger withdrawn = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean deposits = t % 2 == 0;
+            Thread thread = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (deposits) {
+                        accountService.updateBalance(1L, BigDecimal.ONE);
+                    } else {
+                        try {
+                            accountService.updateBalance(1L, new BigDecimal("-3"));
+                            withdrawn.incrementAndGet();
+                        } catch (InsufficientFundsException e) {
+                            // the guard refused a debit the balance did not cover
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Act
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        BigDecimal expected = new BigDecimal("100.00")
+                .add(BigDecimal.valueOf((long) THREADS / 2 * ROUNDS))
+                .subtract(BigDecimal.valueOf(3L * withdrawn.get()));
+        assertEquals(0, rows.get(1L).compareTo(expected));
+        assertFalse(wentNegative.get());
+        assertTrue(withdrawn.get() > 0);
+    }
+
+    @Test
+    void updateBalance_InMemoryAndStoredBalancesStayInStep() throws InterruptedException {
+        // Arrange: the account is loaded into memory, then hit from both the fast path and the guarded update
+        accountService.applyInMemory(2L, 7L, BigDecimal.ZERO, BigDecimal.ZERO);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < ROUNDS; i++) {
+                    BigDecimal amount = (i + worker) % 2 == 0 ? new BigDecimal("2") : new BigDecimal("-2");
+                    try {
+                        accountService.updateBalance(2L, amount);
+                    } catch (InsufficientFundsException e) {
+                        // refused in memory or by the guard, and changed nothing in either
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Act
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        long inMemory = accountService.applyInMemory(2L, 7L, BigDecimal.ZERO, BigDecimal.ZERO).balance();
+        assertEquals(FixedPoint.fromBigDecimal(rows.get(2L)), inMemory);
+        assertFalse(wentNegative.get());
+    }
+
+    @Test
+    void updateBalances_AppliesCoveredChangesInOneBatch() {
+        // Act
+        boolean[] applied = accountService.updateBalances(List.of(
+                new BalanceChange(1L, new BigDecimal("-40")),
+                new BalanceChange(2L, new BigDecimal("-150")),
+                new BalanceChange(1L, new BigDecimal("-70")),
+                new BalanceChange(2L, new BigDecimal("25"))));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false, false, true}, applied);
+        assertEquals(0, rows.get(1L).compareTo(new BigDecimal("60")));
+        assertEquals(0, rows.get(2L).compareTo(new BigDecimal("125")));
+    }
+
+    @Test
+    void updateBalance_WhenTransactionRollsBack_MovesTheInMemoryBalanceBack() {
+        // Arrange
+        accountService.applyInMemory(1L, 7L, BigDecimal.ZERO, BigDecimal.ZERO);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        accountService.updateBalance(1L, new BigDecimal("-30"));
+        accountService.updateBalances(List.of(new BalanceChange(1L, new BigDecimal("-20")),
+                new BalanceChange(1L, new BigDecimal("-500"))));
+        long beforeRollback = accountService.applyInMemory(1L, 7L, BigDecimal.ZERO, BigDecimal.ZERO).balance();
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        // Assert: the database rolled back both accepted debits, and the book follows it
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("50")), beforeRollback);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("100")),
+                accountService.applyInMemory(1L, 7L, BigDecimal.ZERO, BigDecimal.ZERO).balance());
+    }
+
+    @Test
+    void writeBackBalances_WhenARowRefusesItsChange_Throws() {
+        // Act & Assert: the other account's credit goes through in the batch, and the caller rolls it back
+        InsufficientFundsException refused = assertThrows(InsufficientFundsException.class,
+                () -> accountService.writeBackBalances(Map.of(1L, new BigDecimal("-150"), 2L, BigDecimal.TEN)));
+        assertTrue(refused.getMessage().contains("accountId=1"), refused.getMessage());
+        assertEquals(0, rows.get(1L).compareTo(new BigDecimal("100.00")));
+    }
+
+    @Test
+    void updateBalance_WhenAccountMissing_ThrowsNotFound() {
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> accountService.updateBalance(99L, BigDecimal.ONE));
+    }
+
+    private Optional<BigDecimal> add(Long accountId, BigDecimal amount) {
+        BigDecimal[] updated = new BigDecimal[1];
+        rows.computeIfPresent(accountId, (id, balance) -> {
+            BigDecimal next = balance.add(amount);
+            if (next.signum() < 0) {
+                return balance;
+            }
+            updated[0] = next;
+            return next;
+        });
+        if (rows.getOrDefault(accountId, BigDecimal.ZERO).signum() < 0) {
+            wentNegative.set(true);
+        }
+        return Optional.ofNullable(updated[0]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Alert;
+import com.foreigntrading.entity.User;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.repository.AlertRepository;
+import com.foreigntrading.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.foreigntrading.util.TestHelper.repository;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertIndexTest {
+
+    private final List<Alert> alerts = new ArrayList<>();
+
+    private CurrencyPairRegistry pairRegistry;
+    private AlertService alertService;
+    private int eurUsd;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Function<Object[], Object>> alertMethods = new HashMap<>();
+        alertMethods.put("save", args -> {
+            Alert alert = (Alert) args[0];
+            if (alert.getId() == null) {
+                alert.setId((long) alerts.size() + 1);
+                alerts.add(alert);
+            }
+            return alert;
+        });
+        alertMethods.put("findById", args -> Optional.of(alerts.get((int) (long) (Long) args[0] - 1)));
+        alertMethods.put("delete", args -> null);
+        Map<String, Function<Object[], Object>> userMethods = new HashMap<>();
+        userMethods.put("findById", args -> {
+            User user = new User();
+            user.setId((Long) args[0]);
+            return Optional.of(user);
+        });
+
+        pairRegistry = new CurrencyPairRegistry();
+        eurUsd = pairRegistry.pairId("EUR", "USD");
+        alertService = new AlertService(repository(AlertRepository.class, alertMethods),
+                new UserService(repository(UserRepository.class, userMethods), null), null, pairRegistry,
+                new EngineJournalService(pairRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void createAlert_WhenRolledBack_ArmsNothing() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        Alert alert = createAlert();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertFalse(alertService.getAlertIndex().contains(alert.getId()));
+    }
+
+    @Test
+    void createAlert_ArmsTheThresholdOnceCommitted() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        Alert alert = createAlert();
+        boolean armedBeforeCommit = alertService.getAlertIndex().contains(alert.getId());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertFalse(armedBeforeCommit);
+        assertTrue(alertService.getAlertIndex().contains(alert.getId()));
+    }
+
+    @Test
+    void deactivateAndDeleteAlert_WhenRolledBack_KeepTheThresholdArmed() {
+        // Arrange
+        Alert alert = createAlert();
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        alertService.deactivateAlert(alert.getId());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.initSynchronization();
+        alertService.deleteAlert(alert.getId());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertTrue(alertService.getAlertIndex().contains(alert.getId()));
+    }
+
+    @Test
+    void triggerAlertIfActive_WhenRolledBack_RearmsTheFiredAlert() {
+        // Arrange: an alert that notifies nobody, fired by a tick at its target
+        Alert alert = alertService.createAlert(7L, "EUR", "USD", new BigDecimal("1.1000"), "ABOVE", "NONE");
+        List<Long> fired = new ArrayList<>();
+        alertService.fireTriggeredAlerts(eurUsd, 110_000_000L, 110_000_000L, fired::add);
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        boolean triggered = alertService.triggerAlertIfActive(alert.getId());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertEquals(List.of(alert.getId()), fired);
+        assertTrue(triggered);
+        assertFalse(alertService.getAlertIndex().isInFlight(alert.getId()));
+        assertTrue(alertService.getAlertIndex().contains(alert.getId()));
+    }
+
+    @Test
+    void triggerAlertIfActive_RemovesTheFiredAlertOnceCommitted() {
+        // Arrange
+        Alert alert = alertService.createAlert(7L, "EUR", "USD", new BigDecimal("1.1000"), "ABOVE", "NONE");
+        alertService.fireTriggeredAlerts(eurUsd, 110_000_000L, 110_000_000L, alertId -> { });
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        alertService.triggerAlertIfActive(alert.getId());
+        boolean inFlightBeforeCommit = alertService.getAlertIndex().isInFlight(alert.getId());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertTrue(inFlightBeforeCommit);
+        assertFalse(alertService.getAlertIndex().isInFlight(alert.getId()));
+        assertFalse(alertService.getAlertIndex().contains(alert.getId()));
+    }
+
+    @Test
+    void createAlert_WhenCurrencyUnknown_RejectsWithoutRegisteringIt() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () ->
+                alertService.createAlert(7L, "XAU", "USD", new BigDecimal("1.1000"), "ABOVE", "EMAIL"));
+        assertEquals(-1, pairRegistry.findCurrencyId("XAU"));
+        assertTrue(alerts.isEmpty());
+    }
+
+    private Alert createAlert() {
+        return alertService.createAlert(7L, "EUR", "USD", new BigDecimal("1.1000"), "ABOVE", "EMAIL");
+    }
+
+    // Ends the simulated transaction the way the transaction manager would
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.Candle;
+import com.foreigntrading.marketdata.CandleAggregator;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.Timeframe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandleServiceTest {
+
+    private static final long T0 = 1_699_999_200_000L; // aligned to an hour boundary
+
+    private CandleAggregator aggregator;
+    private List<Candle> closed;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new CandleAggregator(100);
+        closed = new ArrayList<>();
+        aggregator.subscribe(closed::add);
+    }
+
+    @Test
+    void onTick_TracksOpenHighLowClose() {
+        // Act
+        aggregator.onTick(1, T0 + 100, 110);
+        aggregator.onTick(1, T0 + 200, 130);
+        aggregator.onTick(1, T0 + 300, 90);
+        aggregator.onTick(1, T0 + 400, 120);
+
+        // Assert
+        Candle bar = aggregator.currentBar(1, Timeframe.S1);
+        assertEquals(T0, bar.openTime());
+        assertEquals(110, bar.open());
+        assertEquals(130, bar.high());
+        assertEquals(90, bar.low());
+        assertEquals(120, bar.close());
+        assertEquals(4, bar.tickCount());
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    void onTick_WhenBoundaryCrossed_PublishesFinalizedBar() {
+        // Act
+        aggregator.onTick(1, T0 + 100, 110);
+        aggregator.onTick(1, T0 + 900, 115);
+        aggregator.onTick(1, T0 + 1_100, 120);
+
+        // Assert
+        assertEquals(1, closed.size());
+        Candle bar = closed.get(0);
+        assertEquals(Timeframe.S1, bar.timeframe());
+        assertEquals(T0, bar.openTime());
+        assertEquals(115, bar.close());
+        assertEquals(2, bar.tickCount());
+        assertEquals(List.of(bar), aggregator.recentBars(1, Timeframe.S1, 10));
+        assertEquals(3, aggregator.currentBar(1, Timeframe.M1).tickCount());
+    }
+
+    @Test
+    void closeExpired_FinalizesBarsWithoutNewTick() {
+        // Arrange
+        aggregator.onTick(1, T0 + 100, 110);
+
+        // Act
+        aggregator.closeExpired(T0 + 60_000);
+
+        // Assert
+        assertEquals(2, closed.size());
+        assertEquals(Timeframe.S1, closed.get(0).timeframe());
+        assertEquals(Timeframe.M1, closed.get(1).timeframe());
+        assertNull(aggregator.currentBar(1, Timeframe.M1));
+        assertNotNull(aggregator.currentBar(1, Timeframe.M5));
+    }
+
+    @Test
+    void recentBars_ReturnsMostRecentOldestFirst() {
+        // Arrange
+        for (int second = 0; second < 5; second++) {
+            aggregator.onTick(1, T0 + second * 1_000L, 100 + second);
+        }
+
+        // Act
+        List<Candle> bars = aggregator.recentBars(1, Timeframe.S1, 2);
+
+        // Assert
+        assertEquals(2, bars.size());
+        assertEquals(102, bars.get(0).close());
+        assertEquals(103, bars.get(1).close());
+    }
+
+    @Test
+    void getChartData_ReadsBarsFromRateBookUpdates() {
+        // Arrange
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        CandleService candleService = new CandleService(rateBookService);
+        candleService.init();
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+
+        // Act
+        Candle current = candleService.getCurrentCandle("EUR", "USD", Timeframe.H1);
+
+        // Assert
+        assertNotNull(current);
+        assertEquals(112340000L, current.close());
+        assertTrue(candleService.getChartData("EUR", "USD", "1h", 10).isEmpty());
+    }
+
+    @Test
+    void getChartData_ReportsBarTimesInTheSystemZone() {
+        // Arrange: a bar opened at 10:00 UTC on 1 March 2024, closed by a tick in the next hour
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        CandleService candleService = new CandleService(rateBookService);
+        candleService.init();
+        int pairId = rateBookService.getPairRegistry().pairId("EUR", "USD");
+        long openMillis = Instant.parse("2024-03-01T10:00:00Z").toEpochMilli();
+        rateBookService.publish(pairId, new BigDecimal("1.10"), openMillis * MarketClock.NANOS_PER_MILLI);
+        rateBookService.publish(pairId, new BigDecimal("1.11"), (openMillis + 3_600_000L) * MarketClock.NANOS_PER_MILLI);
+
+        TimeZone zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        List<Map<String, Object>> bars;
+        try {
+            // Act
+            bars = candleService.getChartData("EUR", "USD", "1h", 10);
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+
+        // Assert: the same local time tick history and the rate book report
+        assertEquals(1, bars.size());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 19, 0), bars.get(0).get("time"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.Candle;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyApiServiceCacheTest {
+
+    private static final String DAILY_BODY = "{\"Meta Data\": {\"1. Information\": \"Forex Daily Prices\"},"
+            + " \"Time Series FX (Daily)\": {\"2024-01-03\": {\"1. open\": \"1.0920\", \"2. high\": \"1.0945\","
+            + " \"3. low\": \"1.0890\", \"4. close\": \"1.0930\"}}}";
+
+    private CountingRestTemplate restTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private CurrencyApiService currencyApiService;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = new CountingRestTemplate();
+        meterRegistry = new SimpleMeterRegistry();
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        currencyApiService = new CurrencyApiService(restTemplate, rateBookService, new TickPipelineService(rateBookService, null, null, null, meterRegistry), null, meterRegistry, null);
+        ReflectionTestUtils.setField(currencyApiService, "apiKey", "test");
+        ReflectionTestUtils.setField(currencyApiService, "cacheMaxEntries", 2);
+        currencyApiService.init();
+    }
+
+    @Test
+    void getHistoricalData_ConcurrentMissesShareOneProviderCall() throws Exception {
+        // Arrange
+        restTemplate.delayMillis = 200;
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        // Act
+        List<Future<List<Candle>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return currencyApiService.getHistoricalData("EUR", "USD", "1d");
+            }));
+        }
+        start.countDown();
+        for (Future<List<Candle>> result : results) {
+            assertEquals(109300000L, result.get().get(0).close());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, restTemplate.calls.get());
+        assertEquals(callers - 1, gets("coalesced") + gets("hit"));
+        assertEquals(1.0, meterRegistry.get("cache.hit.ratio").tag("cache", "provider.history").gauge().value(), 1.0 / callers + 1e-9);
+    }
+
+    @Test
+    void getHistoricalData_WhenExpired_CallsProviderAgain() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyApiService, "historicalTtlSeconds", 0L);
+
+        // Act
+        currencyApiService.getHistoricalData("EUR", "USD", "1d");
+        currencyApiService.getHistoricalData("EUR", "USD", "1d");
+
+        // Assert
+        assertEquals(2, restTemplate.calls.get());
+        assertEquals(1.0, meterRegistry.get("cache.expirations").tag("cache", "provider.history").functionCounter().count());
+    }
+
+    @Test
+    void cache_WhenFull_EvictsLeastRecentlyUsed() {
+        // Act
+        currencyApiService.getHistoricalData("EUR", "USD", "1d");
+        currencyApiService.getHistoricalData("GBP", "USD", "1d");
+        currencyApiService.getHistoricalData("EUR", "USD", "1d");
+        currencyApiService.getHistoricalData("USD", "JPY", "1d");
+        currencyApiService.getHistoricalData("EUR", "USD", "1d");
+        currencyApiService.getHistoricalData("GBP", "USD", "1d");
+
+        // Assert: GBP/USD was the eldest entry when USD/JPY arrived
+        assertEquals(4, restTemplate.calls.get());
+        assertEquals(2.0, meterRegistry.get("cache.evictions").tag("cache", "provider.history").functionCounter().count());
+        assertEquals(2, gets("hit"));
+        assertEquals(2.0, meterRegistry.get("cache.size").tag("cache", "provider.history").gauge().value());
+    }
+
+    @Test
+    void getHistoricalData_WhenProviderFails_DoesNotCacheFailure() {
+        // Arrange
+        restTemplate.fail = true;
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> currencyApiService.getHistoricalData("EUR", "USD", "1d"));
+        restTemplate.fail = false;
+        assertNotNull(currencyApiService.getHistoricalData("EUR", "USD", "1d"));
+        assertEquals(2, restTemplate.calls.get());
+    }
+
+    private long gets(String result) {
+        return (long) meterRegistry.get("cache.gets").tag("cache", "provider.history").tag("result", result).functionCounter().count();
+    }
+
+    private static class CountingRestTemplate extends RestTemplate {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long delayMillis;
+        private volatile boolean fail;
+
+        @Override
+        public <T> T execute(String url, HttpMethod method, RequestCallback requestCallback,
+                             ResponseExtractor<T> responseExtractor, Object... uriVariables) {
+            calls.incrementAndGet();
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (fail) {
+                throw new IllegalStateException("Provider unavailable");
+            }
+            try {
+                return responseExtractor.extractData(new StubResponse(DAILY_BODY));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record StubResponse(String body) implements ClientHttpResponse {
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return new HttpHeaders();
+        }
+    }
+}
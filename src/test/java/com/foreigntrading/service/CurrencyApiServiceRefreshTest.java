@@ -0,0 +1,234 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyApiServiceRefreshTest {
+
+    private static final String RATE_BODY =
+            "{\"Realtime Currency Exchange Rate\": {\"5. Exchange Rate\": \"%s\"}}";
+
+    private StubHttpClient httpClient;
+    private SimpleMeterRegistry meterRegistry;
+    private RateBookService rateBookService;
+    private CurrencyApiService currencyApiService;
+
+    @BeforeEach
+    void setUp() {
+        httpClient = new StubHttpClient();
+        meterRegistry = new SimpleMeterRegistry();
+        rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        currencyApiService = new CurrencyApiService(null, rateBookService, new TickPipelineService(rateBookService, null, null, null, meterRegistry), httpClient, meterRegistry, null);
+        ReflectionTestUtils.setField(currencyApiService, "apiKey", "test");
+        ReflectionTestUtils.setField(currencyApiService, "currencyPairs", new String[]{"EUR/USD", "GBP/USD", "USD/JPY", "AUD/USD"});
+        ReflectionTestUtils.setField(currencyApiService, "callTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(currencyApiService, "cycleBudgetMillis", 2000L);
+    }
+
+    @Test
+    void updateExchangeRates_IssuesCallsConcurrently() {
+        // Arrange
+        httpClient.respond("EUR", 300, "1.1234");
+        httpClient.respond("GBP", 300, "1.3456");
+        httpClient.respond("USD", 300, "110.12");
+        httpClient.respond("AUD", 300, "0.7654");
+
+        // Act
+        long start = System.nanoTime();
+        currencyApiService.updateExchangeRates();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertTrue(elapsedMillis < 900, "refresh took " + elapsedMillis + "ms, expected close to one call");
+        assertEquals(new BigDecimal("1.12340000"), rateBookService.getExchangeRate("EUR", "USD"));
+        assertEquals(new BigDecimal("110.12000000"), rateBookService.getExchangeRate("USD", "JPY"));
+        assertEquals(1, meterRegistry.timer("marketdata.provider.latency", "pair", "EUR/USD").count());
+    }
+
+    @Test
+    void updateExchangeRates_WhenOneCallFails_CountsFailureAndKeepsOthers() {
+        // Arrange
+        httpClient.respond("EUR", 10, "1.1234");
+        httpClient.respond("GBP", 10, null);
+        httpClient.respond("USD", 10, "110.12");
+        httpClient.respond("AUD", 10, "0.7654");
+
+        // Act
+        currencyApiService.updateExchangeRates();
+
+        // Assert
+        assertEquals(1.0, meterRegistry.counter("marketdata.provider.failures", "pair", "GBP/USD").count(), 0.0);
+        assertEquals(0.0, meterRegistry.counter("marketdata.provider.failures", "pair", "EUR/USD").count(), 0.0);
+        assertNull(rateBookService.findEntry("GBP", "USD"));
+        assertEquals(new BigDecimal("0.76540000"), rateBookService.getExchangeRate("AUD", "USD"));
+    }
+
+    @Test
+    void updateExchangeRates_StopsWaitingAtCycleBudget() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyApiService, "cycleBudgetMillis", 200L);
+        httpClient.respond("EUR", 10, "1.1234");
+        httpClient.respond("GBP", 5000, "1.3456");
+        httpClient.respond("USD", 10, "110.12");
+        httpClient.respond("AUD", 10, "0.7654");
+
+        // Act
+        long start = System.nanoTime();
+        currencyApiService.updateExchangeRates();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertTrue(elapsedMillis < 1000, "refresh took " + elapsedMillis + "ms");
+        assertEquals(new BigDecimal("1.12340000"), rateBookService.getExchangeRate("EUR", "USD"));
+        assertNull(rateBookService.findEntry("GBP", "USD"));
+        assertTrue(httpClient.sends.get("GBP").isCancelled());
+        assertFalse(httpClient.sends.get("EUR").isCancelled());
+    }
+
+    private static class StubHttpClient extends HttpClient {
+        private final Map<String, long[]> delays = new ConcurrentHashMap<>();
+        private final Map<String, String> rates = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<?>> sends = new ConcurrentHashMap<>();
+
+        void respond(String fromCurrency, long delayMillis, String rate) {
+            delays.put(fromCurrency, new long[]{delayMillis});
+            if (rate != null) {
+                rates.put(fromCurrency, rate);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+            String query = request.uri().getQuery();
+            String from = query.substring(query.indexOf("from_currency=") + 14, query.indexOf("from_currency=") + 17);
+            long delay = delays.get(from)[0];
+            String rate = rates.get(from);
+            Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+            CompletableFuture<HttpResponse<T>> send = CompletableFuture.supplyAsync(() -> {
+                if (rate == null) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return (HttpResponse<T>) new StubResponse(request, String.format(RATE_BODY, rate).getBytes(StandardCharsets.UTF_8));
+            }, delayed);
+            sends.put(from, send);
+            return send;
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                                HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+            return sendAsync(request, handler);
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<CookieHandler> cookieHandler() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Duration> connectTimeout() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Redirect followRedirects() {
+            return Redirect.NEVER;
+        }
+
+        @Override
+        public Optional<ProxySelector> proxy() {
+            return Optional.empty();
+        }
+
+        @Override
+        public SSLContext sslContext() {
+            return null;
+        }
+
+        @Override
+        public SSLParameters sslParameters() {
+            return null;
+        }
+
+        @Override
+        public Optional<Authenticator> authenticator() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Version version() {
+            return Version.HTTP_1_1;
+        }
+
+        @Override
+        public Optional<Executor> executor() {
+            return Optional.empty();
+        }
+    }
+
+    private record StubResponse(HttpRequest request, byte[] body) implements HttpResponse<byte[]> {
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public Optional<HttpResponse<byte[]>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
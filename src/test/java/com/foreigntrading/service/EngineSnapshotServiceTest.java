@@ -0,0 +1,201 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.EngineLog;
+import com.foreigntrading.marketdata.EngineSnapshot;
+import com.foreigntrading.marketdata.FixedPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineSnapshotServiceTest {
+
+    private Path directory;
+    private CurrencyPairRegistry registry;
+    private Engine engine;
+    private int eurUsd;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("engine");
+        registry = new CurrencyPairRegistry();
+        eurUsd = registry.pairId("EUR", "USD");
+        engine = new Engine();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        engine.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void recover_LoadsSnapshotAndReplaysLogTail() {
+        // Arrange: state before the snapshot
+        engine.orders.submit(eurUsd, 1, true, price(1.0950), FixedPoint.ONE, false);
+        engine.orders.submit(eurUsd, 2, false, price(1.1050), 2 * FixedPoint.ONE, false);
+        engine.orders.submit(eurUsd, 3, true, price(1.0900), FixedPoint.ONE, false);
+        engine.trades.getTriggerIndex().add(11, eurUsd, price(1.0800), false);
+        engine.alerts.getAlertIndex().addTouch(21, eurUsd, price(1.1200));
+        engine.snapshots.snapshot();
+
+        // ... and after it: order 4 queues behind 2, the rate fills 1, order 5 takes half of 2, trade 11 closes
+        engine.orders.submit(eurUsd, 4, false, price(1.1050), FixedPoint.ONE, false);
+        engine.orders.matchReference(eurUsd, price(1.0940), price(1.0990), price(1.0990));
+        engine.loops.awaitIdle();
+        engine.orders.submit(eurUsd, 5, true, price(1.1050), FixedPoint.ONE / 2, false);
+        engine.trades.getTriggerIndex().remove(11);
+        List<String> expected = resting(engine);
+        engine.close();
+
+        // Act: a fresh process on the same directory
+        engine = new Engine();
+        int replayed = engine.snapshots.recover();
+
+        // Assert
+        assertEquals(List.of("3 BUY 1.09000000 x 1.00000000", "2 SELL 1.10500000 x 1.50000000", "4 SELL 1.10500000 x 1.00000000"),
+                expected);
+        assertEquals(expected, resting(engine));
+        assertEquals(5, replayed);
+        assertFalse(engine.trades.getTriggerIndex().contains(11));
+        assertTrue(engine.alerts.getAlertIndex().contains(21));
+    }
+
+    @Test
+    void recover_KeepsUnsettledMarketExecutionsUntilWrittenBack() {
+        // Arrange: two executions confirmed after a snapshot, only the first written back before the process stopped
+        engine.snapshots.snapshot();
+        long written = engine.journal.marketExecuted(eurUsd, 1, true, price(1.1000), 1000 * FixedPoint.ONE, 7);
+        long unwritten = engine.journal.marketExecuted(eurUsd, 1, true, price(1.1000), 500 * FixedPoint.ONE, 7);
+        engine.journal.marketExecutionSettled(written);
+        engine.close();
+
+        // Act: recover from the log, snapshot, then recover from that snapshot alone
+        engine = new Engine();
+        int replayedFromLog = engine.snapshots.recover();
+        List<Long> afterLog = unsettled(engine);
+        engine.snapshots.snapshot();
+        engine.close();
+        engine = new Engine();
+        int replayedAfterSnapshot = engine.snapshots.recover();
+
+        // Assert
+        assertEquals(3, replayedFromLog);
+        assertEquals(List.of(unwritten), afterLog);
+        assertEquals(0, replayedAfterSnapshot);
+        assertEquals(List.of(unwritten), unsettled(engine));
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("9450")),
+                engine.accounts.getBalanceBook().find(1L).balance());
+    }
+
+    @Test
+    void read_CorruptSnapshotIsRejected() throws IOException {
+        // Arrange
+        engine.orders.submit(eurUsd, 1, true, price(1.0950), FixedPoint.ONE, false);
+        engine.snapshots.snapshot();
+        Path snapshot;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshot = files.filter(file -> file.toString().endsWith(".snapshot")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(30);
+            file.write(0x7f);
+        }
+
+        // Act / Assert: a corrupt body is not half-restored
+        assertThrows(IOException.class, () -> EngineSnapshot.read(snapshot, in -> {
+            while (in.read() >= 0) {
+                // consume the body
+            }
+        }));
+    }
+
+    @Test
+    void engineLog_KeepsNumberingAcrossReopenAndDropsCoveredSegments() throws IOException {
+        // Arrange: four records per segment
+        Path logDirectory = directory.resolve("log");
+        try (EngineLog log = new EngineLog(logDirectory, 4 * EngineLog.RECORD_SIZE)) {
+            for (int i = 1; i <= 10; i++) {
+                log.append(EngineLog.ORDER_CANCEL, 0, i, 0, 0, 0, 0);
+            }
+            log.rollForSnapshot();
+            assertEquals(2, log.deleteThrough(8));
+        }
+
+        // Act
+        try (EngineLog log = new EngineLog(logDirectory, 4 * EngineLog.RECORD_SIZE)) {
+            long next = log.append(EngineLog.ORDER_CANCEL, 0, 11, 0, 0, 0, 0);
+            List<Long> sequences = new ArrayList<>();
+            log.replay(8, (sequence, type, side, ownerId, pairKey, price, quantity, remaining) -> sequences.add(sequence));
+
+            // Assert
+            assertEquals(11, next);
+            assertEquals(List.of(9L, 10L, 11L), sequences);
+        }
+    }
+
+    private List<Long> unsettled(Engine target) {
+        List<Long> sequences = new ArrayList<>();
+        target.markets.forEachUnsettled((sequence, pairId, accountId, buy, price, amount, userId) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private List<String> resting(Engine target) {
+        List<String> orders = new ArrayList<>();
+        target.orders.forEachRestingOrder((pairId, orderId, buy, price, remaining) -> orders.add(
+                orderId + (buy ? " BUY " : " SELL ") + FixedPoint.toBigDecimal(price) + " x " + FixedPoint.toBigDecimal(remaining)));
+        return orders;
+    }
+
+    private static long price(double value) {
+        return FixedPoint.fromDouble(value);
+    }
+
+    // The engine's services over one directory, with no database behind them
+    private class Engine {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final EngineJournalService journal = new EngineJournalService(registry);
+        final EventLoopService loops = new EventLoopService(meterRegistry);
+        final OrderBookService orders;
+        final TradeService trades = new TradeService(null, null, null, null, registry, journal, null, null);
+        final AlertService alerts = new AlertService(null, null, null, registry, journal);
+        final AccountService accounts = new AccountService(null, null, null);
+        final MarketOrderService markets = new MarketOrderService(null, null, null, null, accounts, null, registry,
+                journal, meterRegistry, TransactionOperations.withoutTransaction());
+        final EngineSnapshotService snapshots;
+
+        Engine() {
+            ReflectionTestUtils.setField(journal, "directory", directory.toString());
+            journal.init();
+            loops.init();
+            orders = new OrderBookService(null, null, null, null, journal, loops, meterRegistry,
+                    TransactionOperations.withoutTransaction());
+            orders.init();
+            accounts.getBalanceBook().load(1, 7, true, "USD", 10_000 * FixedPoint.ONE, 0);
+            snapshots = new EngineSnapshotService(journal, orders, trades, alerts, markets, registry, meterRegistry);
+            snapshots.init();
+        }
+
+        void close() {
+            loops.shutdown();
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Hold;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.BalanceBook;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.HoldRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.foreigntrading.util.TestHelper.repository;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HoldServiceTest {
+
+    private final Map<Long, BigDecimal> balances = new HashMap<>();
+    private final List<Hold> holds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger balanceReads = new AtomicInteger();
+
+    private AccountService accountService;
+    private HoldService holdService;
+
+    @BeforeEach
+    void setUp() {
+        balances.put(1L, new BigDecimal("1000"));
+
+        Map<String, Function<Object[], Object>> accountMethods = new HashMap<>();
+        accountMethods.put("findBalanceState", args -> {
+            balanceReads.incrementAndGet();
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{7L, true, "USD", balances.get((Long) args[0]), activeHeld((Long) args[0])});
+            return rows;
+        });
+        accountMethods.put("findBalances", args -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                rows.add(new Object[]{id, balances.get((Long) id)});
+            }
+            return rows;
+        });
+        accountMethods.put("addToBalances", args -> {
+            List<?> changes = (List<?>) args[0];
+            boolean[] applied = new boolean[changes.size()];
+            for (int i = 0; i < applied.length; i++) {
+                BalanceChange change = (BalanceChange) changes.get(i);
+                balances.merge(change.accountId(), change.amount(), BigDecimal::add);
+                applied[i] = true;
+            }
+            return applied;
+        });
+        accountMethods.put("getReferenceById", args -> {
+            Account account = new Account();
+            account.setId((Long) args[0]);
+            return account;
+        });
+        AccountRepository accountRepository = repository(AccountRepository.class, accountMethods);
+
+        Map<String, Function<Object[], Object>> holdMethods = new HashMap<>();
+        holdMethods.put("save", args -> {
+            Hold hold = (Hold) args[0];
+            hold.setId((long) holds.size() + 1);
+            holds.add(hold);
+            return hold;
+        });
+        holdMethods.put("saveAll", args -> args[0]);
+        holdMethods.put("saveAllAndFlush", args -> args[0]);
+        holdMethods.put("findByReferenceTypeAndReferenceIdInAndStatus", args -> {
+            List<Hold> found = new ArrayList<>();
+            for (Hold hold : holds) {
+                if (hold.getReferenceType().equals(args[0]) && ((Collection<?>) args[1]).contains(hold.getReferenceId())
+                        && hold.getStatus().equals(args[2])) {
+                    found.add(hold);
+                }
+            }
+            return found;
+        });
+        holdMethods.put("sumActiveByAccountIds", args -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                rows.add(new Object[]{id, activeHeld((Long) id)});
+            }
+            return rows;
+        });
+
+        accountService = new AccountService(accountRepository, null, null);
+        holdService = new HoldService(repository(HoldRepository.class, holdMethods), accountRepository, accountService,
+                new SimpleMeterRegistry());
+        holdService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reserve_HoldsFundsSoLaterChecksSeeThemSpent() {
+        // Act
+        place(10L, "600");
+
+        // Assert
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("400")), entry.available());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("600")), entry.held());
+        assertThrows(InsufficientFundsException.class, () -> holdService.reserve(1L, 7L, new BigDecimal("500")));
+        assertThrows(InsufficientFundsException.class,
+                () -> accountService.applyInMemory(1L, 7L, new BigDecimal("500"), new BigDecimal("-500")));
+        assertEquals(1, holds.size());
+        assertEquals("ACTIVE", holds.get(0).getStatus());
+        assertEquals(1, balanceReads.get());
+    }
+
+    @Test
+    void release_GivesTheHoldBackWhenTheOrderIsCancelled() {
+        // Arrange
+        place(10L, "600");
+
+        // Act
+        holdService.release(HoldService.TRADE, 10L);
+        holdService.release(HoldService.TRADE, 10L);
+
+        // Assert
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1000")), entry.available());
+        assertEquals(0, entry.held());
+        assertEquals("RELEASED", holds.get(0).getStatus());
+        assertEquals(0, balances.get(1L).compareTo(new BigDecimal("1000")));
+    }
+
+    @Test
+    void convert_TurnsTheHoldIntoTheFillsDebit() {
+        // Arrange: a buy held at its limit cost of 600 fills for 550
+        place(10L, "600");
+        place(11L, "100");
+
+        // Act
+        holdService.convert(HoldService.TRADE, Map.of(10L, new BigDecimal("-550")));
+
+        // Assert
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("350")), entry.available());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("100")), entry.held());
+        assertEquals(0, balances.get(1L).compareTo(new BigDecimal("450")));
+        assertEquals("CONVERTED", holds.get(0).getStatus());
+        assertEquals("ACTIVE", holds.get(1).getStatus());
+    }
+
+    @Test
+    void reserve_WhenTransactionRollsBack_GivesTheHoldBack() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        place(10L, "600");
+
+        // Act
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1000")), entry.available());
+        assertEquals(0, entry.held());
+    }
+
+    @Test
+    void convert_SettlesTheBookOnlyOnceCommitted() {
+        // Arrange
+        place(10L, "600");
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        holdService.convert(HoldService.TRADE, Map.of(10L, new BigDecimal("-550")));
+        long heldBeforeCommit = entry.held();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        long heldAfterRollback = entry.held();
+
+        // Act: the flusher converts the same fill again, and this time it commits
+        holds.get(0).setStatus("ACTIVE");
+        TransactionSynchronizationManager.initSynchronization();
+        holdService.convert(HoldService.TRADE, Map.of(10L, new BigDecimal("-550")));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert: settled once, not twice
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("600")), heldBeforeCommit);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("600")), heldAfterRollback);
+        assertEquals(0, entry.held());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("450")), entry.available());
+    }
+
+    @Test
+    void reserve_ConcurrentOrders_NeverHoldMoreThanTheBalance() throws InterruptedException {
+        // Arrange: eight threads race to hold 1 each, 400 times, against a balance of 1000
+        accountService.applyInMemory(1L, 7L, BigDecimal.ZERO, BigDecimal.ZERO);
+        AtomicInteger accepted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 400; i++) {
+                    try {
+                        holdService.reserve(1L, 7L, BigDecimal.ONE);
+                        accepted.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        // the balance is fully held
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        // Act
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(1000, accepted.get());
+        assertEquals(0, entry.available());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1000")), entry.held());
+    }
+
+    @Test
+    void reconcile_RepairsOnlyADifferenceSeenTwice() {
+        // Arrange: a hold lost from memory and a balance change that never reached the database
+        place(10L, "600");
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        entry.release(FixedPoint.fromBigDecimal(new BigDecimal("600")));
+        entry.apply(FixedPoint.fromBigDecimal(new BigDecimal("25")));
+
+        // Act
+        int first = holdService.reconcile();
+        int second = holdService.reconcile();
+        int third = holdService.reconcile();
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(0, third);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1000")), entry.balance());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("600")), entry.held());
+    }
+
+    @Test
+    void reconcile_LeavesChangesMarkedUnwrittenAlone() {
+        // Arrange: a confirmed execution whose write-back is still queued
+        place(10L, "600");
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        long change = FixedPoint.fromBigDecimal(new BigDecimal("-250"));
+        entry.apply(change);
+        entry.addUnwritten(change);
+
+        // Act
+        int first = holdService.reconcile();
+        int second = holdService.reconcile();
+
+        // Assert
+        assertEquals(0, first + second);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("750")), entry.balance());
+    }
+
+    private void place(long tradeId, String amount) {
+        holdService.reserve(1L, 7L, new BigDecimal(amount));
+        holdService.record(1L, HoldService.TRADE, tradeId, new BigDecimal(amount));
+    }
+
+    // Ends the simulated transaction the way the transaction manager would
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private BigDecimal activeHeld(Long accountId) {
+        BigDecimal held = BigDecimal.ZERO;
+        for (Hold hold : holds) {
+            if (hold.getAccount().getId().equals(accountId) && "ACTIVE".equals(hold.getStatus())) {
+                held = held.add(hold.getAmount());
+            }
+        }
+        return held;
+    }
+}
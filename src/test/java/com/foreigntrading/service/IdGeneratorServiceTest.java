@@ -0,0 +1,147 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 250_000;
+
+    // The highest generated numbers already stored, null for none
+    private String highestAccountNumber;
+    private String highestReferenceNumber;
+
+    private IdGeneratorService idGenerator;
+
+    @BeforeEach
+    void setUp() {
+        idGenerator = generator(3L);
+        idGenerator.init();
+    }
+
+    @Test
+    void nextId_ManyThreads_NeverRepeatAndEachThreadSeesThemGrow() throws InterruptedException {
+        // Arrange
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * PER_THREAD);
+        boolean[] increasing = new boolean[THREADS];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int worker = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long previous = -1;
+                boolean grows = true;
+                for (int i = 0; i < PER_THREAD; i++) {
+                    long id = idGenerator.nextId();
+                    grows &= id > previous;
+                    previous = id;
+                    ids.add(id);
+                }
+                increasing[worker] = grows;
+            });
+            threads[t].start();
+        }
+
+        // Act
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        // Assert
+        assertEquals(THREADS * PER_THREAD, ids.size());
+        for (boolean grows : increasing) {
+            assertTrue(grows);
+        }
+        double perSecond = THREADS * PER_THREAD / seconds;
+        System.out.printf("Issued %d ids on %d threads at %.0f ids/s%n", ids.size(), THREADS, perSecond);
+        assertTrue(perSecond > 100_000, "ids/s " + perSecond);
+    }
+
+    @Test
+    void nextNumber_IsFixedWidthAndSortsInIssueOrder() {
+        // Act
+        String first = idGenerator.nextNumber();
+        String second = idGenerator.nextNumber();
+
+        // Assert
+        assertEquals(13, first.length());
+        assertTrue(first.matches("[0-9A-HJKMNP-TV-Z]{13}"), first);
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    void init_WithoutANodeId_FailsStartup() {
+        // Act & Assert
+        IllegalStateException missing = assertThrows(IllegalStateException.class, () -> generator(null).init());
+        assertTrue(missing.getMessage().contains("trading.ids.node-id"));
+        assertThrows(IllegalStateException.class, () -> generator(1024L).init());
+    }
+
+    @Test
+    void nextNumber_AfterARestartWithTheClockBehind_StaysAboveEveryStoredNumber() {
+        // Arrange: numbers stored by a run whose clock was an hour ahead of this one
+        long aheadMillis = System.currentTimeMillis() - 1_704_067_200_000L + 3_600_000L;
+        highestAccountNumber = IdGeneratorService.format(aheadMillis << 22 | 5L << 12 | 17);
+        highestReferenceNumber = IdGeneratorService.format((aheadMillis - 10) << 22);
+        IdGeneratorService restarted = generator(3L);
+
+        // Act
+        restarted.init();
+        String next = restarted.nextNumber();
+
+        // Assert
+        assertTrue(next.compareTo(highestAccountNumber) > 0, next);
+        assertEquals(aheadMillis + 1, IdGeneratorService.parse(next) >>> 22);
+    }
+
+    @Test
+    void parse_ReadsBackWhatFormatWrote() {
+        // Assert
+        assertEquals(0, IdGeneratorService.parse("0000000000000"));
+        assertEquals(Long.MAX_VALUE, IdGeneratorService.parse(IdGeneratorService.format(Long.MAX_VALUE)));
+        long id = idGenerator.nextId();
+        assertEquals(id, IdGeneratorService.parse(IdGeneratorService.format(id)));
+        assertThrows(IllegalArgumentException.class, () -> IdGeneratorService.parse("000000000000U"));
+    }
+
+    @Test
+    void format_KeepsNumericOrder() {
+        // Assert
+        assertEquals("0000000000000", IdGeneratorService.format(0));
+        assertEquals("000000000000Z", IdGeneratorService.format(31));
+        assertEquals("0000000000010", IdGeneratorService.format(32));
+        assertEquals("7ZZZZZZZZZZZZ", IdGeneratorService.format(Long.MAX_VALUE));
+        assertTrue(IdGeneratorService.format(4095).compareTo(IdGeneratorService.format(4096)) < 0);
+    }
+
+    private IdGeneratorService generator(Long nodeId) {
+        AccountRepository accountRepository = (AccountRepository) Proxy.newProxyInstance(
+                AccountRepository.class.getClassLoader(), new Class<?>[]{AccountRepository.class},
+                (proxy, method, args) -> highestAccountNumber);
+        TransactionRepository transactionRepository = (TransactionRepository) Proxy.newProxyInstance(
+                TransactionRepository.class.getClassLoader(), new Class<?>[]{TransactionRepository.class},
+                (proxy, method, args) -> highestReferenceNumber);
+        IdGeneratorService generator = new IdGeneratorService(accountRepository, transactionRepository);
+        ReflectionTestUtils.setField(generator, "nodeId", nodeId);
+        return generator;
+    }
+}
@@ -0,0 +1,138 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.GbmPriceProcess;
+import com.foreigntrading.marketdata.MarketDataFeed;
+import com.foreigntrading.marketdata.RateEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketFeedServiceTest {
+
+    @Test
+    void gbmProcess_LogReturnsMatchConfiguredVolatility() {
+        // Arrange: 20% annual volatility sampled once a second
+        double volatility = 0.20;
+        double dt = 1.0 / (365.0 * 24 * 60 * 60);
+        GbmPriceProcess process = new GbmPriceProcess(1.1, 0.0, volatility, 1.0, 7);
+        int steps = 200_000;
+
+        // Act
+        double previous = process.price();
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < steps; i++) {
+            double price = process.next();
+            double logReturn = Math.log(price / previous);
+            sum += logReturn;
+            sumSquares += logReturn * logReturn;
+            previous = price;
+        }
+        double mean = sum / steps;
+        double variance = sumSquares / steps - mean * mean;
+
+        // Assert
+        assertEquals(volatility * volatility * dt, variance, volatility * volatility * dt * 0.02);
+        assertEquals(-volatility * volatility / 2 * dt, mean, 4 * volatility * Math.sqrt(dt / steps));
+    }
+
+    @Test
+    void gbmProcess_SameSeedReproducesPath() {
+        GbmPriceProcess first = new GbmPriceProcess(1.1, 0.0, 0.1, 0.01, 42);
+        GbmPriceProcess second = new GbmPriceProcess(1.1, 0.0, 0.1, 0.01, 42);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(first.next(), second.next());
+        }
+    }
+
+    @Test
+    void simulator_PublishesMovingPricesAtConfiguredRate() throws InterruptedException {
+        // Arrange
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TickPipelineService pipeline = new TickPipelineService(rateBookService, null, null, null, meterRegistry);
+        SimulatedMarketDataFeed feed = new SimulatedMarketDataFeed(rateBookService, pipeline, meterRegistry);
+        ReflectionTestUtils.setField(feed, "pairs", new String[]{"EUR/USD:1.0850", "USD/JPY:148.50"});
+        ReflectionTestUtils.setField(feed, "ticksPerSecond", 1_000);
+
+        // Act
+        feed.start();
+        Thread.sleep(300);
+        feed.stop();
+
+        // Assert
+        RateEntry eurUsd = rateBookService.findEntry("EUR", "USD");
+        RateEntry usdJpy = rateBookService.findEntry("USD", "JPY");
+        assertFalse(feed.isRunning());
+        assertTrue(eurUsd.sequence() > 150 && eurUsd.sequence() < 450, "ticks " + eurUsd.sequence());
+        assertNotEquals(1.0850, eurUsd.rate().doubleValue());
+        assertEquals(1.085, eurUsd.rate().doubleValue(), 0.01);
+        assertEquals(148.5, usdJpy.rate().doubleValue(), 1.5);
+        assertNotNull(rateBookService.getEntry("EUR", "JPY"));
+        assertEquals(eurUsd.sequence() + usdJpy.sequence(),
+                meterRegistry.counter("marketdata.feed.ticks", "feed", "simulator").count(), 0.0);
+    }
+
+    @Test
+    void start_StartsOnlyTheConfiguredFeed() {
+        // Arrange
+        FakeFeed provider = new FakeFeed("provider");
+        FakeFeed simulator = new FakeFeed("simulator");
+        MarketFeedService service = new MarketFeedService(List.of(provider, simulator));
+        ReflectionTestUtils.setField(service, "feedType", "simulator");
+
+        // Act
+        service.start();
+
+        // Assert
+        assertSame(simulator, service.getActiveFeed());
+        assertTrue(simulator.isRunning());
+        assertFalse(provider.isRunning());
+        service.stop();
+        assertFalse(simulator.isRunning());
+        assertNull(service.getActiveFeed());
+    }
+
+    @Test
+    void start_WhenFeedUnknown_Throws() {
+        MarketFeedService service = new MarketFeedService(List.of(new FakeFeed("provider")));
+        ReflectionTestUtils.setField(service, "feedType", "bloomberg");
+
+        assertThrows(IllegalStateException.class, service::start);
+    }
+
+    private static class FakeFeed implements MarketDataFeed {
+        private final String name;
+        private boolean running;
+
+        FakeFeed(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void start() {
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+    }
+}
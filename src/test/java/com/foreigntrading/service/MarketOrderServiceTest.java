@@ -0,0 +1,344 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Trade;
+import com.foreigntrading.entity.Transaction;
+import com.foreigntrading.entity.User;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.EngineLog;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.TradeRepository;
+import com.foreigntrading.repository.TransactionRepository;
+import com.foreigntrading.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.foreigntrading.util.TestHelper.repository;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketOrderServiceTest {
+
+    private final Map<Long, Account> accounts = new HashMap<>();
+    private final AtomicInteger balanceReads = new AtomicInteger();
+    private final List<Trade> savedTrades = new ArrayList<>();
+    private final List<Transaction> savedTransactions = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private boolean databaseDown;
+
+    private final CurrencyPairRegistry registry = new CurrencyPairRegistry();
+    private Path journalDirectory;
+
+    private AccountRepository accountRepository;
+    private TradeRepository tradeRepository;
+    private TransactionRepository transactionRepository;
+    private UserRepository userRepository;
+    private RateBookService rateBookService;
+    private AccountService accountService;
+    private MarketOrderService marketOrderService;
+
+    @BeforeEach
+    void setUp() {
+        accounts.put(1L, account(1L, 7L, "10000.00"));
+        accounts.put(2L, account(2L, 7L, "10000.00"));
+        rateBookService = new RateBookService(registry);
+        rateBookService.init();
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+
+        Map<String, Function<Object[], Object>> accountMethods = new HashMap<>();
+        accountMethods.put("findBalanceState", args -> {
+            balanceReads.incrementAndGet();
+            Account account = accounts.get((Long) args[0]);
+            List<Object[]> rows = new ArrayList<>();
+            if (account != null) {
+                rows.add(new Object[]{account.getUser().getId(), account.isActive(), account.getCurrency(), account.getBalance(),
+                        BigDecimal.ZERO});
+            }
+            return rows;
+        });
+        accountMethods.put("addToBalances", args -> {
+            List<?> changes = (List<?>) args[0];
+            boolean[] applied = new boolean[changes.size()];
+            boolean all = true;
+            for (int i = 0; i < applied.length; i++) {
+                BalanceChange change = (BalanceChange) changes.get(i);
+                applied[i] = accounts.get(change.accountId()).getBalance().add(change.amount()).signum() >= 0;
+                all &= applied[i];
+            }
+            // A refused change rolls the write-back's transaction back, so nothing is kept then
+            for (int i = 0; all && i < applied.length; i++) {
+                BalanceChange change = (BalanceChange) changes.get(i);
+                Account account = accounts.get(change.accountId());
+                account.setBalance(account.getBalance().add(change.amount()));
+            }
+            return applied;
+        });
+        accountMethods.put("getReferenceById", args -> accounts.get((Long) args[0]));
+        accountRepository = repository(AccountRepository.class, accountMethods);
+
+        Map<String, Function<Object[], Object>> tradeMethods = new HashMap<>();
+        tradeMethods.put("insertAll", args -> {
+            if (databaseDown) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            for (Object trade : (Iterable<?>) args[0]) {
+                ((Trade) trade).setId((long) savedTrades.size() + 1);
+                savedTrades.add((Trade) trade);
+            }
+            return null;
+        });
+        Map<String, Function<Object[], Object>> transactionMethods = new HashMap<>();
+        transactionMethods.put("insertAll", args -> {
+            for (Object transaction : (Iterable<?>) args[0]) {
+                savedTransactions.add((Transaction) transaction);
+            }
+            return null;
+        });
+        Map<String, Function<Object[], Object>> userMethods = new HashMap<>();
+        userMethods.put("getReferenceById", args -> user((Long) args[0]));
+
+        tradeRepository = repository(TradeRepository.class, tradeMethods);
+        transactionRepository = repository(TransactionRepository.class, transactionMethods);
+        userRepository = repository(UserRepository.class, userMethods);
+        accountService = new AccountService(accountRepository, null, null);
+        marketOrderService = marketOrderService(new EngineJournalService(registry));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void placeMarketOrder_FillsAtCurrentRateBeforeAnythingIsWritten() {
+        // Act
+        Trade trade = marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+
+        // Assert
+        assertEquals("EXECUTED", trade.getStatus());
+        assertEquals(new BigDecimal("1.1000"), trade.getPrice());
+        assertNotNull(trade.getExecutedAt());
+        assertTrue(savedTrades.isEmpty());
+        assertEquals(new BigDecimal("10000.00"), accounts.get(1L).getBalance());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("8900")), accountService.applyInMemory(1L, 7L,
+                BigDecimal.ZERO, BigDecimal.ZERO).balance());
+    }
+
+    @Test
+    void flushExecutions_WritesTradesTransactionsAndNetBalanceChange() {
+        // Arrange
+        marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("500"), "SELL");
+
+        // Act
+        int flushed = marketOrderService.flushExecutions();
+
+        // Assert
+        assertEquals(2, flushed);
+        assertEquals(2, savedTrades.size());
+        assertEquals(Long.valueOf(7L), savedTrades.get(0).getUser().getId());
+        assertEquals(2, savedTransactions.size());
+        assertEquals("COMPLETED", savedTransactions.get(0).getStatus());
+        assertSame(savedTrades.get(1), savedTransactions.get(1).getTrade());
+        assertEquals(0, savedTransactions.get(0).getAmount().compareTo(new BigDecimal("-1100")));
+        assertEquals(0, accounts.get(1L).getBalance().compareTo(new BigDecimal("9450")));
+        assertEquals(0, marketOrderService.flushExecutions());
+    }
+
+    @Test
+    void flushExecutions_WhenSaveFails_RetriesTheBatchOnceTheBackoffIsOver() {
+        // Arrange: retries as soon as the next flush
+        ReflectionTestUtils.setField(marketOrderService, "retryInitialMs", 0L);
+        Trade first = marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        databaseDown = true;
+        int failedFlush = marketOrderService.flushExecutions();
+        List<MarketOrderService.Execution> retrying = marketOrderService.getRetrying();
+        Trade second = marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("500"), "BUY");
+
+        // Act
+        databaseDown = false;
+        int flushed = marketOrderService.flushExecutions();
+
+        // Assert
+        assertEquals(0, failedFlush);
+        assertEquals(1, retrying.size());
+        assertEquals(2, flushed);
+        assertEquals(List.of(first, second), savedTrades);
+        assertEquals(Long.valueOf(1L), first.getId());
+        assertEquals(0, accounts.get(1L).getBalance().compareTo(new BigDecimal("8350")));
+        assertEquals(1.0, meterRegistry.get("marketorders.persistence.failures").functionCounter().count());
+        assertTrue(marketOrderService.getRetrying().isEmpty());
+    }
+
+    @Test
+    void flushExecutions_WhenSaveKeepsFailing_KeepsRetryingWithoutWaitingOnEveryFlush() {
+        // Arrange
+        Trade stuck = marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        databaseDown = true;
+        marketOrderService.flushExecutions();
+
+        // Act: flushes inside the backoff leave it alone
+        for (int i = 0; i < 20; i++) {
+            marketOrderService.flushExecutions();
+        }
+
+        // Assert
+        assertEquals(1.0, meterRegistry.get("marketorders.persistence.failures").functionCounter().count());
+        assertEquals(1, marketOrderService.getRetrying().size());
+        assertSame(stuck, marketOrderService.getRetrying().get(0).trade());
+        assertEquals(1.0, meterRegistry.get("marketorders.persistence.retrying").gauge().value());
+    }
+
+    @Test
+    void flushExecutions_WhenAnAccountRefusesItsChange_WritesTheRestOfTheBatch() {
+        // Arrange: account 2's stored balance falls behind the book, so its debit is refused
+        marketOrderService.placeMarketOrder(7L, 2L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        accounts.get(2L).setBalance(new BigDecimal("500"));
+
+        // Act
+        int flushed = marketOrderService.flushExecutions();
+
+        // Assert: account 1's order is written; account 2's waits, its change still unwritten
+        assertEquals(1, flushed);
+        assertEquals(0, accounts.get(1L).getBalance().compareTo(new BigDecimal("8900")));
+        assertEquals(1, marketOrderService.getRetrying().size());
+        assertEquals(2L, marketOrderService.getRetrying().get(0).accountId());
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("-1100")),
+                accountService.getBalanceBook().find(2L).unwritten());
+        assertEquals(0, accountService.getBalanceBook().find(1L).unwritten());
+    }
+
+    @Test
+    void placeMarketOrder_LogsTheExecutionAndTheWriteBackSettlesIt() throws IOException {
+        // Arrange
+        journalDirectory = Files.createTempDirectory("engine");
+        EngineJournalService journal = new EngineJournalService(registry);
+        ReflectionTestUtils.setField(journal, "directory", journalDirectory.toString());
+        journal.init();
+        MarketOrderService journalled = marketOrderService(journal);
+
+        // Act
+        journalled.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("1000"), "BUY");
+        List<Long> unsettledBeforeFlush = new ArrayList<>();
+        journalled.forEachUnsettled((sequence, pairId, accountId, buy, price, amount, userId) -> unsettledBeforeFlush.add(sequence));
+        journalled.flushExecutions();
+        List<String> records = new ArrayList<>();
+        journal.getLog().replay(0, (sequence, type, side, ownerId, pairKey, price, quantity, remaining) ->
+                records.add(type + ":" + ownerId + ":" + quantity + ":" + remaining));
+        List<Long> unsettledAfterFlush = new ArrayList<>();
+        journalled.forEachUnsettled((sequence, pairId, accountId, buy, price, amount, userId) -> unsettledAfterFlush.add(sequence));
+        journal.close();
+
+        // Assert
+        assertEquals(List.of(EngineLog.MARKET_EXECUTION + ":1:" + 1000 * FixedPoint.ONE + ":7",
+                EngineLog.MARKET_EXECUTION_SETTLED + ":1:0:0"), records);
+        assertEquals(List.of(1L), unsettledBeforeFlush);
+        assertTrue(unsettledAfterFlush.isEmpty());
+    }
+
+    @Test
+    void resumeRestored_QueuesTheExecutionAndMovesTheBookByItsChange() {
+        // Arrange: an execution read back from the log, logged twice across a snapshot cut
+        int eurUsd = registry.findPairId("EUR", "USD");
+        marketOrderService.restoreExecution(4, eurUsd, 1L, true, FixedPoint.fromBigDecimal(new BigDecimal("1.1")),
+                1000 * FixedPoint.ONE, 7L);
+        marketOrderService.restoreExecution(4, eurUsd, 1L, true, FixedPoint.fromBigDecimal(new BigDecimal("1.1")),
+                1000 * FixedPoint.ONE, 7L);
+
+        // Act
+        int resumed = marketOrderService.resumeRestored();
+        long bookBalance = accountService.getBalanceBook().find(1L).balance();
+        int flushed = marketOrderService.flushExecutions();
+
+        // Assert
+        assertEquals(1, resumed);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("8900")), bookBalance);
+        assertEquals(1, flushed);
+        assertEquals("EUR", savedTrades.get(0).getBaseCurrency());
+        assertEquals("BUY", savedTrades.get(0).getSide());
+        assertEquals(0, accounts.get(1L).getBalance().compareTo(new BigDecimal("8900")));
+    }
+
+    @Test
+    void placeMarketOrder_ReadsTheAccountRowOnlyOnce() {
+        // Act
+        for (int i = 0; i < 5; i++) {
+            marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("100"), "BUY");
+        }
+
+        // Assert
+        assertEquals(1, balanceReads.get());
+    }
+
+    @Test
+    void placeMarketOrder_WhenFundsShort_RejectsWithoutQueueing() {
+        // Act & Assert
+        assertThrows(InsufficientFundsException.class,
+                () -> marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("9100"), "BUY"));
+        assertEquals(0, marketOrderService.flushExecutions());
+        assertEquals("EXECUTED", marketOrderService.placeMarketOrder(7L, 1L, "EUR", "USD", new BigDecimal("9000"), "BUY").getStatus());
+    }
+
+    @Test
+    void placeMarketOrder_WhenAccountBelongsToAnotherUser_Throws() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> marketOrderService.placeMarketOrder(8L, 1L, "EUR", "USD", new BigDecimal("10"), "BUY"));
+    }
+
+    @Test
+    void placeMarketOrder_WhenNoCurrentRate_Throws() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> marketOrderService.placeMarketOrder(7L, 1L, "GBP", "JPY", new BigDecimal("10"), "BUY"));
+    }
+
+    private MarketOrderService marketOrderService(EngineJournalService journal) {
+        MarketOrderService service = new MarketOrderService(tradeRepository, transactionRepository, accountRepository,
+                userRepository, accountService, rateBookService, registry, journal, meterRegistry,
+                TransactionOperations.withoutTransaction());
+        service.init();
+        return service;
+    }
+
+    private static Account account(long id, long userId, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setUser(user(userId));
+        account.setCurrency("USD");
+        account.setBalance(new BigDecimal(balance));
+        account.setActive(true);
+        return account;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,73 @@
+package com.foreigntrading.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.EncodedSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketOverviewServiceTest {
+
+    private RateBookService rateBookService;
+    private ObjectMapper objectMapper;
+    private MarketOverviewService marketOverviewService;
+
+    @BeforeEach
+    void setUp() {
+        rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        marketOverviewService = new MarketOverviewService(rateBookService, objectMapper);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.2500"));
+    }
+
+    @Test
+    void current_WhenRateBookUnchanged_ReturnsSameEncoding() {
+        // Act
+        EncodedSnapshot first = marketOverviewService.current();
+        EncodedSnapshot second = marketOverviewService.current();
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    void current_AfterRateUpdate_RebuildsWithNewEtag() throws Exception {
+        // Arrange
+        EncodedSnapshot before = marketOverviewService.current();
+
+        // Act
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1005"));
+        EncodedSnapshot after = marketOverviewService.current();
+
+        // Assert
+        assertNotSame(before, after);
+        assertNotEquals(before.etag(), after.etag());
+        assertEquals(rateBookService.version(), after.version());
+        JsonNode rates = objectMapper.readTree(after.json()).path("rates");
+        assertEquals(0, new BigDecimal("1.1005").compareTo(rates.path("EUR/USD").decimalValue()));
+        assertEquals(0, new BigDecimal("1.25").compareTo(rates.path("GBP/USD").decimalValue()));
+    }
+
+    @Test
+    void current_GzipBodyMatchesJsonWithDistinctEtag() throws Exception {
+        // Act
+        EncodedSnapshot overview = marketOverviewService.current();
+
+        // Assert
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(overview.gzip()))) {
+            assertArrayEquals(overview.json(), in.readAllBytes());
+        }
+        assertTrue(overview.etag().startsWith("\"") && overview.etag().endsWith("\""));
+        assertNotEquals(overview.etag(), overview.gzipEtag());
+    }
+}
@@ -0,0 +1,304 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Hold;
+import com.foreigntrading.entity.Order;
+import com.foreigntrading.entity.User;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.repository.AccountBalanceRepository.BalanceChange;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.HoldRepository;
+import com.foreigntrading.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.foreigntrading.util.TestHelper.repository;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookServiceTest {
+
+    private final Map<Long, Order> orders = new HashMap<>();
+    private final List<Hold> holds = new ArrayList<>();
+    private final List<BalanceChange> balanceChanges = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private boolean databaseDown;
+
+    private CurrencyPairRegistry pairRegistry;
+    private OrderBookService orderBookService;
+    private int eurUsd;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Function<Object[], Object>> orderMethods = new HashMap<>();
+        orderMethods.put("findAllById", args -> {
+            if (databaseDown) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            List<Order> found = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                found.add(orders.get((Long) id));
+            }
+            return found;
+        });
+        orderMethods.put("findById", args -> Optional.ofNullable(orders.get((Long) args[0])));
+        orderMethods.put("saveAll", args -> args[0]);
+        orderMethods.put("save", args -> {
+            Order order = (Order) args[0];
+            if (order.getId() == null) {
+                order.setId((long) orders.size() + 1);
+            }
+            orders.put(order.getId(), order);
+            return order;
+        });
+        Map<String, Function<Object[], Object>> accountMethods = new HashMap<>();
+        accountMethods.put("findById", args -> {
+            User user = new User();
+            user.setId(7L);
+            Account account = new Account();
+            account.setId((Long) args[0]);
+            account.setUser(user);
+            return Optional.of(account);
+        });
+        accountMethods.put("findBalanceState", args -> {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{7L, true, "USD", new BigDecimal("5000"), BigDecimal.ZERO});
+            return rows;
+        });
+        accountMethods.put("getReferenceById", args -> {
+            Account account = new Account();
+            account.setId((Long) args[0]);
+            return account;
+        });
+        accountMethods.put("addToBalances", args -> {
+            List<?> changes = (List<?>) args[0];
+            for (Object change : changes) {
+                balanceChanges.add((BalanceChange) change);
+            }
+            boolean[] applied = new boolean[changes.size()];
+            Arrays.fill(applied, true);
+            return applied;
+        });
+        AccountRepository accountRepository = repository(AccountRepository.class, accountMethods);
+        Map<String, Function<Object[], Object>> holdMethods = new HashMap<>();
+        holdMethods.put("findByReferenceTypeAndReferenceIdInAndStatus", args -> {
+            List<Hold> found = new ArrayList<>();
+            for (Hold hold : holds) {
+                if (hold.getReferenceType().equals(args[0]) && ((Collection<?>) args[1]).contains(hold.getReferenceId())
+                        && hold.getStatus().equals(args[2])) {
+                    found.add(hold);
+                }
+            }
+            return found;
+        });
+        holdMethods.put("saveAll", args -> args[0]);
+        holdMethods.put("saveAllAndFlush", args -> args[0]);
+        holdMethods.put("save", args -> args[0]);
+
+        pairRegistry = new CurrencyPairRegistry();
+        RateBookService rateBookService = new RateBookService(pairRegistry);
+        rateBookService.init();
+        AccountService accountService = new AccountService(accountRepository, null, null);
+        HoldService holdService = new HoldService(repository(HoldRepository.class, holdMethods), accountRepository,
+                accountService, meterRegistry);
+        orderBookService = new OrderBookService(repository(OrderRepository.class, orderMethods), accountService,
+                holdService, rateBookService, new EngineJournalService(pairRegistry), new EventLoopService(meterRegistry),
+                meterRegistry, TransactionOperations.withoutTransaction());
+        orderBookService.init();
+        eurUsd = pairRegistry.pairId("EUR", "USD");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void placeLimitOrder_RestsOnlyOnceCommitted() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        Order rolledBack = orderBookService.placeLimitOrder(1L, "EUR", "USD", new BigDecimal("1000"),
+                new BigDecimal("1.1000"), "BUY");
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        Order committed = orderBookService.placeLimitOrder(1L, "EUR", "USD", new BigDecimal("1000"),
+                new BigDecimal("1.0900"), "BUY");
+        boolean restingBeforeCommit = orderBookService.hasOrders(eurUsd);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertFalse(restingBeforeCommit);
+        List<Long> resting = new ArrayList<>();
+        orderBookService.forEachRestingOrder((pairId, orderId, buy, price, remaining) -> resting.add(orderId));
+        assertEquals(List.of(committed.getId()), resting);
+        assertNotEquals(rolledBack.getId(), committed.getId());
+    }
+
+    @Test
+    void flushFills_WhenSaveFails_KeepsTheExecutionsAndRetriesThem() {
+        // Arrange: two orders that cross and fill each other completely
+        rest(1L, "BUY");
+        rest(2L, "SELL");
+
+        // Act
+        databaseDown = true;
+        int firstFlush = orderBookService.flushFills();
+        int secondFlush = orderBookService.flushFills();
+        databaseDown = false;
+        orderBookService.flushFills();
+
+        // Assert
+        assertEquals(2, firstFlush);
+        assertEquals(0, secondFlush);
+        assertEquals(2.0, meterRegistry.get("orderbook.persistence.failures").functionCounter().count());
+        assertEquals("EXECUTED", orders.get(1L).getStatus());
+        assertEquals("EXECUTED", orders.get(2L).getStatus());
+        assertEquals(0, new BigDecimal("1.1000").compareTo(orders.get(1L).getPrice()));
+        List<Long> partial = new ArrayList<>();
+        orderBookService.forEachPartialFill((orderId, quantity, averagePrice, lastSequence) -> partial.add(orderId));
+        assertTrue(partial.isEmpty());
+    }
+
+    @Test
+    void cancelOrder_WhenRolledBack_LeavesTheOrderResting() {
+        // Arrange
+        rest(1L, "BUY");
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        orderBookService.cancelOrder(1L);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertTrue(orderBookService.getOrderBook(eurUsd).contains(1L));
+    }
+
+    @Test
+    void cancelOrder_SettlesWhatFilledAndReleasesTheRest() {
+        // Arrange: a buy of 1000 holding 1100, 400 of it filled by a sell
+        rest(1L, "BUY");
+        hold(1L, "1100");
+        rest(2L, "SELL", "400");
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        orderBookService.cancelOrder(1L);
+        boolean restingBeforeCommit = orderBookService.getOrderBook(eurUsd).contains(1L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        orderBookService.flushFills();
+
+        // Assert: the order keeps the 400 filled and pays for it out of its hold
+        assertTrue(restingBeforeCommit);
+        assertFalse(orderBookService.getOrderBook(eurUsd).contains(1L));
+        Order cancelled = orders.get(1L);
+        assertEquals("CANCELLED", cancelled.getStatus());
+        assertEquals(0, new BigDecimal("400").compareTo(cancelled.getAmount()));
+        assertEquals(0, new BigDecimal("1.1").compareTo(cancelled.getPrice()));
+        assertEquals("CONVERTED", holds.get(0).getStatus());
+        assertEquals(1, balanceChanges.size());
+        assertEquals(0, new BigDecimal("-440").compareTo(balanceChanges.get(0).amount()));
+        List<Long> partial = new ArrayList<>();
+        orderBookService.forEachPartialFill((orderId, quantity, averagePrice, lastSequence) -> partial.add(orderId));
+        assertTrue(partial.isEmpty());
+    }
+
+    @Test
+    void cancelOrder_WhenNothingFilled_ReleasesTheWholeHold() {
+        // Arrange
+        rest(1L, "BUY");
+        hold(1L, "1100");
+
+        // Act
+        orderBookService.cancelOrder(1L);
+        orderBookService.flushFills();
+
+        // Assert
+        assertEquals("CANCELLED", orders.get(1L).getStatus());
+        assertEquals(0, new BigDecimal("1000").compareTo(orders.get(1L).getAmount()));
+        assertEquals("RELEASED", holds.get(0).getStatus());
+        assertTrue(balanceChanges.isEmpty());
+    }
+
+    @Test
+    void cancelOrder_WhenNotPending_ThrowsAndLeavesTheBookAlone() {
+        // Arrange
+        rest(1L, "BUY");
+        orders.get(1L).setStatus("REJECTED");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderBookService.cancelOrder(1L));
+        assertTrue(orderBookService.getOrderBook(eurUsd).contains(1L));
+    }
+
+    @Test
+    void placeLimitOrder_WhenCurrencyUnknown_RejectsWithoutRegisteringIt() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.placeLimitOrder(1L, "XAU", "USD",
+                new BigDecimal("10"), new BigDecimal("1.1000"), "BUY"));
+        assertEquals(-1, pairRegistry.findCurrencyId("XAU"));
+        assertTrue(orders.isEmpty());
+    }
+
+    private void hold(long orderId, String amount) {
+        Account account = new Account();
+        account.setId(1L);
+        Hold hold = new Hold();
+        hold.setAccount(account);
+        hold.setReferenceType(HoldService.ORDER);
+        hold.setReferenceId(orderId);
+        hold.setAmount(new BigDecimal(amount));
+        hold.setStatus("ACTIVE");
+        holds.add(hold);
+    }
+
+    private void rest(long orderId, String side) {
+        rest(orderId, side, "1000");
+    }
+
+    private void rest(long orderId, String side, String amount) {
+        Order order = new Order();
+        order.setId(orderId);
+        order.setAmount(new BigDecimal(amount));
+        order.setBaseCurrency("EUR");
+        order.setQuoteCurrency("USD");
+        order.setPrice(new BigDecimal("1.1000"));
+        order.setOrderType("LIMIT");
+        order.setSide(side);
+        order.setStatus("PENDING");
+        orders.put(orderId, order);
+        orderBookService.submit(eurUsd, orderId, "BUY".equals(side), FixedPoint.fromDouble(1.1),
+                FixedPoint.fromBigDecimal(new BigDecimal(amount)), false);
+    }
+
+    // Ends the simulated transaction the way the transaction manager would
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.foreigntrading.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.websocket.BinaryPriceCodec;
+import com.foreigntrading.websocket.PriceStreamHandler;
+import com.foreigntrading.websocket.StreamSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceStreamServiceTest {
+
+    private RateBookService rateBookService;
+    private SimpleMeterRegistry meterRegistry;
+    private PriceStreamService priceStreamService;
+    private int eurUsd;
+    private int gbpUsd;
+    private int eurJpy;
+
+    @BeforeEach
+    void setUp() {
+        rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        meterRegistry = new SimpleMeterRegistry();
+        priceStreamService = new PriceStreamService(rateBookService, meterRegistry);
+        // Flushes are driven by the tests
+        ReflectionTestUtils.setField(priceStreamService, "flushIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(priceStreamService, "sendTimeLimitMillis", 500);
+        priceStreamService.init();
+        CurrencyPairRegistry registry = rateBookService.getPairRegistry();
+        eurUsd = registry.pairId("EUR", "USD");
+        gbpUsd = registry.pairId("GBP", "USD");
+        eurJpy = registry.pairId("EUR", "JPY");
+        rateBookService.publish("USD/JPY", new BigDecimal("150.00"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        priceStreamService.shutdown();
+    }
+
+    @Test
+    void flush_SendsLatestPricesOnlyToSubscribersOfChangedPairs() {
+        // Arrange
+        FakeSession eurClient = connect("eur");
+        FakeSession gbpClient = connect("gbp");
+        FakeSession crossClient = connect("cross");
+        priceStreamService.subscribe(priceStreamService.find("eur"), eurUsd);
+        priceStreamService.subscribe(priceStreamService.find("gbp"), gbpUsd);
+        priceStreamService.subscribe(priceStreamService.find("cross"), eurJpy);
+
+        // Act
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1010"));
+        priceStreamService.flush();
+
+        // Assert
+        await(() -> eurClient.messages.size() == 1 && crossClient.messages.size() == 1);
+        assertTrue(eurClient.text(0).contains("\"pair\":\"EUR/USD\",\"rate\":1.1010,"), eurClient.text(0));
+        assertTrue(crossClient.text(0).contains("\"pair\":\"EUR/JPY\",\"rate\":165.15"), crossClient.text(0));
+        assertTrue(gbpClient.messages.isEmpty());
+    }
+
+    @Test
+    void subscribe_WhenRateKnown_SendsCurrentPriceWithoutWaitingForTick() {
+        // Arrange
+        rateBookService.publish("GBP/USD", new BigDecimal("1.2500"));
+        priceStreamService.flush();
+        FakeSession client = connect("late");
+
+        // Act
+        priceStreamService.subscribe(priceStreamService.find("late"), gbpUsd);
+        priceStreamService.flush();
+
+        // Assert
+        await(() -> client.messages.size() == 1);
+        assertTrue(client.text(0).contains("GBP/USD"));
+    }
+
+    @Test
+    void slowConsumer_ReceivesOnlyLatestPriceAfterItCatchesUp() throws Exception {
+        // Arrange: the client blocks on its first frame
+        FakeSession slow = connect("slow");
+        CountDownLatch release = new CountDownLatch(1);
+        slow.block = release;
+        priceStreamService.subscribe(priceStreamService.find("slow"), eurUsd);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        priceStreamService.flush();
+        await(() -> slow.sendsStarted == 1);
+
+        // Act
+        for (int i = 1; i <= 50; i++) {
+            rateBookService.publish("EUR/USD", new BigDecimal("1.1000").add(new BigDecimal(i).movePointLeft(4)));
+            priceStreamService.flush();
+        }
+        release.countDown();
+        await(() -> slow.messages.size() == 1);
+        priceStreamService.flush();
+        await(() -> slow.messages.size() == 2);
+
+        // Assert
+        assertTrue(slow.text(1).contains("\"rate\":1.1050,"), slow.text(1));
+        assertEquals(49.0, meterRegistry.get("websocket.stream.conflated").functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("websocket.stream.frames").functionCounter().count());
+    }
+
+    @Test
+    void flush_WhenClientExceedsSendTimeLimit_DisconnectsIt() throws Exception {
+        // Arrange
+        FakeSession stuck = connect("stuck");
+        CountDownLatch release = new CountDownLatch(1);
+        stuck.block = release;
+        priceStreamService.subscribe(priceStreamService.find("stuck"), eurUsd);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        priceStreamService.flush();
+        await(() -> stuck.sendsStarted == 1);
+
+        // Act
+        Thread.sleep(600);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1001"));
+        priceStreamService.flush();
+
+        // Assert
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, stuck.closeStatus);
+        assertNull(priceStreamService.find("stuck"));
+        assertEquals(1.0, meterRegistry.get("websocket.stream.disconnects").functionCounter().count());
+        release.countDown();
+    }
+
+    @Test
+    void flush_FansOutToTwentyThousandSessions() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        int sessions = 20_000;
+        List<FakeSession> clients = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            FakeSession client = connect("s" + i);
+            priceStreamService.subscribe(priceStreamService.find("s" + i), eurUsd);
+            clients.add(client);
+        }
+        priceStreamService.flush();
+        await(() -> clients.stream().allMatch(client -> client.messages.size() == 1));
+
+        // Act
+        rateBookService.publish("EUR/USD", new BigDecimal("1.0900"));
+        long start = System.nanoTime();
+        priceStreamService.flush();
+        await(() -> clients.stream().allMatch(client -> client.messages.size() == 2));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertEquals(sessions, priceStreamService.getSessionCount());
+        assertTrue(elapsedMillis < 2_000, "fan-out took " + elapsedMillis + "ms");
+        assertTrue(clients.get(sessions - 1).text(1).contains("\"rate\":1.0900,"));
+    }
+
+    @Test
+    void handler_RejectsUnknownPairAndClosesCleanly() throws Exception {
+        // Arrange
+        PriceStreamHandler handler = new PriceStreamHandler(priceStreamService, rateBookService, new ObjectMapper());
+        FakeSession client = new FakeSession("h");
+        handler.afterConnectionEstablished(client);
+
+        // Act
+        handler.handleMessage(client, new TextMessage("{\"action\":\"subscribe\",\"pairs\":[\"EUR/USD\",\"XXX/USD\"]}"));
+        handler.afterConnectionClosed(client, CloseStatus.NORMAL);
+
+        // Assert
+        await(() -> client.messages.size() == 1);
+        assertTrue(client.text(0).contains("Unknown currency pair: XXX/USD"));
+        assertNull(priceStreamService.find("h"));
+        assertEquals(-1, rateBookService.getPairRegistry().findCurrencyId("XXX"));
+    }
+
+    @Test
+    void binaryProtocol_SendsSnapshotThenSharedDeltas() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        FakeSession first = connectBinary("b1");
+        FakeSession second = connectBinary("b2");
+        priceStreamService.subscribe(priceStreamService.find("b1"), eurUsd);
+        priceStreamService.subscribe(priceStreamService.find("b2"), eurUsd);
+        priceStreamService.flush();
+        await(() -> first.messages.size() == 1 && second.messages.size() == 1);
+
+        // Act
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1003"));
+        priceStreamService.flush();
+        await(() -> first.messages.size() == 2 && second.messages.size() == 2);
+
+        // Assert
+        ByteBuffer snapshot = first.binary(0);
+        assertEquals(BinaryPriceCodec.SYMBOL, snapshot.get());
+        assertEquals(eurUsd, snapshot.getShort());
+        byte[] symbol = new byte[snapshot.get()];
+        snapshot.get(symbol);
+        assertEquals("EUR/USD", new String(symbol, StandardCharsets.US_ASCII));
+        assertEquals(BinaryPriceCodec.SNAPSHOT, snapshot.get());
+        assertEquals(eurUsd, snapshot.getShort());
+        assertEquals(1L, snapshot.getLong());
+        long price = snapshot.getLong();
+        assertEquals(110_000_000L, price);
+
+        ByteBuffer delta = first.binary(1);
+        assertEquals(BinaryPriceCodec.DELTA_SIZE, delta.remaining());
+        assertEquals(BinaryPriceCodec.DELTA, delta.get());
+        assertEquals(eurUsd, delta.getShort());
+        assertEquals(2L, delta.getLong());
+        assertEquals(110_030_000L, price + delta.getInt());
+        assertEquals(first.binary(1), second.binary(1));
+        assertTrue(meterRegistry.get("websocket.stream.bytes").tag("protocol", "binary").functionCounter().count() > 0);
+    }
+
+    @Test
+    void binaryProtocol_ClientThatMissedAnUpdateGetsSnapshotInsteadOfDelta() throws Exception {
+        // Arrange: the slow client is stuck sending its first snapshot while the fast one moves on
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1000"));
+        FakeSession fast = connectBinary("fast");
+        FakeSession slow = connectBinary("slow");
+        CountDownLatch release = new CountDownLatch(1);
+        slow.block = release;
+        priceStreamService.subscribe(priceStreamService.find("fast"), eurUsd);
+        priceStreamService.subscribe(priceStreamService.find("slow"), eurUsd);
+        priceStreamService.flush();
+        await(() -> fast.messages.size() == 1 && slow.sendsStarted == 1);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1001"));
+        priceStreamService.flush();
+        await(() -> fast.messages.size() == 2);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1002"));
+
+        // Act
+        release.countDown();
+        await(() -> slow.messages.size() == 1);
+        priceStreamService.flush();
+        await(() -> fast.messages.size() == 3 && slow.messages.size() == 2);
+
+        // Assert
+        assertEquals(BinaryPriceCodec.DELTA, fast.binary(2).get());
+        ByteBuffer catchUp = slow.binary(1);
+        assertEquals(BinaryPriceCodec.SNAPSHOT, catchUp.get());
+        catchUp.getShort();
+        assertEquals(3L, catchUp.getLong());
+        assertEquals(110_020_000L, catchUp.getLong());
+    }
+
+    private FakeSession connectBinary(String id) {
+        FakeSession session = new FakeSession(id);
+        session.acceptedProtocol = BinaryPriceCodec.PROTOCOL;
+        assertNotNull(priceStreamService.open(session));
+        return session;
+    }
+
+    private FakeSession connect(String id) {
+        FakeSession session = new FakeSession(id);
+        StreamSession stream = priceStreamService.open(session);
+        assertNotNull(stream);
+        return session;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    static class FakeSession implements WebSocketSession {
+        final List<WebSocketMessage<?>> messages = new CopyOnWriteArrayList<>();
+        private final String id;
+        private final Map<String, Object> attributes = new HashMap<>();
+        volatile CountDownLatch block;
+        volatile int sendsStarted;
+        volatile CloseStatus closeStatus;
+        String acceptedProtocol;
+
+        FakeSession(String id) {
+            this.id = id;
+        }
+
+        String text(int index) {
+            return ((TextMessage) messages.get(index)).getPayload();
+        }
+
+        ByteBuffer binary(int index) {
+            return ((BinaryMessage) messages.get(index)).getPayload().duplicate();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            sendsStarted++;
+            CountDownLatch latch = block;
+            if (latch != null) {
+                block = null;
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(message);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/ws");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return acceptedProtocol;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+    }
+}
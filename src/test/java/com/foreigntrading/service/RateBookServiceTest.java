@@ -0,0 +1,169 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.RateBookSnapshot;
+import com.foreigntrading.marketdata.RateEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateBookServiceTest {
+
+    private CurrencyPairRegistry pairRegistry;
+    private RateBookService rateBookService;
+
+    @BeforeEach
+    void setUp() {
+        pairRegistry = new CurrencyPairRegistry();
+        rateBookService = new RateBookService(pairRegistry);
+        rateBookService.init();
+    }
+
+    @Test
+    void getExchangeRate_WhenRatePublished_ReturnsRate() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+
+        // Act
+        BigDecimal rate = rateBookService.getExchangeRate("EUR", "USD");
+
+        // Assert
+        assertEquals(new BigDecimal("1.1234"), rate);
+    }
+
+    @Test
+    void getExchangeRate_WhenPairUnknown_Throws() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> rateBookService.getExchangeRate("EUR", "USD"));
+    }
+
+    @Test
+    void getExchangeRate_WhenRateIsStale_Throws() {
+        // Arrange
+        int pairId = pairRegistry.pairId("EUR", "USD");
+        long tenMinutesAgo = MarketClock.epochNanos() - 600 * MarketClock.NANOS_PER_SECOND;
+        rateBookService.publish(pairId, new BigDecimal("1.1234"), tenMinutesAgo);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> rateBookService.getExchangeRate("EUR", "USD"));
+    }
+
+    @Test
+    void publish_AssignsIncreasingSequencePerPair() {
+        // Act
+        RateEntry first = rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.3456"));
+        RateEntry second = rateBookService.publish("EUR/USD", new BigDecimal("1.1240"));
+
+        // Assert
+        assertEquals(1, first.sequence());
+        assertEquals(2, second.sequence());
+        assertEquals(112400000L, second.fixedRate());
+        assertEquals(3, rateBookService.version());
+    }
+
+    @Test
+    void publish_NotifiesListeners() {
+        // Arrange
+        List<RateEntry> received = new ArrayList<>();
+        rateBookService.addListener(received::add);
+
+        // Act
+        RateEntry entry = rateBookService.publish("USD/JPY", new BigDecimal("110.12"));
+
+        // Assert
+        assertEquals(List.of(entry), received);
+    }
+
+    @Test
+    void snapshot_IsReusedUntilNextUpdate() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.3456"));
+
+        // Act
+        RateBookSnapshot first = rateBookService.snapshot();
+        RateBookSnapshot second = rateBookService.snapshot();
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1300"));
+        RateBookSnapshot third = rateBookService.snapshot();
+
+        // Assert
+        assertSame(first, second);
+        assertNotSame(first, third);
+        Map<String, BigDecimal> rates = first.rates();
+        assertEquals(2, rates.size());
+        assertEquals(new BigDecimal("1.1234"), rates.get("EUR/USD"));
+        assertEquals(new BigDecimal("1.1300"), third.rates().get("EUR/USD"));
+    }
+
+    @Test
+    void snapshotRates_LookUpBySymbolWithoutRegisteringCurrencies() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.3456"));
+        int currencies = pairRegistry.currencyCount();
+
+        // Act
+        Map<String, BigDecimal> rates = rateBookService.snapshot().rates();
+
+        // Assert
+        assertEquals(new BigDecimal("1.3456"), rates.get("GBP/USD"));
+        assertTrue(rates.containsKey("EUR/USD"));
+        assertNull(rates.get("USD/EUR"));
+        assertNull(rates.get("XAU/USD"));
+        assertNull(rates.get("EURUSD"));
+        assertEquals(currencies, pairRegistry.currencyCount());
+    }
+
+    @Test
+    void getExchangeRate_WhenPairNotPolled_TriangulatesThroughPivot() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.10"));
+        rateBookService.publish("USD/JPY", new BigDecimal("150.00"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.25"));
+
+        // Act
+        BigDecimal eurJpy = rateBookService.getExchangeRate("EUR", "JPY");
+        BigDecimal jpyEur = rateBookService.getExchangeRate("JPY", "EUR");
+        BigDecimal eurGbp = rateBookService.getExchangeRate("EUR", "GBP");
+
+        // Assert
+        assertEquals(0, new BigDecimal("165.0").compareTo(eurJpy));
+        assertEquals(0, new BigDecimal("0.88").compareTo(eurGbp));
+        assertEquals(0.0060606, jpyEur.doubleValue(), 1e-7);
+    }
+
+    @Test
+    void getExchangeRate_WhenSourceTicks_RecomputesDependentCrosses() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.10"));
+        rateBookService.publish("USD/JPY", new BigDecimal("150.00"));
+
+        // Act
+        rateBookService.publish("EUR/USD", new BigDecimal("1.20"));
+
+        // Assert
+        assertEquals(0, new BigDecimal("180.0").compareTo(rateBookService.getExchangeRate("EUR", "JPY")));
+    }
+
+    @Test
+    void getExchangeRate_PrefersDirectQuoteOverCross() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.10"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.25"));
+        rateBookService.publish("EUR/GBP", new BigDecimal("0.87"));
+
+        // Act
+        BigDecimal eurGbp = rateBookService.getExchangeRate("EUR", "GBP");
+
+        // Assert
+        assertEquals(new BigDecimal("0.87"), eurGbp);
+    }
+}
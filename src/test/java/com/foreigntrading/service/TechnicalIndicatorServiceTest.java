@@ -0,0 +1,213 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.IndicatorState;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.Timeframe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TechnicalIndicatorServiceTest {
+
+    // Wilder RSI worked example published by StockCharts (ChartSchool, "Relative Strength Index");
+    // the published table rounds its averages to two decimals, hence the 0.1 tolerance below
+    private static final double[] RSI_CLOSES = {
+        44.34, 44.09, 44.15, 43.61, 44.33, 44.83, 45.10, 45.42, 45.84, 46.08, 45.89, 46.03, 45.61, 46.28,
+        46.28, 46.00, 46.03, 46.41, 46.22, 45.64
+    };
+    private static final double[] RSI_EXPECTED = {70.53, 66.32, 66.55, 69.41, 66.36, 57.97};
+
+    private IndicatorState state;
+
+    @BeforeEach
+    void setUp() {
+        state = new IndicatorState();
+    }
+
+    @Test
+    void rsi_MatchesPublishedWilderExample() {
+        for (int i = 0; i < RSI_CLOSES.length; i++) {
+            state.update(RSI_CLOSES[i], RSI_CLOSES[i], RSI_CLOSES[i]);
+            int expectedIndex = i - IndicatorState.RSI_PERIOD;
+            if (expectedIndex >= 0) {
+                assertTrue(state.isRsiReady());
+                assertEquals(RSI_EXPECTED[expectedIndex], state.getRsi(), 0.1, "RSI after bar " + i);
+            } else {
+                assertFalse(state.isRsiReady());
+            }
+        }
+    }
+
+    @Test
+    void smaAndBollinger_MatchClosedForm() {
+        // Arrange: closes 1..20 have mean 10.5 and population variance (20^2 - 1) / 12
+        for (int i = 1; i <= 20; i++) {
+            state.update(i, i, i);
+        }
+        double deviation = Math.sqrt(399.0 / 12.0);
+
+        // Assert
+        assertEquals(10.5, state.getSma(), 1e-12);
+        assertEquals(10.5 + 2 * deviation, state.getBollingerUpper(), 1e-9);
+        assertEquals(10.5 - 2 * deviation, state.getBollingerLower(), 1e-9);
+        assertEquals(10.5, state.getEma(), 1e-12);
+    }
+
+    @Test
+    void allIndicators_MatchFullRecomputationOnRandomWalk() {
+        // Arrange
+        Random random = new Random(7);
+        int bars = 2_000;
+        double[] high = new double[bars];
+        double[] low = new double[bars];
+        double[] close = new double[bars];
+        double price = 1.1;
+        for (int i = 0; i < bars; i++) {
+            price *= 1 + random.nextGaussian() * 0.001;
+            close[i] = price;
+            high[i] = price * (1 + random.nextDouble() * 0.0005);
+            low[i] = price * (1 - random.nextDouble() * 0.0005);
+        }
+
+        // Act & Assert
+        for (int i = 0; i < bars; i++) {
+            state.update(high[i], low[i], close[i]);
+            int n = i + 1;
+            if (n >= IndicatorState.SMA_PERIOD) {
+                assertEquals(referenceSma(close, n, IndicatorState.SMA_PERIOD), state.getSma(), 1e-12);
+                double upper = referenceSma(close, n, 20) + 2 * referenceDeviation(close, n, 20);
+                assertEquals(upper, state.getBollingerUpper(), 1e-9);
+            }
+            if (n >= IndicatorState.MACD_SLOW + IndicatorState.MACD_SIGNAL - 1) {
+                double[] macd = new double[n];
+                double[] fast = referenceEma(close, n, IndicatorState.MACD_FAST);
+                double[] slow = referenceEma(close, n, IndicatorState.MACD_SLOW);
+                for (int j = IndicatorState.MACD_SLOW - 1; j < n; j++) {
+                    macd[j] = fast[j] - slow[j];
+                }
+                double[] signal = referenceEmaFrom(macd, IndicatorState.MACD_SLOW - 1, n, IndicatorState.MACD_SIGNAL);
+                assertEquals(macd[n - 1], state.getMacd(), 1e-12);
+                assertEquals(signal[n - 1], state.getMacdSignal(), 1e-12);
+            }
+            if (n > IndicatorState.ATR_PERIOD) {
+                assertEquals(referenceAtr(high, low, close, n), state.getAtr(), 1e-12);
+                assertEquals(referenceRsi(close, n), state.getRsi(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void getIndicators_ReadsStateAdvancedByClosedCandles() {
+        // Arrange
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        CandleService candleService = new CandleService(rateBookService);
+        candleService.init();
+        TechnicalIndicatorService indicatorService = new TechnicalIndicatorService(candleService, rateBookService);
+        indicatorService.init();
+        int pairId = rateBookService.getPairRegistry().pairId("EUR", "USD");
+
+        // Act
+        for (int i = 0; i < 40; i++) {
+            long price = FixedPoint.fromDouble(1.10 + i * 0.001);
+            feedBar(candleService, pairId, i, price);
+        }
+        Map<String, Object> indicators = indicatorService.getIndicators("EUR", "USD", Timeframe.M5);
+
+        // Assert
+        assertTrue(indicatorService.isReady("EUR", "USD", Timeframe.M5));
+        assertEquals(40L, indicators.get("bars"));
+        assertEquals(100.0, (Double) indicators.get("rsi14"), 1e-9);
+        assertTrue(indicators.containsKey("macd"));
+        assertTrue(indicators.containsKey("atr14"));
+        assertTrue(indicatorService.getIndicators("GBP", "USD", Timeframe.M5).isEmpty());
+    }
+
+    // One tick inside the bar, then one in the next bar so this bar closes at `price`
+    private static void feedBar(CandleService candleService, int pairId, int bar, long price) {
+        long openTime = 1_699_999_200_000L + bar * Timeframe.M5.getMillis();
+        long nextOpenTime = openTime + Timeframe.M5.getMillis();
+        candleService.onRate(new RateEntry(pairId, FixedPoint.toBigDecimal(price), price,
+                openTime * MarketClock.NANOS_PER_MILLI, bar * 2L + 1));
+        candleService.onRate(new RateEntry(pairId, FixedPoint.toBigDecimal(price), price,
+                nextOpenTime * MarketClock.NANOS_PER_MILLI, bar * 2L + 2));
+    }
+
+    private static double referenceSma(double[] values, int n, int period) {
+        double sum = 0;
+        for (int i = n - period; i < n; i++) {
+            sum += values[i];
+        }
+        return sum / period;
+    }
+
+    private static double referenceDeviation(double[] values, int n, int period) {
+        double mean = referenceSma(values, n, period);
+        double sum = 0;
+        for (int i = n - period; i < n; i++) {
+            sum += (values[i] - mean) * (values[i] - mean);
+        }
+        return Math.sqrt(sum / period);
+    }
+
+    private static double[] referenceEma(double[] values, int n, int period) {
+        return referenceEmaFrom(values, 0, n, period);
+    }
+
+    private static double[] referenceEmaFrom(double[] values, int start, int n, int period) {
+        double[] ema = new double[n];
+        double seed = 0;
+        for (int i = start; i < start + period; i++) {
+            seed += values[i];
+        }
+        ema[start + period - 1] = seed / period;
+        double alpha = 2.0 / (period + 1);
+        for (int i = start + period; i < n; i++) {
+            ema[i] = ema[i - 1] + alpha * (values[i] - ema[i - 1]);
+        }
+        return ema;
+    }
+
+    private static double referenceAtr(double[] high, double[] low, double[] close, int n) {
+        int period = IndicatorState.ATR_PERIOD;
+        double atr = 0;
+        for (int i = 1; i <= period; i++) {
+            atr += trueRange(high, low, close, i);
+        }
+        atr /= period;
+        for (int i = period + 1; i < n; i++) {
+            atr = (atr * (period - 1) + trueRange(high, low, close, i)) / period;
+        }
+        return atr;
+    }
+
+    private static double trueRange(double[] high, double[] low, double[] close, int i) {
+        return Math.max(high[i] - low[i], Math.max(Math.abs(high[i] - close[i - 1]), Math.abs(low[i] - close[i - 1])));
+    }
+
+    private static double referenceRsi(double[] close, int n) {
+        int period = IndicatorState.RSI_PERIOD;
+        double gain = 0;
+        double loss = 0;
+        for (int i = 1; i <= period; i++) {
+            double change = close[i] - close[i - 1];
+            gain += Math.max(change, 0);
+            loss += Math.max(-change, 0);
+        }
+        gain /= period;
+        loss /= period;
+        for (int i = period + 1; i < n; i++) {
+            double change = close[i] - close[i - 1];
+            gain = (gain * (period - 1) + Math.max(change, 0)) / period;
+            loss = (loss * (period - 1) + Math.max(-change, 0)) / period;
+        }
+        return loss == 0 ? 100.0 : 100.0 - 100.0 / (1.0 + gain / loss);
+    }
+}
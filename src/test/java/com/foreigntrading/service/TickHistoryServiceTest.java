@@ -0,0 +1,120 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.MarketClock;
+import com.foreigntrading.marketdata.TickHistoryBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickHistoryServiceTest {
+
+    private RateBookService rateBookService;
+    private TickHistoryService tickHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        tickHistoryService = new TickHistoryService(rateBookService);
+        ReflectionTestUtils.setField(tickHistoryService, "capacity", 8);
+        tickHistoryService.init();
+    }
+
+    @Test
+    void query_ReturnsTicksInRangeOldestFirst() {
+        // Arrange
+        TickHistoryBuffer buffer = new TickHistoryBuffer(16);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(1_000L * i, 100L + i);
+        }
+        List<Long> prices = new ArrayList<>();
+
+        // Act
+        int delivered = buffer.query(2_500L, 6_000L, (timestamp, price) -> prices.add(price));
+
+        // Assert
+        assertEquals(4, delivered);
+        assertEquals(List.of(103L, 104L, 105L, 106L), prices);
+        assertEquals(4, buffer.countBetween(2_500L, 6_000L));
+    }
+
+    @Test
+    void append_WhenFull_OverwritesOldestTicks() {
+        // Arrange
+        TickHistoryBuffer buffer = new TickHistoryBuffer(4);
+        List<Long> timestamps = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            buffer.append(i, i);
+        }
+        buffer.query(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, price) -> timestamps.add(timestamp));
+
+        // Assert
+        assertEquals(4, buffer.size());
+        assertEquals(List.of(6L, 7L, 8L, 9L), timestamps);
+    }
+
+    @Test
+    void append_WhenTimestampGoesBackwards_KeepsOrder() {
+        // Arrange
+        TickHistoryBuffer buffer = new TickHistoryBuffer(4);
+        List<Long> timestamps = new ArrayList<>();
+
+        // Act
+        buffer.append(100, 1);
+        buffer.append(90, 2);
+        buffer.query(0, 1_000, (timestamp, price) -> timestamps.add(timestamp));
+
+        // Assert
+        assertEquals(List.of(100L, 100L), timestamps);
+    }
+
+    @Test
+    void getHistory_ReturnsPublishedRates() {
+        // Arrange
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1240"));
+        rateBookService.publish("GBP/USD", new BigDecimal("1.3456"));
+
+        // Act
+        List<Map<String, Object>> history = tickHistoryService.getHistory("EUR", "USD", "1h");
+
+        // Assert
+        assertEquals(2, history.size());
+        assertEquals(0, new BigDecimal("1.1240").compareTo((BigDecimal) history.get(1).get("price")));
+    }
+
+    @Test
+    void getHistory_ExcludesTicksOutsideWindow() {
+        // Arrange
+        int pairId = rateBookService.getPairRegistry().pairId("EUR", "USD");
+        long twoHoursAgo = MarketClock.epochNanos() - Duration.ofHours(2).toNanos();
+        rateBookService.publish(pairId, new BigDecimal("1.1000"), twoHoursAgo);
+        rateBookService.publish("EUR/USD", new BigDecimal("1.1234"));
+
+        // Act
+        List<Map<String, Object>> history = tickHistoryService.getHistory("EUR", "USD", "1h");
+
+        // Assert
+        assertEquals(1, history.size());
+        assertEquals(FixedPoint.toBigDecimal(112340000L), history.get(0).get("price"));
+    }
+
+    @Test
+    void parseLookback_SupportsUnits() {
+        assertEquals(Duration.ofMinutes(15), TickHistoryService.parseLookback("15m"));
+        assertEquals(Duration.ofDays(14), TickHistoryService.parseLookback("2w"));
+        assertThrows(IllegalArgumentException.class, () -> TickHistoryService.parseLookback("abc"));
+    }
+}
@@ -0,0 +1,185 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.RateEntry;
+import com.foreigntrading.marketdata.TickJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickJournalServiceTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("tick-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void append_RollsSegmentsAndReplaysInOrder() throws IOException {
+        // Arrange: four records per segment
+        try (TickJournal journal = new TickJournal(directory, 4 * TickJournal.RECORD_SIZE)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(65, i, i * 1_000L, 100 + i);
+            }
+
+            // Act
+            List<long[]> ticks = new ArrayList<>();
+            int delivered = journal.replay(3_000L, 8_000L,
+                    (pairKey, sequence, timestamp, price) -> ticks.add(new long[]{pairKey, sequence, timestamp, price}));
+
+            // Assert
+            assertEquals(3, journal.segmentCount());
+            assertEquals(6, delivered);
+            assertArrayEquals(new long[]{65, 3, 3_000L, 103}, ticks.get(0));
+            assertArrayEquals(new long[]{65, 8, 8_000L, 108}, ticks.get(5));
+        }
+    }
+
+    @Test
+    void reopen_ContinuesAfterLastWrittenRecord() throws IOException {
+        // Arrange
+        try (TickJournal journal = new TickJournal(directory, 4 * TickJournal.RECORD_SIZE)) {
+            for (int i = 1; i <= 6; i++) {
+                journal.append(1, i, i, i);
+            }
+        }
+
+        // Act
+        try (TickJournal reopened = new TickJournal(directory, 4 * TickJournal.RECORD_SIZE)) {
+            reopened.append(1, 7, 7, 7);
+            List<Long> sequences = new ArrayList<>();
+            reopened.replay(Long.MIN_VALUE, Long.MAX_VALUE, (pairKey, sequence, timestamp, price) -> sequences.add(sequence));
+
+            // Assert
+            assertEquals(7L, reopened.lastTimestamp());
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), sequences);
+            assertEquals(2, reopened.segmentCount());
+        }
+    }
+
+    @Test
+    void deleteOlderThan_RemovesOnlySegmentsEntirelyBeforeTheCutoff() throws IOException {
+        // Arrange: segments start at 1, 5 and 9 microseconds
+        try (TickJournal journal = new TickJournal(directory, 4 * TickJournal.RECORD_SIZE)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(65, i, i * 1_000L, 100 + i);
+            }
+
+            // Act: the second segment still holds ticks at and after 6 microseconds
+            int deleted = journal.deleteOlderThan(6_000L);
+            int deletedAgain = journal.deleteOlderThan(Long.MAX_VALUE);
+            List<Long> sequences = new ArrayList<>();
+            journal.replay(Long.MIN_VALUE, Long.MAX_VALUE, (pairKey, sequence, timestamp, price) -> sequences.add(sequence));
+
+            // Assert: the active segment survives any cutoff
+            assertEquals(1, deleted);
+            assertEquals(1, deletedAgain);
+            assertEquals(1, journal.segmentCount());
+            assertEquals(List.of(9L, 10L), sequences);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+        }
+    }
+
+    @Test
+    void deleteExpiredSegments_KeepsTheRecoveryWindowBehindTheNewestTick() throws IOException {
+        // Arrange: an earlier run journaled one tick per segment, twelve hours apart
+        long hour = 3_600_000_000_000L;
+        try (TickJournal journal = new TickJournal(directory, TickJournal.RECORD_SIZE)) {
+            for (int i = 0; i <= 4; i++) {
+                journal.append(65, i + 1, (12 * i + 1) * hour, 110_000_000L);
+            }
+        }
+        TickJournalService journalService = newJournalService(newRateBook());
+
+        // Act
+        int deleted = journalService.deleteExpiredSegments();
+
+        // Assert: ticks at hours 25, 37 and 49 are within a day of the newest
+        assertEquals(2, deleted);
+        assertEquals(3, journalService.replay(Long.MIN_VALUE, Long.MAX_VALUE, 0, entry -> { }));
+        journalService.close();
+    }
+
+    @Test
+    void recover_RestoresRateBookAndSkipsRejournaling() {
+        // Arrange: a first run journals two EUR/USD updates
+        RateBookService firstRun = newRateBook();
+        TickJournalService firstJournal = newJournalService(firstRun);
+        firstRun.publish("EUR/USD", new BigDecimal("1.1000"));
+        RateEntry last = firstRun.publish("EUR/USD", new BigDecimal("1.1050"));
+        firstJournal.close();
+
+        // Act: a restart recovers from the same directory
+        RateBookService secondRun = newRateBook();
+        TickJournalService secondJournal = newJournalService(secondRun);
+        int restored = secondJournal.recover();
+
+        // Assert
+        RateEntry recovered = secondRun.findEntry("EUR", "USD");
+        assertEquals(2, restored);
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1.1050")), recovered.fixedRate());
+        assertEquals(last.timestampNanos(), recovered.timestampNanos());
+        assertEquals(2L, recovered.sequence());
+        assertEquals(2, secondJournal.replay(Long.MIN_VALUE, Long.MAX_VALUE, 0, entry -> { }));
+        secondJournal.close();
+    }
+
+    @Test
+    void replay_AtAcceleratedSpeedPreservesSpacing() {
+        // Arrange: ticks 100 ms apart played back ten times faster
+        RateBookService rateBook = newRateBook();
+        TickJournalService journalService = newJournalService(rateBook);
+        int pairId = rateBook.getPairRegistry().pairId("GBP", "USD");
+        for (int i = 0; i < 3; i++) {
+            rateBook.publish(pairId, new BigDecimal("1.25"), 1_000_000_000L + i * 100_000_000L);
+        }
+
+        // Act
+        long started = System.nanoTime();
+        int delivered = journalService.replay(0, Long.MAX_VALUE, 10.0, entry -> { });
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // Assert
+        assertEquals(3, delivered);
+        assertTrue(elapsedMillis >= 18, "elapsed " + elapsedMillis);
+        assertTrue(elapsedMillis < 200, "elapsed " + elapsedMillis);
+        journalService.close();
+    }
+
+    private RateBookService newRateBook() {
+        RateBookService rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        return rateBookService;
+    }
+
+    private TickJournalService newJournalService(RateBookService rateBookService) {
+        TickJournalService journalService = new TickJournalService(rateBookService);
+        ReflectionTestUtils.setField(journalService, "directory", directory.toString());
+        journalService.init();
+        return journalService;
+    }
+}
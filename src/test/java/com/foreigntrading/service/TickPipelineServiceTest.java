@@ -0,0 +1,460 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import com.foreigntrading.marketdata.OrderBook;
+import com.foreigntrading.marketdata.PriceTriggerIndex;
+import com.foreigntrading.marketdata.TickEvent;
+import com.foreigntrading.marketdata.TickPipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickPipelineServiceTest {
+
+    private RateBookService rateBookService;
+    private SimpleMeterRegistry meterRegistry;
+    private FakeAlertService alertService;
+    private FakeTradeService tradeService;
+    private FakeOrderBookService orderBookService;
+    private TickPipelineService tickPipelineService;
+    private int eurUsd;
+
+    @BeforeEach
+    void setUp() {
+        rateBookService = new RateBookService(new CurrencyPairRegistry());
+        rateBookService.init();
+        meterRegistry = new SimpleMeterRegistry();
+        alertService = new FakeAlertService(rateBookService.getPairRegistry());
+        tradeService = new FakeTradeService(rateBookService.getPairRegistry());
+        orderBookService = new FakeOrderBookService();
+        tickPipelineService = new TickPipelineService(rateBookService, alertService, tradeService, orderBookService, meterRegistry);
+        ReflectionTestUtils.setField(tickPipelineService, "bufferSize", 1024);
+        tickPipelineService.init();
+        eurUsd = rateBookService.getPairRegistry().pairId("EUR", "USD");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tickPipelineService.shutdown();
+    }
+
+    @Test
+    void ingest_UpdatesRateBookInOrder() {
+        // Act
+        for (int i = 1; i <= 10_000; i++) {
+            tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0 + i / 1_000_000.0), i);
+        }
+
+        // Assert
+        await(() -> rateBookService.findEntry(eurUsd) != null && rateBookService.findEntry(eurUsd).sequence() == 10_000);
+        assertEquals(FixedPoint.fromDouble(1.01), rateBookService.findEntry(eurUsd).fixedRate());
+    }
+
+    @Test
+    void alertStage_FiresLevelCrossedBetweenTicksOnce() {
+        // Arrange: an ABOVE 1.1000 alert for some user
+        alertService.index.add(7L, eurUsd, FixedPoint.fromDouble(1.1000), true);
+
+        // Act: crosses the level, falls back, crosses again
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0990), 1);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1010), 2);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0995), 3);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1020), 4);
+
+        // Assert
+        await(() -> alertService.triggered.size() == 1);
+        await(() -> tickPipelineService.getPipeline().backlog(0) == 0 && tickPipelineService.getPipeline().backlog(4) == 0);
+        assertEquals(List.of(7L), alertService.triggered);
+        assertEquals(1.0, meterRegistry.get("marketdata.pipeline.triggered").tag("type", "alert").functionCounter().count());
+    }
+
+    @Test
+    void alertStage_FiresOnlyThresholdsBetweenPreviousAndCurrentPrice() {
+        // Arrange: one alert per thousand users on either side of 1.1000
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1000), 1);
+        await(() -> rateBookService.findEntry(eurUsd) != null);
+        for (long id = 1; id <= 1_000; id++) {
+            alertService.index.add(id, eurUsd, FixedPoint.fromDouble(1.1000 + id / 100_000.0), true);
+            alertService.index.add(-id, eurUsd, FixedPoint.fromDouble(1.1000 - id / 100_000.0), false);
+        }
+
+        // Act: rises through the first ten ABOVE thresholds
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1001), 2);
+
+        // Assert
+        await(() -> handedOff() == 2);
+        assertEquals(10, alertService.triggered.size());
+        assertTrue(alertService.triggered.containsAll(List.of(1L, 5L, 10L)));
+        assertEquals(1_990, alertService.index.owners());
+    }
+
+    @Test
+    void alertStage_EqualsAlertOnCrossFiresWhenMoveSpansIt() {
+        // Arrange: EUR/JPY at 165, an EQUALS 164.00 alert on it
+        int eurJpy = rateBookService.getPairRegistry().pairId("EUR", "JPY");
+        tickPipelineService.ingest(rateBookService.getPairRegistry().pairId("USD", "JPY"), FixedPoint.fromDouble(150.0), 1);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.10), 2);
+        await(() -> rateBookService.findRate(eurJpy) != null);
+        alertService.index.addTouch(31L, eurJpy, FixedPoint.fromDouble(164.0));
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.099), 3);
+        await(() -> handedOff() == 3);
+        assertTrue(alertService.triggered.isEmpty());
+
+        // Act: EUR/USD falls to 1.09, taking EUR/JPY from 164.85 through 164 to 163.5
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.09), 4);
+
+        // Assert
+        await(() -> alertService.triggered.contains(31L));
+    }
+
+    @Test
+    void orderStage_ExecutesTriggeredOrderAtLatestPrice() {
+        // Arrange: a BUY stop-loss at 1.0900
+        tradeService.addBuyStop(11L, eurUsd, "1.0900");
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1000), 1);
+        await(() -> rateBookService.findEntry(eurUsd) != null);
+
+        // Act
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0895), 2);
+
+        // Assert
+        await(() -> tradeService.executions.size() == 1);
+        assertEquals(0, new BigDecimal("1.0895").compareTo(tradeService.executions.get(11L)));
+    }
+
+    @Test
+    void orderStage_PivotLegTickTriggersOrderOnCross() {
+        // Arrange: EUR/JPY = EUR/USD * USD/JPY = 1.10 * 150 = 165
+        int eurJpy = rateBookService.getPairRegistry().pairId("EUR", "JPY");
+        tickPipelineService.ingest(rateBookService.getPairRegistry().pairId("USD", "JPY"), FixedPoint.fromDouble(150.0), 1);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.10), 2);
+        await(() -> rateBookService.findRate(eurJpy) != null);
+        tradeService.addBuyStop(21L, eurJpy, "164.00");
+
+        // Act: EUR/USD falls to 1.09, taking EUR/JPY to 163.5
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.09), 3);
+
+        // Assert
+        await(() -> tradeService.executions.containsKey(21L));
+        assertEquals(0, new BigDecimal("163.5").compareTo(tradeService.executions.get(21L)));
+    }
+
+    @Test
+    void limitOrderStage_FillsRestingOrdersTheRateTradesThrough() {
+        // Arrange: bids at 1.0950 and 1.0900, an ask at 1.1100
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1000), 1);
+        await(() -> rateBookService.findEntry(eurUsd) != null);
+        orderBookService.rest(1, true, 1.0950);
+        orderBookService.rest(2, true, 1.0900);
+        orderBookService.rest(3, false, 1.1100);
+
+        // Act: dips to 1.0920 and recovers within the batch
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0920), 2);
+        tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.0990), 3);
+        await(() -> handedOff() == 3);
+
+        // Assert: only the 1.0950 bid, at its limit
+        assertEquals(Map.of(1L, FixedPoint.fromDouble(1.0950)), orderBookService.fills);
+        synchronized (orderBookService.book) {
+            assertTrue(orderBookService.book.contains(2));
+            assertTrue(orderBookService.book.contains(3));
+        }
+    }
+
+    @Test
+    void pipeline_RecordsLatencyAndBatchSizePerStage() {
+        // Act
+        for (int i = 1; i <= 1_000; i++) {
+            tickPipelineService.ingest(eurUsd, FixedPoint.fromDouble(1.1), i);
+        }
+        await(() -> meterRegistry.get("marketdata.pipeline.latency").tag("stage", "handoff").timer().count() == 1_000);
+
+        // Assert
+        for (String stage : List.of("rate-book", "alerts", "orders", "limit-orders", "handoff")) {
+            assertEquals(1_000L, meterRegistry.get("marketdata.pipeline.latency").tag("stage", stage).timer().count());
+            assertEquals(1_000.0, meterRegistry.get("marketdata.pipeline.batch.size").tag("stage", stage).summary().totalAmount());
+        }
+    }
+
+    @Test
+    void tickPipeline_AppliesBackPressureWithoutLosingEvents() {
+        // Arrange: a ring of 8 slots in front of a slow stage
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        AtomicInteger batches = new AtomicInteger();
+        TickPipeline pipeline = new TickPipeline(8, List.of(new TickPipeline.Stage() {
+            @Override
+            public String name() {
+                return "slow";
+            }
+
+            @Override
+            public void onEvent(TickEvent event, boolean endOfBatch) {
+                seen.add(event.timestampNanos());
+                if (endOfBatch) {
+                    batches.incrementAndGet();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }), new TickPipeline.Monitor() {
+            @Override
+            public void onEvent(int stage, long nanosSinceIngest) {
+            }
+
+            @Override
+            public void onBatch(int stage, int size) {
+            }
+        });
+        pipeline.start();
+
+        // Act
+        for (int i = 0; i < 500; i++) {
+            pipeline.publish(eurUsd, 1, i);
+        }
+        await(() -> seen.size() == 500);
+        pipeline.stop();
+
+        // Assert
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 500; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, seen);
+        assertTrue(batches.get() < 500, "events were not batched");
+    }
+
+    @Test
+    void tickPipeline_StopReleasesAProducerWaitingOnAFullRing() throws InterruptedException {
+        // Arrange: a stage stuck on its first event, and a producer filling the ring behind it
+        CountDownLatch stuck = new CountDownLatch(1);
+        TickPipeline pipeline = new TickPipeline(8, List.of(new TickPipeline.Stage() {
+            @Override
+            public String name() {
+                return "stuck";
+            }
+
+            @Override
+            public void onEvent(TickEvent event, boolean endOfBatch) {
+                try {
+                    stuck.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }), NO_MONITOR);
+        pipeline.start();
+        List<Boolean> published = new CopyOnWriteArrayList<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                published.add(pipeline.publish(eurUsd, 1, i));
+            }
+        });
+        producer.start();
+        await(() -> published.size() == 8 && producer.getState() == Thread.State.WAITING);
+
+        // Act
+        pipeline.stop();
+        producer.join(5000);
+        stuck.countDown();
+
+        // Assert: the ninth and tenth ticks are dropped rather than waited for
+        assertFalse(producer.isAlive());
+        assertEquals(10, published.size());
+        assertEquals(List.of(false, false), published.subList(8, 10));
+    }
+
+    @Test
+    void tickPipeline_StageErrorSkipsTheEventAndKeepsTheRingMoving() {
+        // Arrange
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        TickPipeline pipeline = new TickPipeline(8, List.of(new TickPipeline.Stage() {
+            @Override
+            public String name() {
+                return "failing";
+            }
+
+            @Override
+            public void onEvent(TickEvent event, boolean endOfBatch) {
+                if (event.timestampNanos() == 3) {
+                    throw new AssertionError("bad tick");
+                }
+                seen.add(event.timestampNanos());
+            }
+        }), NO_MONITOR);
+        pipeline.start();
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            pipeline.publish(eurUsd, 1, i);
+        }
+        await(() -> seen.size() == 19);
+        pipeline.stop();
+
+        // Assert
+        assertFalse(seen.contains(3L));
+        assertEquals(Long.valueOf(19), seen.get(18));
+    }
+
+    @Test
+    void tickPipeline_IdleStagesParkUntilTheNextPublish() {
+        // Arrange
+        List<Long> seen = new CopyOnWriteArrayList<>();
+        List<Thread> stageThreads = new CopyOnWriteArrayList<>();
+        TickPipeline pipeline = new TickPipeline(8, List.of(new TickPipeline.Stage() {
+            @Override
+            public String name() {
+                return "parking";
+            }
+
+            @Override
+            public void onEvent(TickEvent event, boolean endOfBatch) {
+                stageThreads.add(Thread.currentThread());
+                seen.add(event.timestampNanos());
+            }
+        }), NO_MONITOR);
+        pipeline.start();
+        pipeline.publish(eurUsd, 1, 0);
+        await(() -> seen.size() == 1);
+
+        // Act
+        Thread stage = stageThreads.get(0);
+        await(() -> stage.getState() == Thread.State.WAITING);
+        pipeline.publish(eurUsd, 1, 1);
+        await(() -> seen.size() == 2);
+        pipeline.stop();
+
+        // Assert
+        assertEquals(List.of(0L, 1L), seen);
+        assertFalse(stage.isAlive());
+    }
+
+    private long handedOff() {
+        return meterRegistry.get("marketdata.pipeline.latency").tag("stage", "handoff").timer().count();
+    }
+
+    private static final TickPipeline.Monitor NO_MONITOR = new TickPipeline.Monitor() {
+        @Override
+        public void onEvent(int stage, long nanosSinceIngest) {
+        }
+
+        @Override
+        public void onBatch(int stage, int size) {
+        }
+    };
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Alert thresholds without a database behind them
+    static class FakeAlertService extends AlertService {
+        final PriceTriggerIndex index = new PriceTriggerIndex();
+        final List<Long> triggered = new CopyOnWriteArrayList<>();
+
+        FakeAlertService(CurrencyPairRegistry registry) {
+            super(null, null, null, registry, null);
+        }
+
+        @Override
+        public int fireTriggeredAlerts(int pairId, long low, long high, LongConsumer consumer) {
+            return index.fire(pairId, low, high, consumer);
+        }
+
+        @Override
+        public boolean hasTriggers(int pairId) {
+            return index.hasTriggers(pairId);
+        }
+
+        @Override
+        public boolean triggerAlertIfActive(Long alertId) {
+            triggered.add(alertId);
+            return true;
+        }
+    }
+
+    // One EUR/USD book without a database behind it
+    class FakeOrderBookService extends OrderBookService {
+        final OrderBook book = new OrderBook(eurUsd);
+        final Map<Long, Long> fills = new ConcurrentHashMap<>();
+
+        FakeOrderBookService() {
+            super(null, null, null, null, null, null, null, null);
+        }
+
+        void rest(long orderId, boolean buy, double price) {
+            synchronized (book) {
+                book.add(orderId, buy, FixedPoint.fromDouble(price), FixedPoint.ONE, (id, fillPrice, qty, left) -> { });
+            }
+        }
+
+        @Override
+        public void matchReference(int pairId, long low, long high, long last) {
+            synchronized (book) {
+                if (pairId == eurUsd) {
+                    book.matchReference(low, high, last, (id, price, qty, left) -> fills.put(id, price));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasOrders(int pairId) {
+            return pairId == eurUsd && !book.isEmpty();
+        }
+    }
+
+    // Trigger index without a database behind it
+    static class FakeTradeService extends TradeService {
+        final PriceTriggerIndex index = new PriceTriggerIndex();
+        final Map<Long, BigDecimal> executions = new ConcurrentHashMap<>();
+
+        FakeTradeService(CurrencyPairRegistry registry) {
+            super(null, null, null, null, registry, null, null, null);
+        }
+
+        void addBuyStop(long tradeId, int pairId, String stop) {
+            index.add(tradeId, pairId, FixedPoint.fromBigDecimal(new BigDecimal(stop)), false);
+        }
+
+        @Override
+        public int fireTriggeredOrders(int pairId, long low, long high, LongConsumer consumer) {
+            return index.fire(pairId, low, high, consumer);
+        }
+
+        @Override
+        public boolean hasTriggers(int pairId) {
+            return index.hasTriggers(pairId);
+        }
+
+        @Override
+        public boolean executeIfPending(Long tradeId, BigDecimal executionPrice) {
+            executions.put(tradeId, executionPrice);
+            return true;
+        }
+    }
+}
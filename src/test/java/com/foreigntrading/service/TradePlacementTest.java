@@ -0,0 +1,226 @@
+package com.foreigntrading.service;
+
+import com.foreigntrading.entity.Account;
+import com.foreigntrading.entity.Hold;
+import com.foreigntrading.entity.Trade;
+import com.foreigntrading.entity.User;
+import com.foreigntrading.exception.InsufficientFundsException;
+import com.foreigntrading.marketdata.BalanceBook;
+import com.foreigntrading.repository.AccountRepository;
+import com.foreigntrading.repository.HoldRepository;
+import com.foreigntrading.repository.TradeRepository;
+import com.foreigntrading.repository.UserRepository;
+import com.foreigntrading.marketdata.CurrencyPairRegistry;
+import com.foreigntrading.marketdata.FixedPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.foreigntrading.util.TestHelper.repository;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradePlacementTest {
+
+    // Every repository call that would reach the database, by method name
+    private final List<String> queries = new ArrayList<>();
+    private final List<Trade> savedTrades = new ArrayList<>();
+    private final List<Hold> savedHolds = new ArrayList<>();
+
+    private AccountService accountService;
+    private TradeService tradeService;
+    private CurrencyPairRegistry pairRegistry;
+    private int eurUsd;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Function<Object[], Object>> accountMethods = new HashMap<>();
+        accountMethods.put("findBalanceState", args -> {
+            queries.add("findBalanceState");
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{7L, true, "USD", new BigDecimal("5000"), BigDecimal.ZERO});
+            return rows;
+        });
+        accountMethods.put("getReferenceById", args -> {
+            Account account = new Account();
+            account.setId((Long) args[0]);
+            return account;
+        });
+        AccountRepository accountRepository = repository(AccountRepository.class, accountMethods);
+
+        Map<String, Function<Object[], Object>> userMethods = new HashMap<>();
+        userMethods.put("getReferenceById", args -> {
+            User user = new User();
+            user.setId((Long) args[0]);
+            return user;
+        });
+        Map<String, Function<Object[], Object>> tradeMethods = new HashMap<>();
+        tradeMethods.put("save", args -> {
+            queries.add("saveTrade");
+            Trade trade = (Trade) args[0];
+            if (trade.getId() == null) {
+                trade.setId((long) savedTrades.size() + 1);
+                savedTrades.add(trade);
+            }
+            return trade;
+        });
+        tradeMethods.put("findById", args -> Optional.of(savedTrades.get((int) (long) (Long) args[0] - 1)));
+        Map<String, Function<Object[], Object>> holdMethods = new HashMap<>();
+        holdMethods.put("save", args -> {
+            queries.add("saveHold");
+            savedHolds.add((Hold) args[0]);
+            return args[0];
+        });
+        holdMethods.put("findByReferenceTypeAndReferenceIdInAndStatus", args -> List.of());
+        holdMethods.put("saveAll", args -> args[0]);
+        holdMethods.put("saveAllAndFlush", args -> args[0]);
+
+        accountService = new AccountService(accountRepository, null, null);
+        HoldService holdService = new HoldService(repository(HoldRepository.class, holdMethods), accountRepository,
+                accountService, new SimpleMeterRegistry());
+        holdService.init();
+        pairRegistry = new CurrencyPairRegistry();
+        eurUsd = pairRegistry.pairId("EUR", "USD");
+        tradeService = new TradeService(repository(TradeRepository.class, tradeMethods),
+                repository(UserRepository.class, userMethods), accountRepository, null, pairRegistry,
+                new EngineJournalService(pairRegistry), null, holdService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void createTrade_ReadsTheAccountOnceAndTheUserNever() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            tradeService.createTrade(7L, 1L, "EUR", "USD", new BigDecimal("1000"), new BigDecimal("1.1000"),
+                    "LIMIT", "BUY", null, null);
+        }
+
+        // Assert
+        assertEquals(List.of("findBalanceState", "saveTrade", "saveHold", "saveTrade", "saveHold", "saveTrade", "saveHold"),
+                queries);
+        Trade trade = savedTrades.get(0);
+        assertEquals(Long.valueOf(7L), trade.getUser().getId());
+        assertEquals(Long.valueOf(1L), trade.getAccount().getId());
+        assertEquals("PENDING", trade.getStatus());
+        assertEquals(Long.valueOf(1L), savedHolds.get(0).getReferenceId());
+    }
+
+    @Test
+    void createTrade_WhenAccountBelongsToAnotherUser_ThrowsBeforeInserting() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> tradeService.createTrade(8L, 1L, "EUR", "USD",
+                new BigDecimal("10"), new BigDecimal("1.1000"), "LIMIT", "BUY", null, null));
+        assertTrue(savedTrades.isEmpty());
+    }
+
+    @Test
+    void createTrade_WhenFundsShort_ThrowsAndHoldsNothing() {
+        // Act & Assert
+        assertThrows(InsufficientFundsException.class, () -> tradeService.createTrade(7L, 1L, "EUR", "USD",
+                new BigDecimal("5000"), new BigDecimal("1.1000"), "LIMIT", "BUY", null, null));
+        assertTrue(savedTrades.isEmpty());
+        BalanceBook.Entry entry = accountService.getBalanceBook().find(1L);
+        assertEquals(0, entry.held());
+    }
+
+    @Test
+    void createTrade_WhenRolledBack_GivesTheHoldBack() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        tradeService.createTrade(7L, 1L, "EUR", "USD", new BigDecimal("1000"), new BigDecimal("1.1000"),
+                "LIMIT", "BUY", null, null);
+        long heldBeforeRollback = accountService.getBalanceBook().find(1L).held();
+
+        // Act
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertEquals(FixedPoint.fromBigDecimal(new BigDecimal("1100")), heldBeforeRollback);
+        assertEquals(0, accountService.getBalanceBook().find(1L).held());
+    }
+
+    @Test
+    void createTrade_IndexesTriggersOnlyOnceCommitted() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        Trade trade = tradeService.createTrade(7L, 1L, "EUR", "USD", new BigDecimal("10"), new BigDecimal("1.1000"),
+                "STOP_LOSS", "BUY", new BigDecimal("1.0500"), null);
+        boolean indexedBeforeCommit = tradeService.getTriggerIndex().contains(trade.getId());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertFalse(indexedBeforeCommit);
+        assertTrue(tradeService.getTriggerIndex().contains(trade.getId()));
+    }
+
+    @Test
+    void createTrade_WhenCurrencyUnknown_RejectsWithoutRegisteringIt() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> tradeService.createTrade(7L, 1L, "XAU", "USD",
+                new BigDecimal("10"), new BigDecimal("1.1000"), "STOP_LOSS", "BUY", new BigDecimal("1.0500"), null));
+        assertEquals(-1, pairRegistry.findCurrencyId("XAU"));
+    }
+
+    @Test
+    void cancelTrade_WhenRolledBack_KeepsTheTriggerArmed() {
+        // Arrange
+        Trade trade = tradeService.createTrade(7L, 1L, "EUR", "USD", new BigDecimal("10"), new BigDecimal("1.1000"),
+                "STOP_LOSS", "BUY", new BigDecimal("1.0500"), null);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        tradeService.cancelTrade(trade.getId());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertTrue(tradeService.getTriggerIndex().contains(trade.getId()));
+    }
+
+    @Test
+    void executeIfPending_WhenRolledBack_RearmsTheFiredTrigger() {
+        // Arrange: a BUY stopping out at 1.0500, and the price falling through it
+        Trade trade = tradeService.createTrade(7L, 1L, "EUR", "USD", new BigDecimal("10"), new BigDecimal("1.1000"),
+                "STOP_LOSS", "BUY", new BigDecimal("1.0500"), null);
+        long price = FixedPoint.fromBigDecimal(new BigDecimal("1.0400"));
+        tradeService.fireTriggeredOrders(eurUsd, price, price, tradeId -> { });
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        tradeService.executeIfPending(trade.getId(), new BigDecimal("1.0400"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertTrue(tradeService.getTriggerIndex().contains(trade.getId()));
+        assertFalse(tradeService.getTriggerIndex().isInFlight(trade.getId()));
+    }
+
+    // Ends the simulated transaction the way the transaction manager would
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
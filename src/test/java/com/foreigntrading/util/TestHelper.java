@@ -1,43 +1,47 @@
 package com.foreigntrading.util;
 
-import com.foreigntrading.model.User;
-import com.foreigntrading.model.Role;
+import com.foreigntrading.entity.Role;
+import com.foreigntrading.entity.User;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.lang.reflect.Proxy;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 public class TestHelper {
 
-    public static User createTestUser(String username, String email, String password, Role role, PasswordEncoder passwordEncoder) {
+    public static User createTestUser(String email, String password, String roleName, PasswordEncoder passwordEncoder) {
         User user = new User();
-        user.setUsername(username);
         user.setEmail(email);
         user.setPassword(passwordEncoder.encode(password));
-        
+        user.setFirstName("Test");
+        user.setLastName("User");
+
+        Role role = new Role();
+        role.setName(roleName);
         Set<Role> roles = new HashSet<>();
         roles.add(role);
         user.setRoles(roles);
-        
+
         return user;
     }
 
     public static User createTestAdminUser(PasswordEncoder passwordEncoder) {
         return createTestUser(
-            "admin",
             "admin@example.com",
             "admin123",
-            Role.ADMIN,
+            "ROLE_ADMIN",
             passwordEncoder
         );
     }
 
     public static User createTestRegularUser(PasswordEncoder passwordEncoder) {
         return createTestUser(
-            "user",
             "user@example.com",
             "user123",
-            Role.USER,
+            "ROLE_USER",
             passwordEncoder
         );
     }
@@ -46,4 +50,16 @@ public class TestHelper {
         // This is a simplified version. In a real application, you would use your JWT service
         return "test.jwt.token";
     }
-} 
\ No newline at end of file
+
+    // A repository answering the named methods and failing on any other
+    @SuppressWarnings("unchecked")
+    public static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = methods.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            return answer.apply(args);
+        });
+    }
+}